@@ -93,7 +93,7 @@ public class CG_FCA {
         gridForCGFCA.setValueType( new FCA_RGPathValue() );
 
         BinaryRelationMatch match = new BinaryRelationMatch( graph, graph.getReferent() );
-        ArrayList<MatchedBinaryTuple> matchedBinaryTuples = match.makeBinaryTuples( graph );
+        ArrayList<MatchedBinaryTuple> matchedBinaryTuples = BinaryRelationMatch.makeBinaryTuples( graph );
 
         ArrayList<BinaryTuple> binaryTuples = new ArrayList<>();
         for ( MatchedBinaryTuple mbt : matchedBinaryTuples ) {
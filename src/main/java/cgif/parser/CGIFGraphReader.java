@@ -0,0 +1,236 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package cgif.parser;
+
+import cgif.parser.javacc.CGIFParser;
+import cgif.parser.javacc.ParseException;
+import cgif.parser.javacc.TokenMgrError;
+import charger.Global;
+import charger.obj.Graph;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads CGIF graphs one at a time from a reader, feeding the parser straight
+ * from it rather than reading the whole file into a string first. A file may
+ * hold any number of top-level graphs, each ended by a line holding only
+ * GRAPH_SEPARATOR (or by the end of the file); only one graph's text is ever
+ * being parsed at a time, and coreference labels are forgotten at the end of
+ * each graph. Nothing here needs a display, so it can be used to convert
+ * large collections of CGIF without one.
+ *
+ * @see CGIFParser#parseCGIF
+ * @since Charger 4.3
+ */
+public class CGIFGraphReader {
+
+    /** A line holding only this ends one top-level graph and begins another. */
+    public static final String GRAPH_SEPARATOR = "\\\\";
+
+    /**
+     * Is given each graph as soon as it has been read.
+     */
+    public static interface GraphHandler {
+
+        /**
+         * @param g the graph just read
+         * @param number the graph's position in the file, starting at 1
+         * @return whether to go on reading graphs
+         */
+        boolean graphRead( Graph g, int number );
+    }
+
+    private final GraphSegment segment;
+    private final CGIFParser parser;
+    private int graphsRead = 0;
+
+    /**
+     * @param in where to read CGIF from; it is buffered here if it isn't
+     * already.
+     */
+    public CGIFGraphReader( Reader in ) {
+        segment = new GraphSegment( in instanceof BufferedReader ? (BufferedReader)in : new BufferedReader( in ) );
+        parser = new CGIFParser( (Reader)null );
+        parser.disable_tracing();
+    }
+
+    /**
+     * Reads the next top-level graph. Graphs with nothing in them are skipped.
+     * If a graph can't be parsed, the rest of it is skipped, so that the next
+     * call reads the graph after it.
+     *
+     * @return the graph; null if there are no more.
+     * @throws ParseException if the graph's CGIF isn't well formed
+     * @throws IOException if the reader fails
+     */
+    public Graph readGraph() throws ParseException, IOException {
+        while ( segment.start() ) {
+            int number = ++graphsRead;
+            Graph g;
+            try {
+                g = parser.parseCGIF( segment );
+            } catch ( ParseException | TokenMgrError ex ) {
+                segment.skipRest();
+                if ( segment.failure != null ) {
+                    throw segment.failure;
+                }
+                throw new ParseException( "Graph " + number + ": " + ex.getMessage() );
+            }
+            if ( segment.failure != null ) {
+                throw segment.failure;
+            }
+            if ( g.getGraphObjects().isEmpty() ) {
+                graphsRead--;
+                continue;
+            }
+            return g;
+        }
+        return null;
+    }
+
+    /**
+     * Reads every graph that's left, handing each one over as soon as it is
+     * read. A graph that can't be parsed is reported and skipped.
+     *
+     * @param handler is given each graph
+     * @return how many graphs were handed over
+     * @throws IOException if the reader fails
+     */
+    public int readAll( GraphHandler handler ) throws IOException {
+        int handled = 0;
+        while ( true ) {
+            Graph g;
+            try {
+                g = readGraph();
+            } catch ( ParseException ex ) {
+                Global.error( "CGIF " + ex.getMessage() );
+                continue;
+            }
+            if ( g == null ) {
+                break;
+            }
+            handled++;
+            if ( !handler.graphRead( g, graphsRead ) ) {
+                break;
+            }
+        }
+        return handled;
+    }
+
+    /**
+     * @return how many graphs have been read (or tried) so far.
+     */
+    public int getGraphsRead() {
+        return graphsRead;
+    }
+
+    /**
+     * Closes the underlying reader.
+     */
+    public void close() throws IOException {
+        segment.in.close();
+    }
+
+    /**
+     * The text of one graph: the lines of the underlying reader up to the next
+     * separator, with the end of the graph reported as the end of input.
+     */
+    private static class GraphSegment extends Reader {
+
+        final BufferedReader in;
+        /** the line being handed out, with its line end; null at the end of the graph */
+        private String line = null;
+        private int next = 0;
+        /** whether the graph's text has all been handed out */
+        private boolean ended = true;
+        /** whether the underlying reader has run out */
+        private boolean done = false;
+        /** a read error, kept to be thrown once the parser has given up */
+        IOException failure = null;
+
+        GraphSegment( BufferedReader in ) {
+            this.in = in;
+        }
+
+        /**
+         * Skips blank lines and separators up to the first line of the next
+         * graph.
+         *
+         * @return whether there is another graph
+         */
+        boolean start() throws IOException {
+            failure = null;
+            while ( !done ) {
+                String s = in.readLine();
+                if ( s == null ) {
+                    done = true;
+                } else if ( !s.trim().isEmpty() && !s.trim().equals( GRAPH_SEPARATOR ) ) {
+                    line = s + "\n";
+                    next = 0;
+                    ended = false;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Moves on to the next line of the graph, if there is one.
+         */
+        private boolean advance() {
+            if ( line != null && next < line.length() ) {
+                return true;
+            }
+            line = null;
+            if ( ended || done ) {
+                ended = true;
+                return false;
+            }
+            try {
+                String s = in.readLine();
+                if ( s == null ) {
+                    done = true;
+                } else if ( !s.trim().equals( GRAPH_SEPARATOR ) ) {
+                    line = s + "\n";
+                    next = 0;
+                }
+            } catch ( IOException ex ) {
+                failure = ex;
+                done = true;
+            }
+            ended = line == null;
+            return !ended;
+        }
+
+        void skipRest() {
+            while ( advance() ) {
+                next = line.length();
+            }
+        }
+
+        @Override
+        public int read( char[] cbuf, int off, int len ) {
+            if ( len == 0 ) {
+                return 0;
+            }
+            if ( !advance() ) {
+                return -1;
+            }
+            int n = Math.min( len, line.length() - next );
+            line.getChars( next, next + n, cbuf, off );
+            next += n;
+            return n;
+        }
+
+        /** The underlying reader is closed by CGIFGraphReader.close instead. */
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -7,7 +7,7 @@ package cgif.parser;
 
 import cgif.parser.javacc.Token;
 import charger.Global;
-import charger.cgx.CGXParser;
+import charger.cgx.CGXStreamParser;
 import charger.exception.CGEncodingException;
 import charger.obj.Actor;
 import charger.obj.Arrow;
@@ -36,6 +36,8 @@ import javax.swing.JOptionPane;
 public class CGIFParserHelper {
 
     public ReferentMap referents = new ReferentMap();
+        // reads the layout comments, sharing colors and fonts among them
+    private final CGXStreamParser layoutParser = new CGXStreamParser();
 
     public static String extractChargerComment( Token token ) {
         if ( token == null || token.specialToken == null ) {
@@ -62,10 +64,8 @@ public class CGIFParserHelper {
     public void parseChargerLayout( String chargerComment, GraphObject go ) {
         if ( chargerComment == null || chargerComment.trim().isEmpty() ) return;
 
-        CGXParser parser = null;
         try {
-            parser = new CGXParser( chargerComment );
-            parser.parseLayoutOnly( go );
+            layoutParser.parseLayoutOnly( chargerComment, go );
             go.resizeIfNecessary();
         } catch (Exception | CGEncodingException ex ) {
             // Silently fail if layout is invalid to prevent crashing the whole parse
@@ -40,6 +40,21 @@ public class CGIFParser implements CGIFParserConstants {
         return topGraph;
     }
 
+    /**
+     * Parses one top-level graph straight from a reader, without first reading
+     * it all into a string. Each call makes a new graph, and coreference labels
+     * are only remembered for the graph being parsed.
+     * @param reader where the graph's CGIF is read from, up to its end
+     * @return the new graph
+     */
+    public Graph parseCGIF( Reader reader ) throws ParseException {
+        ReInit( reader );
+        topGraph = new Graph();
+        helper.referents.clear();
+        topLevelGraph( );
+        return topGraph;
+    }
+
   final public void topLevelGraph() throws ParseException {
     trace_call("topLevelGraph");
     try {
@@ -0,0 +1,474 @@
+package charger;
+
+import cgif.generate.CGIFWriter;
+import cgif.parser.CGIFGraphReader;
+import cgif.parser.javacc.ParseException;
+import charger.cgx.CGBGenerator;
+import charger.cgx.CGBParser;
+import charger.cgx.CGXGenerator;
+import charger.cgx.CGXParser;
+import charger.cgx.CGXStreamParser;
+import charger.exception.CGEncodingException;
+import charger.obj.Graph;
+import chargerlib.FileFormat;
+import chargerlib.General;
+import de.erichseifert.vectorgraphics2d.EPSGraphics2D;
+import de.erichseifert.vectorgraphics2d.PDFGraphics2D;
+import de.erichseifert.vectorgraphics2d.ProcessingPipeline;
+import de.erichseifert.vectorgraphics2d.SVGGraphics2D;
+import de.erichseifert.vectorgraphics2d.VectorGraphics2D;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+
+/**
+ * Command line entry point for converting many graphs at once without a
+ * display. Reads .cgx, .cgb and .cgif files (or every such file in the
+ * folders given) and writes each graph out again in one or more of the CGX,
+ * CGB (binary), CGIF, bitmap and vector image formats, converting several files at once on as
+ * many threads as there are processors. No frames are ever made, so it runs
+ * with java.awt.headless=true, which it sets itself if it hasn't been set.
+ * The exception is the vector formats (pdf, svg and eps): the VectorGraphics2D
+ * library asks for the screen device when it starts a drawing, so these can
+ * only be written where there is a display, though still without any frames.
+ * <p>
+ * Usage:
+ * <pre>
+ * java -cp ... charger.BatchConverter -to cgif,png [-o folder] [-threads n] [-layout] [-infoOn] files-or-folders...
+ * </pre>
+ * Each output file has the name of the file it came from, with the new
+ * format's extension. A .cgif file may hold several graphs; the second and
+ * later are written with "-2", "-3", etc. added to the name. Folders are
+ * searched for graphs along with their sub-folders, whose layout is copied
+ * into the output folder. Without -o, each output file goes next to the file
+ * it came from. With -layout, graphs read from CGIF are laid out before they
+ * are written, since plain CGIF has no layout of its own.
+ * <p>
+ * One line is printed for each file, giving how long it took or why it
+ * failed; a file that fails doesn't stop the others. The exit status is 1 if
+ * any file failed, 2 if the arguments were wrong.
+ *
+ * @see CharGer#main
+ * @since Charger 4.3
+ */
+public class BatchConverter {
+
+    private final List<FileFormat> formats;
+    private final File outputFolder;
+    private final boolean layout;
+
+    /**
+     * @param formats the formats in which to write each graph
+     * @param outputFolder where to put the output; null to put each file next
+     * to the one it came from
+     * @param layout whether to lay out each graph read from CGIF before
+     * writing it
+     */
+    public BatchConverter( List<FileFormat> formats, File outputFolder, boolean layout ) {
+        this.formats = formats;
+        this.outputFolder = outputFolder;
+        this.layout = layout;
+    }
+
+    /**
+     * What happened to one input file.
+     */
+    public static class Result {
+
+        public final File input;
+        public final ArrayList<File> outputs = new ArrayList<>();
+        public int graphs = 0;
+        public long millis = 0;
+        /** why the file (or some graph in it) wasn't converted; null if it all was */
+        public String failure = null;
+
+        Result( File input ) {
+            this.input = input;
+        }
+
+        public boolean succeeded() {
+            return failure == null;
+        }
+
+        public String toString() {
+            if ( succeeded() ) {
+                return String.format( Locale.ENGLISH, "ok   %6d ms  %s (%d graph%s, %d file%s written)",
+                        millis, input.getPath(), graphs, graphs == 1 ? "" : "s",
+                        outputs.size(), outputs.size() == 1 ? "" : "s" );
+            } else {
+                return String.format( Locale.ENGLISH, "FAIL %6d ms  %s: %s", millis, input.getPath(), failure );
+            }
+        }
+    }
+
+    /**
+     * Converts one file. Never throws; anything that goes wrong is described
+     * in the result.
+     *
+     * @param input a .cgx, .cgb or .cgif file
+     * @param root the folder given on the command line that the file was found
+     * in, if any, so that its sub-folders can be copied in the output folder
+     * @return what happened
+     */
+    public Result convert( File input, File root ) {
+        Result result = new Result( input );
+        long start = System.nanoTime();
+        try {
+            String extension = extensionOf( input );
+            if ( extension.equalsIgnoreCase( FileFormat.CHARGER4.extension() ) ) {
+                Graph g = new Graph( null );
+                readCGX( input, g );
+                result.graphs++;
+                writeAll( g, input, root, 1, result );
+            } else if ( extension.equalsIgnoreCase( FileFormat.CGB.extension() ) ) {
+                Graph g = new Graph( null );
+                new CGBParser().parse( input, g );
+                result.graphs++;
+                writeAll( g, input, root, 1, result );
+            } else if ( extension.equalsIgnoreCase( FileFormat.CGIF2007.extension() ) ) {
+                CGIFGraphReader reader = new CGIFGraphReader( new BufferedReader(
+                        new InputStreamReader( new FileInputStream( input ), StandardCharsets.UTF_8 ) ) );
+                try {
+                    while ( true ) {
+                        Graph g;
+                        try {
+                            g = reader.readGraph();
+                        } catch ( ParseException ex ) {
+                            note( result, ex.getMessage().replaceAll( "\\s+", " " ).trim() );
+                            continue;
+                        }
+                        if ( g == null ) {
+                            break;
+                        }
+                        result.graphs++;
+                        if ( layout ) {
+                            g.layoutGraph();
+                        }
+                        writeAll( g, input, root, reader.getGraphsRead(), result );
+                    }
+                } finally {
+                    reader.close();
+                }
+            } else {
+                result.failure = "not a ." + FileFormat.CHARGER4.extension() + ", ." + FileFormat.CGB.extension()
+                        + " or ." + FileFormat.CGIF2007.extension() + " file";
+            }
+        } catch ( IOException | CGEncodingException | RuntimeException ex ) {
+            note( result, ex.toString() );
+        }
+        result.millis = ( System.nanoTime() - start ) / 1000000;
+        return result;
+    }
+
+    private static String extensionOf( File f ) {
+        String extension = General.getFileExtension( f.getName() );
+        return extension == null ? "" : extension;
+    }
+
+    private static void note( Result result, String failure ) {
+        result.failure = result.failure == null ? failure : result.failure + "; " + failure;
+    }
+
+    private static void readCGX( File input, Graph g ) throws IOException, CGEncodingException {
+        CGXStreamParser parser = new CGXStreamParser();
+        parser.setKeepIDs( true );
+        parser.setOffset( CGXParser.offsetZero );
+        parser.setMakeList( false );
+        parser.setPreserveGraph( false );
+        try ( InputStream is = new BufferedInputStream( new FileInputStream( input ) ) ) {
+            parser.parse( is, g );
+        }
+    }
+
+    /**
+     * Writes one graph in each of the formats asked for.
+     *
+     * @param number which graph this is in its file, starting at 1
+     */
+    private void writeAll( Graph g, File input, File root, int number, Result result ) {
+        for ( FileFormat format : formats ) {
+            File output = outputFile( input, root, number, format );
+            if ( output.getAbsoluteFile().equals( input.getAbsoluteFile() ) ) {
+                note( result, "won't overwrite the input with " + output.getName() );
+                continue;
+            }
+            try {
+                File folder = output.getAbsoluteFile().getParentFile();
+                if ( !folder.isDirectory() && !folder.mkdirs() ) {
+                    throw new IOException( "can't make folder " + folder );
+                }
+                write( g, format, output );
+                result.outputs.add( output );
+            } catch ( IOException | RuntimeException ex ) {
+                output.delete();
+                note( result, output.getName() + ": " + ex );
+            }
+        }
+    }
+
+    private File outputFile( File input, File root, int number, FileFormat format ) {
+        String name = General.stripFileExtension( input.getName() );
+        if ( number > 1 ) {
+            name += "-" + number;
+        }
+        name += "." + format.extension();
+        File folder = input.getAbsoluteFile().getParentFile();
+        if ( outputFolder != null ) {
+            folder = outputFolder;
+            if ( root != null ) {
+                String below = root.getAbsoluteFile().toURI().relativize( input.getAbsoluteFile().getParentFile().toURI() ).getPath();
+                if ( !below.isEmpty() ) {
+                    folder = new File( outputFolder, below );
+                }
+            }
+        }
+        return new File( folder, name );
+    }
+
+    /**
+     * Writes a graph to a file in the given format. Unlike the IOManager
+     * methods, this reports failures instead of just logging them and needs no
+     * lock, so that graphs can be written on several threads at once.
+     *
+     * @see IOManager#GraphToFile
+     */
+    public static void write( Graph g, FileFormat format, File output ) throws IOException {
+        try ( OutputStream os = new BufferedOutputStream( new FileOutputStream( output ) ) ) {
+            switch ( format.family() ) {
+                case TEXT:
+                    if ( format.extension().equals( FileFormat.CHARGER4.extension() ) ) {
+                        OperManager.performActionValidate( g );
+                        CGXGenerator.write( g, os );
+                    } else if ( format == FileFormat.CGIF2007 ) {
+                        CGIFWriter.write( os, g, Global.includeCharGerInfoInCGIF );
+                    } else if ( format == FileFormat.CGB ) {
+                        OperManager.performActionValidate( g );
+                        CGBGenerator.write( g, os );
+                        break;
+                    } else {
+                        throw new IOException( "can't write " + format.description() );
+                    }
+                    os.write( Global.LineSeparator.getBytes( StandardCharsets.UTF_8 ) );
+                    break;
+                case BITMAP:
+                    if ( !ImageIO.write( IOManager.graphToImage( g ), format.extension(), os ) ) {
+                        throw new IOException( "no image writer for " + format.extension() );
+                    }
+                    break;
+                case VECTOR:
+                    Rectangle2D.Double bounds = g.getDisplayBounds();
+                    VectorGraphics2D graphics;
+                    if ( format == FileFormat.PDF ) {
+                        graphics = new PDFGraphics2D( 0, 0, bounds.width, bounds.height );
+                    } else if ( format == FileFormat.SVG ) {
+                        graphics = new SVGGraphics2D( 0, 0, bounds.width, bounds.height );
+                    } else if ( format == FileFormat.EPS ) {
+                        graphics = new EPSGraphics2D( 0, 0, bounds.width, bounds.height );
+                    } else {
+                        throw new IOException( "can't write " + format.description() );
+                    }
+                    g.draw( graphics, true );
+                    os.write( ( (ProcessingPipeline)graphics ).getBytes() );
+                    break;
+                default:
+                    throw new IOException( "can't write " + format.description() );
+            }
+        }
+    }
+
+    /**
+     * Finds the graphs to convert in a file or folder.
+     *
+     * @param f a file, or a folder to be searched along with its sub-folders
+     * @param found the .cgx, .cgb and .cgif files, in name order within each
+     * folder
+     */
+    public static void collect( File f, List<File> found ) {
+        if ( f.isDirectory() ) {
+            File[] files = f.listFiles();
+            if ( files == null ) {
+                return;
+            }
+            Arrays.sort( files );
+            for ( File inner : files ) {
+                if ( inner.isDirectory() ) {
+                    collect( inner, found );
+                } else if ( isGraphFile( inner ) ) {
+                    found.add( inner );
+                }
+            }
+        } else {
+            found.add( f );
+        }
+    }
+
+    private static boolean isGraphFile( File f ) {
+        String extension = extensionOf( f );
+        return extension.equalsIgnoreCase( FileFormat.CHARGER4.extension() )
+                || extension.equalsIgnoreCase( FileFormat.CGB.extension() )
+                || extension.equalsIgnoreCase( FileFormat.CGIF2007.extension() );
+    }
+
+    /**
+     * @param name a format's extension or description
+     * @return the format, if graphs can be written in it; otherwise null
+     */
+    private static FileFormat outputFormat( String name ) {
+        FileFormat format = FileFormat.FileFormatOf( name );
+        if ( format.extension().equals( FileFormat.CHARGER4.extension() ) ) {
+            return FileFormat.CHARGER4;
+        }
+        switch ( format.family() ) {
+            case TEXT:
+                return format == FileFormat.CGIF2007 || format == FileFormat.CGB ? format : null;
+            case BITMAP:
+                return format;
+            case VECTOR:
+                return format == FileFormat.HTML ? null : format;
+            default:
+                return null;
+        }
+    }
+
+    private static void usage( String problem ) {
+        System.out.println( "Command line ERROR: " + problem );
+        System.out.println( "Usage: charger.BatchConverter -to format[,format...] [-o folder] [-threads n] [-layout] [-infoOn] files-or-folders..." );
+        System.out.println( "  formats: cgx, cgb, cgif, pdf, svg, eps, or an image format such as png or jpg" );
+        System.exit( 2 );
+    }
+
+    /**
+     * Arguments possible are: -to formats -o folder -threads n -layout -infoOn,
+     * followed by the files and folders to convert.
+     */
+    public static void main( String[] args ) throws InterruptedException {
+        Locale.setDefault( Locale.ENGLISH );
+
+        ArrayList<FileFormat> formats = new ArrayList<>();
+        File outputFolder = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean layout = false;
+        boolean setInfoOn = false;
+        ArrayList<File> inputs = new ArrayList<>();
+        for ( int argnum = 0; argnum < args.length; argnum++ ) {
+            String arg = args[ argnum];
+            boolean hasValue = argnum + 1 < args.length && !args[ argnum + 1].startsWith( "-" );
+            if ( arg.equalsIgnoreCase( "-to" ) ) {
+                if ( !hasValue ) {
+                    usage( "-to must be followed by one or more formats." );
+                }
+                for ( String name : args[ ++argnum].split( "," ) ) {
+                    FileFormat format = outputFormat( name.trim() );
+                    if ( format == null ) {
+                        usage( "can't convert to \"" + name + "\"." );
+                    }
+                    if ( !formats.contains( format ) ) {
+                        formats.add( format );
+                    }
+                }
+            } else if ( arg.equalsIgnoreCase( "-o" ) ) {
+                if ( !hasValue ) {
+                    usage( "-o must be followed by a folder." );
+                }
+                outputFolder = new File( args[ ++argnum] );
+            } else if ( arg.equalsIgnoreCase( "-threads" ) ) {
+                try {
+                    threads = Integer.parseInt( hasValue ? args[ ++argnum] : "" );
+                } catch ( NumberFormatException ex ) {
+                    threads = 0;
+                }
+                if ( threads < 1 ) {
+                    usage( "-threads must be followed by a positive number." );
+                }
+            } else if ( arg.equalsIgnoreCase( "-layout" ) ) {
+                layout = true;
+            } else if ( arg.equalsIgnoreCase( "-infoOn" ) ) {
+                setInfoOn = true;
+            } else if ( arg.startsWith( "-" ) ) {
+                usage( "unknown argument \"" + arg + "\"." );
+            } else {
+                inputs.add( new File( arg ) );
+            }
+        }
+        if ( formats.isEmpty() ) {
+            usage( "no output format given with -to." );
+        }
+        if ( inputs.isEmpty() ) {
+            usage( "no files or folders to convert." );
+        }
+        boolean vector = false;
+        for ( FileFormat format : formats ) {
+            vector |= format.family() == FileFormat.Family.VECTOR;
+        }
+        if ( !vector && System.getProperty( "java.awt.headless" ) == null ) {
+            System.setProperty( "java.awt.headless", "true" );
+        }
+        if ( vector && GraphicsEnvironment.isHeadless() ) {
+            usage( "pdf, svg and eps can only be written where there is a display." );
+        }
+
+        Global.setupAsLibrary();
+        Global.infoOn = setInfoOn;
+        final BatchConverter converter = new BatchConverter( formats, outputFolder, layout );
+
+        ExecutorService pool = Executors.newFixedThreadPool( threads );
+        ExecutorCompletionService<Result> done = new ExecutorCompletionService<>( pool );
+        int submitted = 0;
+        for ( final File input : inputs ) {
+            ArrayList<File> found = new ArrayList<>();
+            collect( input, found );
+            final File root = input.isDirectory() ? input : null;
+            for ( final File f : found ) {
+                done.submit( () -> converter.convert( f, root ) );
+                submitted++;
+            }
+        }
+        pool.shutdown();
+
+        long start = System.nanoTime();
+        int failed = 0;
+        int graphs = 0;
+        long busy = 0;
+        for ( int n = 0; n < submitted; n++ ) {
+            Result result;
+            try {
+                result = done.take().get();
+            } catch ( ExecutionException ex ) {
+                failed++;
+                System.out.println( "FAIL " + ex.getCause() );
+                continue;
+            }
+            System.out.println( result );
+            graphs += result.graphs;
+            busy += result.millis;
+            if ( !result.succeeded() ) {
+                failed++;
+            }
+        }
+        long elapsed = ( System.nanoTime() - start ) / 1000000;
+        System.out.println( String.format( Locale.ENGLISH, "%d file%s (%d graphs) converted in %d ms on %d thread%s (%d ms of work); %d failed.",
+                submitted - failed, submitted - failed == 1 ? "" : "s", graphs, elapsed,
+                threads, threads == 1 ? "" : "s", busy, failed ) );
+        System.exit( failed > 0 ? 1 : 0 );
+    }
+}
@@ -92,6 +92,7 @@ import chargerlib.CDateTime;
 
 /**
  * This is the main entry point to Charger when run as a standalone application.
+ * To convert graphs from the command line without the editor, see BatchConverter.
 */
 
 public class CharGer {
@@ -1506,7 +1506,7 @@ public class EditFrame extends JFrame
      * @see EditFrame#insideGNode
      */
     public GraphObject onTopOfObject( Point2D.Double p ) {
-        Iterator<GraphObject> iter = new DeepIterator( TheGraph );
+        Iterator<GraphObject> iter = TheGraph.getSpatialIndex().objectsAt( p ).iterator();
         GraphObject go;
         while ( iter.hasNext() ) {  // does not check for object type here!
             go = iter.next();
@@ -1541,7 +1541,7 @@ public class EditFrame extends JFrame
      * @see #insideGNode
      */
     public GraphObject onTopOfGNode( Point2D.Double p ) {
-        Iterator<GraphObject> iter = new DeepIterator( TheGraph );
+        Iterator<GraphObject> iter = TheGraph.getSpatialIndex().objectsAt( p ).iterator();
         GraphObject go;
         while ( iter.hasNext() ) {  // does not check for object type here!
             go = iter.next();
@@ -1578,7 +1578,7 @@ public class EditFrame extends JFrame
      * @see #onTopOfGNode
      */
     public GraphObject insideGNode( Point2D.Double p ) {
-        Iterator<GraphObject> iter = new DeepIterator( TheGraph );
+        Iterator<GraphObject> iter = TheGraph.getSpatialIndex().objectsAt( p ).iterator();
         GraphObject go;
         while ( iter.hasNext() ) {  // does not check for object type here!
             go = iter.next();
@@ -1605,7 +1605,7 @@ public class EditFrame extends JFrame
      * @see EditFrame#insideGNode
      */
     public GraphObject insideGEdge( Point2D.Double p ) {
-        Iterator<GraphObject> iter = new DeepIterator( TheGraph );
+        Iterator<GraphObject> iter = TheGraph.getSpatialIndex().objectsAt( p ).iterator();
         GraphObject go;
         while ( iter.hasNext() ) {  // does not check for object type here!
             go = iter.next();
@@ -1659,7 +1659,12 @@ public class EditFrame extends JFrame
      * @param select whether to select or de-select the objects in question
      */
     protected void setSelectedGraphObjects( Graph g, Rectangle2D.Double r, boolean select ) {
-        Iterator<GraphObject> iter = new DeepIterator( g );
+        Iterator<GraphObject> iter = null;
+        if ( g.getOwnerGraph() == null ) {
+            iter = g.getSpatialIndex().objectsWithin( r ).iterator();     // only those near the rectangle
+        } else {
+            iter = new DeepIterator( g );
+        }
         GraphObject go;
         while ( iter.hasNext() ) {  // does not check for object type here!
             go = iter.next();
@@ -12,10 +12,13 @@ import charger.obj.GEdge;
 import charger.obj.GNode;
 import charger.obj.Graph;
 import charger.obj.GraphObject;
+import charger.obj.GraphObjectID;
 import charger.obj.Relation;
 import charger.obj.RelationLabel;
 import charger.obj.ShallowIterator;
 import charger.obj.TypeLabel;
+import charger.undo.GraphDelta;
+import charger.undo.GraphDeltaTracker;
 import charger.util.CGUtil;
 import chargerlib.CDateTime;
 import chargerlib.FileFormat;
@@ -23,8 +26,10 @@ import chargerlib.FontChooser;
 import chargerlib.General;
 import chargerlib.GenericTextFrame;
 import chargerlib.Tag;
+import chargerlib.undo.DeltaUndoStateManager;
+import chargerlib.undo.DeltaUndoable;
 import chargerlib.undo.UndoStateManager;
-import chargerlib.undo.Undoable;
+import chargerlib.undo.UndoableDelta;
 import chargerlib.undo.UndoableState;
 
 import java.awt.Color;
@@ -77,6 +82,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JRadioButton;
 import javax.swing.JTextField;
 import javax.swing.KeyStroke;
+import kb.KnowledgeBase;
 
 
 /*
@@ -108,7 +114,7 @@ import javax.swing.KeyStroke;
  * @see EditFrame
  * @see CanvasPanel
  */
-public class EditManager implements ItemListener, ActionListener, ClipboardOwner, Undoable {
+public class EditManager implements ItemListener, ActionListener, ClipboardOwner, DeltaUndoable {
 
     /**
      * This class does a lot of communicating with the edit frame that owns it.
@@ -134,6 +140,10 @@ public class EditManager implements ItemListener, ActionListener, ClipboardOwner
     // Stuff for undo/redo
     private String holdGraph = null;		// temp string version, saved in case we need a backup
     public UndoStateManager urMgr = null;
+    /**
+     * Finds the object-level changes between undoable steps.
+     */
+    private GraphDeltaTracker deltaTracker = new GraphDeltaTracker();
     private Iterator<GraphObject> findIterator = null;
     private String findString = null;
     private boolean anyFound = false;		// during a find, were any ever found?
@@ -150,7 +160,7 @@ public class EditManager implements ItemListener, ActionListener, ClipboardOwner
     public EditManager( EditFrame outerFrame ) {
         // Link to the outer frame
         ef = outerFrame;
-        urMgr = new UndoStateManager( this, maxUndo );
+        urMgr = new DeltaUndoStateManager( this, maxUndo );
 //        urMgr = new EditStateMgr( ef, maxUndo );
 
 
@@ -708,6 +718,8 @@ public class EditManager implements ItemListener, ActionListener, ClipboardOwner
             performActionMinimizeSelection();
         } else if ( e.getActionCommand().equals( OperManager.MakeGenericCmdLabel ) ) {
             ef.omgr.performActionMakeGeneric();
+        } else if ( e.getActionCommand().equals( OperManager.MaxJoinWithOpenGraphsLabel ) ) {
+            ef.omgr.performActionMaxJoinWithOpenGraphs( ef.TheGraph );
         } else if ( e.getActionCommand().equals( OperManager.ValidateCmdLabel ) ) {
             OperManager.performActionValidate( ef.TheGraph );
         } else if ( e.getActionCommand().equals( "Show Internals" ) ) {
@@ -1716,9 +1728,6 @@ public class EditManager implements ItemListener, ActionListener, ClipboardOwner
     public EditorState currentState() {
         EditorState state = new EditorState( charger.cgx.CGXGenerator.generateXML( ef.TheGraph ) );
         state.setSomethingHasChanged( ef.somethingHasChanged );
-        if ( ef.contentHasChanged ) {
-            state.setKB( Global.sessionKB );  // This needs to be a deep copy of the knowledge base
-        }
         return state;
     }
 
@@ -1730,12 +1739,80 @@ public class EditManager implements ItemListener, ActionListener, ClipboardOwner
     public void restoreState( UndoableState astate ) {
         EditorState state = (EditorState)astate;
 
+        clearGraph( false );
+        restoreKB( deltaTracker.getKB(), state.getKB() );
         CGXParser.parseForNewGraph( state.getGraph(), ef.TheGraph );
         if ( !CGUtil.verifyIntegrityOfGraph( ef.TheGraph ) ) {
             General.error( "restore state: restored graph failed integrity check.s" );
         }
         ef.cp.repaint();
-        if ( state.isSomethingHasChanged() ) {
+        showSomethingHasChanged( state.isSomethingHasChanged() );
+        deltaTracker.reset();
+        deltaTracker.capture( ef.TheGraph, ef.somethingHasChanged, state.getKB() );
+    }
+
+    /**
+     * Part of the interface needed for the undo redo stack
+     *
+     * @see chargerlib.undo.DeltaUndoable
+     */
+    public UndoableDelta currentDelta() {
+        return deltaTracker.capture( ef.TheGraph, ef.somethingHasChanged, Global.sessionKB.snapshot() );
+    }
+
+    /**
+     * Part of the interface needed for the undo redo stack. If the delta
+     * replaces the outermost graph (e.g., after a clear all), a new empty
+     * graph is started with the right id and the delta fills it in. The
+     * knowledge base's changes are undone (or redone) along with the graph's.
+     *
+     * @see chargerlib.undo.DeltaUndoable
+     */
+    public boolean applyDelta( UndoableDelta adelta, boolean undo ) {
+        GraphDelta delta = (GraphDelta)adelta;
+        String topID = delta.getTopID( undo );
+        if ( topID == null ) {
+            return false;
+        }
+        if ( !topID.equals( ef.TheGraph.objectID.toString() ) ) {
+            Global.knowledgeManager.forgetKnowledgeSource( ef.TheGraph );
+            ef.TheGraph = new Graph( null );
+            ef.TheGraph.objectID = new GraphObjectID( topID );
+            ef.TheGraph.setOwnerFrame( ef );
+            Global.knowledgeManager.addKnowledgeSource( ef.TheGraph );
+        }
+        restoreKB( delta.getKB( !undo ), delta.getKB( undo ) );
+        boolean applied = deltaTracker.apply( delta, undo, ef.TheGraph );
+        if ( applied ) {
+            ef.cp.repaint();
+            showSomethingHasChanged( delta.isSomethingHasChanged( undo ) );
+        }
+        return applied;
+    }
+
+    /**
+     * Takes the session knowledge base from one step's snapshot to another's.
+     * The knowledge base is shared by every editor, so if it has been changed
+     * since the step (e.g., by another editor), only the differences between
+     * the two snapshots are made, so that the others' changes aren't lost.
+     *
+     * @param from a snapshot as of the step the editor is leaving; null if not
+     * known, in which case the knowledge base is left alone
+     * @param to a snapshot as of the step the editor is going to
+     */
+    private void restoreKB( KnowledgeBase from, KnowledgeBase to ) {
+        if ( from == null || to == null || !from.isSnapshot() || !to.isSnapshot() ) {
+            return;
+        }
+        if ( Global.sessionKB.isAt( from ) ) {
+            Global.sessionKB.restore( to );
+        } else {
+            Global.sessionKB.applyDifference( from, to );
+        }
+    }
+
+    private void showSomethingHasChanged( boolean changed ) {
+        if ( changed ) {
             ef.somethingHasChanged = true;		// one of the rare times we do this directly
             ef.changedMarker.setBackground( Color.red );
         } else {
@@ -1755,7 +1832,6 @@ public class EditManager implements ItemListener, ActionListener, ClipboardOwner
     }
 
     public void performActionUndoNEW() {
-        clearGraph( false );
         urMgr.doUndo();
         ef.resetSelection();
         ef.sp.repaint();
@@ -1765,7 +1841,6 @@ public class EditManager implements ItemListener, ActionListener, ClipboardOwner
      * @see EditManager#actionPerformed
      */
     public void performActionRedoNEW() {
-        clearGraph( false );
         urMgr.doRedo();
         ef.resetSelection();
         ef.sp.repaint();
@@ -1861,7 +1936,7 @@ public class EditManager implements ItemListener, ActionListener, ClipboardOwner
      */
     public void performActionLayoutUsingSpring() {
         ef.setCursor( new Cursor(Cursor.WAIT_CURSOR) );
-        SpringGraphLayout layout = new SpringGraphLayout( ef.TheGraph );
+        SpringGraphLayout layout = SpringGraphLayout.makeLayout( ef.TheGraph, Global.springLayoutUseQuadtree );
 //        String result = JOptionPane.showInputDialog( ef, "Enter number of iterations: ", SpringGraphLayout.MAX_ITERATIONS );
 //        if ( result != null ) {
 //            SpringGraphLayout.MAX_ITERATIONS = Integer.parseInt( result );
@@ -24,14 +24,15 @@ public class EditorState extends UndoableState {
      * Note this is not the same as whether the state itself has changed */
     boolean somethingHasChanged = true;
     
-    /** A copy of the ENTIRE knowledge base. */
+    /** A snapshot of the ENTIRE knowledge base. 
+     * @see KnowledgeBase#snapshot */
     KnowledgeBase kb = null;
     
     
     /** Create a new editor state, converting the graph from a CGXML string */
     public EditorState( String holdgraph ) {
         setGraph( holdgraph );
-        setKB( Global.sessionKB );
+        setKB( Global.sessionKB.snapshot() );
 //            Global.info( "Editor state with graph:\n" + holdgraph );
     }
     
@@ -24,7 +24,6 @@ import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.Point;
-import java.awt.Toolkit;
 import java.awt.datatransfer.Clipboard;
 import java.awt.print.PageFormat;
 import java.awt.print.Paper;
@@ -174,7 +173,7 @@ public class Global {
     /**
      * Key to use with shortcut commands; i.e., CNTL on PC, Cmd on Mac
      */
-    public static int AcceleratorKey = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+    public static int AcceleratorKey = General.menuShortcutKeyMask();
     /**
      * @see TextProperties
      */
@@ -182,6 +181,8 @@ public class Global {
     public static String HubFolder = "";
     public static String GraphFolderString = null;
     public static String DatabaseFolderString = null;
+    /** Where the session knowledge base is kept between sessions; empty if it isn't kept. */
+    public static String KBStoreFolderString = "";
     public static File GraphFolderFile = null;
     public static File DatabaseFolderFile = null;
     public static File LastFolderUsedForSave = null;	// 12-17-02
@@ -256,6 +257,16 @@ public class Global {
     public static boolean use_1_0_actors = false;
     public static boolean enableActors = true;
     public static boolean enableCopyCorefs = false;
+    /**
+     * How many threads fire actors in independent parts of the actor network
+     * at once; 0 means one per processor. With 1 (the default), the parts are
+     * always fired one after another in the same order. More than one is only
+     * safe for actors that don't touch the editor, since graphs and the
+     * knowledge base aren't made to be changed from several threads at once.
+     *
+     * @see charger.act.GraphUpdater#updateGNodes
+     */
+    public static int actorThreads = 1;
 //========================================================================================
 //	 ZOOM CONTROL
     public static double ScalingFactor = 1.00;
@@ -512,6 +523,10 @@ public class Global {
     public static String defaultContextLabel = null;
 
     public static int springLayoutMaxIterations = 0;
+    /** Whether the spring layout uses a quadtree to find its repulsion forces, so that it scales to large graphs.
+     * Off unless the user turns it on, since it changes the layout of every graph.
+     * @see charger.layout.BarnesHutGraphLayout */
+    public static boolean springLayoutUseQuadtree = false;
 //========================================================================================
 //	 CLIPBOARD MANAGEMENT
     public static Clipboard cgClipboard = new Clipboard( "CG Clipboard" );
@@ -594,6 +609,7 @@ public class Global {
         defaultContextLabel = Global.Prefs.getProperty( "defaultContextLabel", "Proposition" );
 
         springLayoutMaxIterations = Integer.parseInt( Global.Prefs.getProperty( "maxIterations", "5000" ) );
+        springLayoutUseQuadtree = Global.Prefs.getProperty( "springLayoutUseQuadtree", "false" ).equals( "true" );
 
         showGEdgeDisplayRect = Global.Prefs.getProperty( "showGEdgeDisplayRect", "true" ).equals( "true" );
         preferredEdgeLength = Double.parseDouble( Global.Prefs.getProperty( "preferredEdgeLength", "35" ) );
@@ -632,7 +648,7 @@ public class Global {
         //	 MAKE PLATFORM-SPECIFIC DECISIONS HERE
 
         // choose the right accelerator key -- APPLE specific here!
-        Global.AcceleratorKey = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+        Global.AcceleratorKey = General.menuShortcutKeyMask();
 
         System.setProperty( "file.separator", "/");
 
@@ -676,6 +692,14 @@ public class Global {
                     // After this point, can look for a preferences file in the graph folder
         DatabaseFolderString = Prefs.getProperty( "DatabaseFolder", "Databases" );
         DatabaseFolderFile = new File( DatabaseFolderString );
+        KBStoreFolderString = Prefs.getProperty( "KBStoreFolder", "" );
+        if ( !KBStoreFolderString.isEmpty() ) {
+            try {
+                new kb.KnowledgeStore( new File( KBStoreFolderString ) ).open( sessionKB );
+            } catch ( IOException e ) {
+                error( "Could not open the knowledge base store in " + KBStoreFolderString + ": " + e.getMessage() );
+            }
+        }
         LastFolderUsedForSave = new File( GraphFolderFile.getAbsoluteFile().getAbsolutePath() );
         LastFolderUsedForOpen = new File( GraphFolderFile.getAbsoluteFile().getAbsolutePath() );
 
@@ -759,6 +783,7 @@ public class Global {
         enableActors = Global.Prefs.getProperty( "enableActors", "true" ).equals( "true" );
         enableCopyCorefs = Global.Prefs.getProperty( "enableCopyCorefs", "false" ).equals( "true" );
         allowActorLinksAcrossContexts = Global.Prefs.getProperty( "allowActorLinksAcrossContexts", "true" ).equals( "true" );
+        actorThreads = Integer.parseInt( Global.Prefs.getProperty( "actorThreads", "1" ) );
         GraphUpdater.registerPrimitives();
 
         GraphUpdater.registerPlugins( GraphUpdater.getPluginList() );
@@ -881,6 +906,14 @@ public class Global {
             }
         }
 
+        if ( sessionKB.getStore() != null ) {
+            try {
+                sessionKB.getStore().close();
+            } catch ( IOException e ) {
+                error( "Could not close the knowledge base store: " + e.getMessage() );
+            }
+        }
+
         // Here is where we should call shutdown for all active modules.
         for ( ModulePlugin module : Global.modulePluginsActivated ) {
             module.saveProperties();
@@ -1206,7 +1239,7 @@ public class Global {
         charger.db.CGDatabase db = (charger.db.CGDatabase)ActiveDatabases.get( simplename );
         if ( db == null ) {
             try {
-                db = new charger.db.TextDatabase( filename );
+                db = new charger.db.IndexedTextDatabase( filename );
                 ActiveDatabases.put( simplename, db );
                 // info( "hub: it's a new database." );
             } catch ( CGFileException fe ) {
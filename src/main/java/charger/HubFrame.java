@@ -1,6 +1,6 @@
 package charger;
 
-import cgif.parser.javacc.CGIFParser;
+import cgif.parser.CGIFGraphReader;
 import cgif.parser.javacc.ParseException;
 import charger.db.DatabaseFrame;
 import charger.exception.*;
@@ -32,7 +32,6 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.Reader;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -929,53 +928,53 @@ public class HubFrame extends JFrame implements ManagedWindow {
         //setCursor( new Cursor( Cursor.DEFAULT_CURSOR ) );
     }
 
+    /**
+     * Opens a CGIF file, each of whose top-level graphs is opened in its own
+     * window as soon as it has been read.
+     *
+     * @see CGIFGraphReader
+     */
     public void openCGIFActionPerformed( ActionEvent e ) {
-        File absFile = null;
-        CGIFParser parser = new CGIFParser( (Reader)null );
-
-
-            IOManager iomgr = new IOManager( this );
-            //iomgr.FileToGraph( filename, outerFrame.TheGraph, outerFrame);
             File cgifFile = General.queryForInputFile( "Import CGIF", Global.GraphFolderFile, Global.CGIFFileFilter);
             if ( cgifFile == null ) {
                 return;
             }
             Global.LastFolderUsedForOpen = cgifFile.getAbsoluteFile().getParentFile();
-            StringBuffer stringBuilder = new StringBuffer( "" );
+            CGIFGraphReader reader = null;
             try {
-                BufferedReader reader = new BufferedReader( new FileReader( cgifFile ) );
-                String line = null;
-                String ls = System.getProperty( "line.separator" );
-                while ( ( line = reader.readLine() ) != null ) {
-                    stringBuilder.append( line );
-                    stringBuilder.append( ls );
+                reader = new CGIFGraphReader( new BufferedReader( new FileReader( cgifFile ) ) );
+                Graph attempt = null;
+                while ( true ) {
+                    try {
+                        attempt = reader.readGraph();
+                    } catch ( ParseException ex ) {
+                        JOptionPane.showMessageDialog( this, "Error in file " + cgifFile.getName() + "\n" + ex.getMessage(),
+                                "CGIF Formation Error", JOptionPane.ERROR_MESSAGE );
+                        return;
+                    }
+                    if ( attempt == null ) {
+                        break;
+                    }
+                    FileHistoryRecord fhevent = new FileHistoryRecord( attempt, cgifFile);
+                    fhevent.appendDescription( "Read from CGIF file");
+                    attempt.addHistory( fhevent );
+                    EditFrame ef = new EditFrame( cgifFile, attempt, true );
+
+                    if ( Global.enableEditFrameThreads ) {
+                        new Thread( Global.EditFrameThreadGroup, ef ).start();
+                    }
                 }
             } catch ( FileNotFoundException ex ) {
                 JOptionPane.showMessageDialog( this, ex);
-                return;
             } catch ( IOException ex ) {
                 JOptionPane.showMessageDialog( this, ex);
-                return;
-            }
-
-//            cgifFile = iomgr.CGIFFileToGraph( null, attempt,/* this ,*/ new Point2D.Double( 0, 0 ) );
-            String contents = stringBuilder.toString();
-            Graph attempt = null;
-            try {
-                 attempt = parser.parseCGIFString( contents );
-            } catch ( ParseException ex ) {
-                JOptionPane.showMessageDialog( this, "Error in file " + cgifFile.getName() + "\n" + ex.getMessage(),
-                        "CGIF Formation Error", JOptionPane.ERROR_MESSAGE );
-                return;
-            }
-
-            FileHistoryRecord fhevent = new FileHistoryRecord( attempt, cgifFile);
-            fhevent.appendDescription( "Read from CGIF file");
-            attempt.addHistory( fhevent );
-            EditFrame ef = new EditFrame( cgifFile, attempt, true );
-
-            if ( Global.enableEditFrameThreads ) {
-                new Thread( Global.EditFrameThreadGroup, ef ).start();
+            } finally {
+                if ( reader != null ) {
+                    try {
+                        reader.close();
+                    } catch ( IOException ex ) {
+                    }
+                }
             }
     }
 
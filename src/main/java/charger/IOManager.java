@@ -1,7 +1,11 @@
 package charger;
 
 import charger.act.GraphUpdater;
+import charger.cgx.CGBGenerator;
+import charger.cgx.CGBParser;
 import charger.cgx.CGXParser;
+import charger.cgx.CGXStreamParser;
+import charger.exception.CGEncodingException;
 import charger.exception.CGFileException;
 import charger.exception.CGStorageError;
 import charger.exception.CGSyntaxException;
@@ -31,7 +35,7 @@ import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.beans.XMLEncoder;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -39,6 +43,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -92,7 +97,7 @@ public class IOManager {
      * Key is a string representing the old ID (in String form), value is the
      * new ID (in String form)
      */
-    static Hashtable OldNewMapping = new Hashtable( 10 );
+    static Hashtable<String, GraphObjectID> OldNewMapping = new Hashtable<>( 10 );
     protected JFrame ownerFrame = null;
     /**
      * Holds the list of image formats supported by the current image writer
@@ -216,6 +221,8 @@ public class IOManager {
             // here is where we decide which version we're reading
             if ( in == null || sourceAbsoluteFile.length() == 0 ) {
                 throw new CGFileException( "Can't open file \"" + sourceAbsoluteFile.getAbsolutePath() + "\"" );
+            } else if ( CGBParser.isCGB( sourceAbsoluteFile ) ) {
+                versionToRead = "CGB";
             } else {
 //                in.mark( 200 );
                 String s = in.readLine();
@@ -249,7 +256,10 @@ public class IOManager {
                 }
             }
             // input stream is positioned to read the first real graph data
-            if ( versionToRead.equals( "XML" ) ) {
+            if ( versionToRead.equals( "CGB" ) ) {
+                in.close();
+                loadGraphCGB( sourceAbsoluteFile, targetGraph, translateBy );
+            } else if ( versionToRead.equals( "XML" ) ) {
                 loadGraphCGX( sourceAbsoluteFile, targetGraph, translateBy );
                 in.close();
             } else if ( versionToRead.equals( "2.x" ) ) {
@@ -515,34 +525,67 @@ public class IOManager {
     protected synchronized static void loadGraphCGX( File f, Graph targetGraph, Point2D.Double translateBy ) {
         //charger.obj.Graph resultGraph = null;
         OldNewMapping.clear();
-        CGXParser parser = null;
-        boolean okay = true;
-//        if ( Global._useDOMParser ) {
-            try {
-                okay = CGXParser.parseForNewGraph( new FileInputStream( f ), targetGraph );
-                if ( ! okay ) {
-                    // CR-1005
-                    targetGraph = null;
-                    return;
-                }
-                if ( ! CGUtil.verifyIntegrityOfGraph( targetGraph )) {
-                    General.error( "loadGraphXML: graph failed integrity checks.");
-                }
-            } catch ( FileNotFoundException ex ) {
-                Global.warning( ex.getMessage() );
-                return;
+        CGXStreamParser parser = new CGXStreamParser();
+        parser.setKeepIDs( true );
+        parser.setMakeList( false );
+        parser.setPreserveGraph( false );
+        if ( translateBy == null ) {
+            parser.setIgnoreLayout( true );
+        } else {
+            parser.setOffset( translateBy );
+        }
+        try ( InputStream is = new BufferedInputStream( new FileInputStream( f ) ) ) {
+            parser.parse( is, targetGraph );
+            if ( !CGUtil.verifyIntegrityOfGraph( targetGraph ) ) {
+                General.error( "loadGraphXML: graph failed integrity checks." );
             }
-            FileHistoryRecord fhevent = new FileHistoryRecord( targetGraph, f );
-            fhevent.appendDescription( "Read from CGX file by Charger " + Global.RELEASE_VERSION );
-            targetGraph.addHistory( fhevent );
-            targetGraph.addHistoryRecord( fhevent );
+        } catch ( CGEncodingException ex ) {
+            // CR-1005
+            CGUtil.showMessageDialog( null, ex.getMessage() );
+            return;
+        } catch ( IOException ex ) {
+            Global.warning( ex.getMessage() );
+            return;
+        }
+        FileHistoryRecord fhevent = new FileHistoryRecord( targetGraph, f );
+        fhevent.appendDescription( "Read from CGX file by Charger " + Global.RELEASE_VERSION );
+        targetGraph.addHistory( fhevent );
+        targetGraph.addHistoryRecord( fhevent );
 
-//        } else {
-////            parser = new CGXParser();
-//        }
+        OperManager.performActionValidate( targetGraph );
+    }
+
+    /**
+     * Loads a graph from a file in CharGer's binary form.
+     *
+     * @param f the file, which is memory-mapped while it is read
+     * @param targetGraph the graph to which the loaded objects will be added
+     * @param translateBy the offset by which the objects are translated. <b>If
+     * null, then ignore any layout information.</b>
+     * @see #loadGraphCGX
+     * @see CGBParser
+     */
+    protected synchronized static void loadGraphCGB( File f, Graph targetGraph, Point2D.Double translateBy ) throws CGFileException {
+        CGBParser parser = new CGBParser();
         if ( translateBy == null ) {
             parser.setIgnoreLayout( true );
+        } else {
+            parser.setOffset( translateBy );
+        }
+        try {
+            parser.parse( f, targetGraph );
+            if ( !CGUtil.verifyIntegrityOfGraph( targetGraph ) ) {
+                General.error( "loadGraphCGB: graph failed integrity checks." );
+            }
+        } catch ( CGEncodingException ex ) {
+            throw new CGFileException( ex.getMessage() );
+        } catch ( IOException ex ) {
+            throw new CGFileException( ex.getMessage() );
         }
+        FileHistoryRecord fhevent = new FileHistoryRecord( targetGraph, f );
+        fhevent.appendDescription( "Read from CGB file by Charger " + Global.RELEASE_VERSION );
+        targetGraph.addHistory( fhevent );
+        targetGraph.addHistoryRecord( fhevent );
 
         OperManager.performActionValidate( targetGraph );
     }
@@ -660,7 +703,7 @@ public class IOManager {
         String oldOwnerID = new String( nums.nextToken() );		// get the old graph ident as a string
 
         if ( !ignoreNesting ) {
-            if ( oldOwnerID.equals( GraphObjectID.zero ) ) {
+            if ( oldOwnerID.equals( GraphObjectID.zero.toString() ) ) {
                 go = rootGraph;		// garbages the just-allocated graph object, but can't be helped
             }
 
@@ -668,12 +711,12 @@ public class IOManager {
 
             // handle linking to appropriate graph
             // already checked to see if it happens to be the root graph root node
-            if ( !oldOwnerID.equals( GraphObjectID.zero ) ) {
-                String newOwnerAsString = (String)OldNewMapping.get( oldOwnerID );
-                if ( newOwnerAsString == null ) {
+            if ( !oldOwnerID.equals( GraphObjectID.zero.toString() ) ) {
+                GraphObjectID newOwnerID = OldNewMapping.get( oldOwnerID );
+                if ( newOwnerID == null ) {
                     newOwnerGraph = rootGraph;
                 } else {
-                    newOwnerGraph = (charger.obj.Graph)rootGraph.findByID( new GraphObjectID( newOwnerAsString ) );
+                    newOwnerGraph = (charger.obj.Graph)rootGraph.findByID( newOwnerID );
                 }
                 if ( newOwnerGraph == null ) {
                     Global.info( "IOManager: can't find owner for stored object." );
@@ -700,6 +743,7 @@ public class IOManager {
             go.displayRect3D.y = Integer.parseInt( new String( nums.nextToken( "," ) ) );
             go.displayRect3D.width = Integer.parseInt( new String( nums.nextToken( "," ) ) );
             go.displayRect3D.height = Integer.parseInt( new String( nums.nextToken( "," ) ) );
+            go.displayRectChanged();
 
         } catch ( NumberFormatException e ) {
             // should probably throw its own exception
@@ -846,7 +890,8 @@ public class IOManager {
             if ( oldOwnerIDString.equals( GraphObjectID.zero.toString() ) ) {
                 newOwnerIDString = GraphObjectID.zero.toString();
             } else {
-                newOwnerIDString = (String)OldNewMapping.get( oldOwnerIDString );
+                GraphObjectID mapped = OldNewMapping.get( oldOwnerIDString );
+                newOwnerIDString = mapped == null ? null : mapped.toString();
             }
         }
         //Global.info( "old, new ID's: " + oldIDString + ", " + go.objectID );
@@ -862,7 +907,7 @@ public class IOManager {
         {
             newOwnerID = rootGraph.objectID;
             newOwnerGraph = rootGraph;
-        } else if ( newOwnerIDString.equals( GraphObjectID.zero ) ) // this is the top level graph
+        } else if ( newOwnerIDString.equals( GraphObjectID.zero.toString() ) ) // this is the top level graph
         {
             newOwnerID = GraphObjectID.zero;
             newOwnerGraph = null;
@@ -888,6 +933,7 @@ public class IOManager {
             go.displayRect3D.y = Integer.parseInt( new String( nums.nextToken( "," ) ) );
             go.displayRect3D.width = Integer.parseInt( new String( nums.nextToken( "," ) ) );
             go.displayRect3D.height = Integer.parseInt( new String( nums.nextToken( "," ) ) );
+            go.displayRectChanged();
                     // Note: will not parse depth, etc.
 
             int r, g, b;
@@ -1046,9 +1092,9 @@ public class IOManager {
         if ( keepIDs ) {
             newID = oldID;
         } else {
-            String newIDString = (String)OldNewMapping.get( oldID );
-            if ( newIDString != null ) {
-                newID = new GraphObjectID( newIDString );
+            GraphObjectID mapped = OldNewMapping.get( oldID.toString() );
+            if ( mapped != null ) {
+                newID = mapped;
             }
         }
 
@@ -1216,8 +1262,7 @@ public class IOManager {
     public static void saveGraph38XML( BufferedWriter f, charger.obj.Graph gr ) {		// version 3's format
         OperManager.performActionValidate( gr );
         try {
-
-            f.write(charger.cgx.CGXGenerator.generateXML( gr ) );
+            charger.cgx.CGXGenerator.write( gr, f );
             f.write( Global.LineSeparator );
         } catch ( IOException exc ) {
             Global.error( exc.getMessage() );
@@ -1226,27 +1271,38 @@ public class IOManager {
     }
 
     /**
-     * EditFrame makes the header, but GraphObject makes each object's string
-     * all found in toString methods in the GraphObject classes. Uses XML
-     * format.
+     * Writes the graph in CGX form directly to the stream as it is generated;
+     * the bytes written are the same as for saveGraph38XML. The stream is
+     * flushed but not closed.
      *
      * @see #saveGraph38XML
-     * @see charger.obj.GraphObject#toString
+     * @see charger.cgx.CGXGenerator#write(charger.obj.Graph, java.io.OutputStream)
      */
     public static void saveGraph4( OutputStream os, charger.obj.Graph gr ) {
         OperManager.performActionValidate( gr );
-//        try {
-////            OutputStream os = new FileOutputStream( outfile );
-        XMLEncoder encoder = new XMLEncoder( os, "UTF-8", true, 0 );
-        EditFrame ef = gr.getOwnerFrame();  // save ownerframe for later restoring
-        gr.setOwnerFrame( null );
-        encoder.writeObject( gr );
-        gr.setOwnerFrame( ef ); // restore ownerframe
-        encoder.close();
-//        } catch ( IOException exc ) {
-//            Hub.error( exc.getMessage() );
-//        }
-//        Global.info( "test of Charger 4 output:\n" + charger.xml.CGXGenerator.generateXML( gr ) );
+        try {
+            charger.cgx.CGXGenerator.write( gr, os );
+            os.write( Global.LineSeparator.getBytes( "UTF-8" ) );
+            os.flush();
+        } catch ( IOException exc ) {
+            Global.error( exc.getMessage() );
+        }
+    }
+
+    /**
+     * Writes the graph in CharGer's binary form, which holds the same content
+     * as the CGX form. The stream is flushed but not closed.
+     *
+     * @see #saveGraph4
+     * @see CGBGenerator
+     */
+    public static void saveGraphCGB( OutputStream os, charger.obj.Graph gr ) {
+        OperManager.performActionValidate( gr );
+        try {
+            CGBGenerator.write( gr, os );
+        } catch ( IOException exc ) {
+            Global.error( exc.getMessage() );
+        }
     }
 
     /**
@@ -1371,7 +1427,9 @@ public class IOManager {
             } else if ( format == FileFormat.CGIF2007 ) {
                 saveGraphCGIF2007( out, g, Global.includeCharGerInfoInCGIF );
             } else if ( format == FileFormat.CHARGER4 ) {
-                saveGraph38XML( out, g );           // Note we're using output stream here, not writer
+                saveGraph4( fos, g );           // Note we're using output stream here, not writer
+            } else if ( format == FileFormat.CGB ) {
+                saveGraphCGB( fos, g );
             }
             try {
                 out.close();
@@ -6,6 +6,7 @@ import charger.obj.*;
 import chargerlib.General;
 import chargerlib.GenericTextFrame;
 import kb.matching.AbstractTupleMatcher;
+import kb.matching.BatchRelationMatcher;
 import kb.matching.BinaryRelationMatch;
 
 import java.awt.event.ActionEvent;
@@ -546,62 +547,34 @@ public class OperManager {
      * */
     /**
      * Operates a maximal join operation between graphs. Attempts to join, in
-     * sequence, all the open graphs, according to a general matching scheme
-     * that is internally defined at present. The joined graph is opened in a
-     * new window.
+     * sequence, the current graph with all the other open graphs, using the
+     * result of each join (if any) in the next one. Types are compared using
+     * the session's type hierarchies. The joined graph is opened in a new
+     * window.
      *
      * @param g The current graph
-     *
+     * @see kb.MaximalJoin
      */
     public void performActionMaxJoinWithOpenGraphs( Graph g ) {
         Iterator opengraphs = Global.editFrameList.values().iterator();
-        boolean joinMade = false;
-        //notio.Graph joinGraph = g.nxConcept.getReferent().getDescriptor();
-        //notio.Graph joinGraph = g.nxGraph;
-        while ( opengraphs.hasNext() && !joinMade ) {
+        kb.MaximalJoin joiner = new kb.MaximalJoin();
+        Graph joinGraph = g;
+        while ( opengraphs.hasNext() ) {
             EditFrame next = ( (EditFrame)opengraphs.next() );
-            if ( next != Global.getCurrentEditFrame() ) {
-                /*try {
-                 //Global.info( "joining 1st graph from joining edit frame " + next.graphName );
-                 //Global.info( "current graph is " + Ops.showWholeCharGerGraph( g, false ) );
-                 //Global.info( "edit frame's graph is " + Ops.showWholeCharGerGraph( next.TheGraph, false ) );
-                 notio.Graph[] allGraphs = notio.Graph.maximalJoin( joinGraph,
-                 //next.TheKB.getOutermostContext().getReferent().getDescriptor(),
-                 NotioTrans.CharGerToNotioGraph( next.TheGraph, Hub.KB, true, false ),
-                 currentMatchingScheme(),
-                 NotioTrans.myCopyingScheme() );
-                 if ( ( allGraphs != null ) && ( allGraphs.length > 0 ) )
-                 {
-                 //Global.info( "A maxjoin was found.");
-                 joinGraph = allGraphs[0];
-                 joinMade = true;
-                 }
-                 else
-                 {
-                 //Global.info( "NO maxjoin was found.");
-                 JOptionPane.showMessageDialog( (JFrame)ef, "No maximal join graph was found.", "Maximal Join", JOptionPane.INFORMATION_MESSAGE );
-                 }
-                 } catch ( notio.JoinException je )
-                 {
-                 //Global.info("join exception (duh!) " + je.getMessage() );
-                 JOptionPane.showMessageDialog( ef, je.getMessage(), "Join exception", JOptionPane.ERROR_MESSAGE );
-                 }
-                 catch ( CGGraphFormationError cgfe ) { }
-                 */
+            if ( next != ef && next.TheGraph != g ) {
+                Graph joined = joiner.join( joinGraph, next.TheGraph );
+                if ( joined != null ) {
+                    joinGraph = joined;
+                }
             }
         }
-        if ( joinMade ) {
-            //Global.info( "joined graph is " + NotioTrans.generateCGIFString( Hub.KB, //ef.TheKB,
-            //		new notio.TranslationContext(),  joinGraph ) );
-            EditFrame newef = new EditFrame();
-            if ( newef != null ) {
-                if ( Global.enableEditFrameThreads ) {
-                    new Thread( Global.EditFrameThreadGroup, newef ).start();	// added
-                }			    //Graph join = NotioTrans.notioGraphToCharGer( joinGraph, new charger.obj.Graph( null ) );
-                //Global.info( "join = " + Ops.showWholeCharGerGraph( join, true ) );
-                //Global.info( "TheGraph = " + Ops.showWholeCharGerGraph( newef.TheGraph, true ) );
-                //newef.attachGraphToFrame( ef.graphName + "-join", join, true );
+        if ( joinGraph != g ) {
+            EditFrame newef = new EditFrame( new File( Global.GraphFolderFile, ef.graphName + "-join.cgx" ), joinGraph, true );
+            if ( Global.enableEditFrameThreads ) {
+                new Thread( Global.EditFrameThreadGroup, newef ).start();	// added
             }
+        } else {
+            JOptionPane.showMessageDialog( ef, "No maximal join graph was found.", "Maximal Join", JOptionPane.INFORMATION_MESSAGE );
         }
     }
 
@@ -781,34 +754,23 @@ public class OperManager {
      * @see GenericTextFrame
      */
     public kb.matching.BinaryRelationMatchGroupMetrics matchMasterToOpenGraphs( EditFrame masterForMatch ) {
-    	kb.matching.BinaryRelationMatchGroupMetrics matches =
-                new kb.matching.BinaryRelationMatchGroupMetrics( "Matches based on " + masterForMatch.getGraphName() + " as master." );
+        ArrayList<charger.obj.Graph> graphs = new ArrayList<>();
+        ArrayList<String> names = new ArrayList<>();
+        openGraphsForMatching( graphs, names );
 
-
-        // for each edit frame (other than the current one!)
-        Iterator graphiter = Global.editFrameList.values().iterator();
-
-        AbstractTupleMatcher currentTupleMatcher = Global.knowledgeManager.createCurrentTupleMatcher();
                             // Here would be a good place to call a method defined on the abstract tuple matcher
                     // so that any matcher can perform additional setup (e.g., finding its synonym list).
+        return new BatchRelationMatcher().matchMaster( masterForMatch.TheGraph, masterForMatch.getGraphName(), graphs, names );
+    }
 
-
-//        while ( graphiter.hasNext() ) {
+    /**
+     * Collects the graphs (and their names) of all the open edit frames.
+     */
+    private void openGraphsForMatching( ArrayList<charger.obj.Graph> graphs, ArrayList<String> names ) {
         for ( EditFrame nextef : Global.editFrameList.values() ) {
-            // create a new match each time so that the match group can do stats
-            BinaryRelationMatch match = new BinaryRelationMatch( masterForMatch.TheGraph, masterForMatch.getGraphName() );
-            match.setTupleMatcher( currentTupleMatcher );
-//            EditFrame nextef = graphiter.next();
-
-            if ( nextef != masterForMatch ) {
-            	charger.obj.Graph g = nextef.TheGraph;
-                match.matchAGraph( g, nextef.getGraphName() );
-                matches.addMatch( match );
-                //summary += match.getSummaryHTML();
-            }
+            graphs.add( nextef.TheGraph );
+            names.add( nextef.getGraphName() );
         }
-        graphiter = null;
-        return matches;
     }
 
     /**
@@ -823,26 +785,16 @@ public class OperManager {
      * @see GenericTextFrame
      */
     public void performActionBestRelationMatching() {
-        float maxOverall = 0.0f;
-        kb.matching.BinaryRelationMatchGroupMetrics bestMatch = null;
-
         String detail = "";
-        // for each edit frame
-        Iterator graphiter = Global.editFrameList.values().iterator();
-
-        while ( graphiter.hasNext() ) {
-            EditFrame currentef = (EditFrame)graphiter.next();
-            kb.matching.BinaryRelationMatchGroupMetrics matches = matchMasterToOpenGraphs( currentef );
-            matches.scanAllMatches();
-            float score = matches.getOverallScore();
-            if ( score >= maxOverall ) {
-                maxOverall = score;
-                bestMatch = matches;
-            }
-            //detail += match.masterDetailToHTML();
-
+        // every open graph as master, each graph's tuples made just once
+        ArrayList<charger.obj.Graph> graphs = new ArrayList<>();
+        ArrayList<String> names = new ArrayList<>();
+        openGraphsForMatching( graphs, names );
+        kb.matching.BinaryRelationMatchGroupMetrics bestMatch =
+                BatchRelationMatcher.findBestMaster( new BatchRelationMatcher().matchAllMasters( graphs, names ) );
+        if ( bestMatch == null ) {
+            return;
         }
-        graphiter = null;
 
         String summary = "Identified best \"master\" graph in a group based on average precision-recall composite.<br>\n";
 
@@ -8,6 +8,10 @@ import charger.util.CGUtil;
 import chargerlib.General;
 
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.*;
 import java.io.*;
 
@@ -33,9 +37,12 @@ import javax.swing.*;
  */
 /**
  * Implements the actor updating ("firing") mechanism of conceptual graphs. In
- * general, is activated by a referent change somewhere in a graph.
+ * general, is activated by a referent change somewhere in a graph. Actors are
+ * fired in waves: all the actors downstream of a change are fired from a work
+ * queue in dependency order, each at most once per wave.
  *
  * @see CanvasPanel#userFinishedEditingText
+ * @see PropagationWave
  * @author Harry S. Delugach ( delugach@uah.edu ) Copyright (c) 1998-2020 by
  * Harry S. Delugach.
  */
@@ -44,6 +51,7 @@ public class GraphUpdater implements Runnable {
     private Graph GraphToUpdate = null;
     private GNode GNodeToUpdate = null;
     private GraphObject GraphObjectToUpdate = null;
+    private Collection<? extends GNode> GNodesToUpdate = null;
     /**
      * Contains an entry for each actor, specifying its input concepts in order
      */
@@ -95,6 +103,18 @@ public class GraphUpdater implements Runnable {
      * there isn't one.
      */
     public EditFrame ownerFrame = null;
+    /**
+     * The wave of actor firings now in progress, if any. While there is one,
+     * changed nodes are added to it rather than being followed immediately.
+     */
+    private PropagationWave currentWave = null;
+    private final PropagationStatistics statistics;
+    /**
+     * Threads shared by all updaters for firing independent parts of an actor
+     * network at once; created when first needed.
+     */
+    private static ExecutorService actorExecutor = null;
+    private static int actorExecutorThreads = 0;
 
     /**
      * Creates an instance of the updater for a given graph object.
@@ -107,6 +127,7 @@ public class GraphUpdater implements Runnable {
      */
     public GraphUpdater( EditFrame ef, GraphObject go ) {
         ownerFrame = ef;
+        statistics = new PropagationStatistics();
         if ( go instanceof Graph ) {
             setGraph( ( (Graph)go ) );
         } else if ( go instanceof GNode ) {
@@ -116,6 +137,31 @@ public class GraphUpdater implements Runnable {
         }
     }
 
+    /**
+     * Creates an instance of the updater for many nodes at once, to be updated
+     * together as with updateGNodes.
+     *
+     * @param ef If the graph is in an editing window, the updater may use it
+     * (especially for animation)
+     * @param nodes The nodes that changed, or are to be treated as if they
+     * had; e.g., all the actors of a graph, so that they all fire.
+     * @see #updateGNodes
+     */
+    public GraphUpdater( EditFrame ef, Collection<? extends GNode> nodes ) {
+        ownerFrame = ef;
+        statistics = new PropagationStatistics();
+        GNodesToUpdate = nodes;
+    }
+
+    /**
+     * Creates an updater for one independent part of the parent's actor
+     * network, sharing the parent's frame and statistics.
+     */
+    private GraphUpdater( GraphUpdater parent ) {
+        ownerFrame = parent.ownerFrame;
+        statistics = parent.statistics;
+    }
+
     /**
      * Spawn an updater based on the originating node that changed. Decides what
      * component to start with and creates a thread to update actors in
@@ -136,6 +182,8 @@ public class GraphUpdater implements Runnable {
                 //GNodeToUpdate.setActive( false );		// resetting active should be each actor's responsibility
             } else if ( GraphObjectToUpdate != null ) {
                 updateGraphObject( GraphObjectToUpdate );
+            } else if ( GNodesToUpdate != null ) {
+                runWave( GNodesToUpdate, false );
             }
         } catch ( CGActorException e ) {
             //Global.info("CGActor Exception: " +  e.getMessage() ); 
@@ -158,18 +206,21 @@ public class GraphUpdater implements Runnable {
     }
 
     private void setGraph( Graph g ) {
+        GNodesToUpdate = null;
         GraphToUpdate = g;
         GNodeToUpdate = null;
         GraphObjectToUpdate = null;
     }
 
     private void setGNode( GNode gn ) {
+        GNodesToUpdate = null;
         GraphToUpdate = null;
         GNodeToUpdate = gn;
         GraphObjectToUpdate = null;
     }
 
     private void setGraphObject( GraphObject go ) {
+        GNodesToUpdate = null;
         GraphToUpdate = null;
         GNodeToUpdate = null;
         GraphObjectToUpdate = go;
@@ -227,33 +278,36 @@ public class GraphUpdater implements Runnable {
 
     /**
      * For a given graph, start up all its actors. Spawn a new graph updater
-     * (attached to the graph's editing window), and fire up a new thread for
-     * that updater.
+     * (attached to the graph's editing window) for all of them, and fire up a
+     * new thread for that updater. Independent parts of the actor network are
+     * fired at the same time.
+     *
+     * @see #updateGNodes
      */
     public static void startupAllActors( Graph g ) {
         if ( g == null ) {
             return;
         }
         EditFrame ef = g.getOwnerFrame();
+        ArrayList<GNode> actorList = new ArrayList<>();
         Iterator<GraphObject> actors = new DeepIterator( g, new Actor() );
         while ( actors.hasNext() ) {
             Actor a = (Actor)actors.next();
             //if ( GraphUpdater.hasAttribute( a, "autonomous" ) )
-            {
-                a.setChanged( true );
-                //Global.info( "about to fire autonomous actor " + a.getTextLabel() );
-                GraphUpdater gu = new GraphUpdater( ef, a );
-                ThreadGroup tg;
-                if ( ef != null ) {
-                    tg = ef.threadgroup;
-                } else {
-                    tg = Global.orphanUpdaters;
-                }
-                // no need to check for null ef, since all canvas panels are in a frame
-                new Thread( tg, gu, "fired autonomous actor " + a.getTextLabel() ).start();
-                //Global.info( "after firing autonomous actor " + a.getTextLabel() );
-            }
+            a.setChanged( true );
+            actorList.add( a );
+        }
+        if ( actorList.isEmpty() ) {
+            return;
         }
+        GraphUpdater gu = new GraphUpdater( ef, actorList );
+        ThreadGroup tg;
+        if ( ef != null ) {
+            tg = ef.threadgroup;
+        } else {
+            tg = Global.orphanUpdaters;
+        }
+        new Thread( tg, gu, "fired actors of " + g.getTextLabel() ).start();
     }
 
     /**
@@ -306,9 +360,154 @@ public class GraphUpdater implements Runnable {
     public synchronized void propagate( GNode gn ) throws CGActorException {
         gn.setChanged( true );
         gn.setActive( false );  // 03-26-03 changed to false
-        Global.info( "about to PROPAGATE on node " + gn.toString() );
-        updateGNode( gn );
-        //gn.setActive( false );
+        if ( Global.traceActors ) {
+            Global.info( "about to PROPAGATE on node " + gn.toString() );
+        }
+        if ( currentWave != null ) {
+            currentWave.nodeChanged( gn );
+        } else {
+            updateGNode( gn );
+        }
+    }
+
+    /**
+     * Runs a wave of actor firings starting from the given nodes, unless one
+     * is already running, in which case the nodes are added to it.
+     *
+     * @param seeds the nodes that changed (or are to be treated as if they
+     * had)
+     * @param stopOnError whether to give up at the first actor exception;
+     * otherwise each is reported and the remaining actors are still fired.
+     * @see PropagationWave
+     */
+    private void runWave( Collection<? extends GNode> seeds, boolean stopOnError ) throws CGActorException {
+        if ( currentWave != null ) {
+            for ( GNode gn : seeds ) {
+                currentWave.addSeed( gn );
+            }
+            return;
+        }
+        if ( seeds.size() > 1 && getActorThreadCount() > 1 && !Global.ActorAnimation ) {
+            ArrayList<ArrayList<GNode>> components = CGUtil.getActorComponents( seeds );
+            if ( components.size() > 1 ) {
+                runComponents( components, stopOnError );
+                return;
+            }
+        }
+        runOneWave( seeds, stopOnError );
+    }
+
+    /**
+     * Runs a wave for each independent part of the actor network at the same
+     * time, each with its own updater, and waits until they have all
+     * finished. This thread fires parts too, so that nothing waits on a part
+     * that no thread has started.
+     *
+     * @param components the seeds, grouped by independent part
+     * @throws CGActorException the first part's (in the given order) exception,
+     * if any part had one
+     * @see CGUtil#getActorComponents
+     */
+    private void runComponents( final ArrayList<ArrayList<GNode>> components, final boolean stopOnError )
+            throws CGActorException {
+        final AtomicInteger next = new AtomicInteger( 0 );
+        final CountDownLatch finished = new CountDownLatch( components.size() );
+        final Throwable[] problems = new Throwable[ components.size() ];
+        Runnable worker = () -> {
+            int c;
+            while ( ( c = next.getAndIncrement() ) < components.size() ) {
+                try {
+                    new GraphUpdater( this ).runOneWave( components.get( c ), stopOnError );
+                } catch ( CGActorException | RuntimeException e ) {
+                    problems[ c] = e;
+                } finally {
+                    finished.countDown();
+                }
+            }
+        };
+        int helpers = Math.min( getActorThreadCount(), components.size() ) - 1;
+        ExecutorService executor = getActorExecutor();
+        for ( int k = 0; k < helpers; k++ ) {
+            executor.execute( worker );
+        }
+        worker.run();
+        boolean interrupted = false;
+        while ( finished.getCount() > 0 ) {
+            try {
+                finished.await();
+            } catch ( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+        if ( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+        for ( Throwable t : problems ) {
+            if ( t instanceof CGActorException ) {
+                throw (CGActorException)t;
+            } else if ( t != null ) {
+                throw (RuntimeException)t;
+            }
+        }
+    }
+
+    /**
+     * @return how many threads may fire actors at once.
+     * @see Global#actorThreads
+     */
+    public static int getActorThreadCount() {
+        return Global.actorThreads > 0 ? Global.actorThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the shared threads, enough to help an updater's own thread to
+     * make up the current actor thread count.
+     */
+    private static synchronized ExecutorService getActorExecutor() {
+        int threads = Math.max( 1, getActorThreadCount() - 1 );
+        if ( actorExecutor == null || actorExecutorThreads != threads ) {
+            if ( actorExecutor != null ) {
+                actorExecutor.shutdown();
+            }
+            final AtomicInteger threadNumber = new AtomicInteger( 0 );
+            actorExecutor = Executors.newFixedThreadPool( threads, r -> {
+                Thread t = new Thread( r, "actor updater " + threadNumber.incrementAndGet() );
+                t.setDaemon( true );
+                return t;
+            } );
+            actorExecutorThreads = threads;
+        }
+        return actorExecutor;
+    }
+
+    /**
+     * Runs a single wave for the seeds, all on this thread.
+     */
+    private void runOneWave( Collection<? extends GNode> seeds, boolean stopOnError ) throws CGActorException {
+        long start = System.nanoTime();
+        PropagationWave wave = new PropagationWave( this );
+        wave.stopOnError = stopOnError;
+        currentWave = wave;
+        try {
+            for ( GNode gn : seeds ) {
+                wave.addSeed( gn );
+            }
+            wave.run();
+        } finally {
+            currentWave = null;
+            statistics.record( wave, System.nanoTime() - start );
+            if ( Global.traceActors ) {
+                Global.info( "actor wave: " + statistics.toString() );
+            }
+        }
+    }
+
+    /**
+     * @return the counts of actor firings and the timings of the waves run by
+     * this updater.
+     */
+    public PropagationStatistics getStatistics() {
+        return statistics;
     }
 
     /**
@@ -320,6 +519,7 @@ public class GraphUpdater implements Runnable {
      * @see #verifyActor
      */
     public static void registerPrimitives() {
+        ActorPrimitive.registerOperations();
         ArrayList inputs = new ArrayList( 2 );
         ArrayList outputs = new ArrayList( 1 );
         // attribute list for actors that are executable
@@ -543,21 +743,19 @@ public class GraphUpdater implements Runnable {
 
         //Global.info( "Start update graph " + g.getTextLabel() );
 
+        ArrayList<GNode> seeds = new ArrayList<>();
+        seeds.add( g );
+        Iterator<GraphObject> nodes = new ShallowIterator( g, GraphObject.Kind.GNODE );
+        while ( nodes.hasNext() ) {
+            seeds.add( (GNode)nodes.next() );
+        }
         try {
-            updateGNode( g );
+            runWave( seeds, false );
         } catch ( CGActorException e ) {
-            Global.error( "CG Actor Exception in updateGraph (graph itself): " + e.getMessage() );
+            Global.error( "CG Actor Exception in updateGraph: " + e.getMessage() );
         }
-
-        Iterator<GraphObject> nodes = new ShallowIterator( g, GraphObject.Kind.GNODE );
-        GNode gn = null;
-        while ( nodes.hasNext() ) {
-            gn = (GNode)nodes.next();
-            try {
-                updateGNode( gn );
-            } catch ( CGActorException e ) {
-                Global.error( "CG Actor Exception in updateGraph: " + e.getMessage() );
-            }
+        for ( int k = 1; k < seeds.size(); k++ ) {
+            GNode gn = seeds.get( k );
             gn.setTextLabel( gn.getTextLabel() );
         }
     }
@@ -599,98 +797,32 @@ public class GraphUpdater implements Runnable {
      * updated, it does the following: <ul><li> copies this node's referent into
      * any concepts linked via coreferent links, <li>activates any actors for
      * which this concept/graph is an OUTPUT, making sure it's consistent,
-     * <li>activates any actors for which this concept/graph is an INPUT.
-     * <li>tells its enclosing context if it has changed, so that outer actors
-     * can fire. </ul> In other words, after following coreferent it goes
-     * upstream first, then downstream, then out of context.
+     * <li>activates any actors for which this concept/graph is an INPUT, and
+     * whatever actors are downstream of them. </ul> The actors are fired in
+     * dependency order, each at most once.
      *
      * @param gn the node to be updated
+     * @see #updateGNodes
      */
     public synchronized void updateGNode( GNode gn ) throws CGActorException {
-        //Global.info( "Start update gnode " + gn.toString()  + " in " + Thread.currentThread() );
-        //if ( ! Hub.enableActors ) return;     // since it's possible to have corefs enabled, do this after corefs
-
-        GEdge link = null;	// a link by which this node may be connected to another
-
-        // COREFS: Handle all corefs first!
-        Iterator connections = gn.getEdges().iterator();
-        gn.setActive( true );		// protect gn from recursive calls
-        while ( Global.enableCopyCorefs && connections.hasNext() ) {
-            link = (GEdge)connections.next();	// ConcurrentModificationException occurs here!!!
-            // Global.info( "got next Gline ... it is a " + link.getClass().getName() );
-            if ( link instanceof Coref ) {
-                updateCoref( gn, (Coref)link );
-            }
-        }
-        gn.setActive( false );		// un-protect gn, let others be responsible!
-
-        if ( !Global.enableActors ) {
-            return;
-        }
-
-        // ACTORS: Handle all possible links to actors, but only if actors are enabled		
-        if ( gn instanceof Actor ) {
-            initiateActorUpdate( (Actor)gn );
-        } else if ( Global.enableActors && gn.isChanged() && ( gn instanceof Concept || gn instanceof Graph ) ) {
-            //Global.info( "ready to try and activate actors" );
-
-            gn.setActive( true );		// first protect gn from being altered by nested calls
-
-            // OUTPUTS: Treat as an OUTPUT concept -- all actors for which gn is an output concept
-            connections = gn.getEdges().iterator();
-            while ( connections.hasNext() ) {
-                Global.info( "thread is " + Thread.currentThread().toString() );
-                gn.setActive( true );
-                link = (GEdge)connections.next();
-
-                if ( ( link.toObj == gn ) && // this node is an output
-                        ( CGUtil.shortClassName( link.fromObj ).equalsIgnoreCase( "Actor" ) ) ) // to an actor
-                {
-                    // if the actor is executable, execute that actor
-                    if ( isExecutable( ( (Actor)link.fromObj ) ) ) {
-                        try {
-                            // then execute that actor
-                            // Global.info( "update input node " + gn.getTextLabel() + 
-                            //	" init actor update on actor " + link.toObj.getTextLabel() );
-                            if ( ownerFrame != null ) {
-                                WaitWhenAnimating( Global.AnimationDelay );
-                            }
-                            initiateActorUpdate( (Actor)link.fromObj );
-                        } catch ( CGActorException e ) {
-                            throw e;
-                        }
-                        gn.setActive( false );
-                    }
-                }
-            }
+        runWave( Collections.singletonList( gn ), true );
+    }
 
-            // INPUTS: Treat as an INPUT concept -- all actors for which gn is an input concept
-            connections = gn.getEdges().iterator();
-            while ( connections.hasNext() ) {
-                gn.setActive( true );
-                link = (GEdge)connections.next();
-                if ( ( link.fromObj == gn ) && // if this node is an input to an actor
-                        ( CGUtil.shortClassName( link.toObj ).equalsIgnoreCase( "Actor" ) ) ) {
-                    // if actor is not executable, then skip all this
-                    if ( isExecutable( ( (Actor)link.toObj ) ) ) {
-                        try {
-                            // then execute that actor
-                            Global.info( "update input node " + gn.getTextLabel()
-                                    + " about to initiate actor update on actor " + link.toObj.getTextLabel() );
-                            if ( ownerFrame != null ) {
-                                WaitWhenAnimating( Global.AnimationDelay );
-                            }
-                            initiateActorUpdate( (Actor)link.toObj );
-                        } catch ( CGActorException e ) {
-                            throw e;
-                        }
-                    }
-                }
-            }
-            // after all changes have been made, this is a good time to adjust dimensions
-        }
-        // finally un-protect gn from being altered by nested calls
-        gn.setActive( false );
+    /**
+     * Updates many nodes at once, as if each had been passed to updateGNode,
+     * but in a single wave, so that an actor downstream of several of them
+     * fires only once, after all of them have been considered. If the nodes
+     * are in independent parts of the actor network, each part has its own
+     * wave, and the parts are fired at the same time (on as many as
+     * Global.actorThreads threads); within a part, the order is the same as
+     * always.
+     *
+     * @param nodes the nodes to be updated; e.g., all the input concepts whose
+     * referents were just set.
+     * @see #updateGNode
+     */
+    public synchronized void updateGNodes( Collection<? extends GNode> nodes ) throws CGActorException {
+        runWave( nodes, true );
     }
 
     /**
@@ -744,23 +876,33 @@ public class GraphUpdater implements Runnable {
                 nodeToUpdate.getOwnerFrame().emgr.setChangedContent( EditChange.SEMANTICS  );
             }
             // uncommented 10-05-03, to account for taking setchanged out of setreferent
-            updateGNode( nodeToUpdate );
-            gn.setActive( false );
             propagate( nodeToUpdate );
         }
     }
 
+    /**
+     * Fires an actor (if it is executable), followed by whatever actors are
+     * downstream of any outputs that change. If a wave is already in
+     * progress, just fires the actor.
+     */
+    public synchronized void initiateActorUpdate( Actor a )
+            throws CGActorException {
+        if ( currentWave != null ) {
+            activateActor( a );
+        } else {
+            runWave( Collections.singletonList( a ), true );
+        }
+    }
+
     /**
      * Sets up an actor for execution by first seeing if it is executable and
      * then finding its associated input and output concepts which it passes to
      * the actual updater.
      */
-    public synchronized void initiateActorUpdate( Actor a )
-            throws CGActorException {
+    void activateActor( Actor a ) throws CGActorException {
         //Global.info( "initiate actor update " + a.getTextLabel() );
-        EditFrame ef = a.getOwnerFrame();
-        ArrayList inputs = new ArrayList();
-        ArrayList outputs = new ArrayList();
+        ArrayList<GNode> inputs = new ArrayList<>();
+        ArrayList<GNode> outputs = new ArrayList<>();
         if ( isExecutable( a ) && !a.isActive() ) {
             // mark the actor as being in-process
             a.setActive( true );
@@ -771,11 +913,11 @@ public class GraphUpdater implements Runnable {
                 ge = (GEdge)iter.next();
                 // if edge goes from this actor, then its destination is an output
                 if ( ge.fromObj == a ) {
-                    outputs.add( ge.toObj );
+                    outputs.add( (GNode)ge.toObj );
                 }
                 // if edge goes to this actor, then its source is an input
                 if ( ge.toObj == a ) {
-                    inputs.add( ge.fromObj );
+                    inputs.add( (GNode)ge.fromObj );
                 }
                 // if neither then something has gone wrong that we'll check in the future.
             }
@@ -873,7 +1015,7 @@ public class GraphUpdater implements Runnable {
      *
      * @see ActorPrimitive
      */
-    public synchronized void fireActor( Actor a, ArrayList inputs, ArrayList outputs )
+    public synchronized void fireActor( Actor a, ArrayList<GNode> inputs, ArrayList<GNode> outputs )
             throws CGActorException {
         boolean possibleChange = false;
         String actorName = a.getTextLabel().toLowerCase();
@@ -896,7 +1038,7 @@ public class GraphUpdater implements Runnable {
         if ( hasAttribute( a, "primitive" ) && isExecutable( a ) ) {
             try {
                 possibleChange = true;
-                ActorPrimitive.performActorOperation( this, actorName, inputs, outputs );
+                ActorPrimitive.performActorOperation( this, a, actorName, inputs, outputs );
             } catch ( CGActorException x ) {
                 a.setActive( false );
                 throw new CGActorException( actorName + ": " + x.getMessage() );
@@ -947,7 +1089,9 @@ public class GraphUpdater implements Runnable {
                 //Global.info( "performed actor function for " + actorName );
 
                 // Check for changes to the output referents
-                Global.info( "checking " + outputs.size() + " outputs." );
+                if ( Global.traceActors ) {
+                    Global.info( "checking " + outputs.size() + " outputs." );
+                }
                 Object newoutputs[] = ( (ArrayList)( parameters[2] ) ).toArray();
                 for ( int k = 0; k < newoutputs.length; k++ ) {
                     GNode new1 = (GNode)newoutputs[ k];
@@ -0,0 +1,121 @@
+package charger.act;
+
+import charger.obj.Actor;
+import java.util.IdentityHashMap;
+
+/*
+ CharGer - Conceptual Graph Editor
+ Copyright 1998-2020 by Harry S. Delugach
+
+ This package is free software; you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as
+ published by the Free Software Foundation; either version 2.1 of the
+ License, or (at your option) any later version. This package is
+ distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details. You should have received a copy of the GNU Lesser General Public
+ License along with this package; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+/**
+ * Counts of what a graph updater's propagation waves have done: how many
+ * waves, how many actors fired (in all and by actor), how many were looked at
+ * but had nothing new to fire on, and how long the waves took.
+ *
+ * @see GraphUpdater#getStatistics
+ * @see PropagationWave
+ * @since Charger 4.3
+ */
+public class PropagationStatistics {
+
+    private int waves = 0;
+    private long firings = 0;
+    private long skipped = 0;
+    private long totalNanos = 0;
+    private int lastWaveFirings = 0;
+    private int lastWaveSkipped = 0;
+    private long lastWaveNanos = 0;
+    private final IdentityHashMap<Actor, Integer> firingsByActor = new IdentityHashMap<>();
+
+    /**
+     * Adds a finished wave's counts to the totals.
+     *
+     * @param wave the wave that has just finished (or was stopped by an
+     * exception)
+     * @param nanos how long the wave took
+     */
+    synchronized void record( PropagationWave wave, long nanos ) {
+        waves++;
+        lastWaveFirings = wave.getFirings();
+        lastWaveSkipped = wave.getSkipped();
+        lastWaveNanos = nanos;
+        firings += lastWaveFirings;
+        skipped += lastWaveSkipped;
+        totalNanos += nanos;
+        for ( Actor a : wave.getFiredActors() ) {
+            firingsByActor.merge( a, 1, Integer::sum );
+        }
+    }
+
+    /**
+     * @return how many waves have been run.
+     */
+    public synchronized int getWaveCount() {
+        return waves;
+    }
+
+    /**
+     * @return how many times actors have been fired, in all waves.
+     */
+    public synchronized long getFireCount() {
+        return firings;
+    }
+
+    /**
+     * @return how many times the given actor has been fired; since an actor
+     * fires at most once per wave, never more than the number of waves.
+     */
+    public synchronized int getFireCount( Actor a ) {
+        Integer n = firingsByActor.get( a );
+        return n == null ? 0 : n;
+    }
+
+    /**
+     * @return how many times an actor downstream of a change was not fired
+     * because none of its inputs had actually changed.
+     */
+    public synchronized long getSkippedCount() {
+        return skipped;
+    }
+
+    /**
+     * @return total time spent in waves, in nanoseconds.
+     */
+    public synchronized long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public synchronized int getLastWaveFireCount() {
+        return lastWaveFirings;
+    }
+
+    public synchronized int getLastWaveSkippedCount() {
+        return lastWaveSkipped;
+    }
+
+    /**
+     * @return how long the last wave took, in nanoseconds.
+     */
+    public synchronized long getLastWaveNanos() {
+        return lastWaveNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return waves + " waves, " + firings + " firings, " + skipped + " skipped, "
+                + String.format( "%.3f", totalNanos / 1.0e6 ) + " msec; last wave "
+                + lastWaveFirings + " firings, " + lastWaveSkipped + " skipped, "
+                + String.format( "%.3f", lastWaveNanos / 1.0e6 ) + " msec";
+    }
+}
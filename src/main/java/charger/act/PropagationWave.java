@@ -0,0 +1,373 @@
+package charger.act;
+
+import charger.EditingChangeState.EditChange;
+import charger.Global;
+import charger.exception.CGActorException;
+import charger.obj.Actor;
+import charger.obj.Concept;
+import charger.obj.Coref;
+import charger.obj.GEdge;
+import charger.obj.GNode;
+import charger.obj.Graph;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/*
+ CharGer - Conceptual Graph Editor
+ Copyright 1998-2020 by Harry S. Delugach
+
+ This package is free software; you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as
+ published by the Free Software Foundation; either version 2.1 of the
+ License, or (at your option) any later version. This package is
+ distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details. You should have received a copy of the GNU Lesser General Public
+ License along with this package; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+/**
+ * Everything that happens in a graph as the result of some set of nodes
+ * changing: one "wave" of actor firings. Rather than firing actors
+ * recursively as each output changes, the wave finds every executable actor
+ * downstream of the changed nodes and fires them from a work queue in
+ * dependency order, so that an actor fires only after all the actors feeding
+ * it have fired. Each actor fires at most once per wave, and only if one of
+ * its inputs has changed during the wave (or it was asked for explicitly, or
+ * it is a "trigger").
+ * <p>
+ * Nodes changed while the wave is running (e.g., by an actor calling
+ * GraphUpdater#propagate on its outputs) are simply noted; their coreferent
+ * concepts are copied at once. If a change reaches an actor that has already
+ * been passed over (only possible in a cycle), the wave makes another round
+ * over the actors that have not yet fired. Actors in a cycle are fired in the
+ * order they were found.
+ * <p>
+ * As before, changing a node from outside (a seed) also fires the actors for
+ * which it is an output, so that it's consistent with them.
+ *
+ * @see GraphUpdater#updateGNodes
+ * @see PropagationStatistics
+ * @since Charger 4.3
+ */
+class PropagationWave {
+
+    private final GraphUpdater updater;
+    /** every node changed so far in this wave */
+    private final IdentityHashMap<GNode, Boolean> changed = new IdentityHashMap<>();
+    /** nodes changed since the current round's actors were found */
+    private ArrayList<GNode> newlyChanged = new ArrayList<>();
+    /** actors to be fired whether or not their inputs have changed */
+    private final IdentityHashMap<Actor, Boolean> forced = new IdentityHashMap<>();
+    private ArrayList<Actor> newlyForced = new ArrayList<>();
+    private final IdentityHashMap<Actor, Boolean> fired = new IdentityHashMap<>();
+    private final ArrayList<Actor> firedActors = new ArrayList<>();
+    private int skipped = 0;
+    /**
+     * Whether an actor exception ends the wave; otherwise it is reported and
+     * the rest of the actors are still fired.
+     */
+    boolean stopOnError = true;
+
+    PropagationWave( GraphUpdater updater ) {
+        this.updater = updater;
+    }
+
+    /**
+     * Adds a node that has changed (or is to be treated as if it has) from
+     * outside the wave. An actor is fired; a changed concept or graph has its
+     * coreferents copied and fires both the actors for which it is an input
+     * and those for which it is an output. An unchanged one only has its
+     * coreferents copied.
+     *
+     * @param gn the node to start from
+     */
+    void addSeed( GNode gn ) {
+        if ( gn instanceof Actor ) {
+            if ( Global.enableActors ) {
+                force( (Actor)gn );
+            }
+            return;
+        }
+        if ( Global.enableActors && gn.isChanged() && gn instanceof Concept ) {      // includes graphs
+            nodeChanged( gn );
+            for ( Object o : gn.getEdges() ) {
+                GEdge link = (GEdge)o;
+                if ( link.toObj == gn && link.fromObj instanceof Actor ) {
+                    force( (Actor)link.fromObj );
+                }
+            }
+        } else {
+            for ( GNode other : copyCorefs( gn ) ) {
+                nodeChanged( other );
+            }
+        }
+    }
+
+    private void force( Actor a ) {
+        if ( GraphUpdater.isExecutable( a ) && forced.put( a, Boolean.TRUE ) == null ) {
+            newlyForced.add( a );
+        }
+    }
+
+    /**
+     * Notes that a node has changed, and copies its referent into its
+     * coreferent concepts, which are then changed too.
+     *
+     * @param gn the node that changed
+     */
+    void nodeChanged( GNode gn ) {
+        ArrayDeque<GNode> work = new ArrayDeque<>();
+        work.add( gn );
+        while ( !work.isEmpty() ) {
+            GNode n = work.poll();
+            n.setChanged( true );
+            n.setActive( false );
+            changed.put( n, Boolean.TRUE );
+            newlyChanged.add( n );
+            work.addAll( copyCorefs( n ) );
+        }
+    }
+
+    /**
+     * Copies the node's referent into every concept linked to it by a
+     * coreferent link, unless the referent is a variable ("@...").
+     *
+     * @return the concepts whose referents were changed.
+     */
+    private ArrayList<GNode> copyCorefs( GNode gn ) {
+        ArrayList<GNode> updated = new ArrayList<>();
+        if ( !Global.enableCopyCorefs || !( gn instanceof Concept ) ) {
+            return updated;
+        }
+        String myref = ( (Concept)gn ).getReferent();
+        if ( myref.startsWith( "@" ) ) {
+            return updated;
+        }
+        for ( Object o : gn.getEdges() ) {
+            if ( o instanceof Coref ) {
+                Coref c = (Coref)o;
+                GNode other = (GNode)( c.fromObj == gn ? c.toObj : c.fromObj );
+                if ( other instanceof Concept && !( (Concept)other ).getReferent().equals( myref ) ) {
+                    ( (Concept)other ).setReferent( myref, true );
+                    if ( other.getOwnerFrame() != null ) {
+                        other.getOwnerFrame().emgr.setChangedContent( EditChange.SEMANTICS );
+                    }
+                    updated.add( other );
+                }
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Fires actors until no changes are left that could fire an actor that
+     * hasn't already fired in this wave.
+     */
+    void run() throws CGActorException {
+        if ( !Global.enableActors ) {
+            return;
+        }
+        while ( !newlyChanged.isEmpty() || !newlyForced.isEmpty() ) {
+            ArrayList<GNode> starts = newlyChanged;
+            ArrayList<Actor> forcedStarts = newlyForced;
+            newlyChanged = new ArrayList<>();
+            newlyForced = new ArrayList<>();
+            runRound( starts, forcedStarts );
+        }
+    }
+
+    /**
+     * Finds the not-yet-fired actors reachable from the given changes, orders
+     * them so that each comes after the actors that feed it, and fires the
+     * ones whose inputs have changed.
+     */
+    private void runRound( ArrayList<GNode> starts, ArrayList<Actor> forcedStarts ) throws CGActorException {
+        ArrayList<Actor> members = new ArrayList<>();
+        ArrayList<ArrayList<Actor>> successors = new ArrayList<>();
+        IdentityHashMap<Actor, Integer> index = new IdentityHashMap<>();
+        for ( Actor a : forcedStarts ) {
+            addMember( a, members, successors, index );
+        }
+        for ( GNode gn : starts ) {
+            for ( Actor a : consumersOf( gn ) ) {
+                addMember( a, members, successors, index );
+            }
+        }
+        // members grows as each one's successors are found
+        for ( int m = 0; m < members.size(); m++ ) {
+            for ( GNode out : outputsOf( members.get( m ) ) ) {
+                for ( Actor a : consumersOf( out ) ) {
+                    if ( addMember( a, members, successors, index ) ) {
+                        successors.get( m ).add( a );
+                    }
+                }
+            }
+        }
+
+        int[] waitingFor = new int[ members.size() ];
+        for ( ArrayList<Actor> succ : successors ) {
+            for ( Actor a : succ ) {
+                waitingFor[ index.get( a )]++;
+            }
+        }
+        ArrayDeque<Integer> ready = new ArrayDeque<>();
+        for ( int m = 0; m < members.size(); m++ ) {
+            if ( waitingFor[ m] == 0 ) {
+                ready.add( m );
+            }
+        }
+        boolean[] done = new boolean[ members.size() ];
+        int firstNotDone = 0;
+        while ( true ) {
+            Integer m = ready.poll();
+            if ( m == null ) {
+                // whatever is left is in (or after) a cycle; break it at the earliest actor found
+                while ( firstNotDone < members.size() && done[ firstNotDone] ) {
+                    firstNotDone++;
+                }
+                if ( firstNotDone == members.size() ) {
+                    break;
+                }
+                m = firstNotDone;
+            }
+            if ( done[ m] ) {
+                continue;
+            }
+            done[ m] = true;
+            Actor a = members.get( m );
+            if ( shouldFire( a ) ) {
+                fire( a );
+            } else {
+                skipped++;
+            }
+            for ( Actor succ : successors.get( m ) ) {
+                int s = index.get( succ );
+                if ( --waitingFor[ s] == 0 ) {
+                    ready.add( s );
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the actor can be included in this round (i.e., it has not
+     * fired yet in this wave).
+     */
+    private boolean addMember( Actor a, ArrayList<Actor> members, ArrayList<ArrayList<Actor>> successors,
+            IdentityHashMap<Actor, Integer> index ) {
+        if ( fired.containsKey( a ) ) {
+            return false;
+        }
+        if ( !index.containsKey( a ) ) {
+            index.put( a, members.size() );
+            members.add( a );
+            successors.add( new ArrayList<>() );
+        }
+        return true;
+    }
+
+    private boolean shouldFire( Actor a ) {
+        if ( forced.containsKey( a ) || GraphUpdater.hasAttribute( a, "trigger" ) ) {
+            return true;
+        }
+        for ( Object o : a.getEdges() ) {
+            GEdge ge = (GEdge)o;
+            if ( ge.toObj == a && changed.containsKey( (GNode)ge.fromObj ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void fire( Actor a ) throws CGActorException {
+        if ( a.isActive() ) {
+            skipped++;      // already being fired by some other updater
+            return;
+        }
+        fired.put( a, Boolean.TRUE );
+        firedActors.add( a );
+        if ( updater.ownerFrame != null ) {
+            updater.WaitWhenAnimating( Global.AnimationDelay );
+        }
+        try {
+            updater.activateActor( a );
+        } catch ( CGActorException e ) {
+            if ( stopOnError ) {
+                throw e;
+            }
+            Global.error( "CG Actor Exception in updateGraph: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * @return the executable actors for which the node, or any concept linked
+     * to it by coreferent links, is an input.
+     */
+    private ArrayList<Actor> consumersOf( GNode gn ) {
+        ArrayList<Actor> actors = new ArrayList<>();
+        for ( GNode n : corefSet( gn ) ) {
+            for ( Object o : n.getEdges() ) {
+                GEdge link = (GEdge)o;
+                if ( link.fromObj == n && link.toObj instanceof Actor && GraphUpdater.isExecutable( (Actor)link.toObj ) ) {
+                    actors.add( (Actor)link.toObj );
+                }
+            }
+        }
+        return actors;
+    }
+
+    private static ArrayList<GNode> outputsOf( Actor a ) {
+        ArrayList<GNode> outputs = new ArrayList<>();
+        for ( Object o : a.getEdges() ) {
+            GEdge ge = (GEdge)o;
+            if ( ge.fromObj == a ) {
+                outputs.add( (GNode)ge.toObj );
+            }
+        }
+        return outputs;
+    }
+
+    /**
+     * @return the node and, if coreferents are being copied, every concept
+     * reachable from it by coreferent links.
+     */
+    private static ArrayList<GNode> corefSet( GNode gn ) {
+        ArrayList<GNode> set = new ArrayList<>();
+        set.add( gn );
+        if ( !Global.enableCopyCorefs ) {
+            return set;
+        }
+        IdentityHashMap<GNode, Boolean> seen = new IdentityHashMap<>();
+        seen.put( gn, Boolean.TRUE );
+        for ( int k = 0; k < set.size(); k++ ) {
+            for ( Object o : set.get( k ).getEdges() ) {
+                if ( o instanceof Coref ) {
+                    Coref c = (Coref)o;
+                    GNode other = (GNode)( c.fromObj == set.get( k ) ? c.toObj : c.fromObj );
+                    if ( seen.put( other, Boolean.TRUE ) == null ) {
+                        set.add( other );
+                    }
+                }
+            }
+        }
+        return set;
+    }
+
+    int getFirings() {
+        return firedActors.size();
+    }
+
+    int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return the actors fired so far, in the order they were fired.
+     */
+    ArrayList<Actor> getFiredActors() {
+        return firedActors;
+    }
+}
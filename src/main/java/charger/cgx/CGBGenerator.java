@@ -0,0 +1,354 @@
+package charger.cgx;
+
+import charger.Global;
+import charger.gloss.AbstractTypeDescriptor;
+import charger.obj.Concept;
+import charger.obj.GEdge;
+import charger.obj.GNode;
+import charger.obj.Graph;
+import charger.obj.GraphObject;
+import charger.obj.ShallowIterator;
+import charger.util.CGUtil;
+import chargerlib.CDateTime;
+import chargerlib.Rectangle3D;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+/**
+ * Writes a graph in CharGer's compact binary form (.cgb), which holds exactly
+ * what the XML form holds but is several times smaller and faster to read.
+ * The file is laid out as:
+ * <ul>
+ * <li>a header: the magic number "CGXB" and the format version</li>
+ * <li>a string table: every label, type, referent, tag name and id prefix,
+ * each written once and afterwards referred to by its position</li>
+ * <li>a color table and a font table, likewise</li>
+ * <li>the top level graph's time stamps and wrapping settings</li>
+ * <li>the objects, nested as in the XML form, each one a tag, an id and the
+ * fields it has; edges refer to their ends by the position of the end among
+ * all the objects</li>
+ * </ul>
+ * Integers are written as variable-length quantities of seven bits a byte, so
+ * that small ones take a single byte. The layout rectangle's coordinates are
+ * kept in hundredths, the same precision as the XML form, which is what makes
+ * converting between the two lossless.
+ *
+ * @see CGBParser
+ * @see CGXGenerator
+ * @since Charger 4.3
+ */
+public class CGBGenerator {
+
+    static final int MAGIC = 0x43475842;   // "CGXB"
+    static final int FORMAT = 1;
+
+    /** flags telling which of the optional fields follow an object's id */
+    static final int NEGATED = 1;
+    static final int LABEL = 2;
+    static final int TYPE = 4;
+    static final int REFERENT = 8;
+    static final int HISTORY = 16;
+
+    private final HashMap<String, Integer> strings = new HashMap<>();
+    private final ArrayList<String> stringList = new ArrayList<>();
+    private final HashMap<Integer, Integer> colors = new HashMap<>();
+    private final ArrayList<Integer> colorList = new ArrayList<>();
+    private final HashMap<String, Integer> fonts = new HashMap<>();
+    private final ArrayList<Font> fontList = new ArrayList<>();
+    /** each object's position in the file, so that edges can refer to their ends */
+    private final IdentityHashMap<GraphObject, Integer> positions = new IdentityHashMap<>();
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream( body );
+
+    private CGBGenerator() {
+    }
+
+    /**
+     * Writes the entire graph in binary form. As with the XML form, the
+     * graph's modified time stamp is set to now. The stream is flushed but not
+     * closed.
+     *
+     * @param gr The graph to be represented
+     * @param os the stream to write to
+     * @throws IOException from the underlying stream
+     * @see CGXGenerator#write(charger.obj.Graph, java.io.OutputStream)
+     */
+    public static void write( Graph gr, OutputStream os ) throws IOException {
+        if ( gr.createdTimeStamp == null ) {
+            gr.createdTimeStamp = new CDateTime().formatted( Global.ChargerDefaultDateTimeStyle );
+        }
+        gr.modifiedTimeStamp = new CDateTime().formatted( Global.ChargerDefaultDateTimeStyle );
+
+        CGBGenerator gen = new CGBGenerator();
+        int created = gen.string( gr.createdTimeStamp );
+        int modified = gen.string( gr.modifiedTimeStamp );
+        gen.number( gr );
+        gen.writeObject( gr );
+        gen.out.flush();
+
+        DataOutputStream dos = new DataOutputStream( os );
+        dos.writeInt( MAGIC );
+        writeInt( dos, FORMAT );
+        writeInt( dos, gen.stringList.size() );
+        for ( String s : gen.stringList ) {
+            byte[] bytes = s.getBytes( StandardCharsets.UTF_8 );
+            writeInt( dos, bytes.length );
+            dos.write( bytes );
+        }
+        writeInt( dos, gen.colorList.size() );
+        for ( int rgb : gen.colorList ) {
+            dos.writeByte( rgb >> 16 );
+            dos.writeByte( rgb >> 8 );
+            dos.writeByte( rgb );
+        }
+        writeInt( dos, gen.fontList.size() );
+        for ( Font f : gen.fontList ) {
+            writeInt( dos, gen.string( f.getName() ) );
+            writeInt( dos, f.getStyle() );
+            writeInt( dos, f.getSize() );
+        }
+        writeInt( dos, gen.positions.size() );
+        writeInt( dos, created );
+        writeInt( dos, modified );
+        dos.writeBoolean( gr.getWrapLabels() );
+        writeInt( dos, gr.getWrapColumns() );
+        gen.body.writeTo( dos );
+        dos.flush();
+    }
+
+    /**
+     * Numbers the objects in the order they'll be written.
+     */
+    private void number( GraphObject go ) {
+        positions.put( go, positions.size() );
+        if ( go instanceof Graph ) {
+            for ( GraphObject inner : members( (Graph)go ) ) {
+                number( inner );
+            }
+        }
+    }
+
+    /**
+     * The members of a graph in the order the XML form has them: nested graphs
+     * first, then the other nodes, then the edges, so that when reading, the
+     * nodes have usually been seen before their edges.
+     *
+     * @see CGXGenerator#writeGraph
+     */
+    private static ArrayList<GraphObject> members( Graph graph ) {
+        ArrayList<GraphObject> members = new ArrayList<>();
+        Iterator<GraphObject> iter = new ShallowIterator( graph, GraphObject.Kind.GRAPH );
+        while ( iter.hasNext() ) {
+            members.add( iter.next() );
+        }
+        iter = new ShallowIterator( graph, GraphObject.Kind.GNODE );
+        while ( iter.hasNext() ) {
+            GraphObject go = iter.next();
+            if ( !( go instanceof Graph ) ) {
+                members.add( go );
+            }
+        }
+        iter = new ShallowIterator( graph, GraphObject.Kind.GEDGE );
+        while ( iter.hasNext() ) {
+            members.add( iter.next() );
+        }
+        return members;
+    }
+
+    private void writeObject( GraphObject go ) throws IOException {
+        writeInt( out, string( CGUtil.shortClassName( go ).toLowerCase() ) );
+        writeID( go.objectID.toString() );
+
+        String label = null;
+        if ( !( go instanceof GNode ) && !go.getTextLabel().equals( "" ) ) {
+            label = go.getTextLabel();
+        }
+        String type = null;
+        if ( go instanceof GNode && ( (GNode)go ).getTypeLabel() != null && !( (GNode)go ).getTypeLabel().equals( "" ) ) {
+            type = ( (GNode)go ).getTypeLabel();
+        }
+        String referent = null;
+        if ( go instanceof Concept && ( (Concept)go ).getReferent() != null && !( (Concept)go ).getReferent().equals( "" ) ) {
+            referent = ( (Concept)go ).getReferent();
+        }
+        String history = null;
+        if ( Global.saveHistoryRecords && !go.getHistory().isEmpty() ) {
+            history = go.getHistory().toXML( "" );
+        }
+
+        int flags = 0;
+        if ( go instanceof Graph && ( (Graph)go ).isNegated() ) {
+            flags |= NEGATED;
+        }
+        if ( label != null ) {
+            flags |= LABEL;
+        }
+        if ( type != null ) {
+            flags |= TYPE;
+        }
+        if ( referent != null ) {
+            flags |= REFERENT;
+        }
+        if ( history != null ) {
+            flags |= HISTORY;
+        }
+        writeInt( out, flags );
+
+        if ( label != null ) {
+            writeInt( out, string( label ) );
+        }
+        if ( go instanceof GEdge ) {
+            writeInt( out, position( ( (GEdge)go ).fromObj ) );
+            writeInt( out, position( ( (GEdge)go ).toObj ) );
+        }
+        if ( type != null ) {
+            writeInt( out, string( type ) );
+            AbstractTypeDescriptor[] ds = ( (GNode)go ).getTypeDescriptor() == null
+                    ? new AbstractTypeDescriptor[ 0 ] : ( (GNode)go ).getTypeDescriptors();
+            writeInt( out, ds.length );
+            for ( AbstractTypeDescriptor d : ds ) {
+                writeInt( out, string( d.toXML( "" ) ) );
+            }
+        }
+        if ( referent != null ) {
+            writeInt( out, string( referent ) );
+        }
+
+        Rectangle3D r = go.getDisplayRect3D();
+        writeHundredths( r.x );
+        writeHundredths( r.y );
+        writeHundredths( r.width );
+        writeHundredths( r.height );
+        writeHundredths( r.depth );
+        writeInt( out, color( go.getColor( "text" ) ) );
+        writeInt( out, color( go.getColor( "fill" ) ) );
+        writeInt( out, font( go.getLabelFont() ) );
+        if ( go instanceof GEdge ) {
+            GEdge edge = (GEdge)go;
+            writeInt( out, edge.getArrowHeadWidth() );
+            writeInt( out, edge.getArrowHeadHeight() );
+            out.writeDouble( edge.getEdgeThickness() );
+        }
+
+        if ( history != null ) {
+            writeInt( out, string( history ) );
+        }
+
+        if ( go instanceof Graph ) {
+            ArrayList<GraphObject> members = members( (Graph)go );
+            writeInt( out, members.size() );
+            for ( GraphObject inner : members ) {
+                writeObject( inner );
+            }
+        }
+    }
+
+    /**
+     * Ids made by GraphObjectID look like "prefix:count", where the prefix is
+     * the same for every id made in one session and the count is a hex number.
+     * These are written as the prefix's place in the string table and the
+     * count as a number; any other id is written whole.
+     */
+    private void writeID( String id ) throws IOException {
+        int colon = id.lastIndexOf( ':' );
+        if ( colon > 0 ) {
+            String count = id.substring( colon + 1 );
+            try {
+                int n = Integer.parseInt( count, 16 );
+                if ( Integer.toString( n, 16 ).equals( count ) ) {
+                    writeInt( out, string( id.substring( 0, colon ) ) << 1 | 1 );
+                    writeInt( out, n << 1 ^ n >> 31 );
+                    return;
+                }
+            } catch ( NumberFormatException ex ) {
+                // written whole below
+            }
+        }
+        writeInt( out, string( id ) << 1 );
+    }
+
+    /**
+     * @return the object's position plus one; 0 if it's not in the graph
+     * being written
+     */
+    private int position( GraphObject go ) {
+        Integer p = go == null ? null : positions.get( go );
+        return p == null ? 0 : p + 1;
+    }
+
+    /**
+     * Rounds to hundredths the same way the XML form's "0.00" format does.
+     */
+    private void writeHundredths( double d ) throws IOException {
+        long n = new BigDecimal( d ).setScale( 2, RoundingMode.HALF_EVEN ).unscaledValue().longValue();
+        writeLong( out, n << 1 ^ n >> 63 );
+    }
+
+    /**
+     * @return the string's place in the string table plus one; 0 for null
+     */
+    private int string( String s ) {
+        if ( s == null ) {
+            return 0;
+        }
+        Integer n = strings.get( s );
+        if ( n == null ) {
+            stringList.add( s );
+            n = stringList.size();
+            strings.put( s, n );
+        }
+        return n;
+    }
+
+    private int color( Color c ) {
+        int rgb = c.getRGB() & 0xffffff;
+        Integer n = colors.get( rgb );
+        if ( n == null ) {
+            n = colorList.size();
+            colorList.add( rgb );
+            colors.put( rgb, n );
+        }
+        return n;
+    }
+
+    private int font( Font f ) {
+        String key = f.getName() + "|" + f.getStyle() + "|" + f.getSize();
+        Integer n = fonts.get( key );
+        if ( n == null ) {
+            n = fontList.size();
+            fontList.add( f );
+            fonts.put( key, n );
+            string( f.getName() );
+        }
+        return n;
+    }
+
+    static void writeInt( DataOutputStream out, int n ) throws IOException {
+        while ( ( n & ~0x7f ) != 0 ) {
+            out.writeByte( ( n & 0x7f ) | 0x80 );
+            n >>>= 7;
+        }
+        out.writeByte( n );
+    }
+
+    static void writeLong( DataOutputStream out, long n ) throws IOException {
+        while ( ( n & ~0x7fL ) != 0 ) {
+            out.writeByte( (int)( n & 0x7f ) | 0x80 );
+            n >>>= 7;
+        }
+        out.writeByte( (int)n );
+    }
+}
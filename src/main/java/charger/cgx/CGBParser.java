@@ -0,0 +1,426 @@
+package charger.cgx;
+
+import charger.Global;
+import charger.exception.CGEncodingException;
+import charger.gloss.AbstractTypeDescriptor;
+import charger.gloss.GenericTypeDescriptor;
+import charger.gloss.wn.WordnetTypeDescriptor;
+import charger.obj.Concept;
+import charger.obj.GEdge;
+import charger.obj.GNode;
+import charger.obj.Graph;
+import charger.obj.GraphObject;
+import charger.obj.GraphObjectID;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads a graph written by {@link CGBGenerator} into its CharGer internal form.
+ * A file is memory-mapped rather than read through a stream, and everything
+ * that the objects share -- strings, colors and fonts -- is made once, when
+ * its table is read, so that reading an object is mostly a matter of making
+ * it and setting its fields.
+ * <p>
+ * The settings are the same as those of {@link CGXStreamParser} for reading a
+ * new graph: ids are kept, and the layout may be offset or ignored.
+ *
+ * @see CGBGenerator
+ * @see charger.IOManager#FileToGraph
+ * @since Charger 4.3
+ */
+public class CGBParser {
+
+    private Point2D.Double _offset = CGXParser.offsetZero;
+    private boolean _ignoreLayout = false;
+
+    private ByteBuffer in;
+    private String[] strings;
+    private Color[] colors;
+    private Font[] fonts;
+    /** the objects read so far, by position in the file */
+    private GraphObject[] objects;
+    private int read;
+    /** edges whose ends come later in the file, with the ends' positions */
+    private final ArrayList<Object[]> pendingEdges = new ArrayList<>();
+    /** the constructor for each tag, by the tag's place in the string table */
+    private Constructor<?>[] tagConstructors;
+
+    private DocumentBuilder fragmentBuilder = null;
+    private CGXParser domHelper = null;
+
+    public CGBParser() {
+    }
+
+    public boolean isIgnoreLayout() {
+        return _ignoreLayout;
+    }
+
+    public void setIgnoreLayout( boolean _ignoreLayout ) {
+        this._ignoreLayout = _ignoreLayout;
+    }
+
+    public Point2D.Double getOffset() {
+        return _offset;
+    }
+
+    public void setOffset( Point2D.Double _offset ) {
+        this._offset = _offset;
+    }
+
+    /**
+     * @return whether the file starts with the binary form's magic number.
+     */
+    public static boolean isCGB( File f ) {
+        if ( f.length() < 4 ) {
+            return false;
+        }
+        try ( DataInputStream is = new DataInputStream( new FileInputStream( f ) ) ) {
+            return is.readInt() == CGBGenerator.MAGIC;
+        } catch ( IOException ex ) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a file by mapping it into memory.
+     *
+     * @param f a file written by CGBGenerator
+     * @param graph initialized but possibly empty graph
+     * @throws CGEncodingException if the file isn't in the binary form or is
+     * damaged
+     * @throws IOException if the file can't be read
+     */
+    public void parse( File f, Graph graph ) throws CGEncodingException, IOException {
+        try ( FileInputStream fis = new FileInputStream( f ); FileChannel channel = fis.getChannel() ) {
+            parse( channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ), graph );
+        }
+    }
+
+    /**
+     * Reads the rest of a stream. The stream is not closed.
+     *
+     * @param is a stream holding a graph written by CGBGenerator
+     * @param graph initialized but possibly empty graph
+     * @throws CGEncodingException if the stream isn't in the binary form or is
+     * damaged
+     * @throws IOException if the stream can't be read
+     */
+    public void parse( InputStream is, Graph graph ) throws CGEncodingException, IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[ 8192];
+        int n;
+        while ( ( n = is.read( buf ) ) > 0 ) {
+            bytes.write( buf, 0, n );
+        }
+        parse( ByteBuffer.wrap( bytes.toByteArray() ), graph );
+    }
+
+    /**
+     * Reads a graph held in a buffer, from the buffer's position.
+     *
+     * @param buffer holds a graph written by CGBGenerator
+     * @param graph initialized but possibly empty graph
+     * @throws CGEncodingException if the buffer isn't in the binary form or is
+     * damaged
+     */
+    public void parse( ByteBuffer buffer, Graph graph ) throws CGEncodingException {
+        in = buffer;
+        pendingEdges.clear();
+        try {
+            if ( in.remaining() < 4 || in.getInt() != CGBGenerator.MAGIC ) {
+                throw new CGEncodingException( "Not a CharGer binary graph." );
+            }
+            int format = readInt();
+            if ( format != CGBGenerator.FORMAT ) {
+                throw new CGEncodingException( "CharGer binary graph is format " + format
+                        + "; this version of CharGer reads only format " + CGBGenerator.FORMAT + "." );
+            }
+            readTables();
+            objects = new GraphObject[ readInt()];
+            read = 0;
+            graph.createdTimeStamp = string();
+            graph.modifiedTimeStamp = string();
+            graph.wrapLabels = in.get() != 0;
+            graph.wrapColumns = readInt();
+
+            if ( !( makeObject( readInt() ) instanceof Graph ) ) {
+                throw new CGEncodingException( "CharGer binary graph doesn't start with a graph." );
+            }
+            readObject( graph, null );
+        } catch ( BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | ClassCastException ex ) {
+            throw new CGEncodingException( "CharGer binary graph is damaged: " + ex );
+        } finally {
+            in = null;
+        }
+        hookUpPendingEdges();
+        objects = null;
+    }
+
+    private void readTables() throws CGEncodingException {
+        strings = new String[ readInt()];
+        for ( int k = 0; k < strings.length; k++ ) {
+            int length = readInt();
+            if ( in.hasArray() ) {
+                strings[ k] = new String( in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8 );
+                in.position( in.position() + length );
+            } else {
+                byte[] bytes = new byte[ length];
+                in.get( bytes );
+                strings[ k] = new String( bytes, StandardCharsets.UTF_8 );
+            }
+        }
+        colors = new Color[ readInt()];
+        for ( int k = 0; k < colors.length; k++ ) {
+            colors[ k] = new Color( in.get() & 0xff, in.get() & 0xff, in.get() & 0xff );
+        }
+        fonts = new Font[ readInt()];
+        for ( int k = 0; k < fonts.length; k++ ) {
+            fonts[ k] = new Font( string(), readInt(), readInt() );
+        }
+        tagConstructors = new Constructor<?>[ strings.length];
+    }
+
+    /**
+     * Reads the rest of one object, after its tag, and adds it to its graph.
+     *
+     * @param go the object, made according to its tag
+     * @param owner the graph to add it to; null for the top level graph
+     */
+    private void readObject( GraphObject go, Graph owner ) throws CGEncodingException {
+        go.objectID = new GraphObjectID( readID() );
+        objects[ read++] = go;
+        if ( owner != null ) {
+            owner.insertObject( go );
+        }
+
+        int flags = readInt();
+        if ( ( flags & CGBGenerator.NEGATED ) != 0 ) {
+            ( (Graph)go ).setNegated( true );
+        }
+        if ( go instanceof GEdge ) {
+            GEdge ge = (GEdge)go;
+            ge.setTextLabel( ( flags & CGBGenerator.LABEL ) != 0 ? string() : "" );
+            int from = readInt();
+            int to = readInt();
+            hookUp( ge, from, to );
+        } else if ( ( flags & CGBGenerator.LABEL ) != 0 ) {
+            go.setTextLabel( string() );
+        }
+        if ( ( flags & CGBGenerator.TYPE ) != 0 ) {
+            ( (GNode)go ).setTypeLabel( string() );
+            AbstractTypeDescriptor[] ds = new AbstractTypeDescriptor[ readInt()];
+            for ( int k = 0; k < ds.length; k++ ) {
+                ds[ k] = descriptor( string() );
+            }
+            ( (GNode)go ).setTypeDescriptors( ds );
+        }
+        if ( ( flags & CGBGenerator.REFERENT ) != 0 ) {
+            ( (Concept)go ).setReferent( string(), false );
+        }
+
+        double x = readHundredths();
+        double y = readHundredths();
+        double width = readHundredths();
+        double height = readHundredths();
+        double depth = readHundredths();
+        Color text = colors[ readInt()];
+        Color fill = colors[ readInt()];
+        Font font = fonts[ readInt()];
+        int arrowHeadWidth = 0;
+        int arrowHeadHeight = 0;
+        double edgeThickness = 0;
+        if ( go instanceof GEdge ) {
+            arrowHeadWidth = readInt();
+            arrowHeadHeight = readInt();
+            edgeThickness = in.getDouble();
+        }
+        if ( !isIgnoreLayout() ) {
+            go.setDisplayRect( new Rectangle2D.Double( x + _offset.x, y + _offset.y, width, height ) );
+            go.setDepth( depth );
+            go.setColor( "text", text );
+            go.setColor( "fill", fill );
+            go.setLabelFont( font );
+            if ( go instanceof GEdge ) {
+                GEdge ge = (GEdge)go;
+                ge.setArrowHeadWidth( arrowHeadWidth );
+                ge.setArrowHeadHeight( arrowHeadHeight );
+                ge.setEdgeThickness( edgeThickness );
+            }
+        }
+
+        if ( ( flags & CGBGenerator.HISTORY ) != 0 ) {
+            getDomHelper().parseHistoryInfo( fragment( string() ), go );
+        }
+
+        if ( go instanceof Graph ) {
+            int members = readInt();
+            for ( int k = 0; k < members; k++ ) {
+                readObject( makeObject( readInt() ), (Graph)go );
+            }
+        } else if ( go instanceof GEdge && ( (GEdge)go ).fromObj != null ) {
+            ( (GEdge)go ).placeEdge();
+        }
+    }
+
+    /**
+     * Makes an object of the class named by a tag. Each tag's class is looked
+     * up only the first time it's seen.
+     *
+     * @param tag the tag's place in the string table plus one
+     */
+    private GraphObject makeObject( int tag ) throws CGEncodingException {
+        Constructor<?> c = tagConstructors[ tag - 1];
+        try {
+            if ( c == null ) {
+                GraphObject go = CGXStreamParser.instantiateGraphObject( strings[ tag - 1] );
+                if ( go == null ) {
+                    throw new CGEncodingException( "CharGer binary graph has an unknown object \"" + strings[ tag - 1] + "\"." );
+                }
+                tagConstructors[ tag - 1] = go.getClass().getDeclaredConstructor();
+                return go;
+            }
+            return (GraphObject)c.newInstance();
+        } catch ( ReflectiveOperationException ex ) {
+            throw new CGEncodingException( "CharGer binary graph has an object that can't be made: " + ex );
+        }
+    }
+
+    private String readID() {
+        int n = readInt();
+        if ( ( n & 1 ) == 0 ) {
+            return strings[ ( n >>> 1 ) - 1];
+        }
+        int count = readInt();
+        count = count >>> 1 ^ -( count & 1 );
+        return strings[ ( n >>> 1 ) - 1] + ":" + Integer.toString( count, 16 );
+    }
+
+    /**
+     * Attaches an edge to its end nodes if they've already been read;
+     * otherwise remembers it for later.
+     *
+     * @param from the "from" node's position plus one; 0 if there isn't one
+     * @param to the "to" node's position plus one; 0 if there isn't one
+     */
+    private void hookUp( GEdge ge, int from, int to ) {
+        if ( from == 0 || to == 0 ) {
+            Global.error( "Error in parsing graph edge!" );
+            return;
+        }
+        if ( from > read || to > read ) {
+            pendingEdges.add( new Object[]{ ge, from, to } );
+            return;
+        }
+        attach( ge, objects[ from - 1], objects[ to - 1] );
+    }
+
+    private void hookUpPendingEdges() {
+        for ( Object[] pending : pendingEdges ) {
+            GEdge ge = (GEdge)pending[ 0 ];
+            int from = (Integer)pending[ 1];
+            int to = (Integer)pending[ 2];
+            if ( from > read || to > read ) {
+                Global.error( "Error in parsing graph edge!" );
+            } else {
+                attach( ge, objects[ from - 1], objects[ to - 1] );
+                ge.placeEdge();
+            }
+        }
+        pendingEdges.clear();
+    }
+
+    private void attach( GEdge ge, GraphObject from, GraphObject to ) {
+        ge.fromObj = from;
+        ge.toObj = to;
+        ( (GNode)from ).attachGEdge( ge );
+        ( (GNode)to ).attachGEdge( ge );
+    }
+
+    private AbstractTypeDescriptor descriptor( String xml ) throws CGEncodingException {
+        Element elem = fragment( xml );
+        if ( elem.getTagName().equals( WordnetTypeDescriptor.getTagName() ) ) {
+            return WordnetTypeDescriptor.getInstanceFromXMLDOM( elem );
+        }
+        return GenericTypeDescriptor.getInstanceFromXMLDOM( elem );
+    }
+
+    /**
+     * Type descriptors and histories are rare enough, and varied enough, that
+     * they are kept as the same XML that the XML form has for them.
+     */
+    private Element fragment( String xml ) throws CGEncodingException {
+        try {
+            if ( fragmentBuilder == null ) {
+                fragmentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            }
+            return fragmentBuilder.parse( new InputSource( new StringReader( xml ) ) ).getDocumentElement();
+        } catch ( ParserConfigurationException | SAXException | IOException ex ) {
+            throw new CGEncodingException( "CharGer binary graph has bad XML: " + ex.getMessage() );
+        }
+    }
+
+    private CGXParser getDomHelper() {
+        if ( domHelper == null ) {
+            domHelper = new CGXParser();
+        }
+        return domHelper;
+    }
+
+    private String string() {
+        int n = readInt();
+        return n == 0 ? null : strings[ n - 1];
+    }
+
+    private double readHundredths() {
+        long n = readLong();
+        return ( n >>> 1 ^ -( n & 1 ) ) / 100.0;
+    }
+
+    private int readInt() {
+        int b = in.get();
+        if ( b >= 0 ) {
+            return b;
+        }
+        int n = b & 0x7f;
+        for ( int shift = 7; ; shift += 7 ) {
+            b = in.get();
+            n |= ( b & 0x7f ) << shift;
+            if ( b >= 0 ) {
+                return n;
+            }
+        }
+    }
+
+    private long readLong() {
+        long n = 0;
+        for ( int shift = 0; ; shift += 7 ) {
+            int b = in.get();
+            n |= (long)( b & 0x7f ) << shift;
+            if ( b >= 0 ) {
+                return n;
+            }
+        }
+    }
+}
@@ -23,6 +23,13 @@ import chargerlib.Rectangle3D;
 import chargerlib.Tag;
 import chargerlib.XMLGenerator;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.text.DecimalFormat;
 import java.util.Iterator;
 
@@ -43,8 +50,9 @@ import java.util.Iterator;
  */
 /**
  * Used for generating XML representations of a conceptual graph.
- * Does not use the Document model; simply creates appropriate xml strings
- * for writing.
+ * Does not use the Document model; simply writes the appropriate xml
+ * to a writer or stream as it goes, so that no string for the entire graph
+ * need ever be built.
  */
 public class CGXGenerator extends XMLGenerator {
 
@@ -54,8 +62,42 @@ public class CGXGenerator extends XMLGenerator {
      *
      * @param gr The graph to be represented
      * @return XML representation of the graph.
+     * @see #write(charger.obj.Graph, java.io.Writer)
      */
     public static String generateXML( Graph gr ) {
+        StringWriter sw = new StringWriter();
+        try {
+            write( gr, sw );
+        } catch ( IOException ex ) {
+            Global.error( "generateXML: " + ex.getMessage() );     // can't happen with a string writer
+        }
+        return sw.toString();
+    }
+
+    /**
+     * Writes the entire graph in XML form to a stream, encoded as UTF-8. The
+     * output is exactly the same as that of generateXML, but is written as it
+     * is generated, rather than being collected into strings first. The stream
+     * is flushed but not closed.
+     *
+     * @param gr The graph to be represented
+     * @param os the stream to write to
+     * @throws IOException from the underlying stream
+     */
+    public static void write( Graph gr, OutputStream os ) throws IOException {
+        Writer w = new BufferedWriter( new OutputStreamWriter( os, Charset.forName( "UTF-8" ).newEncoder() ) );
+        write( gr, w );
+        w.flush();
+    }
+
+    /**
+     * Writes the entire graph in XML form.
+     *
+     * @param gr The graph to be represented
+     * @param w the writer to write to; not flushed or closed
+     * @throws IOException from the underlying writer
+     */
+    public static void write( Graph gr, Writer w ) throws IOException {
 
         if ( gr.createdTimeStamp == null ) {
             gr.createdTimeStamp = new CDateTime().formatted( Global.ChargerDefaultDateTimeStyle );
@@ -71,11 +113,12 @@ public class CGXGenerator extends XMLGenerator {
                 + "wrapLabels=\"" + gr.getWrapLabels() + "\" "
                 + "wrapColumns=\"" + gr.getWrapColumns() + "\"";
 
-        return XMLHeader() + eol
-                + //CGdoctypeHeader() + eol +
-                startTag( "conceptualgraph", parms ) + eol
-                + GraphObjectXML( gr, "" ) + eol
-                + endTag( "conceptualgraph" ) + eol;
+        w.write( XMLHeader() + eol );
+                //CGdoctypeHeader() + eol +
+        w.write( startTag( "conceptualgraph", parms ) + eol );
+        writeGraphObject( w, gr, "" );
+        w.write( eol );
+        w.write( endTag( "conceptualgraph" ) + eol );
     }
 
     /**
@@ -95,19 +138,26 @@ public class CGXGenerator extends XMLGenerator {
      *
      * @return string representing the graph in a safe order; i.e., every object
      * occurs before it is referenced (e.g., by a link)
+     * @see #writeGraph
      */
     public static String GraphXML( Graph graph, String indent ) {
-        StringBuilder s = new StringBuilder( "" );
+        StringWriter sw = new StringWriter();
+        try {
+            writeGraph( sw, graph, indent );
+        } catch ( IOException ex ) {
+            Global.error( "GraphXML: " + ex.getMessage() );
+        }
+        return sw.toString();
+    }
 
-        /*if ( graph.getOwnerGraph() == null ) 		// a top-level graph
-         {
-         StringBuilder headerinfo = new StringBuilder( "" );
-         if ( graph.getOwnerFrame() != null && graph.getOwnerFrame().)
-         headerinfo.append( 
-         s.append( startTag( "Graph", headerinfo );
-         }
-         else
-         */
+    /**
+     * Writes the graph's contents in an order that has no internal forward
+     * references, using XML format; i.e., every object occurs before it is
+     * referenced (e.g., by a link)
+     *
+     * @see #GraphXML
+     */
+    public static void writeGraph( Writer w, Graph graph, String indent ) throws IOException {
         GraphObject go = null;
         Graph g = null;
 
@@ -115,14 +165,14 @@ public class CGXGenerator extends XMLGenerator {
         Iterator iter = new ShallowIterator( graph, GraphObject.Kind.GRAPH );
         while ( iter.hasNext() ) {
             g = (Graph)iter.next();
-            s.append( GraphObjectXML( g, tab + indent ) );
+            writeGraphObject( w, g, tab + indent );
         }
         iter = new ShallowIterator( graph, GraphObject.Kind.GNODE );
         while ( iter.hasNext() ) {
             go = (GNode)iter.next();
             if ( !( go instanceof Graph ) ) // to prevent duplicate graphs from being generated
             {
-                s.append( GraphObjectXML( go, tab + indent ) );
+                writeGraphObject( w, go, tab + indent );
             }
         }
 
@@ -130,10 +180,8 @@ public class CGXGenerator extends XMLGenerator {
         iter = new ShallowIterator( graph, GraphObject.Kind.GEDGE );
         while ( iter.hasNext() ) {
             go = (GEdge)iter.next();
-            s.append( GraphObjectXML( go, tab + indent ) );
+            writeGraphObject( w, go, tab + indent );
         }
-
-        return s.toString();
     }
 
     /**
@@ -144,12 +192,28 @@ public class CGXGenerator extends XMLGenerator {
      * XML.
      * @param indent Text string to prepend before every line of the generated
      * XML. The method may provide additional indentation for readability.
+     * @see #writeGraphObject
      */
     public static String GraphObjectXML( GraphObject go, String indent ) {
-        StringBuilder s = new StringBuilder( "" );
+        StringWriter sw = new StringWriter();
+        try {
+            writeGraphObject( sw, go, indent );
+        } catch ( IOException ex ) {
+            Global.error( "GraphObjectXML: " + ex.getMessage() );
+        }
+        return sw.toString();
+    }
 
+    /**
+     * Writes any graph object in its XML version. If it's a
+     * charger.obj.Graph, then its contents are written too, with recursion
+     * providing arbitrary nesting of graphs in XML.
+     *
+     * @see #GraphObjectXML
+     */
+    public static void writeGraphObject( Writer w, GraphObject go, String indent ) throws IOException {
         if ( go == null ) {
-            return "";
+            return;
         }
 
         // Construct the parameter list for this object
@@ -161,8 +225,6 @@ public class CGXGenerator extends XMLGenerator {
             id = go.getOwnerGraph().objectID;
         }
         parms.append( " owner=\"" + id + "\"" );
-        //Global.info( "looking at " + CGUtil.shortClassName( go ) + " with ident = " + go.objectID +
-        //	"  owner = " + ident );
 
         //		NO longer making label a parameter; it's going to be a composite of type and referent tags
         if ( !( go instanceof GNode ) && !go.getTextLabel().equals( "" ) ) {
@@ -182,36 +244,30 @@ public class CGXGenerator extends XMLGenerator {
                 parms.append( " to=\"" + ge.toObj.objectID + "\"" );
             }
                     // These are properly part of the layout tag, since they don't affect semantics.
-//                parms.append( " edgeThickness=\"" + ge.getEdgeThickness() + "\"" );
-//            if ( go instanceof Arrow || go instanceof GenSpecLink ) {
-//                parms.append( " arrowHeadWidth=\"" + ge.getArrowHeadWidth() + "\"" );
-//                parms.append( " arrowHeadHeight=\"" + ge.getArrowHeadHeight() + "\"" );
-//            }
         }
 
         // Actually write the tag with its parameters
-        s.append( indent + startTag( CGUtil.shortClassName( go ).toLowerCase(), parms.toString() ) + eol );
+        String tagName = CGUtil.shortClassName( go ).toLowerCase();
+        w.write( indent + startTag( tagName, parms.toString() ) + eol );
 
         if ( go instanceof Concept ) {
-            s.append( typeRefInfoXML( (Concept)go, tab + indent ) );
+            w.write( typeRefInfoXML( (Concept)go, tab + indent ) );
         } else if ( go instanceof GNode ) {
-            s.append( typeInfoXML( (GNode)go, tab + indent ) );
+            w.write( typeInfoXML( (GNode)go, tab + indent ) );
         }
 
         // Write the layout information
-        s.append( layoutInfoXML( go, tab + indent ) );
+        writeLayoutInfo( w, go, tab + indent );
 
-//        JOptionPane.showMessageDialog( null, "About to display events for " + go.getTextLabel() );
         if ( Global.saveHistoryRecords ) {
-            s.append( go.getHistory().toXML( indent ) );
+            w.write( go.getHistory().toXML( indent ) );
         }
         
         if ( go instanceof Graph ) {
-            s.append( GraphXML( (Graph)go, indent ) );
+            writeGraph( w, (Graph)go, indent );
         }
 
-        s.append( indent + endTag( CGUtil.shortClassName( go ).toLowerCase() ) + eol );
-        return s.toString();
+        w.write( indent + endTag( tagName ) + eol );
     }
 
 
@@ -261,18 +317,33 @@ public class CGXGenerator extends XMLGenerator {
         return s.toString();
     }
 
+    /**
+     * @see #writeLayoutInfo
+     */
     public static String layoutInfoXML( GraphObject go, String indent ) {
-        StringBuilder s = new StringBuilder( "" );
-        s.append( indent + startTag( "layout" ) + eol );
-        s.append( tab + indent + tagWithParms( "rectangle", rectangleXMLParms( go.getDisplayRect3D() ) ) + eol );
-        s.append( tab + indent + tagWithParms( "color", colorXMLParms( go ) ) + eol );
-        s.append( tab + indent + tagWithParms( "font", fontXMLParms( go ) ) + eol );
+        StringWriter sw = new StringWriter();
+        try {
+            writeLayoutInfo( sw, go, indent );
+        } catch ( IOException ex ) {
+            Global.error( "layoutInfoXML: " + ex.getMessage() );
+        }
+        return sw.toString();
+    }
+
+    /**
+     * Writes the "layout" tag with the rectangle, color, font and edge
+     * information for the object.
+     */
+    public static void writeLayoutInfo( Writer w, GraphObject go, String indent ) throws IOException {
+        w.write( indent + startTag( "layout" ) + eol );
+        w.write( tab + indent + tagWithParms( "rectangle", rectangleXMLParms( go.getDisplayRect3D() ) ) + eol );
+        w.write( tab + indent + tagWithParms( "color", colorXMLParms( go ) ) + eol );
+        w.write( tab + indent + tagWithParms( "font", fontXMLParms( go ) ) + eol );
         if ( go instanceof GEdge ) {
             GEdge edge = (GEdge)go;
-            s.append(  tab + indent + tagWithParms( "edge", edgeXMLParms( edge ) ) + eol );
+            w.write(  tab + indent + tagWithParms( "edge", edgeXMLParms( edge ) ) + eol );
         }
-        s.append( indent + endTag( "layout" ) + eol );
-        return s.toString();
+        w.write( indent + endTag( "layout" ) + eol );
     }
 
     private static String rectangleXMLParms( Rectangle3D r ) {
@@ -53,7 +53,8 @@ import chargerlib.history.UserHistoryRecord;
 
 /**
  * Used for parsing XML representations of a conceptual graph into its CharGer
- * internal form. Uses the DOM parsing routines.
+ * internal form. Uses the DOM parsing routines. Whole graph files are read
+ * with {@link CGXStreamParser} instead, which doesn't build the document tree.
  */
 public class CGXParser extends DefaultHandler {
 
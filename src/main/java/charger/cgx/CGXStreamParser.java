@@ -0,0 +1,720 @@
+/*
+ * Copyright 1998-2020 by Harry Delugach (UAH), Huntsville, AL 35899, USA. All Rights Reserved.
+ * Unless permission is granted, this material may not be copied, reproduced or coded for reproduction
+ *  by any electrical, mechanical or chemical process or combination thereof, now known or later developed.
+ *
+ * $Header$
+ */
+
+package charger.cgx;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import charger.Global;
+import charger.exception.CGEncodingException;
+import charger.gloss.AbstractTypeDescriptor;
+import charger.gloss.GenericTypeDescriptor;
+import charger.gloss.wn.WordnetTypeDescriptor;
+import charger.obj.Concept;
+import charger.obj.GEdge;
+import charger.obj.GNode;
+import charger.obj.Graph;
+import charger.obj.GraphObject;
+import charger.obj.GraphObjectID;
+import charger.util.CGUtil;
+
+/**
+ * Reads the XML representation of a conceptual graph into its CharGer internal
+ * form using the StAX streaming routines. Unlike {@link CGXParser}, no document
+ * tree is ever built for the whole file; each graph object is created and
+ * inserted into its graph as soon as its start tag is read, so that only the
+ * object model itself stays resident.
+ * <p>
+ * Edges are hooked up to their end nodes through a table of the ids that
+ * appear in the file. An edge whose end nodes have not yet been read is
+ * remembered and hooked up once the entire file has been read.
+ * <p>
+ * The small "history" and type descriptor sub-trees are still handed to the
+ * existing DOM-based routines, one element at a time.
+ *
+ * @see CGXParser
+ * @see charger.IOManager#FileToGraph
+ */
+public class CGXStreamParser {
+
+    private static XMLInputFactory inputFactory = null;
+
+    private boolean _keepIDs = true;
+    private boolean _ignoreLayout = false;
+    /**
+     * Whether to keep the top level graph intact (perhaps adding to it), but
+     * retaining its created, modified, etc.
+     */
+    private boolean _preserveGraph = false;
+    /**
+     * Whether to gather all parsed objects into a arraylist (usually used for
+     * selecting)
+     */
+    private boolean _makeList = false;
+    private Point2D.Double _offset = CGXParser.offsetZero;
+    private ArrayList<GraphObject> _parsedObjects = new ArrayList<>();
+    private Graph _topLevelGraph = null;
+
+    /**
+     * Every object parsed so far, keyed by the id that appears in the file (not
+     * necessarily the id of the object itself, if not keeping ids).
+     */
+    private HashMap<String, GraphObject> fileIDs = new HashMap<>();
+    /**
+     * Edges whose "from" or "to" nodes had not been read when the edge was.
+     * Each entry holds the edge and its from and to ids as found in the file.
+     */
+    private ArrayList<Object[]> pendingEdges = new ArrayList<>();
+
+    private HashMap<String, Color> colorCache = new HashMap<>();
+    private HashMap<String, Font> fontCache = new HashMap<>();
+
+    /**
+     * Used only to build the small DOM fragments handed to the DOM-based
+     * routines.
+     */
+    private Document fragmentDoc = null;
+    private CGXParser domHelper = null;
+
+    /**
+     * Parser works as an instance; this allows for multiple parsers to be open
+     * at the same time.
+     */
+    public CGXStreamParser() {
+    }
+
+    public boolean isIgnoreLayout() {
+        return _ignoreLayout;
+    }
+
+    public void setIgnoreLayout( boolean _ignoreLayout ) {
+        this._ignoreLayout = _ignoreLayout;
+    }
+
+    public boolean isKeepIDs() {
+        return _keepIDs;
+    }
+
+    public void setKeepIDs( boolean _keepIDs ) {
+        this._keepIDs = _keepIDs;
+    }
+
+    public Point2D.Double getOffset() {
+        return _offset;
+    }
+
+    public void setOffset( Point2D.Double _offset ) {
+        this._offset = _offset;
+    }
+
+    public boolean isMakeList() {
+        return _makeList;
+    }
+
+    public void setMakeList( boolean _makeList ) {
+        this._makeList = _makeList;
+    }
+
+    public boolean isPreserveGraph() {
+        return _preserveGraph;
+    }
+
+    public void setPreserveGraph( boolean _preserveGraph ) {
+        this._preserveGraph = _preserveGraph;
+    }
+
+    public ArrayList<GraphObject> getParsedObjects() {
+        return _parsedObjects;
+    }
+
+    public Graph getParsedGraph() {
+        return _topLevelGraph;
+    }
+
+    /**
+     * Factory method for reading a new graph from a stream, with the same
+     * settings as {@link CGXParser#parseForNewGraph(java.io.InputStream, charger.obj.Graph)}.
+     *
+     * @param is a stream containing a complete cgx graph
+     * @param g initialized but possibly empty graph
+     * @return true if all worked properly; false otherwise.
+     */
+    public static boolean parseForNewGraph( InputStream is, Graph g ) {
+        CGXStreamParser parser = new CGXStreamParser();
+        parser.setKeepIDs( true );
+        parser.setOffset( CGXParser.offsetZero );
+        parser.setMakeList( false );
+        parser.setPreserveGraph( false );
+        try {
+            parser.parse( is, g );
+        } catch ( CGEncodingException ex ) {
+            CGUtil.showMessageDialog( null, ex.getMessage() );
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Factory method for reading a new graph from a string. May be used either
+     * for reading in an entirely new graph or for restoring one (e.g., via
+     * undo).
+     *
+     * @param xmlString a complete cgx graph string
+     * @param g initialized but possibly empty graph
+     */
+    public static void parseForNewGraph( String xmlString, Graph g ) {
+        parseForNewGraph( new ByteArrayInputStream( xmlString.getBytes( StandardCharsets.UTF_8 ) ), g );
+    }
+
+    private static synchronized XMLInputFactory getInputFactory() {
+        if ( inputFactory == null ) {
+            inputFactory = XMLInputFactory.newInstance();
+            inputFactory.setProperty( XMLInputFactory.IS_COALESCING, Boolean.TRUE );
+            inputFactory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE );
+            inputFactory.setProperty( XMLInputFactory.SUPPORT_DTD, Boolean.FALSE );
+        }
+        return inputFactory;
+    }
+
+    /**
+     * Reads the entire stream into the given graph, using whatever settings
+     * have been made for this parser. The stream is not closed.
+     *
+     * @param is an XML stream containing CG-XML objects.
+     * @param graph initialized but possibly empty graph; if null, a new graph
+     * is created and can be retrieved with getParsedGraph.
+     * @throws CGEncodingException if the stream can't be read or isn't well-formed XML.
+     */
+    public void parse( InputStream is, Graph graph ) throws CGEncodingException {
+        if ( graph == null ) {
+            _topLevelGraph = new Graph();
+        } else {
+            _topLevelGraph = graph;
+        }
+        fileIDs.clear();
+        pendingEdges.clear();
+        if ( isMakeList() ) {
+            _parsedObjects.clear();
+        }
+
+        XMLStreamReader reader = null;
+        try {
+            reader = getInputFactory().createXMLStreamReader( is );
+            if ( !nextStartElement( reader ) ) {
+                return;
+            }
+            parseConceptualGraphElement( reader );
+            reader.close();
+        } catch ( XMLStreamException ex ) {
+            Global.error( "XML stream exception: " + ex.getMessage() );
+            throw new CGEncodingException();
+        }
+
+        hookUpPendingEdges();
+    }
+
+    /**
+     * Reads a string holding only a "layout" element into an object, like
+     * {@link CGXParser#parseLayoutOnly}. This is primarily used by the CGIF
+     * parser for CG comments; one parser can read all the comments in a file,
+     * sharing their colors and fonts.
+     *
+     * @param layoutXML the layout element
+     * @param go the object it is the layout of
+     * @throws CGEncodingException if the string isn't well-formed XML.
+     */
+    public void parseLayoutOnly( String layoutXML, GraphObject go ) throws CGEncodingException {
+        try {
+            XMLStreamReader reader = getInputFactory().createXMLStreamReader( new StringReader( layoutXML ) );
+            if ( nextStartElement( reader ) && reader.getLocalName().equals( "layout" ) ) {
+                parseLayoutInfo( reader, go );
+            }
+            reader.close();
+        } catch ( XMLStreamException ex ) {
+            throw new CGEncodingException();
+        }
+    }
+
+    /**
+     * The very top of the parse, at the "conceptualgraph" tag. Handles the
+     * attributes of the top level graph and then each of its elements.
+     */
+    private void parseConceptualGraphElement( XMLStreamReader reader ) throws XMLStreamException {
+        String tag = reader.getLocalName();
+        if ( !tag.equals( "conceptualgraph" ) ) {
+            Global.warning( "Outermost XML tag \"" + tag + "\" should be \"conceptualgraph\"." );
+        }
+
+        String s = attribute( reader, "editor" );
+        if ( s.startsWith( "Know" ) ) {
+            CGUtil.showMessageDialog( null,
+                    "<html>This is a Knowledge Capture Pro file!<br/>"
+                    + "Please open with Knowledge Capture Pro<br/>"
+                    + "<a href=\"http://concept.cs.uah.edu/download-selector.jsp\">Click here for more info.</a></html>"
+            );
+            return;
+        }
+
+        if ( !isPreserveGraph() ) {
+            _topLevelGraph.createdTimeStamp = attribute( reader, "created" );
+            _topLevelGraph.modifiedTimeStamp = attribute( reader, "modified" );
+            s = attribute( reader, "wrapLabels" );
+            if ( !s.isEmpty() ) {
+                _topLevelGraph.wrapLabels = Boolean.parseBoolean( s );
+            }
+            s = attribute( reader, "wrapColumns" );
+            if ( !s.isEmpty() ) {
+                _topLevelGraph.wrapColumns = Integer.parseInt( s );
+            }
+        }
+
+        while ( nextChildElement( reader ) ) {
+            // is either a top level graph element or a graph being pasted/duplicated
+            if ( isPreserveGraph() ) {
+                parseGraphMember( reader, _topLevelGraph );
+            } else {
+                parseGraphTagElement( reader, _topLevelGraph );
+            }
+        }
+    }
+
+    /**
+     * Handle the "graph" tag. Assumes that the reader is positioned at a
+     * "graph" start tag and that the graph object itself is either the top
+     * level graph or it's been added to the graph it belongs to. Leaves the
+     * reader at the graph's end tag.
+     *
+     * @param g the graph object, already instantiated (but probably empty).
+     */
+    private void parseGraphTagElement( XMLStreamReader reader, Graph g ) throws XMLStreamException {
+        setID( reader, g );
+        String negated = reader.getAttributeValue( null, "negated" );
+        if ( negated != null ) {
+            g.setNegated( Boolean.parseBoolean( negated ) );
+        }
+
+        while ( nextChildElement( reader ) ) {
+            if ( !parseObjectProperty( reader, g ) ) {
+                parseGraphMember( reader, g );
+            }
+        }
+    }
+
+    /**
+     * Instantiates the object named by the current start tag, adds it to the
+     * given graph and then reads the rest of its element.
+     *
+     * @param g the graph to which the new object belongs
+     */
+    private void parseGraphMember( XMLStreamReader reader, Graph g ) throws XMLStreamException {
+        String tag = reader.getLocalName();
+        GraphObject go = instantiateGraphObject( tag );
+        if ( go == null ) {
+            Global.info( "unknown element in graph is " + tag );
+            skipElement( reader );
+            return;
+        }
+        setID( reader, go );       // make sure we set the id before adding to the graph
+        g.insertObject( go );
+        if ( isMakeList() ) {
+            _parsedObjects.add( go );
+        }
+        if ( go instanceof Graph ) {
+            parseGraphTagElement( reader, (Graph)go );
+            return;
+        }
+
+        if ( go instanceof GEdge ) {
+            go.setTextLabel( attribute( reader, "label" ) );
+            hookUp( (GEdge)go, reader.getAttributeValue( null, "from" ), reader.getAttributeValue( null, "to" ) );
+        }
+
+        while ( nextChildElement( reader ) ) {
+            if ( !parseObjectProperty( reader, go ) ) {
+                skipElement( reader );
+            }
+        }
+        if ( go instanceof GEdge && ( (GEdge)go ).fromObj != null ) {
+            ( (GEdge)go ).placeEdge();
+        }
+    }
+
+    /**
+     * Handles the elements that describe an object rather than belong to it:
+     * "type", "referent", "layout" and "history".
+     *
+     * @return true if the current element was one of these and has been
+     * consumed; false if the reader is still at the element's start tag.
+     */
+    private boolean parseObjectProperty( XMLStreamReader reader, GraphObject go ) throws XMLStreamException {
+        String tag = reader.getLocalName();
+        if ( tag.equals( "layout" ) ) {
+            if ( isIgnoreLayout() ) {
+                skipElement( reader );
+            } else {
+                parseLayoutInfo( reader, go );
+            }
+        } else if ( tag.equals( "type" ) ) {
+            parseTypeInfo( reader, go );
+        } else if ( tag.equals( "referent" ) ) {
+            parseReferentInfo( reader, go );
+        } else if ( tag.equals( "history" ) ) {
+            getDomHelper().parseHistoryInfo( readFragment( reader ), go );
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Handles the "type" tag element for the type label and for both generic
+     * descriptors and wordnet descriptors.
+     *
+     * @see CGXParser#parseTypeInfo
+     */
+    private void parseTypeInfo( XMLStreamReader reader, GraphObject go ) throws XMLStreamException {
+        ArrayList<AbstractTypeDescriptor> descriptors = new ArrayList<>();
+        while ( nextChildElement( reader ) ) {
+            String tag = reader.getLocalName();
+            if ( tag.equals( "label" ) ) {
+                ( (GNode)go ).setTypeLabel( reader.getElementText() );
+            } else if ( tag.equals( GenericTypeDescriptor.getTagName() ) ) {
+                descriptors.add( GenericTypeDescriptor.getInstanceFromXMLDOM( readFragment( reader ) ) );
+            } else if ( tag.equals( WordnetTypeDescriptor.getTagName() ) ) {
+                descriptors.add( WordnetTypeDescriptor.getInstanceFromXMLDOM( readFragment( reader ) ) );
+            } else {
+                skipElement( reader );
+            }
+        }
+        ( (GNode)go ).setTypeDescriptors( descriptors.toArray( new AbstractTypeDescriptor[ descriptors.size() ] ) );
+    }
+
+    /**
+     * Handles the "referent" tag element.
+     *
+     * @see CGXParser#parseReferentInfo
+     */
+    private void parseReferentInfo( XMLStreamReader reader, GraphObject go ) throws XMLStreamException {
+        while ( nextChildElement( reader ) ) {
+            if ( reader.getLocalName().equals( "label" ) ) {
+                ( (Concept)go ).setReferent( reader.getElementText(), false );
+            } else {
+                skipElement( reader );
+            }
+        }
+    }
+
+    /**
+     * Handles the "layout" tag element for the rectangle, color, font and
+     * edge elements.
+     *
+     * @see CGXParser#parseLayoutInfo
+     */
+    private void parseLayoutInfo( XMLStreamReader reader, GraphObject go ) throws XMLStreamException {
+        while ( nextChildElement( reader ) ) {
+            String tag = reader.getLocalName();
+            if ( tag.equals( "rectangle" ) ) {
+                parseRectangleInfo( reader, go );
+            } else if ( tag.equals( "color" ) ) {
+                go.setColor( "text", parseColor( reader.getAttributeValue( null, "foreground" ) ) );
+                go.setColor( "fill", parseColor( reader.getAttributeValue( null, "background" ) ) );
+            } else if ( tag.equals( "font" ) ) {
+                go.setLabelFont( parseFont( reader ) );
+            } else if ( tag.equals( "edge" ) && go instanceof GEdge ) {
+                parseEdgeInfo( reader, (GEdge)go );
+            }
+            skipElement( reader );
+        }
+    }
+
+    private void parseRectangleInfo( XMLStreamReader reader, GraphObject go ) {
+        double x = parseNumber( attribute( reader, "x" ) ) + _offset.x;
+        double y = parseNumber( attribute( reader, "y" ) ) + _offset.y;
+        double width = parseNumber( attribute( reader, "width" ) );
+        double height = parseNumber( attribute( reader, "height" ) );
+        // Since "depth" is a new (03-14-2015) basic attribute, it may not appear in older versions
+        double depth = 1;
+        String d = attribute( reader, "depth" );
+        if ( !d.isEmpty() ) {
+            depth = parseNumber( d );
+        }
+
+        go.setDisplayRect( new Rectangle2D.Double( x, y, width, height ) );
+        go.setDepth( depth );
+    }
+
+    private static double parseNumber( String s ) {
+        return Double.parseDouble( s.replace( ",", "" ) );
+    }
+
+    /**
+     * Colors and fonts are shared among all the objects that use the same
+     * ones, since a graph usually only has a handful of each.
+     */
+    private Color parseColor( String rgb ) {
+        Color c = colorCache.get( rgb );
+        if ( c == null ) {
+            c = CGXParser.parseRGB( rgb );
+            colorCache.put( rgb, c );
+        }
+        return c;
+    }
+
+    private Font parseFont( XMLStreamReader reader ) {
+        String fontname = attribute( reader, "name" );
+        String fontstyle = attribute( reader, "style" );
+        String fontsize = attribute( reader, "size" );
+        String key = fontname + "|" + fontstyle + "|" + fontsize;
+        Font f = fontCache.get( key );
+        if ( f == null ) {
+            f = new Font( fontname, Integer.parseInt( fontstyle ), Integer.parseInt( fontsize ) );
+            fontCache.put( key, f );
+        }
+        return f;
+    }
+
+    private void parseEdgeInfo( XMLStreamReader reader, GEdge ge ) {
+        String s = reader.getAttributeValue( null, "arrowHeadWidth" );
+        ge.setArrowHeadWidth( s == null ? Global.userEdgeAttributes.getArrowHeadWidth() : Integer.parseInt( s ) );
+        s = reader.getAttributeValue( null, "arrowHeadHeight" );
+        ge.setArrowHeadHeight( s == null ? Global.userEdgeAttributes.getArrowHeadHeight() : Integer.parseInt( s ) );
+        s = reader.getAttributeValue( null, "edgeThickness" );
+        ge.setEdgeThickness( s == null ? Global.userEdgeAttributes.getEdgeThickness() : Double.parseDouble( s ) );
+    }
+
+    /**
+     * Attaches an edge to its end nodes if they've already been read;
+     * otherwise remembers it for later.
+     *
+     * @param fromID the "from" id as it appears in the file
+     * @param toID the "to" id as it appears in the file
+     */
+    private void hookUp( GEdge ge, String fromID, String toID ) {
+        if ( toID == null || fromID == null ) {
+            Global.error( "Error in parsing graph edge!" );
+            return;
+        }
+        GraphObject from = fileIDs.get( fromID );
+        GraphObject to = fileIDs.get( toID );
+        if ( from == null || to == null ) {
+            pendingEdges.add( new Object[]{ ge, fromID, toID } );
+            return;
+        }
+        attach( ge, from, to );
+    }
+
+    /**
+     * Attaches the edges that referred to nodes that came later in the file.
+     * As a last resort, looks for the end nodes among the objects that were
+     * already in the top level graph.
+     */
+    private void hookUpPendingEdges() {
+        for ( Object[] pending : pendingEdges ) {
+            GEdge ge = (GEdge)pending[ 0 ];
+            GraphObject from = findParsed( (String)pending[ 1 ] );
+            GraphObject to = findParsed( (String)pending[ 2 ] );
+            if ( from == null || to == null ) {
+                Global.error( "Error in parsing graph edge!" );
+            } else {
+                attach( ge, from, to );
+                ge.placeEdge();
+            }
+        }
+        pendingEdges.clear();
+    }
+
+    private GraphObject findParsed( String fileID ) {
+        GraphObject go = fileIDs.get( fileID );
+        if ( go == null && isKeepIDs() ) {
+            go = _topLevelGraph.findByID( new GraphObjectID( fileID ) );
+        }
+        return go;
+    }
+
+    private void attach( GEdge ge, GraphObject from, GraphObject to ) {
+        ge.fromObj = from;
+        ge.toObj = to;
+        ( (GNode)from ).attachGEdge( ge );
+        ( (GNode)to ).attachGEdge( ge );
+    }
+
+    /**
+     * Set the object's id, either by using its already-generated id or else by
+     * the id attribute in the element, and remember it under the id in the
+     * element.
+     *
+     * @see CGXParser#setID
+     */
+    private void setID( XMLStreamReader reader, GraphObject go ) {
+        String oldID = reader.getAttributeValue( null, "id" );
+        if ( oldID == null ) {
+            return;        // a special case when copying, since the top level element has no info
+        }
+        if ( isKeepIDs() ) {
+            go.objectID = new GraphObjectID( oldID );
+        }
+        fileIDs.put( oldID, go );
+    }
+
+    /**
+     * Classes are looked up once per tag name, rather than once per object.
+     */
+    private static HashMap<String, Class<?>> tagClasses = new HashMap<>();
+
+    /**
+     * Factory to create a graph object from the given tagname.
+     *
+     * @see CGXParser#CharGerXMLTagNameToClassName
+     * @return an instantiated GraphObject of type indicated by the tagname;
+     * null if the name isn't recognized,
+     */
+    static GraphObject instantiateGraphObject( String tagname ) {
+        Class<?> objClass = null;
+        synchronized ( tagClasses ) {
+            if ( CGXParser.CharGerXMLTagNameToClassName.isEmpty() ) {
+                CGXParser.loadCharGerKeyWordToClassTable();
+            }
+            if ( tagClasses.containsKey( tagname ) ) {
+                objClass = tagClasses.get( tagname );
+            } else {
+                String t = CGXParser.CharGerXMLTagNameToClassName.getProperty( tagname, "DUMMY" );
+                if ( !t.equals( "DUMMY" ) ) {
+                    try {
+                        objClass = Class.forName( "charger.obj." + t );
+                    } catch ( ClassNotFoundException ex ) {
+                        Global.error( "Parsing an illegal object tag " + tagname );
+                    }
+                }
+                tagClasses.put( tagname, objClass );
+            }
+        }
+        if ( objClass == null ) {
+            return null;
+        }
+        try {
+            return (GraphObject)objClass.getDeclaredConstructor().newInstance();
+        } catch ( ReflectiveOperationException ex ) {
+            Global.error( "Parsing an illegal object tag " + tagname );
+            return null;
+        }
+    }
+
+    private CGXParser getDomHelper() {
+        if ( domHelper == null ) {
+            domHelper = new CGXParser();
+        }
+        return domHelper;
+    }
+
+    /**
+     * Builds a stand-alone DOM element for the element at the reader's
+     * current start tag, for those routines that still expect one. Leaves the
+     * reader at the element's end tag.
+     */
+    private Element readFragment( XMLStreamReader reader ) throws XMLStreamException {
+        if ( fragmentDoc == null ) {
+            try {
+                fragmentDoc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            } catch ( ParserConfigurationException ex ) {
+                throw new XMLStreamException( ex );
+            }
+        }
+        Element elem = fragmentDoc.createElement( reader.getLocalName() );
+        for ( int k = 0; k < reader.getAttributeCount(); k++ ) {
+            elem.setAttribute( reader.getAttributeLocalName( k ), reader.getAttributeValue( k ) );
+        }
+        while ( reader.hasNext() ) {
+            int event = reader.next();
+            if ( event == XMLStreamConstants.START_ELEMENT ) {
+                elem.appendChild( readFragment( reader ) );
+            } else if ( event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE ) {
+                elem.appendChild( fragmentDoc.createTextNode( reader.getText() ) );
+            } else if ( event == XMLStreamConstants.END_ELEMENT ) {
+                break;
+            }
+        }
+        return elem;
+    }
+
+    /**
+     * The value of the attribute, or the empty string if it's not there (as
+     * with the DOM's getAttribute).
+     */
+    private static String attribute( XMLStreamReader reader, String name ) {
+        String s = reader.getAttributeValue( null, name );
+        return s == null ? "" : s;
+    }
+
+    /**
+     * Advance to the first start tag in the document.
+     *
+     * @return false if there isn't one.
+     */
+    private static boolean nextStartElement( XMLStreamReader reader ) throws XMLStreamException {
+        while ( reader.hasNext() ) {
+            if ( reader.next() == XMLStreamConstants.START_ELEMENT ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Advance to the start tag of the next child of the current element.
+     *
+     * @return true if positioned at a child's start tag; false if positioned at
+     * the current element's end tag instead.
+     */
+    private static boolean nextChildElement( XMLStreamReader reader ) throws XMLStreamException {
+        while ( reader.hasNext() ) {
+            int event = reader.next();
+            if ( event == XMLStreamConstants.START_ELEMENT ) {
+                return true;
+            } else if ( event == XMLStreamConstants.END_ELEMENT ) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skip over the element whose start tag is current (or whose children are
+     * being read), leaving the reader at its end tag.
+     */
+    private static void skipElement( XMLStreamReader reader ) throws XMLStreamException {
+        int depth = 1;
+        while ( depth > 0 && reader.hasNext() ) {
+            int event = reader.next();
+            if ( event == XMLStreamConstants.START_ELEMENT ) {
+                depth++;
+            } else if ( event == XMLStreamConstants.END_ELEMENT ) {
+                depth--;
+            }
+        }
+    }
+}
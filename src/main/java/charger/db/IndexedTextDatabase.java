@@ -0,0 +1,238 @@
+package charger.db;
+
+import charger.Global;
+import charger.exception.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/*
+ CharGer - Conceptual Graph Editor
+ Copyright 1998-2020 by Harry S. Delugach
+
+ This package is free software; you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as
+ published by the Free Software Foundation; either version 2.1 of the
+ License, or (at your option) any later version. This package is
+ distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details. You should have received a copy of the GNU Lesser General Public
+ License along with this package; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+/**
+ * A tab-delimited text database that is read into memory once, rather than
+ * re-read from the file for every lookup. The file format is the same as for
+ * TextDatabase.
+ * <p>
+ * The first time a column is used as a lookup key, an index is built from each
+ * of its values to the records that have it, so that later lookups with that
+ * key column take constant time. If the file is changed (i.e., its
+ * modification time or length changes), it is read again and the indexes are
+ * discarded.
+ * <p>
+ * Records are served from memory by getFields() too, so browsing with
+ * resetDB() and getFields() (e.g., in the DatabaseFrame) works as before.
+ *
+ * @see TextDatabase
+ * @since Charger 4.3
+ */
+public class IndexedTextDatabase extends TextDatabase {
+
+    /**
+     * The records of one key column, by key value.
+     */
+    private static class ColumnIndex {
+
+        /** the first record with each key value */
+        HashMap<String, Integer> first = new HashMap<>();
+        /** for each record, the next one with the same key value; -1 if none */
+        int[] next;
+    }
+
+    // Note: none of these can have initializers, since open() is called from the superclass constructor.
+    /** every line of the file after the header, split into fields; null if not loaded */
+    private ArrayList<String[]> records;
+    /** the index for each key column that has been looked up so far */
+    private HashMap<Integer, ColumnIndex> indexes;
+    /** modification time and length of the file when it was loaded */
+    private long loadedModified, loadedLength;
+    /** the next record to be returned by getFields */
+    private int cursor;
+
+    public IndexedTextDatabase( String fname ) throws CGFileException {
+        super( fname );
+    }
+
+    /**
+     * Reads the whole database file into memory. Called when the database is
+     * created; afterward, the file is read again only if it changes.
+     *
+     * @param fname path-qualified name of file to be opened.
+     */
+    @Override
+    public synchronized boolean open( String fname ) throws CGFileException {
+        load( fname );
+        currentfilename = fname;
+        openAndReady = true;
+        return true;
+    }
+
+    /**
+     * Rewinds the database so that the first line of data is the next one
+     * returned by getFields. Re-reads the file only if it has changed since it
+     * was last read.
+     */
+    @Override
+    public synchronized void resetDB() {
+        reloadIfChanged();
+        cursor = 0;
+        openAndReady = true;
+    }
+
+    /**
+     * Releases the records and indexes; they are read again if the database is
+     * used afterward.
+     */
+    @Override
+    public synchronized void closeDB() {
+        records = null;
+        indexes = null;
+    }
+
+    /**
+     * @return true if the database's records are currently in memory.
+     */
+    @Override
+    public boolean isOpened() {
+        return records != null;
+    }
+
+    /**
+     * @return the next record of the database, from wherever we last read a
+     * record; null if there are no more.
+     */
+    @Override
+    public synchronized String[] getFields() throws CGFileException {
+        if ( records == null ) {
+            open( currentfilename );
+            cursor = 0;
+        }
+        openAndReady = false;
+        if ( cursor >= records.size() ) {
+            return null;
+        }
+        return records.get( cursor++ ).clone();
+    }
+
+    /**
+     * Looks up the value using the key column's index, building the index if
+     * this is the first lookup with that key column.
+     *
+     * @param keytype The field name used as a key; e.g., "Employee"
+     * @param keyvalue The key's value; e.g., "John Smith"
+     * @param targettype The field name (column) whose value is being sought;
+     * e.g., "Phone Number"
+     * @return targetvalue column's value from the first record that has the
+     * keyvalue and is long enough to have a target column; null if there is
+     * no such record.
+     */
+    @Override
+    public synchronized String doLookup( String keytype, String keyvalue, String targettype ) {
+        reloadIfChanged();
+        if ( records == null || DBValidNames == null ) {
+            return null;
+        }
+        int keyColumnNumber = getFieldPosition( keytype );
+        if ( keyColumnNumber < 0 ) {
+            return null;
+        }
+        int targetColumnNumber = getFieldPosition( targettype );
+        if ( targetColumnNumber < 0 ) {
+            return null;
+        }
+        ColumnIndex index = indexFor( keyColumnNumber );
+        Integer first = index.first.get( keyvalue );
+        for ( int r = first == null ? -1 : first; r >= 0; r = index.next[ r ] ) {
+            String[] record = records.get( r );
+            if ( record.length > targetColumnNumber ) {
+                return record[ targetColumnNumber ];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the index of the key column, building it if necessary.
+     */
+    private ColumnIndex indexFor( int keyColumnNumber ) {
+        ColumnIndex index = indexes.get( keyColumnNumber );
+        if ( index == null ) {
+            index = new ColumnIndex();
+            index.next = new int[ records.size() ];
+            // from the end, so that each value's records are chained in file order
+            for ( int r = records.size() - 1; r >= 0; r-- ) {
+                String[] record = records.get( r );
+                if ( record.length > keyColumnNumber ) {
+                    Integer later = index.first.put( record[ keyColumnNumber ], r );
+                    index.next[ r ] = later == null ? -1 : later;
+                } else {
+                    index.next[ r ] = -1;
+                }
+            }
+            indexes.put( keyColumnNumber, index );
+        }
+        return index;
+    }
+
+    /**
+     * Reads the file again if it is not in memory or has been modified since
+     * it was read. If it can't be read, keeps whatever was in memory.
+     */
+    private void reloadIfChanged() {
+        File file = new File( currentfilename );
+        if ( records != null && file.lastModified() == loadedModified && file.length() == loadedLength ) {
+            return;
+        }
+        try {
+            load( currentfilename );
+        } catch ( CGFileException e ) {
+            Global.info( "reset failed." );
+        }
+    }
+
+    /**
+     * Reads the header and all the records from the file, discarding any
+     * indexes.
+     */
+    private void load( String fname ) throws CGFileException {
+        File file = new File( fname );
+        long modified = file.lastModified();
+        long length = file.length();
+        String[] header = null;
+        ArrayList<String[]> lines = new ArrayList<>();
+        try ( BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ) ) ) ) {
+            String theLine = reader.readLine();
+            if ( theLine != null ) {
+                header = splitFields( theLine );
+                while ( ( theLine = reader.readLine() ) != null ) {
+                    lines.add( splitFields( theLine ) );
+                }
+            }
+        } catch ( IOException e ) {
+            throw new CGFileException( "Could not open " + fname );
+        }
+        DBValidNames = header;
+        records = lines;
+        indexes = new HashMap<>();
+        loadedModified = modified;
+        loadedLength = length;
+        cursor = Math.min( cursor, records.size() );
+    }
+}
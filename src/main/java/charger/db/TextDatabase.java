@@ -41,6 +41,7 @@ import java.util.StringTokenizer;
  * session, no matter how many graphs refer to it, or how many concepts in a
  * single graph refer to it.
  *
+ * @see IndexedTextDatabase
  * @author Harry S. Delugach ( delugach@uah.edu ) Copyright 1998-2020
  * by Harry S. Delugach
  */
@@ -225,15 +226,7 @@ public class TextDatabase implements CGDatabase {
             if ( theLine == null ) {
                 return null;	// we're at end of file
             }
-            String field = null;
-            StringTokenizer toks = new StringTokenizer( theLine, "\u0009" );
-            nameholder = new String[ toks.countTokens() ];
-            int FieldNum = 0;
-            while ( toks.hasMoreTokens() ) {
-                field = toks.nextToken();
-                // Global.info( "field is " + field) ;			
-                nameholder[FieldNum++] = field;
-            }
+            nameholder = splitFields( theLine );
             if ( openAndReady ) {
                 openAndReady = false;
             }
@@ -243,6 +236,23 @@ public class TextDatabase implements CGDatabase {
         return nameholder;
     }
 
+    /**
+     * Splits one line of the database file into its tab-separated fields.
+     * Consecutive tabs are treated as one separator.
+     *
+     * @param theLine a line from the file, without its line terminator
+     * @return the fields, in order
+     */
+    static String[] splitFields( String theLine ) {
+        StringTokenizer toks = new StringTokenizer( theLine, "\u0009" );
+        String[] nameholder = new String[ toks.countTokens() ];
+        int FieldNum = 0;
+        while ( toks.hasMoreTokens() ) {
+            nameholder[FieldNum++] = toks.nextToken();
+        }
+        return nameholder;
+    }
+
 	// find the field name that matches the key concept's referent
     // if there is no such field name, then abort
     // otherwise note the position on the header line (1st, 2nd, etc.)
@@ -0,0 +1,560 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package charger.layout;
+
+import charger.Global;
+import charger.obj.GEdge;
+import charger.obj.GNode;
+import charger.obj.Graph;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * The spring layout, with its forces computed so that it scales to large
+ * graphs. The forces, parameters and handling of contexts and unconnected
+ * components are exactly those of SpringGraphLayout; only the way the forces are
+ * added up is different. <p> While the layout is being performed, the
+ * positions, forces and displacements are kept in arrays indexed by each node's
+ * position in the nodes list, rather than in hash maps of points, so that a
+ * relaxation allocates (almost) nothing. The results are copied back into the
+ * node positions at the end, so that copyToGraph works as before. </p><p> The
+ * coulomb (repulsion) forces are found with a quadtree over the node positions
+ * (the Barnes-Hut method). A region of the tree that is far enough away from a
+ * node is treated as a single point charge at its center of mass, rather than
+ * node by node. A region so far away that none of its nodes could exert a force
+ * of more than EPSILON is skipped altogether, since SpringGraphLayout ignores
+ * such small forces anyway. Nearby nodes are still compared pair by pair, using
+ * the same clipped distances as SpringGraphLayout. </p><p> For graphs with at
+ * least parallelThreshold nodes, the coulomb forces on different nodes are found
+ * in parallel; the quadtree is only read while that happens. </p>
+ *
+ * @see SpringGraphLayout
+ * @since Charger 4.3
+ */
+public class BarnesHutGraphLayout extends SpringGraphLayout {
+
+    /** How close a region must be (its width divided by its distance) before its nodes
+     * are considered one by one. Smaller is more accurate but slower; zero compares every pair
+     * that could possibly exert a force. */
+    public static double theta = 0.5;
+    /** Whether to find the coulomb forces on different nodes in parallel. */
+    public static boolean parallelForces = true;
+    /** The fewest nodes for which parallel force computation is worth the overhead. */
+    public static int parallelThreshold = 500;
+    /** How deep the quadtree may go; nodes at (nearly) the same position share a region at this depth. */
+    private static final int MAX_DEPTH = 48;
+
+    // Per node, indexed by its position in the nodes list
+    private double[] posX, posY;
+    private double[] forceX, forceY;
+    private double[] massOf;
+    /** half the width and height of the node's display rectangle, for finding overlaps */
+    private double[] halfWidth, halfHeight;
+    /** half the width and height of the rectangle used for clipping edges */
+    private double[] clipHalfWidth, clipHalfHeight;
+    /** the distance from the center to a corner of the clipping rectangle */
+    private double[] clipRadius;
+    /** the next node in the same quadtree region, or -1 */
+    private int[] nextInRegion;
+
+    // Per edge, the indexes of its end points; -1 if an end isn't laid out at this level
+    private int[] edgeFrom, edgeTo;
+
+    // The quadtree, one entry per region; region 0 is the root
+    private int regionCount;
+    private double[] regionCenterX, regionCenterY, regionHalfSize;
+    private double[] regionMass, regionMomentX, regionMomentY;
+    private double[] regionMaxMass, regionMaxRadius, regionInnerRadiusSum;
+    /** first node in the region if it is a leaf; -1 for an empty leaf or one that has been divided */
+    private int[] regionFirstNode;
+    /** the four sub-regions of each region (-1 if none yet), by quadrant */
+    private int[] regionChildren;
+    private boolean[] regionIsLeaf;
+
+    public BarnesHutGraphLayout( Graph g ) {
+        super( g );
+    }
+
+    @Override
+    protected SpringGraphLayout makeContextLayout( Graph g ) {
+        return new BarnesHutGraphLayout( g );
+    }
+
+    /**
+     * Performs the layout as SpringGraphLayout does, but working on the arrays.
+     * The resulting positions are left in the node positions list.
+     */
+    @Override
+    public boolean performLayout() {
+        loadArrays();
+        try {
+            return super.performLayout();
+        } finally {
+            storePositions();
+        }
+    }
+
+    /**
+     * One iteration of the algorithm, starting with zero forces all around.
+     * If the layout isn't being performed, works the same as SpringGraphLayout.
+     * @return total energy for the collection of nodes for this iteration
+     */
+    @Override
+    public double performOneRelaxation() {
+        if ( posX == null ) {
+            return super.performOneRelaxation();
+        }
+        Arrays.fill( forceX, 0.0 );
+        Arrays.fill( forceY, 0.0 );
+        addNewCoulombForces();
+        addNewSpringForces();
+        return makeNewPositions( applyUpLeftPressure );
+    }
+
+    /**
+     * Finds the coulomb forces on every node, using a quadtree built from the
+     * current positions.
+     */
+    @Override
+    public void addNewCoulombForces() {
+        if ( posX == null ) {
+            super.addNewCoulombForces();
+            return;
+        }
+        int numNodes = posX.length;
+        if ( numNodes < 2 ) {
+            return;
+        }
+        buildQuadtree();
+        if ( parallelForces && numNodes >= parallelThreshold ) {
+            int chunkSize = 64;
+            IntStream.range( 0, ( numNodes + chunkSize - 1 ) / chunkSize ).parallel().forEach( chunk -> {
+                int[] stack = new int[ 3 * MAX_DEPTH + 4 ];
+                int end = Math.min( numNodes, ( chunk + 1 ) * chunkSize );
+                for ( int n = chunk * chunkSize; n < end; n++ ) {
+                    addCoulombForce( n, stack );
+                }
+            } );
+        } else {
+            int[] stack = new int[ 3 * MAX_DEPTH + 4 ];
+            for ( int n = 0; n < numNodes; n++ ) {
+                addCoulombForce( n, stack );
+            }
+        }
+    }
+
+    /**
+     * Finds the spring forces along every edge, in the same way as
+     * SpringGraphLayout but without creating any points.
+     */
+    @Override
+    public void addNewSpringForces() {
+        if ( posX == null ) {
+            super.addNewSpringForces();
+            return;
+        }
+        for ( int e = 0; e < edgeFrom.length; e++ ) {
+            int from = edgeFrom[ e ];
+            int to = edgeTo[ e ];
+            if ( from < 0 || to < 0 ) {
+                continue;       // this will occur when there's a context
+            }
+            double displacement = clippedLength( from, to ) - equilibriumEdgeLength;
+            double force = ATTRACTION_FORCE_SIGN * SPRING_CONSTANT
+                    * Math.signum( displacement ) * Math.pow( Math.abs( displacement ), 0.75 );
+            double dx = posX[ to ] - posX[ from ];
+            double dy = posY[ to ] - posY[ from ];
+            double distance = Math.sqrt( dx * dx + dy * dy );
+            double fx = xForce( force, dx, distance );
+            double fy = yForce( force, dx, dy, distance );
+            if ( fx != 0 || fy != 0 ) {
+                forceX[ from ] += fx * massOf[ from ];
+                forceY[ from ] += fy * massOf[ from ];
+                forceX[ to ] += xForce( force, -dx, distance ) * massOf[ to ];
+                forceY[ to ] += yForce( force, -dx, -dy, distance ) * massOf[ to ];
+            }
+        }
+    }
+
+    /**
+     * From the forces, calculates a displacement and new position for each node.
+     * @param upLeftPressure if true, then an additional "pressure" is applied to
+     * force nodes upward and to the left.
+     * @return total energy of the displacements times the masses added up.
+     */
+    @Override
+    public double makeNewPositions( boolean upLeftPressure ) {
+        if ( posX == null ) {
+            return super.makeNewPositions( upLeftPressure );
+        }
+        double totalEnergy = 0;
+        for ( int n = 0; n < posX.length; n++ ) {
+            double leftPressureValue = upLeftPressure ? -1 * forceX[ n ] * pressureScale : 0.0;
+            double upPressureValue = upLeftPressure ? -1 * forceY[ n ] * pressureScale : 0.0;
+            double displacementX = forceX[ n ] * DAMPING_FOR_DISPLACEMENTS / massOf[ n ] + leftPressureValue;
+            double displacementY = forceY[ n ] * DAMPING_FOR_DISPLACEMENTS / massOf[ n ] + upPressureValue;
+            posX[ n ] += displacementX;
+            posY[ n ] += displacementY;
+            totalEnergy += Math.sqrt( Math.pow( displacementX * massOf[ n ], 2 )
+                    + Math.pow( displacementY * massOf[ n ], 2 ) );
+        }
+        return totalEnergy;
+    }
+
+    /**
+     * Moves the positions so that the laid out nodes' display rectangles start
+     * at the upper left of the available bounds, as SpringGraphLayout does.
+     * @param force Whether to force the graph into the upper left corner
+     * whether it already fits or not.
+     */
+    @Override
+    public void moveToUpperLeft( boolean force ) {
+        if ( posX == null ) {
+            super.moveToUpperLeft( force );
+            return;
+        }
+        if ( posX.length == 0 ) {
+            return;
+        }
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for ( int n = 0; n < posX.length; n++ ) {
+            minX = Math.min( minX, posX[ n ] - halfWidth[ n ] );
+            minY = Math.min( minY, posY[ n ] - halfHeight[ n ] );
+            maxX = Math.max( maxX, posX[ n ] + halfWidth[ n ] );
+            maxY = Math.max( maxY, posY[ n ] + halfHeight[ n ] );
+        }
+        if ( !force && getMaxBoundsAvailable().contains( minX, minY, maxX - minX, maxY - minY ) ) {
+            return;
+        }
+        double textheight = 0.0;
+        if ( graph.getOwnerGraph() != null ) {
+            textheight = graph.getTextLabelSize().getHeight();
+        }
+        double diffx = getMaxBoundsAvailable().x + borderMargin - minX;
+        double diffy = getMaxBoundsAvailable().y + borderMargin + textheight - minY;
+        for ( int n = 0; n < posX.length; n++ ) {
+            posX[ n ] += diffx;
+            posY[ n ] += diffy;
+        }
+    }
+
+    /**
+     * Sets up the per-node and per-edge arrays from the nodes, edges and
+     * node positions lists.
+     */
+    private void loadArrays() {
+        int numNodes = nodes.size();
+        posX = new double[ numNodes ];
+        posY = new double[ numNodes ];
+        forceX = new double[ numNodes ];
+        forceY = new double[ numNodes ];
+        massOf = new double[ numNodes ];
+        halfWidth = new double[ numNodes ];
+        halfHeight = new double[ numNodes ];
+        clipHalfWidth = new double[ numNodes ];
+        clipHalfHeight = new double[ numNodes ];
+        clipRadius = new double[ numNodes ];
+        nextInRegion = new int[ numNodes ];
+        // the clipping rectangle is grown just as GEdge.findClippingPointRectangle does
+        double clipGrowth = 1.0 + ( Global.showBorders ? GNode.borderOutlineWidth : 0 );
+        IdentityHashMap<GNode, Integer> indexes = new IdentityHashMap<>();
+        for ( int n = 0; n < numNodes; n++ ) {
+            GNode node = nodes.get( n );
+            indexes.put( node, n );
+            Point2D.Double pos = nodePositions.get( node );
+            posX[ n ] = pos.x;
+            posY[ n ] = pos.y;
+            massOf[ n ] = mass( node );
+            halfWidth[ n ] = node.getDisplayRect().getWidth() / 2;
+            halfHeight[ n ] = node.getDisplayRect().getHeight() / 2;
+            clipHalfWidth[ n ] = halfWidth[ n ] + clipGrowth;
+            clipHalfHeight[ n ] = halfHeight[ n ] + clipGrowth;
+            clipRadius[ n ] = Math.sqrt( clipHalfWidth[ n ] * clipHalfWidth[ n ] + clipHalfHeight[ n ] * clipHalfHeight[ n ] );
+        }
+        edgeFrom = new int[ edges.size() ];
+        edgeTo = new int[ edges.size() ];
+        for ( int e = 0; e < edges.size(); e++ ) {
+            GEdge edge = edges.get( e );
+            Integer from = indexes.get( edge.fromObj );
+            Integer to = indexes.get( edge.toObj );
+            edgeFrom[ e ] = from == null ? -1 : from;
+            edgeTo[ e ] = to == null ? -1 : to;
+        }
+    }
+
+    /**
+     * Copies the positions back into the node positions list and releases the arrays.
+     */
+    private void storePositions() {
+        for ( int n = 0; n < posX.length; n++ ) {
+            nodePositions.put( nodes.get( n ), new Point2D.Double( posX[ n ], posY[ n ] ) );
+        }
+        posX = null;
+        posY = null;
+        forceX = null;
+        forceY = null;
+        regionCount = 0;
+        regionCenterX = null;
+    }
+
+    /**
+     * Adds to a node's force the repulsion from all the other nodes, walking the
+     * quadtree from its root.
+     * @param n the node
+     * @param stack space for the regions still to be visited
+     */
+    private void addCoulombForce( int n, int[] stack ) {
+        double x = posX[ n ];
+        double y = posY[ n ];
+        double sumX = 0.0;
+        double sumY = 0.0;
+        int top = 0;
+        stack[ top++ ] = 0;
+        while ( top > 0 ) {
+            int r = stack[ --top ];
+            // the closest any node in the region could be, as a clipped length
+            double outsideX = Math.max( 0.0, Math.abs( x - regionCenterX[ r ] ) - regionHalfSize[ r ] );
+            double outsideY = Math.max( 0.0, Math.abs( y - regionCenterY[ r ] ) - regionHalfSize[ r ] );
+            double outside = Math.sqrt( outsideX * outsideX + outsideY * outsideY );
+            double closest = outside - clipRadius[ n ] - regionMaxRadius[ r ];
+            if ( closest > MIN_DISTANCE && massOf[ n ] * regionMaxMass[ r ] * COULOMB_CONSTANT
+                    / Math.pow( Math.min( closest, MAX_DISTANCE ), COULOMB_EXPONENT ) < EPSILON ) {
+                continue;       // every force from this region would be too small to count
+            }
+            if ( regionIsLeaf[ r ] ) {
+                for ( int other = regionFirstNode[ r ]; other >= 0; other = nextInRegion[ other ] ) {
+                    if ( other != n ) {
+                        double distance = Math.max( clippedLength( n, other ), MIN_DISTANCE );
+                        double force = REPULSION_FORCE_SIGN * massOf[ n ] * massOf[ other ]
+                                * COULOMB_CONSTANT / Math.pow( distance, COULOMB_EXPONENT );
+                        double dx = posX[ other ] - x;
+                        double dy = posY[ other ] - y;
+                        double centers = Math.sqrt( dx * dx + dy * dy );
+                        sumX += xForce( force, dx, centers );
+                        sumY += yForce( force, dx, dy, centers );
+                    }
+                }
+                continue;
+            }
+            double dx = regionMomentX[ r ] / regionMass[ r ] - x;
+            double dy = regionMomentY[ r ] / regionMass[ r ] - y;
+            double centers = Math.sqrt( dx * dx + dy * dy );
+            if ( outside > 0 && 2 * regionHalfSize[ r ] < theta * centers ) {
+                // far enough away to be a single charge at the region's center of mass
+                double distance = centers - clipExtent( n, dx, dy, centers )
+                        - regionInnerRadiusSum[ r ] / regionMass[ r ];
+                distance = Math.max( Math.min( distance, MAX_DISTANCE ), MIN_DISTANCE );
+                double force = REPULSION_FORCE_SIGN * massOf[ n ] * regionMass[ r ]
+                        * COULOMB_CONSTANT / Math.pow( distance, COULOMB_EXPONENT );
+                sumX += xForce( force, dx, centers );
+                sumY += yForce( force, dx, dy, centers );
+                continue;
+            }
+            for ( int q = 0; q < 4; q++ ) {
+                int child = regionChildren[ 4 * r + q ];
+                if ( child >= 0 ) {
+                    stack[ top++ ] = child;
+                }
+            }
+        }
+        forceX[ n ] += sumX * massOf[ n ];
+        forceY[ n ] += sumY * massOf[ n ];
+    }
+
+    /**
+     * The distance between where a center-to-center line leaves each node's
+     * clipping rectangle; the same as SpringGraphLayout's getClippedLength.
+     * @return MIN_DISTANCE if the display rectangles overlap; otherwise the
+     * clipped length, but no more than MAX_DISTANCE.
+     */
+    private double clippedLength( int a, int b ) {
+        double dx = posX[ b ] - posX[ a ];
+        double dy = posY[ b ] - posY[ a ];
+        if ( Math.abs( dx ) < halfWidth[ a ] + halfWidth[ b ] && Math.abs( dy ) < halfHeight[ a ] + halfHeight[ b ] ) {
+            return MIN_DISTANCE;        // they overlap
+        }
+        double centers = Math.sqrt( dx * dx + dy * dy );
+        double distance = Math.abs( centers - clipExtent( a, dx, dy, centers ) - clipExtent( b, dx, dy, centers ) );
+        if ( Double.isNaN( distance ) || Double.isInfinite( distance ) || distance > MAX_DISTANCE ) {
+            distance = MAX_DISTANCE;
+        }
+        return distance;
+    }
+
+    /**
+     * How far a line from the node's center, in the given direction, goes
+     * before it leaves the node's clipping rectangle.
+     */
+    private double clipExtent( int n, double dx, double dy, double length ) {
+        if ( Math.abs( dx ) * clipHalfHeight[ n ] > Math.abs( dy ) * clipHalfWidth[ n ] ) {
+            return clipHalfWidth[ n ] * length / Math.abs( dx );      // leaves through a side
+        } else {
+            return clipHalfHeight[ n ] * length / Math.abs( dy );     // leaves through the top or bottom
+        }
+    }
+
+    /**
+     * The x component of a force from one point toward another, as found by
+     * SpringGraphLayout.getXYForce.
+     * @param dx the x difference from the source to the destination
+     * @param length the distance between them
+     */
+    private static double xForce( double force, double dx, double length ) {
+        if ( Math.abs( dx ) < EPSILON ) {
+            return 0;
+        }
+        double xForce = force * dx / length;
+        return Math.abs( xForce ) < EPSILON ? 0 : xForce;
+    }
+
+    /**
+     * The y component of a force from one point toward another, as found by
+     * SpringGraphLayout.getXYForce.
+     * @param dx the x difference from the source to the destination
+     * @param dy the y difference from the source to the destination
+     * @param length the distance between them
+     */
+    private static double yForce( double force, double dx, double dy, double length ) {
+        double yForce;
+        if ( Math.abs( dx ) < EPSILON ) {
+            yForce = dy < 0 ? -force : force;
+        } else {
+            yForce = force * dy / length;
+        }
+        return Math.abs( yForce ) < EPSILON ? 0 : yForce;
+    }
+
+    /**
+     * Builds the quadtree from the current positions. The arrays are kept from
+     * one relaxation to the next.
+     */
+    private void buildQuadtree() {
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for ( int n = 0; n < posX.length; n++ ) {
+            minX = Math.min( minX, posX[ n ] );
+            minY = Math.min( minY, posY[ n ] );
+            maxX = Math.max( maxX, posX[ n ] );
+            maxY = Math.max( maxY, posY[ n ] );
+        }
+        if ( regionCenterX == null ) {
+            allocateRegions( 2 * posX.length + 16 );
+        }
+        regionCount = 0;
+        newRegion( ( minX + maxX ) / 2, ( minY + maxY ) / 2, Math.max( maxX - minX, maxY - minY ) / 2 + 1 );
+        for ( int n = 0; n < posX.length; n++ ) {
+            insertNode( n );
+        }
+    }
+
+    /**
+     * Adds a node to the quadtree, dividing the leaf it lands in if that is
+     * already occupied.
+     */
+    private void insertNode( int n ) {
+        int r = 0;
+        int depth = 0;
+        while ( true ) {
+            addToRegion( r, n );
+            if ( regionIsLeaf[ r ] ) {
+                if ( regionFirstNode[ r ] < 0 || depth >= MAX_DEPTH ) {
+                    nextInRegion[ n ] = regionFirstNode[ r ];
+                    regionFirstNode[ r ] = n;
+                    return;
+                }
+                // divide: the node already here (there's only one above MAX_DEPTH) moves down a level
+                int occupant = regionFirstNode[ r ];
+                regionFirstNode[ r ] = -1;
+                regionIsLeaf[ r ] = false;
+                int child = childFor( r, occupant );
+                addToRegion( child, occupant );
+                nextInRegion[ occupant ] = -1;
+                regionFirstNode[ child ] = occupant;
+            }
+            r = childFor( r, n );
+            depth++;
+        }
+    }
+
+    private void addToRegion( int r, int n ) {
+        regionMass[ r ] += massOf[ n ];
+        regionMomentX[ r ] += massOf[ n ] * posX[ n ];
+        regionMomentY[ r ] += massOf[ n ] * posY[ n ];
+        regionMaxMass[ r ] = Math.max( regionMaxMass[ r ], massOf[ n ] );
+        regionMaxRadius[ r ] = Math.max( regionMaxRadius[ r ], clipRadius[ n ] );
+        regionInnerRadiusSum[ r ] += massOf[ n ] * Math.min( clipHalfWidth[ n ], clipHalfHeight[ n ] );
+    }
+
+    /**
+     * @return the sub-region of r in which the node lies, creating it if necessary.
+     */
+    private int childFor( int r, int n ) {
+        int q = ( posX[ n ] < regionCenterX[ r ] ? 0 : 1 ) + ( posY[ n ] < regionCenterY[ r ] ? 0 : 2 );
+        int child = regionChildren[ 4 * r + q ];
+        if ( child < 0 ) {
+            double half = regionHalfSize[ r ] / 2;
+            child = newRegion( regionCenterX[ r ] + ( ( q & 1 ) == 0 ? -half : half ),
+                    regionCenterY[ r ] + ( ( q & 2 ) == 0 ? -half : half ), half );
+            regionChildren[ 4 * r + q ] = child;
+        }
+        return child;
+    }
+
+    private int newRegion( double centerX, double centerY, double halfSize ) {
+        if ( regionCount == regionCenterX.length ) {
+            allocateRegions( 2 * regionCount );
+        }
+        int r = regionCount++;
+        regionCenterX[ r ] = centerX;
+        regionCenterY[ r ] = centerY;
+        regionHalfSize[ r ] = halfSize;
+        regionMass[ r ] = 0;
+        regionMomentX[ r ] = 0;
+        regionMomentY[ r ] = 0;
+        regionMaxMass[ r ] = 0;
+        regionMaxRadius[ r ] = 0;
+        regionInnerRadiusSum[ r ] = 0;
+        regionFirstNode[ r ] = -1;
+        regionIsLeaf[ r ] = true;
+        Arrays.fill( regionChildren, 4 * r, 4 * r + 4, -1 );
+        return r;
+    }
+
+    /**
+     * Makes room for the given number of regions, keeping the ones already there.
+     */
+    private void allocateRegions( int capacity ) {
+        if ( regionCenterX == null ) {
+            regionCenterX = new double[ 0 ];
+            regionCenterY = new double[ 0 ];
+            regionHalfSize = new double[ 0 ];
+            regionMass = new double[ 0 ];
+            regionMomentX = new double[ 0 ];
+            regionMomentY = new double[ 0 ];
+            regionMaxMass = new double[ 0 ];
+            regionMaxRadius = new double[ 0 ];
+            regionInnerRadiusSum = new double[ 0 ];
+            regionFirstNode = new int[ 0 ];
+            regionChildren = new int[ 0 ];
+            regionIsLeaf = new boolean[ 0 ];
+        }
+        regionCenterX = Arrays.copyOf( regionCenterX, capacity );
+        regionCenterY = Arrays.copyOf( regionCenterY, capacity );
+        regionHalfSize = Arrays.copyOf( regionHalfSize, capacity );
+        regionMass = Arrays.copyOf( regionMass, capacity );
+        regionMomentX = Arrays.copyOf( regionMomentX, capacity );
+        regionMomentY = Arrays.copyOf( regionMomentY, capacity );
+        regionMaxMass = Arrays.copyOf( regionMaxMass, capacity );
+        regionMaxRadius = Arrays.copyOf( regionMaxRadius, capacity );
+        regionInnerRadiusSum = Arrays.copyOf( regionInnerRadiusSum, capacity );
+        regionFirstNode = Arrays.copyOf( regionFirstNode, capacity );
+        regionChildren = Arrays.copyOf( regionChildren, 4 * capacity );
+        regionIsLeaf = Arrays.copyOf( regionIsLeaf, capacity );
+    }
+}
@@ -67,9 +67,9 @@ import java.util.Iterator;
 public class SpringGraphLayout extends GraphLayout {
 
         /** The "best" edge length. For the spring forces, this is the distance at which the force is zero. */
-    private double equilibriumEdgeLength = 40;     // the "best" edge length
+    protected double equilibriumEdgeLength = 40;     // the "best" edge length
         /** How much extra space to provide on the top and left of the final laid out graph. */
-    private double borderMargin = this.getEquilibriumEdgeLength(); // how much "extra" space on the top and left
+    protected double borderMargin = this.getEquilibriumEdgeLength(); // how much "extra" space on the top and left
         /** How much padding to provide between the bounding rectangle of the graph/context and its enclosed contents. */
     private float contextInnerPadding = Graph.contextInnerPadding;
         /** How much space this graph is allowed to occupy */
@@ -84,10 +84,10 @@ public class SpringGraphLayout extends GraphLayout {
         /** The minimum distance between nodes; if they are actually closer than this,
          * then assume they are at this distance. This is to prevent short distances
          * from overwhelming the repulsion forces for nodes */
-    private  double MIN_DISTANCE = 3;
+    protected double MIN_DISTANCE = 3;
         /** The maximum distance between nodes; if they are farther apart than this,
          * bring them in to this distance. */
-    private  double MAX_DISTANCE = 2000;
+    protected double MAX_DISTANCE = 2000;
     
         /** Multiplier for the spring force */
     private static final double DAMPER_FOR_SPRING = 0.2;
@@ -96,7 +96,7 @@ public class SpringGraphLayout extends GraphLayout {
         /** Used to further "dampen" the coulomb force. The physical constant
          * would set this to 2.0 (1/distance-squared) but it's set to 2.2 so that
          * node repulsion will drop off faster. */
-    private double COULOMB_EXPONENT = 2.2;
+    protected double COULOMB_EXPONENT = 2.2;
     
         /** The minimum energy level that tells the algorithm it can stop. 
          * This value is actually set in performLayout so that it can be tuned
@@ -106,17 +106,17 @@ public class SpringGraphLayout extends GraphLayout {
     private  double ENERGY_THRESHHOLD_PER_NODE = 1.0;    // to find tune the threshhold
     
         /** Double-precision values are considered equal if they are within this value of each other */
-    private static double EPSILON = 0.1;
+    protected static double EPSILON = 0.1;
         /** Further damping for displacements; currently set to 1.0 */
-    private static double DAMPING_FOR_DISPLACEMENTS = 1; //0.5;
+    protected static double DAMPING_FOR_DISPLACEMENTS = 1; //0.5;
         /** Used in determining the spring force using Hooke's law. Currently set to 1.0. 
          * @see SpringGraphLayout#DAMPER_FOR_SPRING */
-    private static double SPRING_CONSTANT = DAMPER_FOR_SPRING * 1;
+    protected static double SPRING_CONSTANT = DAMPER_FOR_SPRING * 1;
         /** Coulomb constant (numerator) for the distance-squared calculations. 
          * Currently set to Math.pow( equilibriumEdgeLength, COULOMB_EXPONENT ) 
          * @see SpringGraphLayout#COULOMB_EXPONENT
          * */
-    private double COULOMB_CONSTANT = DAMPER_FOR_COULOMB * Math.pow( equilibriumEdgeLength, COULOMB_EXPONENT );
+    protected double COULOMB_CONSTANT = DAMPER_FOR_COULOMB * Math.pow( equilibriumEdgeLength, COULOMB_EXPONENT );
     private static final Point2D.Double zeroPoint = new Point2D.Double( 0.0, 0.0 );
 //    boolean randomInitialPositions = false;
     /**
@@ -124,19 +124,19 @@ public class SpringGraphLayout extends GraphLayout {
      * considered attractive forces. Forces with the opposite sign are
      * considered negative forces.
      */
-    private int ATTRACTION_FORCE_SIGN = +1;
+    protected int ATTRACTION_FORCE_SIGN = +1;
     /**
      * Set to -1 * the attraction force.
      */
-    private int REPULSION_FORCE_SIGN = -1 * ATTRACTION_FORCE_SIGN;
+    protected int REPULSION_FORCE_SIGN = -1 * ATTRACTION_FORCE_SIGN;
     
     private static DecimalFormat nformat = new DecimalFormat( "##0.000;0" );
     
 //    private static double leftPressure = 1.0;
 //    private static double upPressure = 1.0;
-    private boolean applyUpLeftPressure = true;
+    protected boolean applyUpLeftPressure = true;
     
-    private double pressureScale = 0.2;    // proportion to squeeze up or left; multiplier for upleft force
+    protected double pressureScale = 0.2;    // proportion to squeeze up or left; multiplier for upleft force
     /**
      * Displacement is represented as a "point" where the x value is dx and the
      * y value is dy.
@@ -146,19 +146,50 @@ public class SpringGraphLayout extends GraphLayout {
      * Keeps track of each node's displacement (movement) at each iteration. 
      */
 
-    private HashMap<GNode, Point2D.Double> nodePositions = new HashMap<>();
+    protected HashMap<GNode, Point2D.Double> nodePositions = new HashMap<>();
     private HashMap<GNode, Point2D.Double> nodeForces = new HashMap<>();
     
-    private ArrayList<GNode> nodes = new ArrayList<GNode>();
+    protected ArrayList<GNode> nodes = new ArrayList<GNode>();
     
     // contains all the original edges, plus any we have to temporarily create for the contexts.
-    private ArrayList<GEdge> edges = new ArrayList<GEdge>();
+    protected ArrayList<GEdge> edges = new ArrayList<GEdge>();
 
     public SpringGraphLayout( Graph g ) {
 
         super( g );
         scanAndLoadGraph();
     }
+
+    /**
+     * Creates a layout for the graph using the preferred force computation.
+     *
+     * @param g the graph to be laid out
+     * @param useQuadtree if true, use the quadtree approximation for the
+     * repulsion forces, which scales to large graphs; otherwise compare every
+     * pair of nodes.
+     * @return a new layout, ready to be performed.
+     * @see BarnesHutGraphLayout
+     * @see Global#springLayoutUseQuadtree
+     */
+    public static SpringGraphLayout makeLayout( Graph g, boolean useQuadtree ) {
+        if ( useQuadtree ) {
+            return new BarnesHutGraphLayout( g );
+        } else {
+            return new SpringGraphLayout( g );
+        }
+    }
+
+    /**
+     * Creates the layout to be used for a nested context. Called while this
+     * layout is still being constructed, so it must not depend on any of this
+     * layout's own settings.
+     *
+     * @param g the context to be laid out
+     * @return a layout of the same kind as this one.
+     */
+    protected SpringGraphLayout makeContextLayout( Graph g ) {
+        return new SpringGraphLayout( g );
+    }
     
     /**
      * Initialize the node and edges lists.
@@ -354,7 +385,7 @@ public class SpringGraphLayout extends GraphLayout {
      * @param g the context to be laid out
      */
     public boolean performLayoutOnContext( Graph g ) {
-        SpringGraphLayout layout = new SpringGraphLayout( g );
+        SpringGraphLayout layout = makeContextLayout( g );
         layout.setVerbose( verbose );
         layout.setEquilibriumEdgeLength( equilibriumEdgeLength );
         // For empty contexts, will need to let the algorithm find the right bounds for us
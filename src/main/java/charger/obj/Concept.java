@@ -251,6 +251,7 @@ public class Concept extends GNode {
         } else {
             textLabel = typeLabel;
         }
+        labelsChanged();
         if ( changing && ( !oldLabel.equals( textLabel ) ) ) {
             resizeIfNecessary();
             //if ( getOwnerFrame() != null ) 
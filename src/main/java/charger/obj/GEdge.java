@@ -175,6 +175,7 @@ abstract public class GEdge extends GraphObject  {
 
         backColor = Color.black;
         //Global.info( "GEdge forecolor is " + foreColor + "; backcolor is " + backColor );
+        objectChanged();
 
     }
     
@@ -193,6 +194,7 @@ abstract public class GEdge extends GraphObject  {
 
     public void setArrowHeadWidth( int arrowHeadWidth ) {
         edgeAttributes.arrowHeadWidth = arrowHeadWidth;
+        objectChanged();
     }
     
     public int getArrowHeadHeight() {
@@ -201,6 +203,7 @@ abstract public class GEdge extends GraphObject  {
 
     public void setArrowHeadHeight( int arrowHeadHeight ) {
         edgeAttributes.arrowHeadHeight = arrowHeadHeight;
+        objectChanged();
     }
 
     public double getEdgeThickness() {
@@ -209,6 +212,7 @@ abstract public class GEdge extends GraphObject  {
 
     public void setEdgeThickness( double edgeThickness ) {
         edgeAttributes.edgeThickness = edgeThickness;
+        objectChanged();
     }
     
     public void initializeArrowHead() {
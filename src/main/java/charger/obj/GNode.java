@@ -413,6 +413,7 @@ abstract public class GNode extends GraphObject  {
     public void setTypeLabel( String label, boolean resize ) {
         textLabel = label;
         typeLabel = label;
+        labelsChanged();
         if ( resize ) {
             resizeIfNecessary();
         }
@@ -432,11 +433,13 @@ abstract public class GNode extends GraphObject  {
 
     public void clearDescriptors() {
         descriptors.clear();
+        labelsChanged();
     }
 
     public void setTypeDescriptors( AbstractTypeDescriptor[] ds ) {
         clearDescriptors();
         descriptors.addAll( Arrays.asList( ds ) );
+        labelsChanged();
     }
 
     /**
@@ -462,6 +465,7 @@ abstract public class GNode extends GraphObject  {
         } else {
             descriptors.set( 0, o );
         }
+        labelsChanged();
     }
 
 //    public boolean commitToKnowledgeBase( kb.KnowledgeBase kb ) {
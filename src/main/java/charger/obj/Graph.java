@@ -20,6 +20,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.Stack;
 
 import charger.EditFrame;
@@ -95,7 +97,7 @@ public class Graph extends Concept implements Printable, kb.KnowledgeSource { //
      *
      * @see Graph#findByID
      */
-    public HashMap<String, GraphObject> objectHashStore = new HashMap<String, GraphObject>( 10 );
+    public HashMap<GraphObjectID, GraphObject> objectHashStore = new HashMap<GraphObjectID, GraphObject>( 10 );
 
     /**
      * The actual width of the context's displayed border; included in its
@@ -126,6 +128,32 @@ public class Graph extends Concept implements Printable, kb.KnowledgeSource { //
     public boolean wrapLabels = GraphObject.defaultWrapLabels;
     public int wrapColumns  = GraphObject.defaultWrapColumns;
 
+    /**
+     * Locates this graph's objects on the canvas; only kept for an outermost
+     * graph, and only once someone has asked for it.
+     *
+     * @see #getSpatialIndex
+     */
+    private SpatialIndex spatialIndex = null;
+
+    /**
+     * Finds every object in this graph, however deeply nested, by its id; like
+     * the spatial index, only kept for an outermost graph, and only once
+     * someone has asked for it.
+     *
+     * @see #findByID
+     */
+    private HashMap<GraphObjectID, GraphObject> idIndex = null;
+
+    /**
+     * The objects inserted, removed or changed since they were last asked
+     * for; like the spatial index, only kept for an outermost graph, and only
+     * once someone has started tracking changes.
+     *
+     * @see #trackChanges
+     */
+    private Set<GraphObject> changedObjects = null;
+
     /**
      * Constructs a new Graph object, with a given parent graph within which it
      * is enclosed. Same as Graph()
@@ -544,24 +572,31 @@ public class Graph extends Concept implements Printable, kb.KnowledgeSource { //
 //            g2D.setFont( oldFont );
         }
 
-        // Now draw all of the components inside the graph
+        // Now draw all of the components inside the graph, skipping any that are outside the area being painted
+        Rectangle2D clip = printing ? null : g2D.getClipBounds();
         Iterator<GraphObject> iter = new ShallowIterator( this, GraphObject.Kind.GRAPH );
         GraphObject go;
         while ( iter.hasNext() ) {
             go = iter.next();
-            go.draw( g2D, printing );
+            if ( isVisibleIn( go, clip ) ) {
+                go.draw( g2D, printing );
+            }
         }
 
         iter = new ShallowIterator( this, GraphObject.Kind.GNODE );
         while ( iter.hasNext() ) {
             go = iter.next();
-            go.draw( g2D, printing );
+            if ( isVisibleIn( go, clip ) ) {
+                go.draw( g2D, printing );
+            }
         }
 
         iter = new ShallowIterator( this, GraphObject.Kind.GEDGE );
         while ( iter.hasNext() ) {
             go = iter.next();
-            go.draw( g2D, printing );
+            if ( isVisibleIn( go, clip ) ) {
+                go.draw( g2D, printing );
+            }
         }
         if ( !printing ) {
             if ( isSelected && this.myKind == GraphObject.Kind.GRAPH && this.getOwnerGraph() != null ) {
@@ -580,6 +615,28 @@ public class Graph extends Concept implements Printable, kb.KnowledgeSource { //
     }
 
 
+    /**
+     * How far outside its bounds an object may still draw something (shadows,
+     * edge labels, selection marks).
+     */
+    public static double paintMargin = 50;
+
+    /**
+     * Whether any part of the object could be drawn within the clipping area.
+     *
+     * @param go the object to be drawn
+     * @param clip the area being painted, in unscaled canvas units; null means
+     * everything is visible.
+     * @return false if the object can safely be skipped
+     */
+    private static boolean isVisibleIn( GraphObject go, Rectangle2D clip ) {
+        if ( clip == null ) {
+            return true;
+        }
+        Rectangle2D.Double r = SpatialIndex.boundsOf( go );
+        return clip.intersects( r.x - paintMargin, r.y - paintMargin, r.width + 2 * paintMargin, r.height + 2 * paintMargin );
+    }
+
     /*============ delete operations
      charger	notio	op
      yes		no		delete arrow
@@ -595,7 +652,31 @@ public class Graph extends Concept implements Printable, kb.KnowledgeSource { //
      */
     public void insertInCharGerGraph( GraphObject go ) {
         go.ownerGraph = this;
-        objectHashStore.put( go.objectID.toString(), go );
+        objectHashStore.put( go.objectID, go );
+        if ( Global.sessionKB != null ) {
+            Global.sessionKB.getIndex().add( go );
+        }
+        HashMap<GraphObjectID, GraphObject> ids = activeIDIndex( this );
+        if ( ids != null ) {
+            ids.put( go.objectID, go );
+            if ( go instanceof Graph ) {
+                indexIDs( ids, (Graph)go );
+            }
+        }
+        if ( go instanceof Graph ) {
+            ( (Graph)go ).idIndex = null;       // no longer outermost
+        }
+        SpatialIndex index = activeSpatialIndex( this );
+        if ( index != null ) {
+            index.insert( go );
+            if ( go instanceof Graph ) {
+                index.insertContents( (Graph)go );
+            }
+        }
+        if ( go instanceof Graph ) {
+            ( (Graph)go ).changedObjects = null;
+        }
+        noteChanged( this, go, true );
 //        Global.info( "Adding object " + go.objectID + " to graph " + this.objectID );
     }
 
@@ -605,6 +686,9 @@ public class Graph extends Concept implements Printable, kb.KnowledgeSource { //
      * implementer.
      */
     public void removeFromGraph( GraphObject go ) {
+        if ( Global.sessionKB != null && go.getOwnerGraph() == this ) {
+            Global.sessionKB.getIndex().remove( go );
+        }
         try {
             Global.sessionKB.unCommit( go );
         } catch ( KBException ex ) {
@@ -614,11 +698,29 @@ public class Graph extends Concept implements Printable, kb.KnowledgeSource { //
         }
 
         int old = 0;
-        if ( !objectHashStore.containsKey( go.objectID.toString() ) ) {
+        if ( !objectHashStore.containsKey( go.objectID ) ) {
             // Hub.error( "Graph.removeObject! Tried to remove objectID " + go.objectID + 
             // 		" from graph " + this.objectID + " but it wasn't found." );
         } else {
-            objectHashStore.remove( go.objectID.toString() );
+            objectHashStore.remove( go.objectID );
+            HashMap<GraphObjectID, GraphObject> ids = activeIDIndex( this );
+            if ( ids != null ) {
+                ids.remove( go.objectID, go );
+                if ( go instanceof Graph ) {
+                    for ( Iterator<GraphObject> iter = new DeepIterator( (Graph)go ); iter.hasNext(); ) {
+                        GraphObject inner = iter.next();
+                        ids.remove( inner.objectID, inner );
+                    }
+                }
+            }
+            SpatialIndex index = activeSpatialIndex( this );
+            if ( index != null ) {
+                index.remove( go );
+                if ( go instanceof Graph ) {
+                    index.removeContents( (Graph)go );
+                }
+            }
+            noteChanged( this, go, true );
             //Global.info("removing from graph's object list: " + CGUtil.shortClassName( go ) );
             //Global.info( "Removing object " + go.objectID + " from graph " + this.objectID );
         }
@@ -834,6 +936,7 @@ public class Graph extends Concept implements Printable, kb.KnowledgeSource { //
 //        super.setTextLabel( s, fmetrics, p );
         textLabel = s;
         resizeForContents( p );
+        labelsChanged();
         // take care of the case where the new label is too big to fit
     }
 
@@ -1008,9 +1111,98 @@ public class Graph extends Concept implements Printable, kb.KnowledgeSource { //
         }
     }
 
+    /**
+     * Gets the spatial index of the outermost graph containing this one,
+     * creating it if necessary. Once created, the index is kept up to date as
+     * objects are inserted, removed, moved or resized.
+     *
+     * @return an index of every object in the outermost graph
+     */
+    public SpatialIndex getSpatialIndex() {
+        Graph outer = getOutermostGraph();
+        if ( outer.spatialIndex == null ) {
+            outer.spatialIndex = new SpatialIndex( outer );
+        }
+        return outer.spatialIndex;
+    }
+
+    /**
+     * Discards the spatial index of the outermost graph, so that it will be
+     * re-built the next time it's needed. Only necessary if objects have been
+     * moved by changing their display rectangles directly.
+     */
+    public void invalidateSpatialIndex() {
+        getOutermostGraph().spatialIndex = null;
+    }
+
+    /**
+     * @return the spatial index that must be kept up to date for the given
+     * object; null if there isn't one yet.
+     */
+    static SpatialIndex activeSpatialIndex( GraphObject go ) {
+        Graph outer = go.getOutermostGraph();
+        return outer == null ? null : outer.spatialIndex;
+    }
+
+    /**
+     * Starts keeping track of which objects in the outermost graph are
+     * inserted, removed or changed, forgetting any already noted. Objects note
+     * their own changes through GraphObject#objectChanged.
+     *
+     * @see #takeChangedObjects
+     */
+    public void trackChanges() {
+        getOutermostGraph().changedObjects = new LinkedHashSet<>();
+    }
+
+    /**
+     * Gets the objects inserted, removed or changed since tracking started
+     * or since the last time they were taken, in the order first noted, and
+     * starts a new list. A removed object is no longer in the graph.
+     *
+     * @return the objects; null if changes aren't being tracked.
+     * @see #trackChanges
+     */
+    public Set<GraphObject> takeChangedObjects() {
+        Graph outer = getOutermostGraph();
+        Set<GraphObject> changed = outer.changedObjects;
+        if ( changed == null ) {
+            return null;
+        }
+        synchronized ( changed ) {
+            outer.changedObjects = new LinkedHashSet<>();
+        }
+        return changed;
+    }
+
+    /**
+     * Notes that the object has changed, if the outermost graph containing
+     * the given one is tracking changes.
+     *
+     * @param contents whether everything in the object, if it's a graph, is to
+     * be noted too (e.g., when the graph is inserted or removed)
+     */
+    static void noteChanged( GraphObject where, GraphObject go, boolean contents ) {
+        Graph outer = where.getOutermostGraph();
+        Set<GraphObject> changed = outer == null ? null : outer.changedObjects;
+        if ( changed == null ) {
+            return;
+        }
+        synchronized ( changed ) {
+            changed.add( go );
+            if ( contents && go instanceof Graph ) {
+                for ( Iterator<GraphObject> iter = new DeepIterator( (Graph)go ); iter.hasNext(); ) {
+                    changed.add( iter.next() );
+                }
+            }
+        }
+    }
+
     /**
      * Find an object by its ID at any level in the target graph. Also checks
-     * the target graph itself.
+     * the target graph itself. Objects nested in other graphs are looked up in
+     * the outermost graph's id index, so this doesn't have to search through
+     * every context.
      *
      * @param ID a graph ID
      * @see Global#applyForID
@@ -1022,23 +1214,85 @@ public class Graph extends Concept implements Printable, kb.KnowledgeSource { //
             return this;
         }
         // if object is directly in this graph, return it
-        GraphObject go = null;
-                    // TODO: Find out why this fails even though a matching id is present...
-        go = objectHashStore.get( ID.toString() );
+        GraphObject go = objectHashStore.get( ID );
         if ( go != null ) {
             return go;
         }
-        // search through all contained objects...
-        Iterator iter = new ShallowIterator( this, GraphObject.Kind.GRAPH );
-        while ( iter.hasNext() ) {
-            go = ( (Graph)iter.next() ).findByID( ID );
-            if ( go != null ) {
+        // otherwise look it up in the outermost graph's index, and make sure it's in here
+        Graph outer = getOutermostGraph();
+        go = outer.getIDIndex().get( ID );
+        if ( go != null && !go.objectID.equals( ID ) ) {
+            // its id was changed behind the index's back
+            outer.idIndex = null;
+            go = outer.getIDIndex().get( ID );
+        }
+        if ( go == null || go == this ) {
+            return null;
+        }
+        Graph owner = go.getOwnerGraph();
+        if ( owner == null || owner.objectHashStore.get( ID ) != go ) {
+            return null;
+        }
+        for ( Graph g = owner; g != null; g = g.getOwnerGraph() ) {
+            if ( g == this ) {
                 return go;
             }
         }
         return null;
     }
 
+    /**
+     * Gets the id index of this graph, which must be an outermost one,
+     * building it if necessary. Once built, it is kept up to date as objects
+     * are inserted and removed.
+     */
+    private HashMap<GraphObjectID, GraphObject> getIDIndex() {
+        if ( idIndex == null ) {
+            HashMap<GraphObjectID, GraphObject> ids = new HashMap<>();
+            indexIDs( ids, this );
+            idIndex = ids;
+        }
+        return idIndex;
+    }
+
+    private static void indexIDs( HashMap<GraphObjectID, GraphObject> ids, Graph g ) {
+        for ( Iterator<GraphObject> iter = new DeepIterator( g ); iter.hasNext(); ) {
+            GraphObject go = iter.next();
+            ids.put( go.objectID, go );
+        }
+    }
+
+    /**
+     * @return the id index that must be kept up to date for the given object;
+     * null if there isn't one yet.
+     */
+    static HashMap<GraphObjectID, GraphObject> activeIDIndex( GraphObject go ) {
+        Graph outer = go.getOutermostGraph();
+        return outer == null ? null : outer.idIndex;
+    }
+
+    /**
+     * Gives one of this graph's own objects a new id, so that it can still be
+     * found by its id afterward.
+     *
+     * @param go an object directly in this graph
+     * @param ID its new id
+     */
+    public void changeID( GraphObject go, GraphObjectID ID ) {
+        boolean held = objectHashStore.remove( go.objectID, go );
+        HashMap<GraphObjectID, GraphObject> ids = activeIDIndex( this );
+        if ( ids != null ) {
+            ids.remove( go.objectID, go );
+        }
+        go.objectID = ID;
+        if ( held ) {
+            objectHashStore.put( ID, go );
+            if ( ids != null ) {
+                ids.put( ID, go );
+            }
+        }
+    }
+
 
     /**
      * Makes the object expendable from the CharGer graph. Fails when deleting a
@@ -1448,8 +1702,20 @@ public class Graph extends Concept implements Printable, kb.KnowledgeSource { //
      */
     
     public void layoutGraph( double edgeLength ) {
+        layoutGraph( edgeLength, Global.springLayoutUseQuadtree );
+    }
+
+    /**
+     * Apply the spring graph layout algorithm to this graph.
+     * @param edgeLength the equilibrium edge length desired.
+     * @param useQuadtree whether to approximate the repulsion forces with a quadtree (for large graphs)
+     * or find them between every pair of nodes.
+     * @see SpringGraphLayout
+     * @see charger.layout.BarnesHutGraphLayout
+     */
+    public void layoutGraph( double edgeLength, boolean useQuadtree ) {
         if ( objectHashStore.isEmpty() ) return;
-        SpringGraphLayout layout = new SpringGraphLayout( this );
+        SpringGraphLayout layout = SpringGraphLayout.makeLayout( this, useQuadtree );
         layout.setEquilibriumEdgeLength( edgeLength );
         layout.performLayout();
         layout.copyToGraph();
@@ -1489,9 +1755,7 @@ public class Graph extends Concept implements Printable, kb.KnowledgeSource { //
     public AbstractTypeDescriptor[] findTypeDescriptors( String term ) {
         //Global.info( "findTypeDescriptors: looking for term " + term );
         ArrayList holder = new ArrayList();
-        Iterator iter = new DeepIterator( this, GraphObject.Kind.GNODE );
-        while ( iter.hasNext() ) {
-            GNode gn = (GNode)iter.next();
+        for ( GNode gn : nodesWithDescriptor( term ) ) {
             AbstractTypeDescriptor[] ds = gn.getTypeDescriptors();
             //Global.info( "findTypeDescriptors: gnode " + gn.getTextLabel() + " has " + ds.length + " descriptors." );
             if ( ds.length == 0 ) {
@@ -1508,6 +1772,31 @@ public class Graph extends Concept implements Printable, kb.KnowledgeSource { //
         return (AbstractTypeDescriptor[])( holder.toArray( new AbstractTypeDescriptor[ 0 ] ) );
     }
 
+    /**
+     * The nodes in this graph that may have a descriptor for the term: those
+     * the session's index has, if this graph's objects were filed there;
+     * otherwise all of them. Objects are filed as they're inserted, so if
+     * one of the graph's nodes has been, they all have.
+     */
+    private ArrayList<GNode> nodesWithDescriptor( String term ) {
+        if ( Global.sessionKB != null ) {
+            for ( GraphObject go : objectHashStore.values() ) {
+                if ( go instanceof GNode ) {
+                    if ( Global.sessionKB.getIndex().contains( go ) ) {
+                        return Global.sessionKB.getIndex().findNodesWithDescriptor( term, this );
+                    }
+                    break;
+                }
+            }
+        }
+        ArrayList<GNode> nodes = new ArrayList<>();
+        Iterator<GraphObject> iter = new DeepIterator( this, GraphObject.Kind.GNODE );
+        while ( iter.hasNext() ) {
+            nodes.add( (GNode)iter.next() );
+        }
+        return nodes;
+    }
+
     /**
      * Get all the type descriptors known to this knowledge source.
      *
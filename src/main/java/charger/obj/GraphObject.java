@@ -260,6 +260,7 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
         foreColor = (Color)( Global.userForeground.get( CGUtil.shortClassName( this ) ) );
         backColor = (Color)( Global.userBackground.get( CGUtil.shortClassName( this ) ) );
         //Global.info( "forecolor is " + foreColor + "; backcolor is " + backColor );
+        objectChanged();
     }
 
     /**
@@ -275,6 +276,7 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
                 setColor( "text", fg );
             } else {
                 foreColor = c;
+                objectChanged();
             }
         } else {
                 Color bg = (Color)( Global.userBackground.get( CGUtil.shortClassName( this ) ) );
@@ -282,6 +284,7 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
                 setColor( "fill", bg );
             } else {
                 backColor = c;
+                objectChanged();
             }
         }
     }
@@ -292,6 +295,7 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
 
     public void setNegated( boolean isNegated ) {
         this.isNegated = isNegated;
+        objectChanged();
     }
     
     /**
@@ -315,6 +319,7 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
         
         displayRect3D.x += delta.x;     // Note: directly setting part of display rectangle here.
         displayRect3D.y += delta.y;
+        displayRectChanged();
                 
         return ( (oldx != getDisplayRect().x) || (oldy != getDisplayRect().y));
     }
@@ -353,6 +358,7 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
         if ( p != null ) {
             displayRect3D.x = p.x - displayRect3D.width / 2;
             displayRect3D.y = p.y - displayRect3D.height / 2;
+            displayRectChanged();
 
             //displayRect = new Rectangle2D.Double( Pos.x, Pos.y, Dim.width, Dim.height );
 
@@ -377,6 +383,7 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
     public void setUpperLeft( Point2D.Double upperleft ) {
         displayRect3D.x = upperleft.x;
         displayRect3D.y = upperleft.y;
+        displayRectChanged();
     }
 
     /**
@@ -446,6 +453,7 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
 
     public void setDisplayRect3D( Rectangle3D displayRect3D ) {
         this.displayRect3D = displayRect3D;
+        displayRectChanged();
     }
 
     
@@ -467,6 +475,7 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
      */
     public void setDisplayRect( Rectangle2D.Double rect ) {
         displayRect3D.setRectangle2D( rect );
+        displayRectChanged();
 //        displayRect =  Util.make2DDouble( rect );
 //        setCenterOnly( getCenter() );
     }
@@ -475,6 +484,33 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
         this.setDisplayRect( new Rectangle2D.Double( x, y, width, height ));
     }
 
+    /**
+     * Tells the outermost graph's spatial index (if there is one) that this
+     * object may have moved or changed size. Anything that changes the display
+     * rectangle directly should call this.
+     *
+     * @see SpatialIndex
+     */
+    public void displayRectChanged() {
+        SpatialIndex index = Graph.activeSpatialIndex( this );
+        if ( index != null ) {
+            index.update( this );
+        }
+        objectChanged();
+    }
+
+    /**
+     * Notes that something an undo tracker records (e.g., the label, colors,
+     * position or nesting) may have changed in this object, if the outermost
+     * graph is tracking changes. Anything that changes such a part of the
+     * object directly should call this.
+     *
+     * @see Graph#trackChanges
+     */
+    public void objectChanged() {
+        Graph.noteChanged( this, this, false );
+    }
+
     /**
      * Performs whatever custom adjustments that any sub-classes want. This
      * method is called explicitly in some cases by Charger, but it does nothing
@@ -497,16 +533,19 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
      */
     public void setDepth( double depth ) {
         displayRect3D.setDepth( depth );
+        objectChanged();
     }
     
     
 
     public void setForeground( Color c ) {
         foreColor = c;
+        objectChanged();
     }
 
     public void setBackground( Color c ) {
         backColor = c;
+        objectChanged();
     }
 
     /**
@@ -551,6 +590,7 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
     public void setTextLabel( String newTextLabel, FontMetrics fmetrics, Point2D.Double p ) {
         //Global.info( "set text label " + s + " display rect is " + getDisplayRect() );
         textLabel = newTextLabel;
+        labelsChanged();
         if ( p == null ) {
             p = new Point2D.Double( getCenter().x, getCenter().y );
         }
@@ -565,6 +605,19 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
         }
     }
 
+    /**
+     * Lets the session knowledge base know that this object's labels (or type
+     * descriptors) may have changed, so that it can re-index the object.
+     *
+     * @see kb.KnowledgeIndex#touch
+     */
+    protected void labelsChanged() {
+        if ( Global.sessionKB != null ) {
+            Global.sessionKB.getIndex().touch( this );
+        }
+        objectChanged();
+    }
+
     public Dimension getTextLabelSize() {
 //               Dimension stringdim = CGUtil.stringDimensions( getTextLabel(), fm );
         // added by hsd 7-31-14 to account for wrapping
@@ -635,6 +688,7 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
             if ( rectChanged ) {
                 displayRect3D.width = width;
                 displayRect3D.height = height;
+                displayRectChanged();
                 if ( p != null ) {
                     setCenterOnly( p );
                 }
@@ -1091,7 +1145,7 @@ public static class ObjectIDComparator implements Comparator<GraphObject>
 
     public void setLabelFont( Font labelFont ) {
         this.labelFont = labelFont;
-        
+        objectChanged();
     }
     
 
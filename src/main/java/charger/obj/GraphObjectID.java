@@ -5,65 +5,152 @@
 
 package charger.obj;
 
-import java.rmi.server.UID;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a graph object's ID.
- * Although these are currently strings, it's helpful to have their 
+ * Although these are written out as strings, it's helpful to have their
  * own sub-class for type checking and for possible future enhancements.
  * Regardless of the implementation, each new ID must be unique.
+ * <p>
+ * An id is held as a pair of numbers rather than as a string, so that it is
+ * small and quick to compare and to hash. New ids are a number chosen at
+ * random once per session, followed by a count. Ids read from files made by
+ * earlier versions, which used java.rmi.server.UID's strings, are held as
+ * numbers too; any other string is kept as it is. Either way, the string form
+ * is only made when it's asked for, and is exactly the string the id was made
+ * from, so that ids written out and read back in are unchanged.
  * @author Harry S. Delugach (delugach@uah.edu)
  */
 public final class GraphObjectID  {
-    /** the string that is the unique identifier for an object. 
+    /** the forms an id can take */
+    private static final byte SESSION = 0;     // "session:count", both in hex
+    private static final byte UID = 1;         // "unique:time:count", as java.rmi.server.UID has them
+    private static final byte TEXT = 2;        // any other string
+
+    /** chosen once per session, so that ids from different sessions don't collide */
+    private static final long session = new SecureRandom().nextLong();
+    private static final AtomicLong count = new AtomicLong();
+
+    private final byte form;
+    private final long high;
+    private final long low;
+    /** the string that is the unique identifier for an object; made when needed.
      * If constructed with a null string, then the string value is "-1".
      * */
     private String ident = null;
-    
+
     /**
      * Represents an ident that is not attached to any object; e.g., if a graph has no owner ident.
      */
     public static final GraphObjectID zero = new GraphObjectID( "0" );
-    
+
     /**
      * Create a new unique-to-the-universe id.
      */
     public GraphObjectID() {
-        ident = new UID().toString();
+        form = SESSION;
+        high = session;
+        low = count.incrementAndGet();
     }
-    
+
     /**
      * Create an id from the given string. Note that this allows there to be
      * more than one of any given id, thus violating the basic constraint.
      * This assumes that the given string will have come from a properly-created GOID.
-     * @param s 
+     * @param s
      */
     public GraphObjectID( String s ) {
-        if ( s == null ) 
-            ident = "-1";
-        else 
+        if ( s == null )
+            s = "-1";
+        byte f = TEXT;
+        long h = 0;
+        long l = 0;
+        int first = s.indexOf( ':' );
+        int last = s.lastIndexOf( ':' );
+        try {
+            if ( first > 0 && first == last ) {
+                h = Long.parseUnsignedLong( s.substring( 0, first ), 16 );
+                l = Long.parseUnsignedLong( s.substring( first + 1 ), 16 );
+                f = SESSION;
+            } else if ( first > 0 && last > first && s.indexOf( ':', first + 1 ) == last ) {
+                h = Long.parseLong( s.substring( first + 1, last ), 16 );
+                l = (long)Integer.parseInt( s.substring( 0, first ), 16 ) << 32
+                        | Short.parseShort( s.substring( last + 1 ), 16 ) & 0xffffL;
+                f = UID;
+            }
+        } catch ( NumberFormatException ex ) {
+            f = TEXT;
+        }
+        // only held as numbers if they give back exactly the same string (e.g., no leading zeros)
+        if ( f != TEXT && !format( f, h, l ).equals( s ) ) {
+            f = TEXT;
+        }
+        if ( f == TEXT ) {
+            h = 0;
+            l = 0;
             ident = s;
+        }
+        form = f;
+        high = h;
+        low = l;
+    }
+
+    private static String format( byte form, long high, long low ) {
+        if ( form == SESSION ) {
+            return Long.toHexString( high ) + ":" + Long.toHexString( low );
+        } else {
+            return Integer.toString( (int)( low >> 32 ), 16 ) + ":" + Long.toString( high, 16 )
+                    + ":" + Integer.toString( (short)low, 16 );
+        }
     }
-    
-    /** The string representation of this id. 
+
+    /** The string representation of this id.
      * @return A unique string representation of this id.
      * */
     public String toString() {
-        return ident;
+        String s = ident;
+        if ( s == null ) {
+            s = format( form, high, low );
+            ident = s;
+        }
+        return s;
     }
 
     /**
-     * Two objects are equal if their string representations are equal.
+     * Two ids are equal if their string representations are equal.
      * @param other the id to compare
      * @return true if they are represented by the same string; false otherwise.
      */
-    public boolean equals( GraphObjectID other ) {
-        if ( other.ident.equals( this.ident ) ) 
+    @Override
+    public boolean equals( Object other ) {
+        if ( other == this )
             return true;
-        else 
+        if ( !( other instanceof GraphObjectID ) )
+            return false;
+        GraphObjectID id = (GraphObjectID)other;
+        if ( id.form != form || id.high != high || id.low != low )
             return false;
+        return form != TEXT || id.ident.equals( ident );
     }
-    
+
+    /**
+     * Two objects are equal if their string representations are equal.
+     * @param other the id to compare
+     * @return true if they are represented by the same string; false otherwise.
+     */
+    public boolean equals( GraphObjectID other ) {
+        return equals( (Object)other );
+    }
+
+    @Override
+    public int hashCode() {
+        if ( form == TEXT )
+            return ident.hashCode();
+        return Long.hashCode( high * 31 + low ) + form;
+    }
+
     /**
      * For debugging and other purposes, create a short version of the unique string representation.
      * Not necessarily unique across all implementations, but still locally useful.
@@ -71,12 +158,12 @@ public final class GraphObjectID  {
      */
     public String getShort() {
         final int shortLength = 6;
-        String[] parts = ident.split(":");
+        String[] parts = toString().split(":");
         String last = parts[ parts.length - 1 ];
-        if ( last.length() <= shortLength ) 
+        if ( last.length() <= shortLength )
             return last;
         else
             return last.substring( last.length() - shortLength );
-            
+
     }
 }
@@ -1 +1 @@
-package charger.obj;import java.util.*;import charger.*;import charger.util.*;import java.awt.*;/*  $Header$  *//* CharGer - Conceptual Graph Editor Copyright 1998-2020 by Harry S. Delugach          This package is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option) any later version. This package is  distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A  PARTICULAR PURPOSE. See the GNU Lesser General Public License for more  details. You should have received a copy of the GNU Lesser General Public License along with this package; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA *//** * General iterator for graph objects. * * @author Harry S. Delugach ( delugach@uah.edu ) Copyright (c) 1998-2020 by * Harry S. Delugach. * @see GraphObject * @see Graph */abstract public class GraphObjectIterator implements Iterator {    /**     * Holds the graph objects to be examined     */    private ArrayList<GraphObject> objectList = new ArrayList<>( 10 );    /**     * An indicator GraphObject type or subtype(s) being iterated     */    private GraphObject.Kind kindToMatch = GraphObject.Kind.ALL;    /**     * an indicator of whether to perform a deep or shallow iteration     */    private boolean deep = false;    /**     * Used when iterating objects of a particular class, rather than using an     * integer type indicator     */    private GraphObject GraphObjectToMatch = null; 	// used when matching a class    /**     * Collect graph objects to form an iteration. The graph itself is not     * included.     *     * @param g graph whose elements are collected to form the iteration     * @param kind one of GraphObject GRAPH, GNODE, GEDGE -- what kind of     * objects to collect. Should be zero if all objects are to be collected.     * @see GraphObject.Kind     * @param isDeep whether to recursively collect objects from nested graphs     * (true) or not     */    public GraphObjectIterator( Graph g, GraphObject go, GraphObject.Kind kind, boolean isDeep ) {        // Global.info( "starting Iterator, adding objects from graph " + g.getTextLabel() );        GraphObjectToMatch = go;        kindToMatch = kind;        deep = isDeep;        if ( g != null ) {            addGraphObjects( g );	// if g is null, then is already empty//             Global.info( "loaded GraphObjectIterator, deep is " + isDeep + ";  length is " + objectList.size() );        }					    }    /**     * Adds objects from a graph to the collection to return (in ArrayList v),     * based on GraphObjectToMatch or KindToMatch     *     * @param g the graph whose object are to be tested for whether they should     * be included or not.     */    //private synchronized void addGraphObjects( Graph g ) 	// commented 12-15-02    private void addGraphObjects( Graph g ) {        if ( g.getGraphObjectCount() == 0 ) {            return;        }        String classToMatch = null;        if ( GraphObjectToMatch != null ) {            classToMatch = CGUtil.shortClassName( GraphObjectToMatch );        }        Iterator iter = g.graphObjects();        while ( iter.hasNext() ) {            GraphObject goinst = (GraphObject)iter.next();            if ( GraphObjectToMatch != null ) {                if ( classToMatch.equals( CGUtil.shortClassName( goinst ) ) ) // 05-15-03                //if ( goinst instanceof GraphObjectToMatch.getClass() )                {                    objectList.add( goinst );                }            } else {                //Global.info( "object iterator looking at " + goinst.getClass() + " named " + goinst.getTextLabel() );                if ( ( kindToMatch == GraphObject.Kind.GNODE && ( goinst instanceof GNode ) )                        || ( kindToMatch == GraphObject.Kind.CONCEPT_OR_GRAPH                        && ( ( goinst instanceof Concept ) || ( goinst instanceof Graph ) ) )                        || ( ( kindToMatch == GraphObject.Kind.ALL ) || ( goinst.myKind == kindToMatch ) ) ) {                    objectList.add( goinst );                    //Global.info( "object iterator added " + goinst.getClass() + " named " + goinst.getTextLabel() );                }            }            //if ( goinst.myKind == GraphObject.GRAPH && deep ) {	// 05-15-03            if ( goinst instanceof Graph && deep ) {                addGraphObjects( (Graph)goinst );            }        }    }    public /*synchronized*/ boolean hasNext() {        return ( !objectList.isEmpty() );    }    public /*synchronized*/ GraphObject next() {        GraphObject ob = objectList.get( 0 );        objectList.remove( 0 );        //Global.info( "at nextElement, ob = " + ob.toString() );        return ob;    }    public void remove() throws UnsupportedOperationException {        throw new UnsupportedOperationException( "Remove from iterator not yet supported for CharGer." );    }        public int howMany() {        // Really shouldn't do this, but it's awfully helpful in debugging sometimes.        return objectList.size();    }}
\ No newline at end of file
+package charger.obj;import java.util.*;import java.util.stream.Stream;import java.util.stream.StreamSupport;/*  $Header$  *//* CharGer - Conceptual Graph Editor Copyright 1998-2020 by Harry S. Delugach          This package is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 of the License, or (at your option) any later version. This package is  distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A  PARTICULAR PURPOSE. See the GNU Lesser General Public License for more  details. You should have received a copy of the GNU Lesser General Public License along with this package; if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA *//** * General iterator for graph objects. Objects are found as the iteration * proceeds rather than all collected beforehand: the iterator keeps a stack of * the graphs being traversed, each with a position in that graph's contents. * A graph's contents are captured when the iteration enters it, so that (as * before) callers may remove or add objects while iterating without * disturbing the iteration. * * @author Harry S. Delugach ( delugach@uah.edu ) Copyright (c) 1998-2020 by * Harry S. Delugach. * @see GraphObject * @see Graph */abstract public class GraphObjectIterator implements Iterator<GraphObject> {    /**     * One graph being traversed, and where we are in it.     */    private static final class Level {        final GraphObject[] objects;        int position = 0;        Level( Graph g ) {            objects = g.objectHashStore.values().toArray( new GraphObject[ g.objectHashStore.size() ] );        }    }    /**     * The graphs being traversed; the innermost is on top.     */    private final ArrayDeque<Level> levels = new ArrayDeque<>();    /**     * The next object to be returned, or null if the iteration is finished.     */    private GraphObject nextObject = null;    /**     * An indicator GraphObject type or subtype(s) being iterated     */    private final GraphObject.Kind kindToMatch;    /**     * an indicator of whether to perform a deep or shallow iteration     */    private final boolean deep;    /**     * Used when iterating objects of a particular class, rather than using an     * integer type indicator     */    private final Class<? extends GraphObject> classToMatch;    /**     * Set up to iterate over a graph's objects. The graph itself is not     * included.     *     * @param g graph whose elements are collected to form the iteration     * @param go an example of the class of objects to collect; null if     * collecting by kind.     * @param kind one of GraphObject GRAPH, GNODE, GEDGE -- what kind of     * objects to collect. Should be ALL if all objects are to be collected.     * @see GraphObject.Kind     * @param isDeep whether to recursively collect objects from nested graphs     * (true) or not     */    public GraphObjectIterator( Graph g, GraphObject go, GraphObject.Kind kind, boolean isDeep ) {        classToMatch = go == null ? null : go.getClass();        kindToMatch = kind;        deep = isDeep;        if ( g != null && g.getGraphObjectCount() > 0 ) {            levels.push( new Level( g ) );            advance();        }    }    /**     * Whether the object is one of those being iterated, based on the class to     * match or else the kind to match.     */    private boolean matches( GraphObject goinst ) {        if ( classToMatch != null ) {            return goinst.getClass() == classToMatch;        }        return ( kindToMatch == GraphObject.Kind.ALL ) || ( goinst.myKind == kindToMatch )                || ( kindToMatch == GraphObject.Kind.GNODE && ( goinst instanceof GNode ) )                || ( kindToMatch == GraphObject.Kind.CONCEPT_OR_GRAPH                && ( ( goinst instanceof Concept ) || ( goinst instanceof Graph ) ) );    }    /**     * Finds the next matching object, entering nested graphs (if deep) right     * after the graph itself is seen.     */    private void advance() {        nextObject = null;        while ( !levels.isEmpty() ) {            Level level = levels.peek();            if ( level.position == level.objects.length ) {                levels.pop();                continue;            }            GraphObject goinst = level.objects[ level.position++ ];            if ( deep && goinst instanceof Graph && ( (Graph)goinst ).getGraphObjectCount() > 0 ) {                levels.push( new Level( (Graph)goinst ) );            }            if ( matches( goinst ) ) {                nextObject = goinst;                return;            }        }    }    public boolean hasNext() {        return nextObject != null;    }    public GraphObject next() {        if ( nextObject == null ) {            throw new NoSuchElementException();        }        GraphObject ob = nextObject;        advance();        return ob;    }    public void remove() throws UnsupportedOperationException {        throw new UnsupportedOperationException( "Remove from iterator not yet supported for CharGer." );    }    /**     * The remaining objects of the iteration as a (sequential) stream. The     * stream and this iterator share their position, so use one or the other.     *     * @return a stream of the objects not yet returned by this iterator.     */    public Stream<GraphObject> stream() {        return StreamSupport.stream( Spliterators.spliteratorUnknownSize( this,                Spliterator.ORDERED | Spliterator.NONNULL ), false );    }    /**     * Counts the objects remaining in the iteration, without disturbing it.     * Takes time proportional to the number remaining.     */    public int howMany() {        // Really shouldn't do this, but it's awfully helpful in debugging sometimes.        if ( nextObject == null ) {            return 0;        }        int count = 1;        for ( Level level : levels ) {            for ( int k = level.position; k < level.objects.length; k++ ) {                count += countMatching( level.objects[ k ] );            }        }        return count;    }    private int countMatching( GraphObject goinst ) {        int count = matches( goinst ) ? 1 : 0;        if ( deep && goinst instanceof Graph ) {            Iterator<GraphObject> iter = ( (Graph)goinst ).graphObjects();            while ( iter.hasNext() ) {                count += countMatching( iter.next() );            }        }        return count;    }}
\ No newline at end of file
@@ -10,9 +10,11 @@ import cgif.parser.javacc.CGIFParser;
 import cgif.parser.javacc.ParseException;
 import charger.Global;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 //import java.util.logging.Level;
 //import java.util.logging.Logger;
 
@@ -29,8 +31,49 @@ public class Referent {
     public final static String dist = "@dist";
     public final static String coll = "@coll";
     
-    private  InputStream is; // = new ByteArrayInputStream( "".getBytes() );
-    private    CGIFParser parser; // = new CGIFParser( is );
+    /** How many parsed referent strings are remembered. */
+    private static int parsedCacheSize = 4096;
+
+    /** Each thread's own parser, re-initialized for every referent rather than made anew. */
+    private static final ThreadLocal<CGIFParser> parsers = new ThreadLocal<CGIFParser>() {
+        @Override
+        protected CGIFParser initialValue() {
+            CGIFParser parser = new CGIFParser( new StringReader( "" ) );
+            parser.disable_tracing();       // the generated parser starts out tracing every call to stdout
+            return parser;
+        }
+    };
+
+    /** The referents most recently parsed, by the string they were parsed from, least recently used first. */
+    private static final LinkedHashMap<String, Referent> parsed = new LinkedHashMap<String, Referent>( 256, 0.75f, true ) {
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, Referent> eldest ) {
+            return size() > parsedCacheSize;
+        }
+    };
+
+    /** @return how many parsed referent strings are remembered. */
+    public static int getParsedCacheSize() {
+        synchronized ( parsed ) {
+            return parsedCacheSize;
+        }
+    }
+
+    /**
+     * Sets how many parsed referent strings are remembered, forgetting the
+     * least recently used ones if there are now too many.
+     * @param size the most to remember; 0 to remember none
+     */
+    public static void setParsedCacheSize( int size ) {
+        synchronized ( parsed ) {
+            parsedCacheSize = Math.max( 0, size );
+            Iterator<String> iter = parsed.keySet().iterator();
+            while ( parsed.size() > parsedCacheSize && iter.hasNext() ) {
+                iter.next();
+                iter.remove();
+            }
+        }
+    }
 
 
     /** The referent string as entered (un-edited, un-parsed) by a user or external system. */
@@ -220,11 +263,26 @@ public class Referent {
         this.number = ref.number;
     }
     
+    /**
+     * Parses the referent string, using the current thread's parser. A string
+     * that was parsed recently isn't parsed again; its elements are copied from
+     * the earlier result.
+     */
     private void parseReferentString()  {
         if ( asEntered != null  && asEntered.length() > 0 )
         try {
-            parser = new CGIFParser( new ByteArrayInputStream( asEntered.getBytes() ) );
-            Referent test = parser.referent( );
+            Referent test;
+            synchronized ( parsed ) {
+                test = parsed.get( asEntered );
+            }
+            if ( test == null ) {
+                CGIFParser parser = parsers.get();
+                parser.ReInit( new StringReader( asEntered ) );
+                test = parser.referent( );
+                synchronized ( parsed ) {
+                    parsed.put( asEntered, test );
+                }
+            }
             copyFromReferent( test );
         } catch ( ParseException ex ) {
             Global.warning( "Referent \"" + asEntered + "\" not recognized.");
@@ -0,0 +1,364 @@
+package charger.obj;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+/*
+ CharGer - Conceptual Graph Editor
+ Copyright 1998-2020 by Harry S. Delugach
+
+ This package is free software; you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as
+ published by the Free Software Foundation; either version 2.1 of the
+ License, or (at your option) any later version. This package is
+ distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details. You should have received a copy of the GNU Lesser General Public
+ License along with this package; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+/**
+ * A uniform grid over the canvas, telling which objects of an outermost graph
+ * (however deeply nested) lie near a point or within a rectangle. Used for
+ * hit-testing and selection so that they look only at nearby objects rather
+ * than the whole graph.
+ *
+ * Each object is indexed by its bounds: its display rectangle grown by the
+ * context border width and, for an edge, enlarged to include its end points.
+ * Queries return candidates only; the caller still decides with the object's
+ * real geometry. Candidates are returned in the same order a DeepIterator
+ * would find them when the index was built; objects indexed later come after.
+ * Objects so large that they would cover many cells (usually contexts) are
+ * kept in a coarser grid instead, with cells some multiple larger; there are
+ * several such levels. Anything too big even for the coarsest level is kept
+ * in a list that is always checked.
+ *
+ * The index is kept up to date by the graph (when objects are inserted or
+ * removed) and by GraphObject (whenever its display rectangle changes).
+ * Its methods are synchronized, since actors in independent parts of a graph
+ * may be resizing concepts on several threads at once.
+ *
+ * @see Graph#getSpatialIndex
+ * @since Charger 4.3
+ */
+public class SpatialIndex {
+
+    /**
+     * Width and height of each grid cell, in unscaled canvas units.
+     */
+    public static double defaultCellSize = 64;
+    /**
+     * Objects covering more than this many cells are kept in a coarser level.
+     */
+    public static int maxCellsPerObject = 16;
+    /**
+     * How many times larger each level's cells are than the previous level's.
+     */
+    public static int levelFactor = 8;
+    /**
+     * How many grid levels there are.
+     */
+    public static int levelCount = 5;
+
+    /**
+     * Where an object is in the index.
+     */
+    private static final class Entry {
+
+        final GraphObject go;
+        final int sequence;
+        Rectangle2D.Double bounds;
+        /** which grid level it's in; -1 if in the large list */
+        int level;
+        int col0, row0, col1, row1;
+
+        Entry( GraphObject go, int sequence ) {
+            this.go = go;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Entry> bySequence = Comparator.comparingInt( e -> e.sequence );
+
+    /** cell size for each level */
+    private final double[] cellSizes;
+    /** the cells in use at each level */
+    private final ArrayList<HashMap<Long, ArrayList<Entry>>> cells = new ArrayList<>();
+    private final IdentityHashMap<GraphObject, Entry> entries = new IdentityHashMap<>();
+    private final ArrayList<Entry> largeEntries = new ArrayList<>();
+    private int nextSequence = 0;
+
+    /**
+     * Indexes every object in the graph, however deeply nested. The graph
+     * itself is not included.
+     *
+     * @param g the outermost graph to be indexed
+     */
+    public SpatialIndex( Graph g ) {
+        this( g, defaultCellSize );
+    }
+
+    public SpatialIndex( Graph g, double cellSize ) {
+        cellSizes = new double[ levelCount ];
+        for ( int level = 0; level < levelCount; level++ ) {
+            cellSizes[ level ] = level == 0 ? cellSize : cellSizes[ level - 1 ] * levelFactor;
+            cells.add( new HashMap<>() );
+        }
+        Iterator<GraphObject> iter = new DeepIterator( g );
+        while ( iter.hasNext() ) {
+            insert( iter.next() );
+        }
+    }
+
+    /**
+     * @return the number of objects in the index.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Adds an object to the index; if it is already there, re-indexes it.
+     *
+     * @param go the object to add
+     */
+    public synchronized void insert( GraphObject go ) {
+        Entry e = entries.get( go );
+        if ( e != null ) {
+            update( go );
+            return;
+        }
+        e = new Entry( go, nextSequence++ );
+        entries.put( go, e );
+        place( e, boundsOf( go ) );
+    }
+
+    /**
+     * Adds a graph's contents (however deeply nested) to the index.
+     *
+     * @param g the graph whose contents are to be added; the graph itself is
+     * not added.
+     */
+    public synchronized void insertContents( Graph g ) {
+        Iterator<GraphObject> iter = new DeepIterator( g );
+        while ( iter.hasNext() ) {
+            insert( iter.next() );
+        }
+    }
+
+    /**
+     * Removes an object from the index, if it is there.
+     *
+     * @param go the object to remove
+     */
+    public synchronized void remove( GraphObject go ) {
+        Entry e = entries.remove( go );
+        if ( e != null ) {
+            unplace( e );
+        }
+    }
+
+    /**
+     * Removes a graph's contents (however deeply nested) from the index.
+     *
+     * @param g the graph whose contents are to be removed; the graph itself is
+     * not removed.
+     */
+    public synchronized void removeContents( Graph g ) {
+        Iterator<GraphObject> iter = new DeepIterator( g );
+        while ( iter.hasNext() ) {
+            remove( iter.next() );
+        }
+    }
+
+    /**
+     * Re-indexes an object whose bounds may have changed. Does nothing if the
+     * object isn't in the index.
+     *
+     * @param go the object that changed
+     */
+    public synchronized void update( GraphObject go ) {
+        Entry e = entries.get( go );
+        if ( e == null ) {
+            return;
+        }
+        Rectangle2D.Double r = boundsOf( go );
+        if ( r.equals( e.bounds ) ) {
+            return;
+        }
+        int level = levelFor( r );
+        if ( level == e.level && ( level < 0 || ( cell( r.x, level ) == e.col0 && cell( r.y, level ) == e.row0
+                && cell( r.x + r.width, level ) == e.col1 && cell( r.y + r.height, level ) == e.row1 ) ) ) {
+            e.bounds = r;       // still in the same cells
+            return;
+        }
+        unplace( e );
+        place( e, r );
+    }
+
+    /**
+     * Finds the objects whose bounds contain a point.
+     *
+     * @param p a point on the (unscaled) canvas
+     * @return the candidates, in the order a DeepIterator would find them.
+     */
+    public synchronized ArrayList<GraphObject> objectsAt( Point2D p ) {
+        ArrayList<Entry> found = new ArrayList<>();
+        for ( int level = 0; level < levelCount; level++ ) {
+            ArrayList<Entry> cell = cells.get( level ).get( key( cell( p.getX(), level ), cell( p.getY(), level ) ) );
+            if ( cell != null ) {
+                for ( Entry e : cell ) {
+                    if ( e.bounds.contains( p ) ) {
+                        found.add( e );
+                    }
+                }
+            }
+        }
+        for ( Entry e : largeEntries ) {
+            if ( e.bounds.contains( p ) ) {
+                found.add( e );
+            }
+        }
+        return sorted( found );
+    }
+
+    /**
+     * Finds the objects whose bounds intersect a rectangle.
+     *
+     * @param r a rectangle on the (unscaled) canvas
+     * @return the candidates, in the order a DeepIterator would find them.
+     */
+    public synchronized ArrayList<GraphObject> objectsWithin( Rectangle2D r ) {
+        ArrayList<Entry> found = new ArrayList<>();
+        IdentityHashMap<Entry, Entry> seen = new IdentityHashMap<>();
+        for ( int level = 0; level < levelCount; level++ ) {
+            HashMap<Long, ArrayList<Entry>> levelCells = cells.get( level );
+            int c0 = cell( r.getX(), level ), c1 = cell( r.getX() + r.getWidth(), level );
+            int r0 = cell( r.getY(), level ), r1 = cell( r.getY() + r.getHeight(), level );
+            if ( (long)( c1 - c0 + 1 ) * ( r1 - r0 + 1 ) > levelCells.size() ) {
+                // the rectangle covers more cells than are in use; look at every cell instead
+                for ( ArrayList<Entry> cell : levelCells.values() ) {
+                    addIntersecting( cell, r, found, seen );
+                }
+            } else {
+                for ( int c = c0; c <= c1; c++ ) {
+                    for ( int w = r0; w <= r1; w++ ) {
+                        ArrayList<Entry> cell = levelCells.get( key( c, w ) );
+                        if ( cell != null ) {
+                            addIntersecting( cell, r, found, seen );
+                        }
+                    }
+                }
+            }
+        }
+        addIntersecting( largeEntries, r, found, seen );
+        return sorted( found );
+    }
+
+    private static void addIntersecting( ArrayList<Entry> cell, Rectangle2D r, ArrayList<Entry> found, IdentityHashMap<Entry, Entry> seen ) {
+        for ( Entry e : cell ) {
+            if ( e.bounds.intersects( r ) && seen.put( e, e ) == null ) {
+                found.add( e );
+            }
+        }
+    }
+
+    /**
+     * The area around an object that it could possibly occupy or be selected
+     * in: its display rectangle grown by the context border and, for an edge,
+     * including its end points.
+     *
+     * @param go any graph object
+     * @return a new rectangle with the object's bounds
+     */
+    public static Rectangle2D.Double boundsOf( GraphObject go ) {
+        Rectangle2D.Double r = go.getDisplayRect();
+        if ( go instanceof GEdge ) {
+            GEdge ge = (GEdge)go;
+            if ( ge.fromPt != null ) {
+                r.add( ge.fromPt );
+            }
+            if ( ge.toPt != null ) {
+                r.add( ge.toPt );
+            }
+        }
+        double margin = Graph.contextBorderWidth;
+        r.setRect( r.x - margin, r.y - margin, r.width + 2 * margin, r.height + 2 * margin );
+        return r;
+    }
+
+    private void place( Entry e, Rectangle2D.Double r ) {
+        e.bounds = r;
+        e.level = levelFor( r );
+        if ( e.level < 0 ) {
+            largeEntries.add( e );
+            return;
+        }
+        e.col0 = cell( r.x, e.level );
+        e.row0 = cell( r.y, e.level );
+        e.col1 = cell( r.x + r.width, e.level );
+        e.row1 = cell( r.y + r.height, e.level );
+        HashMap<Long, ArrayList<Entry>> levelCells = cells.get( e.level );
+        for ( int c = e.col0; c <= e.col1; c++ ) {
+            for ( int w = e.row0; w <= e.row1; w++ ) {
+                levelCells.computeIfAbsent( key( c, w ), k -> new ArrayList<>( 4 ) ).add( e );
+            }
+        }
+    }
+
+    private void unplace( Entry e ) {
+        if ( e.level < 0 ) {
+            largeEntries.remove( e );
+            return;
+        }
+        HashMap<Long, ArrayList<Entry>> levelCells = cells.get( e.level );
+        for ( int c = e.col0; c <= e.col1; c++ ) {
+            for ( int w = e.row0; w <= e.row1; w++ ) {
+                Long k = key( c, w );
+                ArrayList<Entry> cell = levelCells.get( k );
+                if ( cell != null ) {
+                    cell.remove( e );
+                    if ( cell.isEmpty() ) {
+                        levelCells.remove( k );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the finest level at which the rectangle covers no more than the
+     * maximum number of cells; -1 if there is none.
+     */
+    private int levelFor( Rectangle2D.Double r ) {
+        for ( int level = 0; level < levelCount; level++ ) {
+            if ( ( r.width / cellSizes[ level ] + 1 ) * ( r.height / cellSizes[ level ] + 1 ) <= maxCellsPerObject ) {
+                return level;
+            }
+        }
+        return -1;
+    }
+
+    private int cell( double coord, int level ) {
+        return (int)Math.floor( coord / cellSizes[ level ] );
+    }
+
+    private static Long key( int c, int r ) {
+        return ( (long)c << 32 ) | ( r & 0xffffffffL );
+    }
+
+    private static ArrayList<GraphObject> sorted( ArrayList<Entry> found ) {
+        found.sort( bySequence );
+        ArrayList<GraphObject> result = new ArrayList<>( found.size() );
+        for ( Entry e : found ) {
+            result.add( e.go );
+        }
+        return result;
+    }
+}
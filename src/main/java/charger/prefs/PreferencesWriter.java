@@ -292,6 +292,8 @@ public class PreferencesWriter {
                 compat.GraphFolderField.getToolTipText() )
                 + StringPrefToString("DatabaseFolder", fileToString( Global.DatabaseFolderString), // CR-1004 08-16-19 hsd
                 actors.DatabaseFolderField.getToolTipText() )
+                + StringPrefToString( "KBStoreFolder", fileToString( Global.KBStoreFolderString ),
+                "Folder where the session knowledge base's type hierarchies are kept between sessions (empty = not kept)" )
                 + booleanPrefToString( "allowActorLinksAcrossContexts", Global.allowActorLinksAcrossContexts,
                 actors.allowActorLinksAcrossContexts.getToolTipText() )
                 + booleanPrefToString( "allowNullActorArguments", Global.AllowNullActorArguments,
@@ -302,6 +304,8 @@ public class PreferencesWriter {
                 actors.enableCopyCorefs.getToolTipText() )
                 + booleanPrefToString( "use_1_0_actors", Global.use_1_0_actors,
                 actors.use_1_0_actors.getToolTipText() )
+                + intPrefToString( "actorThreads", Global.actorThreads,
+                "Number of threads for firing independent actor networks at once (1 = one at a time, in a fixed order, the default; 0 = one per processor)" )
                 // CRAFT-specific preferences
 
 //                + "# =============== CRAFT (requirements acquisition) preferences" + Global.LineSeparator
@@ -319,6 +323,8 @@ public class PreferencesWriter {
                 configPanel.ShowBoringDebugInfo.getToolTipText() )
                 + intPrefToString( "maxIterations", SpringGraphLayout.maxIterations,
                 "Maximum number of times to run the spring relaxation algorithm for layout" )
+                + booleanPrefToString( "springLayoutUseQuadtree", Global.springLayoutUseQuadtree,
+                "Whether the spring layout approximates distant repulsion forces, so that large graphs can be laid out" )
                 + StringPrefToString( "moduleNamesToEnableCommaSeparated", Global.moduleNamesToEnableCommaSeparated,
                 "Comma-separated list of ModulePlugin class names that the user wants enabled" )
 
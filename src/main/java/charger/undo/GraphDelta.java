@@ -0,0 +1,162 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package charger.undo;
+
+import charger.EditingChangeState;
+import charger.EditingChangeState.EditChange;
+import chargerlib.undo.UndoableDelta;
+import java.util.ArrayList;
+import kb.KnowledgeBase;
+
+/**
+ * The object-level changes made to a graph by one undoable editing step. Each
+ * change holds a record of an object before and after the step; an insert has
+ * no "before" record and a delete has no "after" record. The delta can be
+ * applied either forward or in reverse by a GraphDeltaTracker. The delta also
+ * holds snapshots of the knowledge base before and after the step, so that
+ * undo and redo can put the knowledge base back along with the graph.
+ *
+ * @see GraphDeltaTracker
+ * @since Charger 4.3
+ */
+public class GraphDelta extends UndoableDelta {
+
+    /**
+     * The kinds of object-level change that a delta can hold.
+     */
+    public enum Kind {
+        INSERT, DELETE,
+        /** the object's layout or appearance changed, but not its meaning */
+        MOVE,
+        /** the object's label, nesting, negation or end points changed */
+        RELABEL
+    }
+
+    /**
+     * One object's change.
+     */
+    public static class Change {
+
+        final GraphObjectRecord before;
+        final GraphObjectRecord after;
+
+        Change( GraphObjectRecord before, GraphObjectRecord after ) {
+            this.before = before;
+            this.after = after;
+        }
+
+        public GraphObjectRecord getBefore() {
+            return before;
+        }
+
+        public GraphObjectRecord getAfter() {
+            return after;
+        }
+
+        public Kind getKind() {
+            if ( before == null ) {
+                return Kind.INSERT;
+            } else if ( after == null ) {
+                return Kind.DELETE;
+            } else if ( before.semanticallyDiffers( after ) ) {
+                return Kind.RELABEL;
+            } else {
+                return Kind.MOVE;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return getKind() + " " + ( after == null ? before : after );
+        }
+    }
+
+    ArrayList<Change> changes = new ArrayList<>();
+    /** id of the outermost graph before and after the step */
+    String topIDBefore, topIDAfter;
+    /** whether the editor considered its content changed before and after the step */
+    boolean somethingHasChangedBefore, somethingHasChangedAfter;
+    /** snapshots of the knowledge base before and after the step; null if not known */
+    KnowledgeBase kbBefore, kbAfter;
+
+    public GraphDelta( String topIDBefore, String topIDAfter, boolean somethingHasChangedBefore, boolean somethingHasChangedAfter ) {
+        this.topIDBefore = topIDBefore;
+        this.topIDAfter = topIDAfter;
+        this.somethingHasChangedBefore = somethingHasChangedBefore;
+        this.somethingHasChangedAfter = somethingHasChangedAfter;
+    }
+
+    public GraphDelta( String topIDBefore, String topIDAfter, boolean somethingHasChangedBefore, boolean somethingHasChangedAfter,
+            KnowledgeBase kbBefore, KnowledgeBase kbAfter ) {
+        this( topIDBefore, topIDAfter, somethingHasChangedBefore, somethingHasChangedAfter );
+        this.kbBefore = kbBefore;
+        this.kbAfter = kbAfter;
+    }
+
+    void add( GraphObjectRecord before, GraphObjectRecord after ) {
+        changes.add( new Change( before, after ) );
+    }
+
+    public ArrayList<Change> getChanges() {
+        return changes;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * @param undo whether the delta is being applied in reverse
+     * @return the id of the outermost graph once the delta has been applied.
+     */
+    public String getTopID( boolean undo ) {
+        return undo ? topIDBefore : topIDAfter;
+    }
+
+    /**
+     * @param undo whether the delta is being applied in reverse
+     * @return whether the editor's content should be considered changed once
+     * the delta has been applied.
+     */
+    public boolean isSomethingHasChanged( boolean undo ) {
+        return undo ? somethingHasChangedBefore : somethingHasChangedAfter;
+    }
+
+    /**
+     * @param undo whether the delta is being applied in reverse
+     * @return a snapshot of the knowledge base as it should be once the delta
+     * has been applied; null if not known.
+     * @see KnowledgeBase#snapshot
+     */
+    public KnowledgeBase getKB( boolean undo ) {
+        return undo ? kbBefore : kbAfter;
+    }
+
+    /**
+     * Classifies this delta the same way the editor classifies its changes.
+     *
+     * @return a semantic change if anything was inserted, deleted or
+     * relabeled; otherwise an appearance change (or no change if empty).
+     */
+    public EditingChangeState getEditingChangeState() {
+        EditingChangeState state = new EditingChangeState( EditChange.UNDOABLE );
+        for ( Change change : changes ) {
+            if ( change.getKind() == Kind.MOVE ) {
+                state.setAppearanceChanged( true );
+            } else {
+                state.setSemanticsChanged( true );
+                state.setAppearanceChanged( true );
+                break;
+            }
+        }
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        return changes.size() + " change(s) " + changes.toString();
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package charger.undo;
+
+import charger.obj.GEdge;
+import charger.obj.GNode;
+import charger.obj.Graph;
+import charger.obj.GraphObject;
+import charger.obj.GraphObjectID;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import kb.KnowledgeBase;
+
+/**
+ * Finds and applies the object-level changes to a graph between undoable
+ * steps. The tracker keeps one record of every object as it was at the last
+ * step. The outermost graph notes which objects are inserted, removed or
+ * changed (see Graph#trackChanges); at the next step only those are compared
+ * against their records, so that a step costs time in proportion to what it
+ * touched rather than to the size of the graph. Only the objects that actually
+ * changed are copied into the delta. Every object is compared only at the
+ * first step, or when the outermost graph has been replaced.
+ * <p>Only the things an editing operation can change are tracked (see
+ * GraphObjectRecord). History records and actor run-time state are not; an
+ * object re-inserted by undo starts with an empty history, although the
+ * complete checkpoints still carry whatever the CGX form saves.
+ *
+ * @see GraphDelta
+ * @see GraphObjectRecord
+ * @since Charger 4.3
+ */
+public class GraphDeltaTracker {
+
+    /** The record of every object at the last step, keyed by object id. */
+    protected HashMap<String, GraphObjectRecord> records = new HashMap<>();
+    protected String topID = null;
+    protected boolean somethingHasChanged = false;
+    /** A snapshot of the knowledge base at the last step; null if not known. */
+    protected KnowledgeBase kb = null;
+    /** Incremented at each capture, so that objects no longer present can be found. */
+    private int generation = 0;
+
+    public GraphDeltaTracker() {
+    }
+
+    /**
+     * Forget all records; the next capture will report every object as
+     * inserted.
+     */
+    public void reset() {
+        records.clear();
+        topID = null;
+        kb = null;
+    }
+
+    /**
+     * @return the snapshot of the knowledge base at the last capture (or
+     * apply); null if not known.
+     */
+    public KnowledgeBase getKB() {
+        return kb;
+    }
+
+    /**
+     * Finds everything that has changed in the graph since the last capture (or
+     * apply) and makes the graph's current state the new baseline.
+     *
+     * @param top the outermost graph
+     * @param changed whether the editor currently considers its content changed
+     * @return the changes; empty if nothing changed.
+     */
+    public GraphDelta capture( Graph top, boolean changed ) {
+        return capture( top, changed, null );
+    }
+
+    /**
+     * Finds everything that has changed in the graph since the last capture (or
+     * apply) and makes the graph's current state the new baseline, along with
+     * the knowledge base's.
+     *
+     * @param top the outermost graph
+     * @param changed whether the editor currently considers its content changed
+     * @param snapshot a snapshot of the knowledge base as it is now; null if
+     * not to be tracked
+     * @return the changes; empty if nothing in the graph changed.
+     * @see KnowledgeBase#snapshot
+     */
+    public GraphDelta capture( Graph top, boolean changed, KnowledgeBase snapshot ) {
+        GraphDelta delta = new GraphDelta( topID, top.objectID.toString(), somethingHasChanged, changed, kb, snapshot );
+        Set<GraphObject> noted = top.takeChangedObjects();
+        if ( noted == null || !top.objectID.toString().equals( topID ) ) {
+            top.trackChanges();
+            generation++;
+            captureObject( top, delta );
+            Iterator<GraphObjectRecord> iter = records.values().iterator();
+            while ( iter.hasNext() ) {
+                GraphObjectRecord rec = iter.next();
+                if ( rec.seen != generation ) {
+                    delta.add( rec, null );
+                    iter.remove();
+                }
+            }
+        } else {
+            synchronized ( noted ) {
+                for ( GraphObject go : noted ) {
+                    // an object removed from the graph may have been replaced by another with its id
+                    GraphObject current = top.findByID( go.objectID );
+                    if ( current != null ) {
+                        compare( current, delta );
+                    } else {
+                        GraphObjectRecord old = records.remove( go.objectID.toString() );
+                        if ( old != null ) {
+                            delta.add( old, null );
+                        }
+                    }
+                }
+            }
+        }
+        topID = top.objectID.toString();
+        somethingHasChanged = changed;
+        kb = snapshot;
+        return delta;
+    }
+
+    /**
+     * Compares the object (and if a graph, its contents) against the records.
+     * Graphs are recorded before their contents.
+     */
+    private void captureObject( GraphObject go, GraphDelta delta ) {
+        compare( go, delta );
+        if ( go instanceof Graph ) {
+            Iterator<GraphObject> iter = ( (Graph)go ).graphObjects();
+            while ( iter.hasNext() ) {
+                captureObject( iter.next(), delta );
+            }
+        }
+    }
+
+    /**
+     * Compares one object against its record, adding it to the delta and
+     * re-recording it if it has changed.
+     */
+    private void compare( GraphObject go, GraphDelta delta ) {
+        String id = go.objectID.toString();
+        GraphObjectRecord old = records.get( id );
+        if ( old == null || !old.matches( go ) ) {
+            GraphObjectRecord rec = new GraphObjectRecord( go );
+            delta.add( old, rec );
+            records.put( id, rec );
+            rec.seen = generation;
+        } else {
+            old.seen = generation;
+        }
+    }
+
+    /**
+     * Applies a delta to the graph, then makes the resulting state the new
+     * baseline. The caller is responsible for making sure that the outermost
+     * graph has the delta's top id.
+     *
+     * @param delta the changes to apply
+     * @param undo if true, apply the changes in reverse; otherwise forward
+     * @param top the outermost graph
+     * @return true if every change could be applied; false if the graph did not
+     * match the delta (in which case the graph may be partly changed).
+     */
+    public boolean apply( GraphDelta delta, boolean undo, Graph top ) {
+        ArrayList<GraphObjectRecord> deletes = new ArrayList<>();
+        ArrayList<GraphObjectRecord> inserts = new ArrayList<>();
+        ArrayList<GraphObjectRecord> modifies = new ArrayList<>();
+        for ( GraphDelta.Change change : delta.getChanges() ) {
+            GraphObjectRecord from = undo ? change.after : change.before;
+            GraphObjectRecord to = undo ? change.before : change.after;
+            if ( to == null ) {
+                deletes.add( from );
+            } else if ( from == null ) {
+                inserts.add( to );
+            } else {
+                modifies.add( to );
+            }
+        }
+        HashMap<GraphObject, GraphObjectRecord> touched = new HashMap<>();
+
+        // edges first, then nodes, then contexts, so that nothing is forgotten twice
+        for ( int pass = 0; pass < 3; pass++ ) {
+            for ( GraphObjectRecord rec : deletes ) {
+                if ( pass != ( rec.isEdge() ? 0 : rec.isGraph() ? 2 : 1 ) ) {
+                    continue;
+                }
+                GraphObject go = top.findByID( new GraphObjectID( rec.id ) );
+                if ( go != null && go != top && go.getOwnerGraph() != null ) {
+                    go.getOwnerGraph().forgetObject( go );
+                }
+                records.remove( rec.id );
+            }
+        }
+
+        // nodes and contexts, each one after its owner; then the edges between them
+        HashMap<String, GraphObjectRecord> pending = new HashMap<>();
+        for ( GraphObjectRecord rec : inserts ) {
+            if ( !rec.isEdge() ) {
+                pending.put( rec.id, rec );
+            }
+        }
+        HashMap<String, GraphObject> created = new HashMap<>();
+        for ( GraphObjectRecord rec : inserts ) {
+            if ( !rec.isEdge() && !insertNode( rec, pending, created, touched, top ) ) {
+                return false;
+            }
+        }
+        for ( GraphObjectRecord rec : inserts ) {
+            if ( rec.isEdge() ) {
+                Graph owner = findGraph( top, rec.ownerID, created );
+                GraphObject go = rec.instantiate();
+                if ( owner == null || go == null ) {
+                    return false;
+                }
+                owner.insertObject( go );
+                if ( !attach( (GEdge)go, rec, top, created ) ) {
+                    return false;
+                }
+                rec.applyTo( go );
+                touched.put( go, rec );
+            }
+        }
+
+        for ( GraphObjectRecord rec : modifies ) {
+            GraphObject go = find( top, rec.id, created );
+            if ( go == null ) {
+                return false;
+            }
+            if ( go != top && !GraphObjectRecord.ownerIDOf( go ).equals( rec.ownerID ) ) {
+                Graph owner = findGraph( top, rec.ownerID, created );
+                if ( owner == null ) {
+                    return false;
+                }
+                go.getOwnerGraph().removeFromGraph( go );
+                owner.insertObject( go );
+            }
+            if ( go instanceof GEdge && !attach( (GEdge)go, rec, top, created ) ) {
+                return false;
+            }
+            rec.applyTo( go );
+            touched.put( go, rec );
+        }
+
+        // place the edges of every node touched, then put the recorded edges back exactly as they were
+        for ( GraphObject go : touched.keySet() ) {
+            if ( go instanceof GNode ) {
+                for ( Object ge : ( (GNode)go ).getEdges() ) {
+                    placeEdge( (GEdge)ge );
+                }
+            }
+        }
+        for ( Map.Entry<GraphObject, GraphObjectRecord> entry : touched.entrySet() ) {
+            if ( entry.getKey() instanceof GEdge ) {
+                placeEdge( (GEdge)entry.getKey() );
+                entry.getValue().applyTo( entry.getKey() );
+            }
+        }
+
+        // re-record what was touched, since placing edges and re-labeling may adjust the layout slightly
+        for ( GraphObject go : touched.keySet() ) {
+            records.put( go.objectID.toString(), new GraphObjectRecord( go ) );
+        }
+        for ( GraphObject go : touched.keySet() ) {
+            if ( go instanceof GNode ) {
+                for ( Object ge : ( (GNode)go ).getEdges() ) {
+                    records.put( ( (GEdge)ge ).objectID.toString(), new GraphObjectRecord( (GEdge)ge ) );
+                }
+            }
+        }
+        records.put( top.objectID.toString(), new GraphObjectRecord( top ) );
+        topID = delta.getTopID( undo );
+        somethingHasChanged = delta.isSomethingHasChanged( undo );
+        kb = delta.getKB( undo );
+        return true;
+    }
+
+    /**
+     * Inserts a node or context from its record, first inserting its owner if
+     * that is also waiting to be inserted.
+     *
+     * @return false if the owner could not be found.
+     */
+    private boolean insertNode( GraphObjectRecord rec, HashMap<String, GraphObjectRecord> pending,
+            HashMap<String, GraphObject> created, HashMap<GraphObject, GraphObjectRecord> touched, Graph top ) {
+        if ( pending.remove( rec.id ) == null ) {
+            return true;        // already inserted along with something it owns
+        }
+        if ( rec.ownerID.equals( GraphObjectID.zero.toString() ) ) {
+            rec.applyTo( top );
+            return true;
+        }
+        GraphObjectRecord ownerRec = pending.get( rec.ownerID );
+        if ( ownerRec != null && !insertNode( ownerRec, pending, created, touched, top ) ) {
+            return false;
+        }
+        Graph owner = findGraph( top, rec.ownerID, created );
+        GraphObject go = rec.instantiate();
+        if ( owner == null || go == null ) {
+            return false;
+        }
+        owner.insertObject( go );
+        rec.applyTo( go );
+        created.put( rec.id, go );
+        touched.put( go, rec );
+        return true;
+    }
+
+    /**
+     * Connects the edge to the end points named in the record, if it isn't
+     * already connected to them.
+     */
+    private boolean attach( GEdge ge, GraphObjectRecord rec, Graph top, HashMap<String, GraphObject> created ) {
+        GraphObject from = find( top, rec.fromID, created );
+        GraphObject to = find( top, rec.toID, created );
+        if ( !( from instanceof GNode ) || !( to instanceof GNode ) ) {
+            return false;
+        }
+        if ( ge.fromObj == from && ge.toObj == to ) {
+            return true;
+        }
+        ge.detachFromGNodes();
+        ge.fromObj = from;
+        ge.toObj = to;
+        ( (GNode)from ).attachGEdge( ge );
+        ( (GNode)to ).attachGEdge( ge );
+        return true;
+    }
+
+    private static void placeEdge( GEdge ge ) {
+        if ( ge.fromObj != null && ge.toObj != null ) {
+            ge.placeEdge();
+        }
+    }
+
+    /**
+     * Looks first among the objects just created, since that's usually where
+     * owners and end points of newly inserted objects are, before searching
+     * the whole graph.
+     */
+    private static GraphObject find( Graph top, String id, HashMap<String, GraphObject> created ) {
+        if ( id == null ) {
+            return null;
+        }
+        GraphObject go = created.get( id );
+        if ( go != null ) {
+            return go;
+        }
+        return top.findByID( new GraphObjectID( id ) );
+    }
+
+    private static Graph findGraph( Graph top, String id, HashMap<String, GraphObject> created ) {
+        GraphObject go = find( top, id, created );
+        return go instanceof Graph ? (Graph)go : null;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package charger.undo;
+
+import charger.obj.GEdge;
+import charger.obj.GNode;
+import charger.obj.Graph;
+import charger.obj.GraphObject;
+import charger.obj.GraphObjectID;
+import chargerlib.Rectangle3D;
+import java.awt.Color;
+import java.awt.Font;
+import java.util.Arrays;
+import charger.gloss.AbstractTypeDescriptor;
+
+/**
+ * An unchanging copy of the parts of one graph object that an editing
+ * operation can alter: its nesting, label, type descriptors, layout and
+ * appearance, and (for edges) its end points. Records are shared between the
+ * tracker's copy of the graph and the deltas it produces, so apart from the
+ * tracker's own bookkeeping they are never modified once created.
+ *
+ * @see GraphDeltaTracker
+ * @since Charger 4.3
+ */
+public class GraphObjectRecord {
+
+    final String id;
+    /** The owner graph's id, or "0" for the outermost graph. */
+    final String ownerID;
+    final Class<? extends GraphObject> objClass;
+    final String textLabel;
+    final AbstractTypeDescriptor[] descriptors;
+    final double x, y, width, height, depth;
+    final Color foreColor, backColor;
+    final Font labelFont;
+    final boolean negated;
+    final String fromID, toID;
+    final int arrowHeadWidth, arrowHeadHeight;
+    final double edgeThickness;
+    /** For graphs only, when the graph was first created. */
+    final String createdTimeStamp;
+
+    /** Generation in which the tracker last found this record to be current. */
+    int seen = 0;
+
+    /**
+     * Makes a record of the current state of the given object.
+     *
+     * @param go the object to be recorded
+     */
+    public GraphObjectRecord( GraphObject go ) {
+        id = go.objectID.toString();
+        ownerID = ownerIDOf( go );
+        objClass = go.getClass();
+        textLabel = go.textLabel;
+        descriptors = go instanceof GNode ? ( (GNode)go ).getTypeDescriptors() : null;
+        Rectangle3D r = go.getDisplayRect3D();
+        x = r.x;
+        y = r.y;
+        width = r.width;
+        height = r.height;
+        depth = r.depth;
+        foreColor = go.foreColor;
+        backColor = go.backColor;
+        labelFont = go.getLabelFont();
+        negated = go.isNegated();
+        createdTimeStamp = go instanceof Graph ? ( (Graph)go ).createdTimeStamp : null;
+        if ( go instanceof GEdge ) {
+            GEdge ge = (GEdge)go;
+            fromID = ge.fromObj == null ? null : ge.fromObj.objectID.toString();
+            toID = ge.toObj == null ? null : ge.toObj.objectID.toString();
+            arrowHeadWidth = ge.getArrowHeadWidth();
+            arrowHeadHeight = ge.getArrowHeadHeight();
+            edgeThickness = ge.getEdgeThickness();
+        } else {
+            fromID = null;
+            toID = null;
+            arrowHeadWidth = 0;
+            arrowHeadHeight = 0;
+            edgeThickness = 0;
+        }
+    }
+
+    static String ownerIDOf( GraphObject go ) {
+        return go.getOwnerGraph() == null ? GraphObjectID.zero.toString() : go.getOwnerGraph().objectID.toString();
+    }
+
+    public String getID() {
+        return id;
+    }
+
+    public String getOwnerID() {
+        return ownerID;
+    }
+
+    public boolean isEdge() {
+        return GEdge.class.isAssignableFrom( objClass );
+    }
+
+    public boolean isGraph() {
+        return Graph.class.isAssignableFrom( objClass );
+    }
+
+    /**
+     * Whether this record still describes the given object. Does not create
+     * any objects unless the object is a node with type descriptors.
+     *
+     * @param go an object with the same id as this record
+     * @return true if nothing recorded here has changed in the object.
+     */
+    public boolean matches( GraphObject go ) {
+        Rectangle3D r = go.getDisplayRect3D();
+        if ( r.x != x || r.y != y || r.width != width || r.height != height || r.depth != depth ) {
+            return false;
+        }
+        if ( go.getClass() != objClass || go.isNegated() != negated
+                || !same( go.textLabel, textLabel ) || !same( ownerIDOf( go ), ownerID )
+                || !same( go.foreColor, foreColor ) || !same( go.backColor, backColor )
+                || !same( go.getLabelFont(), labelFont ) ) {
+            return false;
+        }
+        if ( go instanceof GEdge ) {
+            GEdge ge = (GEdge)go;
+            return same( ge.fromObj == null ? null : ge.fromObj.objectID.toString(), fromID )
+                    && same( ge.toObj == null ? null : ge.toObj.objectID.toString(), toID )
+                    && ge.getArrowHeadWidth() == arrowHeadWidth
+                    && ge.getArrowHeadHeight() == arrowHeadHeight
+                    && ge.getEdgeThickness() == edgeThickness;
+        }
+        if ( go instanceof Graph && !same( ( (Graph)go ).createdTimeStamp, createdTimeStamp ) ) {
+            return false;
+        }
+        if ( go instanceof GNode ) {
+            return Arrays.equals( ( (GNode)go ).getTypeDescriptors(), descriptors );
+        }
+        return true;
+    }
+
+    /**
+     * Whether the difference between this record and another of the same object
+     * alters the meaning of the graph, rather than just its appearance.
+     *
+     * @param other a record of the same object
+     * @return true if the label, nesting, negation, type descriptors or end
+     * points differ.
+     */
+    public boolean semanticallyDiffers( GraphObjectRecord other ) {
+        return objClass != other.objClass || negated != other.negated
+                || !same( textLabel, other.textLabel ) || !same( ownerID, other.ownerID )
+                || !same( fromID, other.fromID ) || !same( toID, other.toID )
+                || !Arrays.equals( descriptors, other.descriptors );
+    }
+
+    /**
+     * Creates a new, empty object of the recorded class, with the recorded id.
+     * The object is not inserted into any graph.
+     *
+     * @return the new object, or null if it could not be created.
+     */
+    public GraphObject instantiate() {
+        GraphObject go = null;
+        try {
+            go = objClass.getDeclaredConstructor().newInstance();
+        } catch ( ReflectiveOperationException ex ) {
+            return null;
+        }
+        go.objectID = new GraphObjectID( id );
+        return go;
+    }
+
+    /**
+     * Sets the recorded label, appearance and layout into the given object.
+     * Does not change the object's owner graph or its end points.
+     *
+     * @param go an object with the same id as this record
+     */
+    public void applyTo( GraphObject go ) {
+        if ( !same( go.textLabel, textLabel ) ) {
+            go.setTextLabel( textLabel );
+        }
+        if ( go instanceof GNode && !Arrays.equals( ( (GNode)go ).getTypeDescriptors(), descriptors ) ) {
+            ( (GNode)go ).setTypeDescriptors( descriptors.clone() );
+        }
+        go.setNegated( negated );
+        if ( go instanceof Graph ) {
+            ( (Graph)go ).createdTimeStamp = createdTimeStamp;
+        }
+        go.foreColor = foreColor;
+        go.backColor = backColor;
+        go.setLabelFont( labelFont );
+        go.setDisplayRect3D( new Rectangle3D( x, y, width, height, depth ) );
+        if ( go instanceof GEdge ) {
+            GEdge ge = (GEdge)go;
+            ge.setArrowHeadWidth( arrowHeadWidth );
+            ge.setArrowHeadHeight( arrowHeadHeight );
+            ge.setEdgeThickness( edgeThickness );
+        } else {
+            go.setCenterOnly( go.getCenter() );     // re-positions the label within the rectangle
+        }
+    }
+
+    private static boolean same( Object a, Object b ) {
+        return a == b || ( a != null && a.equals( b ) );
+    }
+
+    @Override
+    public String toString() {
+        return objClass.getSimpleName() + " " + id + " \"" + textLabel + "\" in " + ownerID;
+    }
+}
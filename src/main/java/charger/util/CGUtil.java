@@ -1,6 +1,8 @@
 package charger.util;
 
 import charger.Global;
+import charger.obj.Actor;
+import charger.obj.Coref;
 import charger.obj.GEdge;
 import charger.obj.GNode;
 import charger.obj.Graph;
@@ -430,6 +432,55 @@ public class CGUtil {
         }
     }
     
+    /**
+     * Groups nodes according to the part of the actor network they are in, so
+     * that changing a node in one group can never cause an actor to fire in
+     * another. Like getConnectedComponents, but only actor links (and
+     * coreferent links, if referents are copied along them) connect nodes, and
+     * the components reach into nested contexts.
+     *
+     * @param nodes the nodes to be grouped
+     * @return one list for each component containing any of the nodes, in the
+     * order the components' first nodes appear; each list holds the given
+     * nodes in that component, in the order given.
+     * @see #getConnectedComponents
+     * @see charger.act.GraphUpdater#updateGNodes
+     */
+    public static ArrayList<ArrayList<GNode>> getActorComponents( Collection<? extends GNode> nodes ) {
+        IdentityHashMap<GNode, Integer> componentLabels = new IdentityHashMap<>();
+        ArrayList<ArrayList<GNode>> nodeLists = new ArrayList<>();
+        for ( GNode node : nodes ) {
+            Integer label = componentLabels.get( node );
+            if ( label == null ) {
+                label = nodeLists.size();
+                nodeLists.add( new ArrayList<>() );
+                labelActorComponent( componentLabels, node, label );
+            }
+            nodeLists.get( label ).add( node );
+        }
+        return nodeLists;
+    }
+
+    /** Labels every node reachable by actor (or copying coreferent) links. */
+    private static void labelActorComponent( IdentityHashMap<GNode, Integer> componentLabels, GNode startNode, Integer label ) {
+        ArrayDeque<GNode> toVisit = new ArrayDeque<>();
+        componentLabels.put( startNode, label );
+        toVisit.add( startNode );
+        while ( !toVisit.isEmpty() ) {
+            GNode node = toVisit.poll();
+            for ( Object o : node.getEdges() ) {
+                GEdge edge = (GEdge)o;
+                GraphObject other = edge.fromObj == node ? edge.toObj : edge.fromObj;
+                boolean actorLink = node instanceof Actor || other instanceof Actor;
+                boolean corefLink = edge instanceof Coref && Global.enableCopyCorefs;
+                if ( other instanceof GNode && ( actorLink || corefLink ) && !componentLabels.containsKey( (GNode)other ) ) {
+                    componentLabels.put( (GNode)other, label );
+                    toVisit.add( (GNode)other );
+                }
+            }
+        }
+    }
+
     /**
      * Finds the center of the bounding rectangle that enclosed all the nodes
      * @param nodes
@@ -19,6 +19,7 @@ public enum FileFormat {
     CHARGER2( "cg", "Charger v1.0-v2.9", Family.TEXT ), // "native" text format prior to version 3.0
     CHARGER3( "cgx", "Charger v3.0-v3.8", Family.TEXT), // "native" XML based format up to version 3.9
     CGIF2007( "cgif", "CGIF 2007 (.cgif)", Family.TEXT ), // CGIF format based on the ISO/IEC 24707:2007 Annex B standard
+    CGB( "cgb", "Charger binary (.cgb)", Family.TEXT ), // compact binary form of what's in a .cgx file
     PREF("conf", "CharGer preference file", Family.TEXT ), // preferences file in the output form of Properties.write() 
     BMP( "bmp", "Bitmap (BMP)", Family.BITMAP ),
     GIF( "gif", "GIF image", Family.BITMAP ),
@@ -17,6 +17,7 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Toolkit;
 import java.awt.event.ComponentListener;
+import java.awt.event.InputEvent;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
@@ -85,8 +86,20 @@ public class General {
         /**
      * Key to use with shortcut commands; i.e., CNTL on PC, Cmd on Mac
      */
-    public static int AcceleratorKey = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+    public static int AcceleratorKey = menuShortcutKeyMask();
     public static BasicStroke defaultStroke = new BasicStroke( 1.5f );
+
+    /**
+     * @return the platform's key for shortcut commands; CNTL if there is no
+     * display (e.g., when converting graphs from the command line), since the
+     * toolkit can't be asked then.
+     */
+    public static int menuShortcutKeyMask() {
+        if ( GraphicsEnvironment.isHeadless() ) {
+            return InputEvent.CTRL_DOWN_MASK;
+        }
+        return Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+    }
 //    public static SimpleDateFormat MDYdateFormat = new SimpleDateFormat( "M-dd-yy" );
 
       /**
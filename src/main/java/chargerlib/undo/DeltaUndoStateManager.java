@@ -0,0 +1,229 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package chargerlib.undo;
+
+import chargerlib.General;
+
+/**
+ * Manages undo/redo by saving only the changes (deltas) made at each undoable
+ * step, rather than a complete copy of the state. A complete state is still
+ * saved as a checkpoint at the first step and then every so often, so that if
+ * a delta ever fails to apply, the state can be rebuilt from the nearest
+ * checkpoint and the deltas on either side of it. Memory used is therefore
+ * proportional to the size of the edits, plus a few checkpoints.
+ * <p>Each entry in the list describes how to get to its state from the entry
+ * before it; undo applies the current entry's delta in reverse, redo applies
+ * the next entry's delta forward.
+ *
+ * @see DeltaUndoable
+ * @see UndoableDelta
+ * @since Charger 4.3
+ */
+public class DeltaUndoStateManager extends UndoStateManager {
+
+    /**
+     * Default number of steps between complete checkpoints.
+     */
+    public static int defaultCheckpointInterval = 10;
+
+    /**
+     * One undoable step: the delta that led to it, and possibly a complete
+     * copy of the state after it.
+     */
+    protected static class DeltaStep {
+
+        UndoableDelta delta;
+        UndoableState checkpoint;
+
+        DeltaStep( UndoableDelta delta, UndoableState checkpoint ) {
+            this.delta = delta;
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public String toString() {
+            return ( checkpoint == null ? "" : "[checkpoint] " ) + ( delta == null ? "" : delta.toString() );
+        }
+    }
+
+    protected UndoRedoList<DeltaStep> steps = null;
+    /**
+     * The object whose deltas are being managed; same as stateSource.
+     */
+    protected DeltaUndoable deltaSource = null;
+    /**
+     * How many steps may pass before a complete checkpoint is saved.
+     */
+    protected int checkpointInterval = defaultCheckpointInterval;
+
+    /**
+     * Instantiates the manager, with an undo/redo maximum level.
+     *
+     * @param source the object whose changes are to be undone/redone
+     * @param max the most number of previous/future actions handled by "undo"
+     * If max is reached, then old states are discarded.
+     */
+    public DeltaUndoStateManager( DeltaUndoable source, int max ) {
+        super( source, 1 );
+        steps = new UndoRedoList<>( max );
+        deltaSource = source;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public void setCheckpointInterval( int checkpointInterval ) {
+        this.checkpointInterval = Math.max( 1, checkpointInterval );
+    }
+
+    /**
+     * Tells the state manager that we've just completed something undoable.
+     * If nothing actually changed, no step is saved.
+     */
+    @Override
+    public void markAfterUndoableStep() {
+        if ( !isEnabled() ) {
+            return;
+        }
+        if ( steps.mostRecentState() == null ) {
+            deltaSource.currentDelta();     // establishes the baseline for later deltas
+            steps.pushCurrent( new DeltaStep( null, stateSource.currentState() ) );
+        } else {
+            UndoableDelta delta = deltaSource.currentDelta();
+            if ( delta != null && !delta.isEmpty() ) {
+                UndoableState checkpoint = null;
+                // make sure at least one checkpoint survives when the oldest steps are discarded
+                if ( stepsSinceCheckpoint() + 1 >= Math.min( checkpointInterval, steps.maxUndo - 1 ) ) {
+                    checkpoint = stateSource.currentState();
+                }
+                steps.pushCurrent( new DeltaStep( delta, checkpoint ) );
+            }
+        }
+        stateSource.setupMenus();
+    }
+
+    /**
+     * Restores the object's state from the last saved state by applying the
+     * current step's delta in reverse. Leaves the current state as a possible
+     * redo target. Disables this manager during the restore operation.
+     */
+    @Override
+    public void doUndo() {
+        if ( !isEnabled() || !steps.undoAvailable() ) {
+            return;
+        }
+        DeltaStep step = steps.mostRecentState();
+        steps.popUndo();
+        setEnabled( false );
+        if ( !deltaSource.applyDelta( step.delta, true ) ) {
+            rebuildState( steps.getCurrentIndex() );
+        }
+        setEnabled( true );
+        stateSource.setupMenus();
+    }
+
+    /**
+     * Restores the object's state from the state just forward of the current
+     * one by applying the next step's delta. Disables this manager during the
+     * restore operation.
+     */
+    @Override
+    public void doRedo() {
+        if ( !isEnabled() || !steps.redoAvailable() ) {
+            return;
+        }
+        DeltaStep step = steps.popRedo();
+        setEnabled( false );
+        if ( !deltaSource.applyDelta( step.delta, false ) ) {
+            rebuildState( steps.getCurrentIndex() );
+        }
+        setEnabled( true );
+        stateSource.setupMenus();
+    }
+
+    /**
+     * Rebuilds the state at the given position from the nearest checkpoint,
+     * replaying deltas forward from an earlier checkpoint or in reverse from a
+     * later one.
+     *
+     * @param target position in the step list whose state is wanted
+     */
+    protected void rebuildState( int target ) {
+        int k = target;
+        while ( k >= 0 && ( steps.get( k ) == null || steps.get( k ).checkpoint == null ) ) {
+            k--;
+        }
+        if ( k >= 0 ) {
+            stateSource.restoreState( steps.get( k ).checkpoint );
+            for ( k++; k <= target; k++ ) {
+                if ( !deltaSource.applyDelta( steps.get( k ).delta, false ) ) {
+                    General.error( "Undo/redo could not restore step " + k + "; state may be incomplete." );
+                    return;
+                }
+            }
+            return;
+        }
+        k = target + 1;
+        while ( steps.get( k ) != null && steps.get( k ).checkpoint == null ) {
+            k++;
+        }
+        if ( steps.get( k ) == null ) {
+            General.error( "Undo/redo has no checkpoint to restore from; state may be incomplete." );
+            return;
+        }
+        stateSource.restoreState( steps.get( k ).checkpoint );
+        for ( ; k > target; k-- ) {
+            if ( !deltaSource.applyDelta( steps.get( k ).delta, true ) ) {
+                General.error( "Undo/redo could not restore step " + k + "; state may be incomplete." );
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return how many steps have been saved since the most recent checkpoint
+     * at or before the current one.
+     */
+    protected int stepsSinceCheckpoint() {
+        int count = 0;
+        for ( int k = steps.getCurrentIndex(); k >= 0; k-- ) {
+            if ( steps.get( k ) != null && steps.get( k ).checkpoint != null ) {
+                return count;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean undoAvailable() {
+        if ( !isEnabled() ) {
+            return false;
+        }
+        return steps.undoAvailable();
+    }
+
+    @Override
+    public boolean redoAvailable() {
+        if ( !isEnabled() ) {
+            return false;
+        }
+        return steps.redoAvailable();
+    }
+
+    @Override
+    public void reset() {
+        steps.reset();
+    }
+
+    /**
+     * Generally used for debugging
+     */
+    @Override
+    public String toString() {
+        return steps.toString();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package chargerlib.undo;
+
+/**
+ * An undoable object that can describe its changes as deltas, so that the
+ * undo/redo list need not hold a complete copy of the object for every step.
+ * The complete state operations of Undoable are still required; they are used
+ * for periodic checkpoints and as a fallback if a delta cannot be applied.
+ *
+ * @see DeltaUndoStateManager
+ * @since Charger 4.3
+ */
+public interface DeltaUndoable extends Undoable {
+
+    /**
+     * Creates a delta describing all changes since the last time this method
+     * was called (or since the last restoreState or applyDelta). The
+     * implementer is responsible for remembering whatever it needs in order to
+     * find those changes. Calling this method establishes a new baseline, even
+     * if the caller discards the result.
+     *
+     * @return the changes since the last baseline; may be empty but not null.
+     */
+    public UndoableDelta currentDelta();
+
+    /**
+     * Applies the given delta to the object, establishing a new baseline.
+     * It is up to the user to ensure that nothing in this method causes the
+     * undo manager to become enabled.
+     *
+     * @param delta a delta previously returned by currentDelta
+     * @param undo if true, apply the delta in reverse; otherwise forward.
+     * @return true if the delta was completely applied; false if the object
+     * could not be brought to the delta's state.
+     */
+    public boolean applyDelta( UndoableDelta delta, boolean undo );
+}
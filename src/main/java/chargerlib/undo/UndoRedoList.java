@@ -205,4 +205,25 @@ public class UndoRedoList<T> {
             return null;
         }
     }
+
+    /**
+     * Get the state at a given position in the list, without altering the
+     * undo/redo list.
+     * @param index position in the list, from 0 (oldest) to maxUndo-1
+     * @return the state at that position; null if there isn't one.
+     */
+    public T get( int index ) {
+        if ( index < 0 || index >= stateList.size() ) {
+            return null;
+        }
+        return stateList.get( index );
+    }
+
+    /**
+     * @return the position of the current state in the list; -1 if there is no
+     * current state.
+     */
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
 }
@@ -0,0 +1,26 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package chargerlib.undo;
+
+/**
+ * A state that records only the changes between two successive states,
+ * rather than a complete copy. A delta must contain enough information to be
+ * applied in either direction: forward (redo) or in reverse (undo).
+ *
+ * @see DeltaUndoable
+ * @see DeltaUndoStateManager
+ * @since Charger 4.3
+ */
+public abstract class UndoableDelta extends UndoableState {
+
+    public UndoableDelta() {
+    }
+
+    /**
+     * @return true if this delta records no changes at all, in which case it
+     * need not be saved.
+     */
+    public abstract boolean isEmpty();
+}
@@ -26,6 +26,21 @@ public class BinaryTuple
     public GNode relation = null;
         /** The actual second ("right hand") concept associated with this tuple. */
     public Concept concept2 = null;
+
+        /** Type label of the first concept with only its letters and digits kept, for matching.
+            @see #normalize
+            @since Charger 4.3 */
+    public String concept1_type_key = null;
+        /** Referent of the first concept with only its letters and digits kept, for matching. @since Charger 4.3 */
+    public String concept1_referent_key = null;
+        /** Type label of the second concept with only its letters and digits kept, for matching. @since Charger 4.3 */
+    public String concept2_type_key = null;
+        /** Referent of the second concept with only its letters and digits kept, for matching. @since Charger 4.3 */
+    public String concept2_referent_key = null;
+        /** Relation label with its case folded, so that labels equal ignoring case have equal keys.
+            @see #foldCase
+            @since Charger 4.3 */
+    public String relation_key = null;
         
     public BinaryTuple() { };
     
@@ -46,6 +61,7 @@ public class BinaryTuple
         relation_label = r.getTextLabel();
         concept2_label = c2.getTextLabel();
         sentence = ConceptManager.makeSentence( concept1, relation, concept2 );
+        makeKeys();
     }
     
     
@@ -73,9 +89,71 @@ public class BinaryTuple
 	concept1 = (Concept) v.get( ConceptManager.COL_CONCEPT_1 );
 	relation = (Relation) v.get( ConceptManager.COL_RELATION  );
 	concept2 = (Concept) v.get( ConceptManager.COL_CONCEPT_2 );
-
+        makeKeys();
     }        
 
+    /**
+        Works out the normalized forms of the concepts' type labels and referents and of the relation label,
+        so that matchers comparing many pairs of tuples needn't do it for every comparison.
+        They are taken from the concepts as they are now; if a concept is changed afterward, call this again.
+        @since Charger 4.3
+     */
+    public void makeKeys()
+    {
+        if ( concept1 != null )
+        {
+            concept1_type_key = normalize( concept1.getTypeLabel() );
+            concept1_referent_key = normalize( concept1.getReferent() );
+        }
+        if ( concept2 != null )
+        {
+            concept2_type_key = normalize( concept2.getTypeLabel() );
+            concept2_referent_key = normalize( concept2.getReferent() );
+        }
+        relation_key = foldCase( relation_label );
+    }
+
+    /**
+        @param s any string
+        @return the string with every character other than [a-zA-Z0-9] removed; the same as
+            replacing the regular expression [^a-zA-Z0-9] with nothing, but without the regular expression.
+        @since Charger 4.3
+     */
+    public static String normalize( String s )
+    {
+        if ( s == null ) return null;
+        int k = 0;
+        while ( k < s.length() && isAlphaNumeric( s.charAt( k ) ) ) k++;
+        if ( k == s.length() ) return s;
+        StringBuilder b = new StringBuilder( s.length() );
+        b.append( s, 0, k );
+        for ( ; k < s.length(); k++ )
+        {
+            char c = s.charAt( k );
+            if ( isAlphaNumeric( c ) ) b.append( c );
+        }
+        return b.toString();
+    }
+
+    private static boolean isAlphaNumeric( char c )
+    {
+        return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || ( c >= '0' && c <= '9' );
+    }
+
+    /**
+        @param s any string
+        @return the string with each character's case folded the way String.equalsIgnoreCase compares them,
+            so that two strings equal ignoring case have equal folded strings.
+        @since Charger 4.3
+     */
+    public static String foldCase( String s )
+    {
+        if ( s == null ) return null;
+        StringBuilder b = new StringBuilder( s.length() );
+        s.codePoints().forEach( c -> b.appendCodePoint( Character.toLowerCase( Character.toUpperCase( c ) ) ) );
+        return b.toString();
+    }
+
 
     /**
             Returns the colum header labels when gathering tuples from subgraphs.
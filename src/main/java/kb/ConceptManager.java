@@ -828,14 +828,12 @@ public class ConceptManager {
             // if a term is found in the hierarchy without a definition, then find one somewhere.
             if ( mydescr.length == 0 ) {
             	charger.obj.Graph[] gs = Global.knowledgeManager.getAllGraphs();
+                // probably should be smarter about comparing the text labels
+                ArrayList<GNode> sameLabel = Global.sessionKB.getIndex().findNodesWithLabel( type.getTextLabel(), null );
                 for ( int gnum = 0; gnum < gs.length; gnum++ ) {
-                    Iterator gns = new DeepIterator( gs[ gnum], GraphObject.Kind.GNODE );
-                    while ( gns.hasNext() ) {
+                    for ( GNode gn : sameLabel ) {
                         // if the sought type label appears (perhaps as a compound term), use it
-                        GNode gn = (GNode)gns.next();
-                        // probably should be smarter about comparing the text labels
-                        if ( gn.getTextLabel().equalsIgnoreCase( type.getTextLabel() )
-                                && gn.getTypeDescriptor() != null ) {
+                        if ( gn.getTypeDescriptor() != null && KnowledgeIndex.isWithin( gn, gs[ gnum] ) ) {
                             mydescr = gn.getTypeDescriptors();
                             break;		// quit looking in this graph
                         }
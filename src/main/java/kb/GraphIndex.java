@@ -0,0 +1,175 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package kb;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import charger.obj.Actor;
+import charger.obj.Arrow;
+import charger.obj.Concept;
+import charger.obj.DeepIterator;
+import charger.obj.GEdge;
+import charger.obj.GNode;
+import charger.obj.Graph;
+import charger.obj.GraphObject;
+import charger.obj.Relation;
+import kb.hierarchy.TypeHierarchy;
+
+/**
+ * A graph's concepts, contexts, relations and actors, numbered in the order
+ * found (with the graph itself as number 0), with the numbers of each node's
+ * context and arguments, and the nodes of each kind indexed by type key.
+ *
+ * @see Projector
+ * @see MaximalJoin
+ * @since Charger 4.3
+ */
+class GraphIndex {
+
+    static enum Kind {
+        CONCEPT, CONTEXT, RELATION, ACTOR
+    }
+
+    final TypeHierarchy conceptHierarchy;
+    final TypeHierarchy relationHierarchy;
+
+    final Graph graph;
+    final ArrayList<GNode> nodes = new ArrayList<>();
+    final IdentityHashMap<GNode, Integer> numbers = new IdentityHashMap<>();
+    final Kind[] kinds;
+    final String[] keys;
+    /** the number of each node's context; -1 for the graph itself */
+    final int[] owner;
+    /** the numbers of each relation's or actor's inputs, in order (-1 if an input isn't numbered); null for others */
+    final int[][] inputs;
+    /** the numbers of each relation's or actor's outputs */
+    final int[][] outputs;
+    /** for each kind, the nodes with each type key */
+    final EnumMap<Kind, HashMap<String, ArrayList<Integer>>> byKey = new EnumMap<>( Kind.class );
+    /** tables of the argument at each position, made when first needed */
+    private final HashMap<Integer, int[]> argTables = new HashMap<>();
+    /** the key of each kind and label seen, since making a key can take a while */
+    private final HashMap<String, String> keyCache = new HashMap<>();
+
+    /**
+     * @param graph the graph to be indexed
+     * @param conceptHierarchy makes the concepts' and contexts' type keys
+     * @param relationHierarchy makes the relations' type keys
+     */
+    GraphIndex( Graph graph, TypeHierarchy conceptHierarchy, TypeHierarchy relationHierarchy ) {
+        this.graph = graph;
+        this.conceptHierarchy = conceptHierarchy;
+        this.relationHierarchy = relationHierarchy;
+        number( graph );
+        DeepIterator iter = new DeepIterator( graph );
+        while ( iter.hasNext() ) {
+            GraphObject go = iter.next();
+            if ( kindOf( go ) != null ) {
+                number( (GNode)go );
+            }
+        }
+        int size = nodes.size();
+        kinds = new Kind[ size ];
+        keys = new String[ size ];
+        owner = new int[ size ];
+        inputs = new int[ size ][];
+        outputs = new int[ size ][];
+        for ( Kind k : Kind.values() ) {
+            byKey.put( k, new HashMap<String, ArrayList<Integer>>() );
+        }
+        owner[ 0] = -1;
+        for ( int n = 1; n < size; n++ ) {
+            GNode node = nodes.get( n );
+            Integer o = numbers.get( node.getOwnerGraph() );
+            owner[ n] = o == null ? -1 : o;
+            kinds[ n] = kindOf( node );
+            Kind kind = kinds[ n];
+            keys[ n] = keyCache.computeIfAbsent( kind + " " + node.getTypeLabel(), k -> labelKey( node, kind ) );
+            if ( kinds[ n] == Kind.RELATION || kinds[ n] == Kind.ACTOR ) {
+                inputs[ n] = arguments( node, true );
+                outputs[ n] = arguments( node, false );
+            }
+            byKey.get( kinds[ n] ).computeIfAbsent( keys[ n], k -> new ArrayList<Integer>() ).add( n );
+        }
+    }
+
+    private void number( GNode node ) {
+        numbers.put( node, nodes.size() );
+        nodes.add( node );
+    }
+
+    /**
+     * Like GNode#getLinkedNodes, but only through arrows.
+     */
+    private int[] arguments( GNode node, boolean input ) {
+        ArrayList<Integer> args = new ArrayList<>();
+        for ( Object o : node.getEdges() ) {
+            if ( !( o instanceof Arrow ) ) {
+                continue;
+            }
+            GEdge edge = (GEdge)o;
+            GraphObject other = null;
+            if ( input && edge.howLinked( node ) == GEdge.Direction.TO ) {
+                other = edge.fromObj;
+            } else if ( !input && edge.howLinked( node ) == GEdge.Direction.FROM ) {
+                other = edge.toObj;
+            }
+            if ( other != null ) {
+                Integer n = numbers.get( other );
+                args.add( n == null ? -1 : n );
+            }
+        }
+        return args.stream().mapToInt( Integer::intValue ).toArray();
+    }
+
+    /**
+     * @return for each node, its input (or output) at the position; -1 if
+     * it has none there.
+     */
+    int[] argTable( boolean input, int position ) {
+        int[] table = argTables.get( input ? position : -1 - position );
+        if ( table == null ) {
+            table = new int[ nodes.size() ];
+            for ( int n = 0; n < table.length; n++ ) {
+                int[] args = input ? inputs[ n] : outputs[ n];
+                table[ n] = args != null && position < args.length ? args[ position] : -1;
+            }
+            argTables.put( input ? position : -1 - position, table );
+        }
+        return table;
+    }
+
+    static Kind kindOf( GraphObject go ) {
+        if ( go instanceof Graph ) {
+            return Kind.CONTEXT;
+        } else if ( go instanceof Concept ) {
+            return Kind.CONCEPT;
+        } else if ( go instanceof Relation ) {
+            return Kind.RELATION;
+        } else if ( go instanceof Actor ) {
+            return Kind.ACTOR;
+        }
+        return null;
+    }
+
+    private String labelKey( GNode node, Kind kind ) {
+        String label = node.getTypeLabel();
+        if ( label == null ) {
+            return "";
+        }
+        switch ( kind ) {
+            case CONCEPT:
+            case CONTEXT:
+                return conceptHierarchy.makeKey( label );
+            case RELATION:
+                return relationHierarchy.makeKey( label );
+            default:
+                return label.toLowerCase();
+        }
+    }
+}
@@ -22,6 +22,11 @@ public class KnowledgeBase {
     private TypeHierarchy conceptHierarchy;
     private TypeHierarchy relationHierarchy;
     private MarkerSet markerSet = null;
+    private final KnowledgeIndex index;
+    private KnowledgeStore store = null;
+        // for a snapshot, the versions of the hierarchies it was taken of; null otherwise
+    private TypeHierarchy.Version conceptVersion = null;
+    private TypeHierarchy.Version relationVersion = null;
     
     /**
      * Creates an "empty" knowledge base.
@@ -32,9 +37,22 @@ public class KnowledgeBase {
      * @see TypeHierarchy#setBottom(kb.hierarchy.TypeHierarchyNode)  
      */
     public KnowledgeBase( String newname ) {
-        
+        index = new KnowledgeIndex();
         init( newname );
     }
+
+    /**
+     * Creates a snapshot of another knowledge base.
+     *
+     * @see #snapshot
+     */
+    private KnowledgeBase( KnowledgeBase kb ) {
+        name = kb.name;
+        conceptVersion = kb.conceptHierarchy.snapshot();
+        relationVersion = kb.relationHierarchy.snapshot();
+        markerSet = kb.markerSet;
+        index = kb.index;
+    }
     
     protected void init( String n ) {
         setName( n );
@@ -62,17 +80,28 @@ public class KnowledgeBase {
     }
 
     public TypeHierarchy getRelationTypeHierarchy() {
-        return relationHierarchy;
+        return relationVersion == null ? relationHierarchy : relationVersion.getHierarchy();
     }
 
     public TypeHierarchy getConceptTypeHierarchy() {
-        return conceptHierarchy;
+        return conceptVersion == null ? conceptHierarchy : conceptVersion.getHierarchy();
     }
 
     public MarkerSet getMarkerSet() {
         return markerSet;
     }
 
+    /**
+     * The index of the graph objects committed to this knowledge base, for
+     * finding concepts and relations by label without searching every graph.
+     * It is not affected by clear, since the objects are still in their
+     * graphs. A snapshot shares the index of the knowledge base it was taken
+     * of.
+     */
+    public KnowledgeIndex getIndex() {
+        return index;
+    }
+
     public String getName() {
         return name;
     }
@@ -84,7 +113,111 @@ public class KnowledgeBase {
     
     
     public void clear() {
+        checkNotSnapshot();
         init( name );
+        if ( store != null ) {
+            store.reset( this );
+        }
+    }
+
+    /**
+     * The store that keeps this knowledge base's hierarchies on disk, if any.
+     *
+     * @return the store; null if the knowledge base is only in memory.
+     * @see KnowledgeStore#open
+     */
+    public KnowledgeStore getStore() {
+        return store;
+    }
+
+    void setStore( KnowledgeStore store ) {
+        this.store = store;
+    }
+
+    /**
+     * Takes a snapshot of this knowledge base's hierarchies as they are now.
+     * The snapshot is itself a knowledge base, which can be read (e.g., by
+     * another thread) while this one goes on being changed, but which can't be
+     * changed itself. Taking it takes constant time, and a copy of a hierarchy
+     * is only made once it is changed after the snapshot, so snapshots are
+     * cheap enough to take for every editing step. Snapshots should be taken
+     * by the thread that changes the knowledge base.
+     *
+     * @return the snapshot; a snapshot's snapshot is itself
+     * @see TypeHierarchy#snapshot
+     * @see #restore
+     */
+    public KnowledgeBase snapshot() {
+        if ( isSnapshot() ) {
+            return this;
+        }
+        return new KnowledgeBase( this );
+    }
+
+    /**
+     * @return whether this knowledge base is a snapshot of another one.
+     */
+    public boolean isSnapshot() {
+        return conceptVersion != null;
+    }
+
+    /**
+     * Puts this knowledge base's hierarchies back the way they are in another
+     * one, usually an earlier snapshot of this one. The graph objects' index
+     * is unchanged. Restoring a snapshot of hierarchies that haven't changed
+     * since does nothing, so this is cheap to do at every undo and redo.
+     *
+     * @param kb the knowledge base whose hierarchies are copied
+     * @see #snapshot
+     */
+    public void restore( KnowledgeBase kb ) {
+        checkNotSnapshot();
+        boolean changed;
+        if ( kb.isSnapshot() ) {
+            changed = conceptHierarchy.restore( kb.conceptVersion );
+            changed = relationHierarchy.restore( kb.relationVersion ) || changed;
+        } else {
+            conceptHierarchy.restore( kb.getConceptTypeHierarchy() );
+            relationHierarchy.restore( kb.getRelationTypeHierarchy() );
+            changed = kb != this;
+        }
+        if ( changed && store != null ) {
+            store.restored( this );
+        }
+    }
+
+    /**
+     * @param snapshot a snapshot of this knowledge base
+     * @return whether neither hierarchy has been changed since the snapshot
+     * was taken, so that restoring it would lose nothing made since.
+     * @see #snapshot
+     */
+    public boolean isAt( KnowledgeBase snapshot ) {
+        return snapshot.isSnapshot() && conceptHierarchy.isAt( snapshot.conceptVersion )
+                && relationHierarchy.isAt( snapshot.relationVersion );
+    }
+
+    /**
+     * Makes in this knowledge base's hierarchies the changes that lead from
+     * one of its snapshots to another, leaving alone whatever else has been
+     * changed since, e.g., to undo one editor's step once another editor has
+     * changed the hierarchies. The changes are stored one at a time, as if
+     * made the usual way.
+     *
+     * @param from the snapshot the changes start from
+     * @param to the snapshot they lead to
+     * @see TypeHierarchy#applyDifference
+     */
+    public void applyDifference( KnowledgeBase from, KnowledgeBase to ) {
+        checkNotSnapshot();
+        conceptHierarchy.applyDifference( from.conceptVersion, to.conceptVersion );
+        relationHierarchy.applyDifference( from.relationVersion, to.relationVersion );
+    }
+
+    private void checkNotSnapshot() {
+        if ( isSnapshot() ) {
+            throw new UnsupportedOperationException( "Knowledge base " + name + " is a snapshot, which can't be changed." );
+        }
     }
     
     /**
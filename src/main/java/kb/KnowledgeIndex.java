@@ -0,0 +1,365 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package kb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import charger.gloss.AbstractTypeDescriptor;
+import charger.obj.Concept;
+import charger.obj.DeepIterator;
+import charger.obj.GEdge;
+import charger.obj.GNode;
+import charger.obj.Graph;
+import charger.obj.GraphObject;
+import charger.obj.Relation;
+
+/**
+ * An inverted index over the graph objects in a knowledge base: which concepts
+ * have a given type label or referent, which relations have a given label, and
+ * which nodes have a given text label or type descriptor. It is kept up to date
+ * as objects are inserted into and removed from graphs and as their labels
+ * change, so that these can be found without visiting every object in every
+ * graph.
+ * <p>
+ * Changes are noted as they happen but only filed when the index is next
+ * queried, since an object's labels may be changed several times (and be
+ * inconsistent in between) while it is being edited or read in.
+ * <p>
+ * The index doesn't keep objects from being garbage collected; an object that
+ * is no longer referred to elsewhere quietly drops out of it. A graph's own
+ * members are already kept by the graph itself.
+ *
+ * @see KnowledgeBase#getIndex
+ * @see Graph#insertInCharGerGraph
+ * @see Graph#removeFromGraph
+ * @since Charger 4.3
+ */
+public class KnowledgeIndex {
+
+    /**
+     * The keys an object is filed under, so that it can be unfiled when they
+     * change.
+     */
+    private static class Filing {
+
+        String label = null;
+        String type = null;
+        String referent = null;
+        String relation = null;
+        String[] descriptors = null;
+    }
+
+    private final WeakHashMap<GraphObject, Filing> filings = new WeakHashMap<>();
+    private final Set<GraphObject> changed = Collections.newSetFromMap( new WeakHashMap<GraphObject, Boolean>() );
+
+    /** lower-cased text label of each node */
+    private final HashMap<String, Set<GraphObject>> byLabel = new HashMap<>();
+    /** type label of each concept (and context) */
+    private final HashMap<String, Set<GraphObject>> byType = new HashMap<>();
+    /** referent of each concept (and context); generic ones under "" */
+    private final HashMap<String, Set<GraphObject>> byReferent = new HashMap<>();
+    /** label of each relation */
+    private final HashMap<String, Set<GraphObject>> byRelation = new HashMap<>();
+    /** lower-cased label of each node's type descriptors */
+    private final HashMap<String, Set<GraphObject>> byDescriptor = new HashMap<>();
+
+    /**
+     * Starts indexing an object, or notes that an object already indexed has
+     * moved. A context's contents are indexed along with it.
+     *
+     * @param go an object that has just been inserted into a graph
+     */
+    public synchronized void add( GraphObject go ) {
+        addOne( go );
+        if ( go instanceof Graph ) {
+            for ( GraphObject inner : contents( (Graph)go ) ) {
+                addOne( inner );
+            }
+        }
+    }
+
+    private void addOne( GraphObject go ) {
+        if ( go instanceof GEdge ) {
+            return;
+        }
+        if ( !filings.containsKey( go ) ) {
+            filings.put( go, new Filing() );
+        }
+        changed.add( go );
+    }
+
+    /**
+     * Stops indexing an object. A context's contents are removed along with
+     * it.
+     *
+     * @param go an object that has just been removed from its graph
+     */
+    public synchronized void remove( GraphObject go ) {
+        removeOne( go );
+        if ( go instanceof Graph ) {
+            for ( GraphObject inner : contents( (Graph)go ) ) {
+                removeOne( inner );
+            }
+        }
+    }
+
+    private void removeOne( GraphObject go ) {
+        Filing filing = filings.remove( go );
+        if ( filing != null ) {
+            unfile( go, filing );
+        }
+        changed.remove( go );
+    }
+
+    /**
+     * Notes that an object's labels, referent or type descriptors may have
+     * changed. Objects that aren't indexed are ignored.
+     */
+    public synchronized void touch( GraphObject go ) {
+        if ( filings.containsKey( go ) ) {
+            changed.add( go );
+        }
+    }
+
+    /**
+     * Forgets everything in the index.
+     */
+    public synchronized void clear() {
+        filings.clear();
+        changed.clear();
+        byLabel.clear();
+        byType.clear();
+        byReferent.clear();
+        byRelation.clear();
+        byDescriptor.clear();
+    }
+
+    /**
+     * @return how many objects are indexed.
+     */
+    public synchronized int size() {
+        return filings.size();
+    }
+
+    /**
+     * @return whether the object is indexed; it isn't if it was put into its
+     * graph some other way than Graph#insertInCharGerGraph, or while there
+     * was no session knowledge base.
+     */
+    public synchronized boolean contains( GraphObject go ) {
+        return filings.containsKey( go );
+    }
+
+    /**
+     * Finds the concepts (and contexts) with a given type label.
+     *
+     * @param typeLabel the type label, exactly as it appears
+     * @param within if not null, only concepts in this graph or its nested
+     * contexts are included
+     * @return the concepts, in no particular order
+     */
+    public synchronized ArrayList<Concept> findConcepts( String typeLabel, Graph within ) {
+        return select( byType, typeLabel, within, Concept.class );
+    }
+
+    /**
+     * Finds the concepts (and contexts) with a given referent.
+     *
+     * @param referent the referent, exactly as it appears; "" for the generic
+     * concepts
+     * @param within if not null, only concepts in this graph or its nested
+     * contexts are included
+     * @return the concepts, in no particular order
+     */
+    public synchronized ArrayList<Concept> findConceptsWithReferent( String referent, Graph within ) {
+        return select( byReferent, referent, within, Concept.class );
+    }
+
+    /**
+     * Finds the relations with a given label.
+     *
+     * @param label the relation's label, exactly as it appears
+     * @param within if not null, only relations in this graph or its nested
+     * contexts are included
+     * @return the relations, in no particular order
+     */
+    public synchronized ArrayList<Relation> findRelations( String label, Graph within ) {
+        return select( byRelation, label, within, Relation.class );
+    }
+
+    /**
+     * Makes the binary tuples of the relations with a given label, i.e., those
+     * with exactly one input concept and one output concept.
+     *
+     * @param label the relation's label, exactly as it appears
+     * @param within if not null, only relations in this graph or its nested
+     * contexts are included
+     * @return the tuples, in no particular order
+     * @see ConceptManager#getBinaryRelationTuples
+     */
+    public synchronized ArrayList<BinaryTuple> findBinaryTuples( String label, Graph within ) {
+        ArrayList<BinaryTuple> tuples = new ArrayList<>();
+        for ( Relation r : findRelations( label, within ) ) {
+            ArrayList<GNode> in = r.getLinkedNodes( GEdge.Direction.FROM );
+            ArrayList<GNode> out = r.getLinkedNodes( GEdge.Direction.TO );
+            if ( in.size() == 1 && out.size() == 1 && in.get( 0 ) instanceof Concept && out.get( 0 ) instanceof Concept ) {
+                tuples.add( new BinaryTuple( (Concept)in.get( 0 ), r, (Concept)out.get( 0 ) ) );
+            }
+        }
+        return tuples;
+    }
+
+    /**
+     * Finds the nodes of any kind (concepts, relations, actors, type and
+     * relation labels) whose text label is a given one, ignoring case.
+     *
+     * @param within if not null, only nodes in this graph or its nested
+     * contexts are included
+     * @return the nodes, in no particular order
+     */
+    public synchronized ArrayList<GNode> findNodesWithLabel( String label, Graph within ) {
+        return select( byLabel, label.toLowerCase(), within, GNode.class );
+    }
+
+    /**
+     * Finds the nodes that have a type descriptor with a given label, ignoring
+     * case.
+     *
+     * @param within if not null, only nodes in this graph or its nested
+     * contexts are included
+     * @return the nodes, in no particular order
+     */
+    public synchronized ArrayList<GNode> findNodesWithDescriptor( String term, Graph within ) {
+        return select( byDescriptor, term.toLowerCase(), within, GNode.class );
+    }
+
+    private <T> ArrayList<T> select( HashMap<String, Set<GraphObject>> map, String key, Graph within, Class<T> kind ) {
+        refresh();
+        ArrayList<T> found = new ArrayList<>();
+        Set<GraphObject> set = map.get( key );
+        if ( set == null ) {
+            return found;
+        }
+        for ( GraphObject go : set ) {
+            if ( kind.isInstance( go ) && ( within == null || isWithin( go, within ) ) ) {
+                found.add( kind.cast( go ) );
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return whether the object is in the graph or one of its nested contexts
+     */
+    public static boolean isWithin( GraphObject go, Graph g ) {
+        for ( Graph owner = go.getOwnerGraph(); owner != null; owner = owner.getOwnerGraph() ) {
+            if ( owner == g ) {
+                return true;
+            }
+            if ( owner.getOwnerGraph() == owner ) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Files all the objects that have changed since the last query under their
+     * current keys.
+     */
+    private void refresh() {
+        if ( changed.isEmpty() ) {
+            return;
+        }
+        for ( GraphObject go : changed ) {
+            Filing filing = filings.get( go );
+            if ( filing == null ) {
+                continue;
+            }
+            unfile( go, filing );
+            if ( go instanceof GNode ) {
+                GNode node = (GNode)go;
+                filing.label = node.getTextLabel() == null ? null : node.getTextLabel().toLowerCase();
+                AbstractTypeDescriptor[] ds = node.getTypeDescriptors();
+                filing.descriptors = new String[ ds.length ];
+                for ( int k = 0; k < ds.length; k++ ) {
+                    filing.descriptors[ k] = ds[ k] == null || ds[ k].getLabel() == null ? null : ds[ k].getLabel().toLowerCase();
+                }
+            }
+            if ( go instanceof Concept ) {
+                filing.type = ( (Concept)go ).getTypeLabel();
+                filing.referent = ( (Concept)go ).getReferent();
+            } else if ( go instanceof Relation ) {
+                filing.relation = go.getTextLabel();
+            }
+            file( go, filing );
+        }
+        changed.clear();
+    }
+
+    private void file( GraphObject go, Filing filing ) {
+        put( byLabel, filing.label, go );
+        put( byType, filing.type, go );
+        put( byReferent, filing.referent, go );
+        put( byRelation, filing.relation, go );
+        if ( filing.descriptors != null ) {
+            for ( String d : filing.descriptors ) {
+                put( byDescriptor, d, go );
+            }
+        }
+    }
+
+    private void unfile( GraphObject go, Filing filing ) {
+        take( byLabel, filing.label, go );
+        take( byType, filing.type, go );
+        take( byReferent, filing.referent, go );
+        take( byRelation, filing.relation, go );
+        if ( filing.descriptors != null ) {
+            for ( String d : filing.descriptors ) {
+                take( byDescriptor, d, go );
+            }
+        }
+        filing.label = filing.type = filing.referent = filing.relation = null;
+        filing.descriptors = null;
+    }
+
+    private static void put( HashMap<String, Set<GraphObject>> map, String key, GraphObject go ) {
+        if ( key == null ) {
+            return;
+        }
+        Set<GraphObject> set = map.get( key );
+        if ( set == null ) {
+            set = Collections.newSetFromMap( new WeakHashMap<GraphObject, Boolean>() );
+            map.put( key, set );
+        }
+        set.add( go );
+    }
+
+    private static void take( HashMap<String, Set<GraphObject>> map, String key, GraphObject go ) {
+        if ( key == null ) {
+            return;
+        }
+        Set<GraphObject> set = map.get( key );
+        if ( set != null ) {
+            set.remove( go );
+            if ( set.isEmpty() ) {
+                map.remove( key );
+            }
+        }
+    }
+
+    private static ArrayList<GraphObject> contents( Graph g ) {
+        ArrayList<GraphObject> contents = new ArrayList<>();
+        for ( Iterator<GraphObject> iter = new DeepIterator( g ); iter.hasNext(); ) {
+            contents.add( iter.next() );
+        }
+        return contents;
+    }
+}
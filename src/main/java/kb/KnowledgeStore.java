@@ -0,0 +1,450 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package kb;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+import charger.Global;
+import kb.hierarchy.TypeHierarchy;
+
+/**
+ * Keeps a knowledge base's concept and relation type hierarchies on disk, so
+ * that they survive from one session to the next without re-reading every
+ * graph they came from.
+ * <p>
+ * The store is a folder with two files: a snapshot of both hierarchies, and a
+ * log of every change made to them since the snapshot was written. A restore,
+ * which replaces the hierarchies wholesale, is logged as a copy of both. Each change
+ * is appended to the log (and handed to the operating system) as it is made;
+ * sync forces the log onto the disk itself. Opening the store reads the
+ * snapshot and makes the logged changes again. Compacting writes a new
+ * snapshot and starts an empty log.
+ * <p>
+ * Recovery after a crash: each log record carries its length and a checksum,
+ * so a record that was only partly written is found and cut off, losing just
+ * that change. A new snapshot is written to a temporary file and then renamed
+ * over the old one, and both files carry a generation number, so a log that
+ * was already folded into the snapshot (because the crash came between the two
+ * renames) is recognized and ignored.
+ *
+ * @see KnowledgeBase#getStore
+ * @see TypeHierarchy.ChangeListener
+ * @since Charger 4.3
+ */
+public class KnowledgeStore {
+
+    public static final String SNAPSHOT_FILE_NAME = "hierarchies.snapshot";
+    public static final String LOG_FILE_NAME = "hierarchies.log";
+    private static final int MAGIC = 0x43474b42;   // "CGKB"
+    private static final int FORMAT = 1;
+    private static final int LOG_HEADER_SIZE = 16;
+    private static final byte CONCEPTS = 'C';
+    private static final byte RELATIONS = 'R';
+    private static final byte RESET = 'K';
+    private static final byte RESTORE = 'S';
+
+    private final File folder;
+    private KnowledgeBase kb = null;
+    private long generation = 0;
+    private FileOutputStream logFile = null;
+    private DataOutputStream log = null;
+    private int logRecords = 0;
+    private int compactAfter = 10000;
+    private boolean replaying = false;
+    private final TypeHierarchy.ChangeListener listener = ( hierarchy, change, first, second ) -> {
+        record( hierarchy == kb.getRelationTypeHierarchy() ? RELATIONS : CONCEPTS, (byte)change.ordinal(), first, second );
+    };
+
+    /**
+     * @param folder where the store's files are (or will be) kept
+     */
+    public KnowledgeStore( File folder ) {
+        this.folder = folder;
+    }
+
+    public File getFolder() {
+        return folder;
+    }
+
+    public int getCompactAfter() {
+        return compactAfter;
+    }
+
+    /**
+     * @param records how long the log may get before open compacts the store
+     */
+    public void setCompactAfter( int records ) {
+        compactAfter = records;
+    }
+
+    /**
+     * @return how many changes are in the log
+     */
+    public synchronized int getLogRecords() {
+        return logRecords;
+    }
+
+    /**
+     * Loads the stored hierarchies into the knowledge base, replacing what it
+     * had, and from then on records every change made to them. If the folder
+     * has no store yet, one is started with the knowledge base's current
+     * hierarchies.
+     *
+     * @throws IOException if the store can't be read or written; the
+     * knowledge base may then be partly loaded.
+     */
+    public synchronized void open( KnowledgeBase kb ) throws IOException {
+        if ( this.kb != null ) {
+            throw new IOException( "Knowledge store " + folder + " is already open." );
+        }
+        if ( !folder.isDirectory() && !folder.mkdirs() ) {
+            throw new IOException( "Can't make knowledge store folder " + folder );
+        }
+        this.kb = kb;
+        File snapshot = new File( folder, SNAPSHOT_FILE_NAME );
+        if ( snapshot.exists() ) {
+            readSnapshot( snapshot );
+        } else {
+            generation = 0;
+            writeSnapshot( generation );
+        }
+        replayLog();
+        kb.setStore( this );
+        attach();
+        if ( logRecords > compactAfter ) {
+            compact();
+        }
+    }
+
+    /**
+     * Writes a new snapshot of the hierarchies and empties the log.
+     *
+     * @throws IOException if the snapshot or the new log can't be written;
+     * unless the disk can't be written at all, a log is still open, so that
+     * later changes are still recorded.
+     */
+    public synchronized void compact() throws IOException {
+        checkOpen();
+        closeLog();
+        try {
+            writeSnapshot( generation + 1 );
+        } catch ( IOException e ) {
+            openLog();      // the old snapshot and log still hold everything
+            throw e;
+        }
+        generation++;
+        logRecords = 0;
+        File temp = new File( folder, LOG_FILE_NAME + ".tmp" );
+        try {
+            try ( FileOutputStream out = new FileOutputStream( temp ) ) {
+                writeLogHeader( new DataOutputStream( out ) );
+                out.getFD().sync();
+            }
+            Files.move( temp.toPath(), new File( folder, LOG_FILE_NAME ).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch ( IOException e ) {
+            // the new snapshot already holds everything, and the old log is now
+            // stale; start the new one in place so that later changes are kept
+            Global.error( "Could not start a new knowledge store log in " + folder + ": " + e.getMessage() );
+            try ( FileOutputStream out = new FileOutputStream( new File( folder, LOG_FILE_NAME ) ) ) {
+                writeLogHeader( new DataOutputStream( out ) );
+            }
+            openLog();
+            throw e;
+        }
+        openLog();
+    }
+
+    /**
+     * Makes sure every change recorded so far is on the disk, not just handed
+     * to the operating system.
+     */
+    public synchronized void sync() throws IOException {
+        checkOpen();
+        log.flush();
+        logFile.getFD().sync();
+    }
+
+    /**
+     * Syncs the log and stops recording changes. The knowledge base keeps its
+     * hierarchies.
+     */
+    public synchronized void close() throws IOException {
+        if ( kb == null ) {
+            return;
+        }
+        try {
+            sync();
+            closeLog();
+        } finally {
+            kb.getConceptTypeHierarchy().setChangeListener( null );
+            kb.getRelationTypeHierarchy().setChangeListener( null );
+            kb.setStore( null );
+            kb = null;
+        }
+    }
+
+    /**
+     * Records that the knowledge base was cleared (and so has new
+     * hierarchies), and starts recording changes to the new ones.
+     *
+     * @see KnowledgeBase#clear
+     */
+    synchronized void reset( KnowledgeBase kb ) {
+        if ( this.kb != kb ) {
+            return;
+        }
+        record( RESET, (byte)0, null, null );
+        attach();
+    }
+
+    /**
+     * Records that the knowledge base's hierarchies were replaced wholesale,
+     * by logging a copy of them, since there is no single change that could
+     * say so.
+     *
+     * @see KnowledgeBase#restore
+     */
+    synchronized void restored( KnowledgeBase kb ) {
+        if ( this.kb != kb || replaying || log == null ) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream( 1 << 12 );
+            DataOutputStream out = new DataOutputStream( bytes );
+            out.writeByte( RESTORE );
+            out.writeByte( 0 );
+            kb.getConceptTypeHierarchy().writeSnapshot( out );
+            kb.getRelationTypeHierarchy().writeSnapshot( out );
+            append( bytes.toByteArray() );
+        } catch ( IOException e ) {
+            Global.error( "Could not record restored knowledge base in " + folder + ": " + e.getMessage() );
+        }
+    }
+
+    private void attach() {
+        kb.getConceptTypeHierarchy().setChangeListener( listener );
+        kb.getRelationTypeHierarchy().setChangeListener( listener );
+    }
+
+    private void checkOpen() throws IOException {
+        if ( kb == null ) {
+            throw new IOException( "Knowledge store " + folder + " isn't open." );
+        }
+    }
+
+    private synchronized void record( byte target, byte change, String first, String second ) {
+        if ( replaying || log == null ) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream( 64 );
+            DataOutputStream out = new DataOutputStream( bytes );
+            out.writeByte( target );
+            out.writeByte( change );
+            writeString( out, first );
+            writeString( out, second );
+            append( bytes.toByteArray() );
+        } catch ( IOException e ) {
+            Global.error( "Could not record knowledge base change in " + folder + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Appends one record to the log, with its length and checksum.
+     */
+    private void append( byte[] payload ) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update( payload );
+        log.writeInt( payload.length );
+        log.write( payload );
+        log.writeInt( (int)crc.getValue() );
+        log.flush();
+        logRecords++;
+    }
+
+    private static void writeString( DataOutputStream out, String s ) throws IOException {
+        out.writeBoolean( s != null );
+        if ( s != null ) {
+            out.writeUTF( s );
+        }
+    }
+
+    private static String readString( DataInputStream in ) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private void writeSnapshot( long generation ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( 1 << 16 );
+        DataOutputStream out = new DataOutputStream( bytes );
+        out.writeInt( MAGIC );
+        out.writeInt( FORMAT );
+        out.writeLong( generation );
+        kb.getConceptTypeHierarchy().writeSnapshot( out );
+        kb.getRelationTypeHierarchy().writeSnapshot( out );
+        CRC32 crc = new CRC32();
+        crc.update( bytes.toByteArray() );
+        out.writeLong( crc.getValue() );
+
+        File temp = new File( folder, SNAPSHOT_FILE_NAME + ".tmp" );
+        try ( FileOutputStream file = new FileOutputStream( temp ) ) {
+            bytes.writeTo( file );
+            file.getFD().sync();
+        }
+        Files.move( temp.toPath(), new File( folder, SNAPSHOT_FILE_NAME ).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    private void readSnapshot( File snapshot ) throws IOException {
+        byte[] bytes = Files.readAllBytes( snapshot.toPath() );
+        if ( bytes.length < 24 ) {
+            throw new IOException( "Knowledge store snapshot " + snapshot + " is too short." );
+        }
+        CRC32 crc = new CRC32();
+        crc.update( bytes, 0, bytes.length - 8 );
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes ) );
+        in.skipBytes( bytes.length - 8 );
+        if ( in.readLong() != crc.getValue() ) {
+            throw new IOException( "Knowledge store snapshot " + snapshot + " is damaged." );
+        }
+        in = new DataInputStream( new ByteArrayInputStream( bytes, 0, bytes.length - 8 ) );
+        if ( in.readInt() != MAGIC || in.readInt() != FORMAT ) {
+            throw new IOException( snapshot + " is not a knowledge store snapshot." );
+        }
+        generation = in.readLong();
+        kb.getConceptTypeHierarchy().readSnapshot( in );
+        kb.getRelationTypeHierarchy().readSnapshot( in );
+    }
+
+    /**
+     * Makes the logged changes again, cutting off a partly written last
+     * record, then opens the log for more. A log from an older generation is
+     * already part of the snapshot, so it is replaced with an empty one.
+     */
+    private void replayLog() throws IOException {
+        File file = new File( folder, LOG_FILE_NAME );
+        logRecords = 0;
+        long good = 0;
+        if ( file.exists() ) {
+            byte[] bytes = Files.readAllBytes( file.toPath() );
+            DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes ) );
+            try {
+                if ( in.readInt() == MAGIC && in.readInt() == FORMAT && in.readLong() == generation ) {
+                    good = LOG_HEADER_SIZE;
+                }
+            } catch ( EOFException e ) {
+                good = 0;
+            }
+            if ( good > 0 ) {
+                replaying = true;
+                try {
+                    good = replay( bytes, in, good );
+                } finally {
+                    replaying = false;
+                }
+            }
+        }
+        if ( good == 0 ) {
+            try ( FileOutputStream out = new FileOutputStream( file ) ) {
+                writeLogHeader( new DataOutputStream( out ) );
+                out.getFD().sync();
+            }
+        } else if ( good < file.length() ) {
+            Global.warning( "Knowledge store log " + file + " ended with an incomplete change, which was dropped." );
+            try ( RandomAccessFile raf = new RandomAccessFile( file, "rw" ) ) {
+                raf.setLength( good );
+                raf.getFD().sync();
+            }
+        }
+        openLog();
+    }
+
+    /**
+     * @return where the last complete record ends
+     */
+    private long replay( byte[] bytes, DataInputStream in, long good ) {
+        while ( good + 8 <= bytes.length ) {
+            byte target;
+            TypeHierarchy.Change change = null;
+            String first = null;
+            String second = null;
+            DataInputStream record;
+            try {
+                int length = in.readInt();
+                if ( length < 2 || good + 8 + length > bytes.length ) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update( bytes, (int)good + 4, length );
+                record = new DataInputStream( new ByteArrayInputStream( bytes, (int)good + 4, length ) );
+                in.skipBytes( length );
+                if ( in.readInt() != (int)crc.getValue() ) {
+                    break;
+                }
+                target = record.readByte();
+                int kind = record.readByte();
+                if ( target != RESTORE ) {
+                    if ( kind < 0 || kind >= TypeHierarchy.Change.values().length ) {
+                        break;
+                    }
+                    change = TypeHierarchy.Change.values()[ kind];
+                    first = readString( record );
+                    second = readString( record );
+                }
+                good += 8 + length;
+            } catch ( IOException e ) {
+                break;
+            }
+            if ( target == RESET ) {
+                kb.clear();
+            } else if ( target == RESTORE ) {
+                try {
+                    kb.getConceptTypeHierarchy().readSnapshot( record );
+                    kb.getRelationTypeHierarchy().readSnapshot( record );
+                } catch ( IOException e ) {
+                    // the checksum matched, so the record was written this way
+                    Global.error( "Knowledge store log has a restore that can't be read: " + e.getMessage() );
+                }
+            } else {
+                TypeHierarchy h = target == RELATIONS ? kb.getRelationTypeHierarchy() : kb.getConceptTypeHierarchy();
+                h.applyChange( change, first, second );
+            }
+            logRecords++;
+        }
+        return good;
+    }
+
+    private void writeLogHeader( DataOutputStream out ) throws IOException {
+        out.writeInt( MAGIC );
+        out.writeInt( FORMAT );
+        out.writeLong( generation );
+        out.flush();
+    }
+
+    private void openLog() throws IOException {
+        logFile = new FileOutputStream( new File( folder, LOG_FILE_NAME ), true );
+        log = new DataOutputStream( new BufferedOutputStream( logFile ) );
+    }
+
+    private void closeLog() throws IOException {
+        if ( log != null ) {
+            log.close();
+            log = null;
+            logFile = null;
+        }
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package kb;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import charger.Global;
+import charger.cgx.CGXGenerator;
+import charger.cgx.CGXParser;
+import charger.obj.Concept;
+import charger.obj.DeepIterator;
+import charger.obj.GEdge;
+import charger.obj.GNode;
+import charger.obj.Graph;
+import charger.obj.GraphObject;
+import kb.hierarchy.TypeHierarchy;
+import kb.hierarchy.TypeHierarchyNode;
+
+/**
+ * Joins two graphs on as much as they have in common. Pairs of compatible
+ * concepts in the two graphs' outermost contexts are tried as starting points;
+ * from each, the join is extended along pairs of compatible relations whose
+ * arguments are (or can be made) joined pairs of concepts, as far as it will
+ * go. The largest join found is the maximal join.
+ * <p>
+ * Two concepts are compatible if one's type is a subtype of the other's (the
+ * joined concept gets the more specific type) or they have a common subtype
+ * other than the bottom (the joined concept gets such a type), and their
+ * referents are the same or at least one is generic. Two relations are
+ * compatible if one's type is the same as or a subtype of the other's and they
+ * have the same numbers of inputs and outputs; actors must have the same name.
+ * Contexts aren't joined, though they are kept in the joined graph.
+ * <p>
+ * Compatible types are worked out once for each pair of type labels, and only
+ * the concepts with compatible labels are tried together. The number of
+ * starting points is bounded (see setMaxSeeds), most specific pairs first, so
+ * that joining graphs of hundreds of nodes stays quick.
+ *
+ * @see Projector
+ * @since Charger 4.3
+ */
+public class MaximalJoin {
+
+    private final TypeHierarchy conceptHierarchy;
+    private final TypeHierarchy relationHierarchy;
+    private int maxSeeds = 1000;
+
+    /**
+     * Creates a joiner that uses the session's type hierarchies.
+     *
+     * @see Global#sessionKB
+     */
+    public MaximalJoin() {
+        this( Global.sessionKB );
+    }
+
+    public MaximalJoin( KnowledgeBase kb ) {
+        this( kb.getConceptTypeHierarchy(), kb.getRelationTypeHierarchy() );
+    }
+
+    public MaximalJoin( TypeHierarchy conceptHierarchy, TypeHierarchy relationHierarchy ) {
+        this.conceptHierarchy = conceptHierarchy;
+        this.relationHierarchy = relationHierarchy;
+    }
+
+    public int getMaxSeeds() {
+        return maxSeeds;
+    }
+
+    /**
+     * @param maxSeeds the most pairs of concepts to try starting a join from
+     */
+    public void setMaxSeeds( int maxSeeds ) {
+        this.maxSeeds = maxSeeds;
+    }
+
+    /**
+     * Finds what the two graphs would be joined on.
+     *
+     * @return for each node of the first graph that would be joined, the node
+     * of the second graph it would be joined with, in the order of the first
+     * graph's nodes; empty if the graphs have no compatible concepts.
+     */
+    public LinkedHashMap<GNode, GNode> findJoin( Graph g1, Graph g2 ) {
+        Join join = new Search( g1, g2 ).run();
+        LinkedHashMap<GNode, GNode> pairs = new LinkedHashMap<>();
+        if ( join != null ) {
+            for ( int n = 0; n < join.match1.length; n++ ) {
+                if ( join.match1[ n] >= 0 ) {
+                    pairs.put( join.index1.nodes.get( n ), join.index2.nodes.get( join.match1[ n] ) );
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Makes the maximal join of two graphs as a new graph; neither graph is
+     * changed. The new graph has the first graph's objects where they were and
+     * the rest of the second graph's objects to the right of them, laid out as
+     * they were.
+     *
+     * @return the joined graph; null if the graphs have no compatible
+     * concepts.
+     */
+    public Graph join( Graph g1, Graph g2 ) {
+        Join join = new Search( g1, g2 ).run();
+        if ( join == null ) {
+            return null;
+        }
+        // work on copies with the same IDs, so that each original's nodes can be found in its copy
+        Graph joined = new Graph();
+        CGXParser.parseForNewGraph( CGXGenerator.generateXML( g1 ), joined );
+        Graph other = new Graph();
+        CGXParser.parseForNewGraph( CGXGenerator.generateXML( g2 ), other );
+
+        Rectangle2D.Double bounds1 = joined.getContentBounds();
+        Rectangle2D.Double bounds2 = other.getContentBounds();
+        if ( bounds1 != null && bounds2 != null ) {
+            other.forceDeepMove( new Point2D.Double( bounds1.getMaxX() + 40 - bounds2.getMinX(),
+                    bounds1.getMinY() - bounds2.getMinY() ) );
+        }
+
+        // the joined relations of the second graph go, with their arrows
+        for ( int n = 1; n < join.match2.length; n++ ) {
+            if ( join.match2[ n] >= 0 && join.index2.kinds[ n] != GraphIndex.Kind.CONCEPT ) {
+                other.forgetObject( copyOf( other, join.index2.nodes.get( n ) ) );
+            }
+        }
+        // the joined concepts take the joined type and referent, and the second graph's links
+        for ( int n = 1; n < join.match1.length; n++ ) {
+            int m = join.match1[ n];
+            if ( m < 0 || join.index1.kinds[ n] != GraphIndex.Kind.CONCEPT ) {
+                continue;
+            }
+            Concept c1 = (Concept)copyOf( joined, join.index1.nodes.get( n ) );
+            Concept c2 = (Concept)copyOf( other, join.index2.nodes.get( m ) );
+            c1.setTypeLabel( join.types[ n] );
+            c1.setReferent( join.referents[ n] );
+            ArrayList<GEdge> edges = new ArrayList<>();
+            for ( Object o : c2.getEdges() ) {
+                edges.add( (GEdge)o );
+            }
+            for ( GEdge edge : edges ) {
+                if ( edge.fromObj == c2 ) {
+                    edge.fromObj = c1;
+                }
+                if ( edge.toObj == c2 ) {
+                    edge.toObj = c1;
+                }
+                c2.deleteGEdge( edge );
+                c1.attachGEdge( edge );
+            }
+            other.forgetObject( c2 );
+        }
+        // the joined relations take the more specific type, as the concepts do
+        for ( int n = 1; n < join.match1.length; n++ ) {
+            if ( join.match1[ n] >= 0 && join.index1.kinds[ n] != GraphIndex.Kind.CONCEPT && join.types[ n] != null ) {
+                ( (GNode)copyOf( joined, join.index1.nodes.get( n ) ) ).setTypeLabel( join.types[ n] );
+            }
+        }
+        // whatever is left of the second graph moves to the joined one, nodes before edges
+        ArrayList<GraphObject> rest = new ArrayList<>();
+        for ( GraphObject go : other.getGraphObjects() ) {
+            if ( !( go instanceof GEdge ) ) {
+                rest.add( go );
+            }
+        }
+        for ( GraphObject go : other.getGraphObjects() ) {
+            if ( go instanceof GEdge ) {
+                rest.add( go );
+            }
+        }
+        // (e.g., when a graph is joined with itself) objects whose IDs are already used get new ones
+        HashSet<String> ids = new HashSet<>();
+        for ( Iterator<GraphObject> iter = new DeepIterator( joined ); iter.hasNext(); ) {
+            ids.add( iter.next().objectID.toString() );
+        }
+        for ( GraphObject go : rest ) {
+            other.removeFromGraph( go );
+            if ( !ids.add( go.objectID.toString() ) ) {
+                go.objectID = Global.applyForID();
+            }
+            if ( go instanceof Graph ) {
+                ArrayList<GraphObject> contents = new ArrayList<>();
+                for ( Iterator<GraphObject> iter = new DeepIterator( (Graph)go ); iter.hasNext(); ) {
+                    contents.add( iter.next() );
+                }
+                for ( GraphObject inner : contents ) {
+                    if ( !ids.add( inner.objectID.toString() ) ) {
+                        inner.getOwnerGraph().changeID( inner, Global.applyForID() );
+                    }
+                }
+            }
+            joined.insertObject( go );
+        }
+        for ( GraphObject go : joined.getGraphObjects() ) {
+            if ( go instanceof GNode ) {
+                ( (GNode)go ).adjustEdges();
+            }
+        }
+        return joined;
+    }
+
+    private static GraphObject copyOf( Graph copy, GNode original ) {
+        return copy.findByID( original.objectID );
+    }
+
+    /**
+     * What two graphs are joined on.
+     */
+    private static class Join {
+
+        final GraphIndex index1;
+        final GraphIndex index2;
+        /** for each node of the first graph, the node of the second it's joined with; -1 if none */
+        final int[] match1;
+        /** the other way around */
+        final int[] match2;
+        /** for each joined concept of the first graph, its joined type label and referent;
+         * for a joined relation, its type label if the second graph's is the more specific */
+        final String[] types;
+        final String[] referents;
+        int size = 0;
+
+        Join( GraphIndex index1, GraphIndex index2 ) {
+            this.index1 = index1;
+            this.index2 = index2;
+            match1 = new int[ index1.nodes.size() ];
+            match2 = new int[ index2.nodes.size() ];
+            Arrays.fill( match1, -1 );
+            Arrays.fill( match2, -1 );
+            types = new String[ match1.length ];
+            referents = new String[ match1.length ];
+        }
+
+        void pair( int n1, int n2 ) {
+            match1[ n1] = n2;
+            match2[ n2] = n1;
+            size++;
+        }
+    }
+
+    /**
+     * The work of finding the maximal join of two graphs.
+     */
+    private class Search {
+
+        final GraphIndex index1;
+        final GraphIndex index2;
+        final String[] referents1;
+        final String[] referents2;
+        /** for each node, its relations: relation number, 0 (input) or 1 (output), argument position */
+        final ArrayList<ArrayList<int[]>> incidence1;
+        final ArrayList<ArrayList<int[]>> incidence2;
+        /** the joined type of each pair of concept type keys; "" if they aren't compatible */
+        final HashMap<String, String> joinedTypes = new HashMap<>();
+
+        Search( Graph g1, Graph g2 ) {
+            index1 = new GraphIndex( g1, conceptHierarchy, relationHierarchy );
+            index2 = new GraphIndex( g2, conceptHierarchy, relationHierarchy );
+            referents1 = referents( index1 );
+            referents2 = referents( index2 );
+            incidence1 = incidence( index1 );
+            incidence2 = incidence( index2 );
+        }
+
+        private String[] referents( GraphIndex index ) {
+            String[] referents = new String[ index.nodes.size() ];
+            for ( int n = 1; n < referents.length; n++ ) {
+                if ( index.kinds[ n] == GraphIndex.Kind.CONCEPT ) {
+                    referents[ n] = ( (Concept)index.nodes.get( n ) ).getReferent().trim();
+                }
+            }
+            return referents;
+        }
+
+        private ArrayList<ArrayList<int[]>> incidence( GraphIndex index ) {
+            ArrayList<ArrayList<int[]>> incidence = new ArrayList<>();
+            for ( int n = 0; n < index.nodes.size(); n++ ) {
+                incidence.add( new ArrayList<int[]>() );
+            }
+            for ( int r = 1; r < index.nodes.size(); r++ ) {
+                if ( index.inputs[ r] == null || index.owner[ r] != 0 ) {
+                    continue;
+                }
+                for ( int p = 0; p < index.inputs[ r].length; p++ ) {
+                    if ( index.inputs[ r][ p] >= 0 ) {
+                        incidence.get( index.inputs[ r][ p] ).add( new int[] { r, 0, p } );
+                    }
+                }
+                for ( int p = 0; p < index.outputs[ r].length; p++ ) {
+                    if ( index.outputs[ r][ p] >= 0 ) {
+                        incidence.get( index.outputs[ r][ p] ).add( new int[] { r, 1, p } );
+                    }
+                }
+            }
+            return incidence;
+        }
+
+        /**
+         * @return the largest join found; null if there are no compatible
+         * concepts.
+         */
+        Join run() {
+            ArrayList<int[]> seeds = seeds();
+            Join best = null;
+            for ( int[] seed : seeds ) {
+                if ( best != null && best.match1[ seed[ 0]] == seed[ 1] ) {
+                    continue;       // growing from here would only find the same join again
+                }
+                Join join = grow( seed[ 0], seed[ 1] );
+                if ( best == null || join.size > best.size ) {
+                    best = join;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * @return the compatible pairs of outermost concepts, most specific
+         * first, at most maxSeeds of them.
+         */
+        private ArrayList<int[]> seeds() {
+            ArrayList<int[]> seeds = new ArrayList<>();
+            HashMap<String, ArrayList<Integer>> concepts2 = index2.byKey.get( GraphIndex.Kind.CONCEPT );
+            for ( Map.Entry<String, ArrayList<Integer>> e1 : index1.byKey.get( GraphIndex.Kind.CONCEPT ).entrySet() ) {
+                for ( Map.Entry<String, ArrayList<Integer>> e2 : concepts2.entrySet() ) {
+                    if ( joinedType( e1.getKey(), e2.getKey() ).isEmpty() ) {
+                        continue;
+                    }
+                    for ( int n1 : e1.getValue() ) {
+                        for ( int n2 : e2.getValue() ) {
+                            if ( index1.owner[ n1] == 0 && index2.owner[ n2] == 0 && joinedReferent( n1, n2 ) != null ) {
+                                seeds.add( new int[] { n1, n2, specificity( n1, n2 ) } );
+                            }
+                        }
+                    }
+                }
+            }
+            seeds.sort( ( a, b ) -> a[ 2] != b[ 2] ? b[ 2] - a[ 2] : a[ 0] != b[ 0] ? a[ 0] - b[ 0] : a[ 1] - b[ 1] );
+            return seeds.size() > maxSeeds ? new ArrayList<>( seeds.subList( 0, maxSeeds ) ) : seeds;
+        }
+
+        /**
+         * @return 2 for the same individual, plus 1 for the same type, plus
+         * how many relations they both have (up to 8)
+         */
+        private int specificity( int n1, int n2 ) {
+            int s = 0;
+            if ( !referents1[ n1].isEmpty() && referents1[ n1].equals( referents2[ n2] ) ) {
+                s += 20;
+            }
+            if ( index1.keys[ n1].equals( index2.keys[ n2] ) ) {
+                s += 10;
+            }
+            return s + Math.min( 8, Math.min( incidence1.get( n1 ).size(), incidence2.get( n2 ).size() ) );
+        }
+
+        /**
+         * @return the type label the two concept types would be joined as; ""
+         * if they can't be joined.
+         */
+        private String joinedType( String key1, String key2 ) {
+            String pair = key1 + "\u0000" + key2;
+            String type = joinedTypes.get( pair );
+            if ( type == null ) {
+                type = "";
+                if ( key1.equals( key2 ) || conceptHierarchy.isSubtypeOf( key1, key2 ) ) {
+                    type = key1;
+                } else if ( conceptHierarchy.isSubtypeOf( key2, key1 ) ) {
+                    type = key2;
+                } else {
+                    TypeHierarchyNode bottom = conceptHierarchy.getBottom();
+                    for ( TypeHierarchyNode common : conceptHierarchy.getGreatestCommonSubtypes( key1, key2 ) ) {
+                        if ( common != bottom ) {
+                            type = common.getValue();
+                            break;
+                        }
+                    }
+                }
+                joinedTypes.put( pair, type );
+            }
+            return type;
+        }
+
+        /**
+         * @return the referent the two concepts would have when joined; null
+         * if they can't be.
+         */
+        private String joinedReferent( int n1, int n2 ) {
+            String r1 = referents1[ n1];
+            String r2 = referents2[ n2];
+            if ( r1.isEmpty() ) {
+                return r2;
+            } else if ( r2.isEmpty() || r1.equals( r2 ) ) {
+                return r1;
+            }
+            return null;
+        }
+
+        private boolean conceptsCompatible( int n1, int n2 ) {
+            return index1.kinds[ n1] == GraphIndex.Kind.CONCEPT && index2.kinds[ n2] == GraphIndex.Kind.CONCEPT
+                    && index1.owner[ n1] == 0 && index2.owner[ n2] == 0
+                    && !joinedType( index1.keys[ n1], index2.keys[ n2] ).isEmpty() && joinedReferent( n1, n2 ) != null;
+        }
+
+        private boolean relationsCompatible( int r1, int r2 ) {
+            if ( index1.kinds[ r1] != index2.kinds[ r2]
+                    || index1.inputs[ r1].length != index2.inputs[ r2].length
+                    || index1.outputs[ r1].length != index2.outputs[ r2].length ) {
+                return false;
+            }
+            String key1 = index1.keys[ r1];
+            String key2 = index2.keys[ r2];
+            return key1.equals( key2 ) || index1.kinds[ r1] == GraphIndex.Kind.RELATION
+                    && ( relationHierarchy.isSubtypeOf( key1, key2 ) || relationHierarchy.isSubtypeOf( key2, key1 ) );
+        }
+
+        /**
+         * Joins the two concepts, then goes on joining pairs of relations of
+         * joined concepts, and their other arguments, as long as any can be.
+         */
+        private Join grow( int seed1, int seed2 ) {
+            Join join = new Join( index1, index2 );
+            ArrayDeque<Integer> joinedConcepts = new ArrayDeque<>();
+            pairConcepts( join, seed1, seed2, joinedConcepts );
+            while ( !joinedConcepts.isEmpty() ) {
+                int c1 = joinedConcepts.poll();
+                int c2 = join.match1[ c1];
+                for ( int[] link1 : incidence1.get( c1 ) ) {
+                    if ( join.match1[ link1[ 0]] >= 0 ) {
+                        continue;
+                    }
+                    for ( int[] link2 : incidence2.get( c2 ) ) {
+                        if ( link2[ 1] == link1[ 1] && link2[ 2] == link1[ 2] && join.match2[ link2[ 0]] < 0
+                                && tryRelations( join, link1[ 0], link2[ 0], joinedConcepts ) ) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return join;
+        }
+
+        private void pairConcepts( Join join, int n1, int n2, ArrayDeque<Integer> joinedConcepts ) {
+            join.pair( n1, n2 );
+            join.types[ n1] = joinedType( index1.keys[ n1], index2.keys[ n2] );
+            if ( join.types[ n1].equals( index1.keys[ n1] ) ) {
+                join.types[ n1] = index1.nodes.get( n1 ).getTypeLabel();
+            } else if ( join.types[ n1].equals( index2.keys[ n2] ) ) {
+                join.types[ n1] = index2.nodes.get( n2 ).getTypeLabel();
+            }
+            join.referents[ n1] = joinedReferent( n1, n2 );
+            joinedConcepts.add( n1 );
+        }
+
+        /**
+         * Joins the two relations if they're compatible and each pair of their
+         * arguments is either already joined or can be.
+         *
+         * @return whether they were joined
+         */
+        private boolean tryRelations( Join join, int r1, int r2, ArrayDeque<Integer> joinedConcepts ) {
+            if ( !relationsCompatible( r1, r2 ) ) {
+                return false;
+            }
+            int[] args1 = concat( index1.inputs[ r1], index1.outputs[ r1] );
+            int[] args2 = concat( index2.inputs[ r2], index2.outputs[ r2] );
+            // the new pairs this would make, checked against each other as well as the join so far
+            HashMap<Integer, Integer> newPairs1 = new HashMap<>();
+            HashMap<Integer, Integer> newPairs2 = new HashMap<>();
+            for ( int k = 0; k < args1.length; k++ ) {
+                int a1 = args1[ k];
+                int a2 = args2[ k];
+                if ( a1 < 0 || a2 < 0 ) {
+                    return false;
+                }
+                if ( join.match1[ a1] == a2 ) {
+                    continue;
+                }
+                if ( join.match1[ a1] >= 0 || join.match2[ a2] >= 0 ) {
+                    return false;
+                }
+                Integer already1 = newPairs1.get( a1 );
+                Integer already2 = newPairs2.get( a2 );
+                if ( already1 != null || already2 != null ) {
+                    if ( already1 == null || already1 != a2 ) {
+                        return false;
+                    }
+                    continue;
+                }
+                if ( !conceptsCompatible( a1, a2 ) ) {
+                    return false;
+                }
+                newPairs1.put( a1, a2 );
+                newPairs2.put( a2, a1 );
+            }
+            join.pair( r1, r2 );
+            if ( !index1.keys[ r1].equals( index2.keys[ r2] ) && relationHierarchy.isSubtypeOf( index2.keys[ r2], index1.keys[ r1] ) ) {
+                join.types[ r1] = index2.nodes.get( r2 ).getTypeLabel();
+            }
+            for ( int k = 0; k < args1.length; k++ ) {
+                if ( newPairs1.containsKey( args1[ k] ) && join.match1[ args1[ k]] < 0 ) {
+                    pairConcepts( join, args1[ k], args2[ k], joinedConcepts );
+                }
+            }
+            return true;
+        }
+
+        private int[] concat( int[] a, int[] b ) {
+            int[] all = Arrays.copyOf( a, a.length + b.length );
+            System.arraycopy( b, 0, all, a.length, b.length );
+            return all;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package kb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import charger.obj.Arrow;
+import charger.obj.GNode;
+import charger.obj.GraphObject;
+import charger.obj.Graph;
+
+/**
+ * One projection of a query graph into a target graph: the image in the target
+ * of each of the query's concepts, contexts, relations and actors.
+ *
+ * @see Projector
+ * @since Charger 4.3
+ */
+public class Projection {
+
+    private final Graph query;
+    private final Graph target;
+    /** in the order of the query's nodes */
+    private final LinkedHashMap<GNode, GNode> images;
+
+    Projection( Graph query, Graph target, LinkedHashMap<GNode, GNode> images ) {
+        this.query = query;
+        this.target = target;
+        this.images = images;
+    }
+
+    public Graph getQuery() {
+        return query;
+    }
+
+    public Graph getTarget() {
+        return target;
+    }
+
+    /**
+     * @param queryNode a concept, context, relation or actor of the query
+     * @return the node it's projected to; null if it isn't part of the
+     * projection.
+     */
+    public GNode getImage( GNode queryNode ) {
+        return images.get( queryNode );
+    }
+
+    /**
+     * @return the image of each query node
+     */
+    public Map<GNode, GNode> getImages() {
+        return Collections.unmodifiableMap( images );
+    }
+
+    /**
+     * Gathers the part of the target that the query was projected to: the
+     * images of its nodes and the arrows between them.
+     *
+     * @return the target's objects, each just once
+     */
+    public ArrayList<GraphObject> getTargetObjects() {
+        IdentityHashMap<GraphObject, Boolean> seen = new IdentityHashMap<>();
+        ArrayList<GraphObject> objects = new ArrayList<>();
+        for ( GNode image : images.values() ) {
+            if ( seen.put( image, Boolean.TRUE ) == null ) {
+                objects.add( image );
+            }
+        }
+        for ( Map.Entry<GNode, GNode> e : images.entrySet() ) {
+            for ( Object o : e.getKey().getEdges() ) {
+                if ( !( o instanceof Arrow ) ) {
+                    continue;
+                }
+                Arrow queryArrow = (Arrow)o;
+                GNode from = images.get( (GNode)queryArrow.fromObj );
+                GNode to = images.get( (GNode)queryArrow.toObj );
+                if ( from == null || to == null ) {
+                    continue;
+                }
+                for ( Object t : from.getEdges() ) {
+                    if ( t instanceof Arrow && ( (Arrow)t ).toObj == to && seen.put( (Arrow)t, Boolean.TRUE ) == null ) {
+                        objects.add( (Arrow)t );
+                    }
+                }
+            }
+        }
+        return objects;
+    }
+
+    /**
+     * Selects (or un-selects) the part of the target that the query was
+     * projected to, so that an editor showing the target highlights it.
+     *
+     * @param select whether to select the objects or not
+     * @see #getTargetObjects
+     */
+    public void setSelected( boolean select ) {
+        for ( GraphObject go : getTargetObjects() ) {
+            go.isSelected = select;
+        }
+    }
+
+    public String toString() {
+        String s = "Projection of " + query.getTextLabel() + " into " + target.getTextLabel() + ":";
+        for ( Map.Entry<GNode, GNode> e : images.entrySet() ) {
+            s += " " + e.getKey().getTextLabel() + " -> " + e.getValue().getTextLabel() + ";";
+        }
+        return s;
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package kb;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import charger.Global;
+import charger.obj.Concept;
+import charger.obj.GNode;
+import charger.obj.Graph;
+import kb.hierarchy.TypeHierarchy;
+
+/**
+ * Finds the projections of a query graph into other graphs. A projection maps
+ * each of the query's concepts, contexts, relations and actors to one in the
+ * target so that:
+ * <ul>
+ * <li>a concept's image has the same type or a subtype, and the same referent
+ * if the query concept has one (a generic concept conforms to any referent);
+ * <li>a context's image is a context of the same type or a subtype, negated if
+ * and only if the query context is, and whatever is in the query context is
+ * mapped into it; what is in the query's outermost context is mapped into the
+ * target's outermost context;
+ * <li>a relation's image has the same type or a subtype and the same numbers
+ * of inputs and outputs, and its arguments, in order, are the images of the
+ * query relation's arguments. Actors are treated like relations, except that
+ * their names must be the same.
+ * </ul>
+ * Different query nodes may have the same image unless setInjective is used.
+ * Coreference links and other kinds of nodes are ignored.
+ * <p>
+ * The candidates for each query node are found through an index of the
+ * target's nodes by type, and are then narrowed by propagating the argument and
+ * context constraints until no more can be removed (arc consistency). The
+ * search then tries the candidates of whichever node has the fewest left,
+ * propagating again after each choice.
+ *
+ * @see Projection
+ * @since Charger 4.3
+ */
+public class Projector {
+
+    private final TypeHierarchy conceptHierarchy;
+    private final TypeHierarchy relationHierarchy;
+    private boolean injective = false;
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * Creates a projector that uses the session's type hierarchies.
+     *
+     * @see Global#sessionKB
+     */
+    public Projector() {
+        this( Global.sessionKB );
+    }
+
+    public Projector( KnowledgeBase kb ) {
+        this( kb.getConceptTypeHierarchy(), kb.getRelationTypeHierarchy() );
+    }
+
+    /**
+     * @param conceptHierarchy used to tell whether a concept's type is a
+     * subtype of another
+     * @param relationHierarchy used to tell whether a relation's type is a
+     * subtype of another
+     */
+    public Projector( TypeHierarchy conceptHierarchy, TypeHierarchy relationHierarchy ) {
+        this.conceptHierarchy = conceptHierarchy;
+        this.relationHierarchy = relationHierarchy;
+    }
+
+    public boolean isInjective() {
+        return injective;
+    }
+
+    /**
+     * @param injective whether different query nodes must have different
+     * images
+     */
+    public void setInjective( boolean injective ) {
+        this.injective = injective;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param limit the most projections to find in one call
+     */
+    public void setLimit( int limit ) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return true if the query has at least one projection into the target
+     */
+    public boolean projects( Graph query, Graph target ) {
+        return !new Search( query, target, 1 ).run().isEmpty();
+    }
+
+    /**
+     * @return the projections of the query into the target, at most the
+     * limit; empty if there are none or the query has no nodes.
+     */
+    public ArrayList<Projection> findProjections( Graph query, Graph target ) {
+        return new Search( query, target, limit ).run();
+    }
+
+    /**
+     * @param query the graph to be projected
+     * @param targets the graphs to project it into, e.g., all the graphs of a
+     * knowledge base
+     * @return the projections into each target in turn, at most the limit in
+     * all.
+     */
+    public ArrayList<Projection> findProjections( Graph query, Collection<Graph> targets ) {
+        ArrayList<Projection> all = new ArrayList<>();
+        for ( Graph target : targets ) {
+            if ( all.size() >= limit ) {
+                break;
+            }
+            all.addAll( new Search( query, target, limit - all.size() ).run() );
+        }
+        return all;
+    }
+
+    /**
+     * @return whether the target's type (as a key) is the same as or below
+     * the query's.
+     */
+    private boolean conforms( GraphIndex.Kind kind, String targetKey, String queryKey ) {
+        if ( targetKey.equals( queryKey ) ) {
+            return true;
+        }
+        TypeHierarchy h = kind == GraphIndex.Kind.RELATION ? relationHierarchy
+                : kind == GraphIndex.Kind.ACTOR ? null : conceptHierarchy;
+        if ( h == null ) {
+            return false;
+        }
+        if ( queryKey.equals( String.valueOf( h.getTop().getKey() ) ) ) {
+            return true;
+        }
+        return h.isSubtypeOf( targetKey, queryKey );
+    }
+
+    /**
+     * That the image of one query node determines the image of another:
+     * image( to ) == table[ image( from ) ].
+     */
+    private static class Constraint {
+
+        final int from;
+        final int to;
+        final int[] table;
+
+        Constraint( int from, int to, int[] table ) {
+            this.from = from;
+            this.to = to;
+            this.table = table;
+        }
+    }
+
+    /**
+     * The work of finding the projections of one query into one target.
+     */
+    private class Search {
+
+        final GraphIndex query;
+        final GraphIndex target;
+        final int max;
+        final ArrayList<Projection> results = new ArrayList<>();
+        /** the constraints on each query node */
+        final ArrayList<ArrayList<Constraint>> constraints = new ArrayList<>();
+        /** for marking target nodes; a node is marked if its stamp is the current one */
+        final int[] stamps;
+        int stamp = 0;
+
+        Search( Graph query, Graph target, int max ) {
+            this.query = new GraphIndex( query, conceptHierarchy, relationHierarchy );
+            this.target = new GraphIndex( target, conceptHierarchy, relationHierarchy );
+            this.max = max;
+            stamps = new int[ this.target.nodes.size() ];
+        }
+
+        ArrayList<Projection> run() {
+            int size = query.nodes.size();
+            if ( size <= 1 || max <= 0 ) {
+                return results;
+            }
+            for ( int q = 0; q < size; q++ ) {
+                constraints.add( new ArrayList<Constraint>() );
+            }
+            int[][] domains = new int[ size ][];
+            domains[ 0] = new int[] { 0 };
+            for ( int q = 1; q < size; q++ ) {
+                domains[ q] = candidates( q );
+                if ( domains[ q].length == 0 ) {
+                    return results;
+                }
+                addConstraint( q, query.owner[ q], target.owner );
+                if ( query.inputs[ q] != null ) {
+                    for ( int p = 0; p < query.inputs[ q].length; p++ ) {
+                        addConstraint( q, query.inputs[ q][ p], target.argTable( true, p ) );
+                    }
+                    for ( int p = 0; p < query.outputs[ q].length; p++ ) {
+                        addConstraint( q, query.outputs[ q][ p], target.argTable( false, p ) );
+                    }
+                }
+            }
+            int[] all = new int[ size ];
+            for ( int q = 0; q < size; q++ ) {
+                all[ q] = q;
+            }
+            if ( propagate( domains, all ) ) {
+                search( domains );
+            }
+            return results;
+        }
+
+        private void addConstraint( int from, int to, int[] table ) {
+            if ( to < 0 ) {
+                return;
+            }
+            Constraint c = new Constraint( from, to, table );
+            constraints.get( from ).add( c );
+            constraints.get( to ).add( c );
+        }
+
+        /**
+         * @return the target nodes, in order, that the query node could be
+         * mapped to, considering only the node itself.
+         */
+        private int[] candidates( int q ) {
+            GraphIndex.Kind kind = query.kinds[ q];
+            GNode node = query.nodes.get( q );
+            String referent = kind == GraphIndex.Kind.CONCEPT ? ( (Concept)node ).getReferent().trim() : "";
+            ArrayList<Integer> found = new ArrayList<>();
+            for ( GraphIndex.Kind targetKind : GraphIndex.Kind.values() ) {
+                            // a generic concept may also be mapped to a context
+                if ( targetKind != kind && !( kind == GraphIndex.Kind.CONCEPT && targetKind == GraphIndex.Kind.CONTEXT && referent.isEmpty() ) ) {
+                    continue;
+                }
+                for ( Map.Entry<String, ArrayList<Integer>> e : target.byKey.get( targetKind ).entrySet() ) {
+                    if ( !conforms( kind, e.getKey(), query.keys[ q] ) ) {
+                        continue;
+                    }
+                    for ( int t : e.getValue() ) {
+                        if ( conformsIndividually( q, t, referent ) ) {
+                            found.add( t );
+                        }
+                    }
+                }
+            }
+            int[] result = found.stream().mapToInt( Integer::intValue ).toArray();
+            Arrays.sort( result );
+            return result;
+        }
+
+        private boolean conformsIndividually( int q, int t, String referent ) {
+            GNode qnode = query.nodes.get( q );
+            GNode tnode = target.nodes.get( t );
+            switch ( query.kinds[ q] ) {
+                case CONCEPT:
+                    return referent.isEmpty() || referent.equals( ( (Concept)tnode ).getReferent().trim() );
+                case CONTEXT:
+                    return qnode.isNegated() == tnode.isNegated();
+                default:
+                    return query.inputs[ q].length == target.inputs[ t].length
+                            && query.outputs[ q].length == target.outputs[ t].length;
+            }
+        }
+
+        /**
+         * Removes from the domains whatever can't be part of a projection,
+         * given the constraints, until nothing more can be removed. Changes the
+         * domains array but not the domains themselves.
+         *
+         * @param changed the query nodes whose domains have changed
+         * @return false if some domain is now empty
+         */
+        private boolean propagate( int[][] domains, int[] changed ) {
+            ArrayDeque<Integer> work = new ArrayDeque<>();
+            boolean[] queued = new boolean[ domains.length ];
+            for ( int q : changed ) {
+                work.add( q );
+                queued[ q] = true;
+            }
+            while ( !work.isEmpty() ) {
+                int q = work.poll();
+                queued[ q] = false;
+                for ( Constraint c : constraints.get( q ) ) {
+                    int[] fromDomain = domains[ c.from];
+                    int[] toDomain = domains[ c.to];
+                    // the "to" node's image must be the image of some "from" image...
+                    stamp++;
+                    for ( int t : fromDomain ) {
+                        int image = c.table[ t];
+                        if ( image >= 0 ) {
+                            stamps[ image] = stamp;
+                        }
+                    }
+                    int[] newTo = keepMarked( toDomain, null );
+                    if ( newTo.length == 0 ) {
+                        return false;
+                    }
+                    // ...and each "from" image must lead to one of the "to" node's
+                    stamp++;
+                    for ( int t : newTo ) {
+                        stamps[ t] = stamp;
+                    }
+                    int[] newFrom = keepMarked( fromDomain, c.table );
+                    if ( newFrom.length == 0 ) {
+                        return false;
+                    }
+                    if ( newTo != toDomain ) {
+                        domains[ c.to] = newTo;
+                        if ( !queued[ c.to] ) {
+                            work.add( c.to );
+                            queued[ c.to] = true;
+                        }
+                    }
+                    if ( newFrom != fromDomain ) {
+                        domains[ c.from] = newFrom;
+                        if ( !queued[ c.from] ) {
+                            work.add( c.from );
+                            queued[ c.from] = true;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return those of the domain that are marked (or, with a table, whose
+         * entry in it is marked); the domain itself if all of them are.
+         */
+        private int[] keepMarked( int[] domain, int[] table ) {
+            int[] kept = null;
+            int count = 0;
+            for ( int k = 0; k < domain.length; k++ ) {
+                int t = table == null ? domain[ k] : table[ domain[ k]];
+                boolean marked = t >= 0 && stamps[ t] == stamp;
+                if ( marked && kept != null ) {
+                    kept[ count++] = domain[ k];
+                } else if ( !marked && kept == null ) {
+                    kept = new int[ domain.length ];
+                    System.arraycopy( domain, 0, kept, 0, k );
+                    count = k;
+                }
+            }
+            return kept == null ? domain : Arrays.copyOf( kept, count );
+        }
+
+        private void search( int[][] domains ) {
+            int choice = -1;
+            for ( int q = 1; q < domains.length; q++ ) {
+                if ( domains[ q].length > 1 && ( choice < 0 || domains[ q].length < domains[ choice].length ) ) {
+                    choice = q;
+                }
+            }
+            if ( choice < 0 ) {
+                record( domains );
+                return;
+            }
+            for ( int t : domains[ choice] ) {
+                int[][] next = domains.clone();
+                next[ choice] = new int[] { t };
+                int[] changed = injective ? exclude( next, choice, t ) : new int[] { choice };
+                if ( propagate( next, changed ) ) {
+                    search( next );
+                }
+                if ( results.size() >= max ) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Takes the image away from every other query node that might still
+         * have it. Nodes left with just one candidate are checked when the
+         * projection is recorded.
+         *
+         * @return the nodes whose domains changed
+         */
+        private int[] exclude( int[][] domains, int chosen, int image ) {
+            ArrayList<Integer> changed = new ArrayList<>();
+            changed.add( chosen );
+            for ( int q = 1; q < domains.length; q++ ) {
+                if ( q == chosen || domains[ q].length == 1 ) {
+                    continue;
+                }
+                int k = Arrays.binarySearch( domains[ q], image );
+                if ( k >= 0 ) {
+                    int[] rest = new int[ domains[ q].length - 1 ];
+                    System.arraycopy( domains[ q], 0, rest, 0, k );
+                    System.arraycopy( domains[ q], k + 1, rest, k, rest.length - k );
+                    domains[ q] = rest;
+                    changed.add( q );
+                }
+            }
+            return changed.stream().mapToInt( Integer::intValue ).toArray();
+        }
+
+        private void record( int[][] domains ) {
+            if ( injective ) {
+                stamp++;
+                for ( int q = 1; q < domains.length; q++ ) {
+                    if ( stamps[ domains[ q][ 0]] == stamp ) {
+                        return;
+                    }
+                    stamps[ domains[ q][ 0]] = stamp;
+                }
+            }
+            LinkedHashMap<GNode, GNode> images = new LinkedHashMap<>();
+            for ( int q = 1; q < domains.length; q++ ) {
+                images.put( query.nodes.get( q ), target.nodes.get( domains[ q][ 0] ) );
+            }
+            results.add( new Projection( query.graph, target.graph, images ) );
+        }
+    }
+}
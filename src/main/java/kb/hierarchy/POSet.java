@@ -58,12 +58,13 @@ public class POSet  {
         }
         else {
             boolean okay = true;
-            ArrayList<POSetNode> nodes = node.getChildNodes();
+                // copies, since removing a link changes the node's own lists
+            ArrayList<POSetNode> nodes = new ArrayList<POSetNode>( node.getChildNodes() );
             for ( POSetNode n : nodes ) {
                 okay = okay & n.removeParent( node );
             }
 
-            nodes = node.getParentNodes();
+            nodes = new ArrayList<POSetNode>( node.getParentNodes() );
             for ( POSetNode n : nodes ) {
                 okay = okay & n.removeChild( node );
             }
@@ -23,6 +23,9 @@ public class POSetNode {
     
     ArrayList<POSetNode> childNodes = new ArrayList<POSetNode>();
 
+        // this node's number in its hierarchy's SubsumptionIndex; -1 if none
+    int subsumptionNumber = -1;
+
     public POSetNode( Object obj ) {
         setPosetKey( obj );
     }
@@ -148,13 +151,7 @@ public class POSetNode {
      * @return true if node is a recursive parent
      */
     public boolean hasIndirectParent( POSetNode node ) {
-        if ( this.hasDirectParent( node )) return true;
-        else {
-            for ( POSetNode n : parentNodes ) {
-                if ( n.hasIndirectParent( node )) return true;
-            }
-            return false;
-        }
+        return reaches( node, true );
     }
 
         /**
@@ -174,13 +171,29 @@ public class POSetNode {
      * @return true if node is a recursive child; false otherwise
      */
     public boolean hasIndirectChild( POSetNode node ) {
-        if ( this.hasDirectChild( node )) return true;
-        else {
-            for ( POSetNode n : childNodes ) {
-                if ( n.hasIndirectChild( node )) return true;
+        return reaches( node, false );
+    }
+
+    /**
+     * Searches upward (or downward) from this node for the argument node,
+     * visiting each node only once, so that the many paths through a
+     * multiple-inheritance hierarchy don't make the search exponential.
+     * @param node the node being looked for
+     * @param upward whether to follow parent links (or else child links)
+     * @return true if node is reachable from this one
+     */
+    private boolean reaches( POSetNode node, boolean upward ) {
+        Set<POSetNode> visited = Collections.newSetFromMap( new IdentityHashMap<POSetNode, Boolean>() );
+        ArrayDeque<POSetNode> toVisit = new ArrayDeque<POSetNode>();
+        toVisit.push( this );
+        while ( ! toVisit.isEmpty() ) {
+            POSetNode n = toVisit.pop();
+            for ( POSetNode next : upward ? n.parentNodes : n.childNodes ) {
+                if ( next == node ) return true;
+                if ( visited.add( next ) ) toVisit.push( next );
             }
-            return false;
         }
+        return false;
     }
     
 
@@ -0,0 +1,386 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package kb.hierarchy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+/**
+ * Remembers the transitive closure of a partially ordered set: for each node,
+ * the numbers of all of its ancestors and of all of its descendants, as sorted
+ * arrays. A node's set is computed only when first needed (from its parents'
+ * or children's sets, so shared parts of the order are never walked twice),
+ * and is kept until a link that could change it is added or removed. Then only
+ * the sets of the nodes below (for ancestors) or above (for descendants) the
+ * link are forgotten.
+ * <p>
+ * The index relies on this invariant: if a node's set is known, so are the
+ * sets of all the nodes it was computed from. So when forgetting, the walk can
+ * stop wherever a set is already unknown.
+ *
+ * @see TypeHierarchy#isSubtypeOf
+ * @since Charger 4.3
+ */
+class SubsumptionIndex {
+
+    private static final int[] NONE = new int[ 0 ];
+
+    /** every node ever added, by number; null once removed */
+    private final ArrayList<POSetNode> nodes = new ArrayList<>();
+    /** for each node number, the sorted numbers of its proper ancestors; null if not known */
+    private int[][] ancestors = new int[ 16 ][];
+    /** for each node number, the sorted numbers of its proper descendants; null if not known */
+    private int[][] descendants = new int[ 16 ][];
+    /** counts changes to the order, so that others can tell when what they've worked out is stale */
+    private volatile int version = 0;
+
+    /**
+     * Gives the node a number in this index, if it doesn't already have one.
+     */
+    synchronized void add( POSetNode node ) {
+        if ( node.subsumptionNumber >= 0 && node.subsumptionNumber < nodes.size()
+                && nodes.get( node.subsumptionNumber ) == node ) {
+            return;
+        }
+        node.subsumptionNumber = nodes.size();
+        nodes.add( node );
+        version++;
+        if ( nodes.size() > ancestors.length ) {
+            ancestors = Arrays.copyOf( ancestors, ancestors.length * 2 );
+            descendants = Arrays.copyOf( descendants, descendants.length * 2 );
+        }
+    }
+
+    /**
+     * Forgets a node. Its links should already have been removed (and
+     * reported with linkChanged).
+     */
+    synchronized void remove( POSetNode node ) {
+        if ( !contains( node ) ) {
+            return;
+        }
+        forgetBelow( node );
+        forgetAbove( node );
+        nodes.set( node.subsumptionNumber, null );
+        node.subsumptionNumber = -1;
+        version++;
+    }
+
+    synchronized void clear() {
+        for ( POSetNode node : nodes ) {
+            if ( node != null ) {
+                node.subsumptionNumber = -1;
+            }
+        }
+        nodes.clear();
+        ancestors = new int[ 16 ][];
+        descendants = new int[ 16 ][];
+        version++;
+    }
+
+    /**
+     * Must be called whenever a parent-child link is added or removed.
+     *
+     * @param child the lower node of the link
+     * @param parent the upper node of the link
+     */
+    synchronized void linkChanged( POSetNode child, POSetNode parent ) {
+        forgetBelow( child );
+        forgetAbove( parent );
+        version++;
+    }
+
+    /**
+     * @return a number that changes whenever a node or link is added or
+     * removed.
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return how many nodes are below (or above) the node, not counting
+     * itself; 0 if it's not in the index.
+     */
+    synchronized int count( POSetNode node, boolean upward ) {
+        return contains( node ) ? closure( node, upward ).length : 0;
+    }
+
+    /**
+     * @return true if the second node is above the first (not counting the
+     * node itself).
+     */
+    synchronized boolean isAncestor( POSetNode node, POSetNode possibleAncestor ) {
+        if ( !contains( node ) || !contains( possibleAncestor ) || node == possibleAncestor ) {
+            return false;
+        }
+        // use what's already known; otherwise work out whichever side looks smaller
+        int[] up = ancestors[ node.subsumptionNumber];
+        if ( up != null ) {
+            return Arrays.binarySearch( up, possibleAncestor.subsumptionNumber ) >= 0;
+        }
+        int[] down = descendants[ possibleAncestor.subsumptionNumber];
+        if ( down == null && node.parentNodes.size() <= possibleAncestor.childNodes.size() ) {
+            up = closure( node, true );
+            return Arrays.binarySearch( up, possibleAncestor.subsumptionNumber ) >= 0;
+        }
+        if ( down == null ) {
+            down = closure( possibleAncestor, false );
+        }
+        return Arrays.binarySearch( down, node.subsumptionNumber ) >= 0;
+    }
+
+    /**
+     * @return the nodes that are both above (or the same as) the first node and
+     * above (or the same as) the second, with none below another; in the order
+     * they were added.
+     */
+    synchronized ArrayList<POSetNode> leastCommon( POSetNode node1, POSetNode node2, boolean upward ) {
+        ArrayList<POSetNode> result = new ArrayList<>();
+        if ( !contains( node1 ) || !contains( node2 ) ) {
+            return result;
+        }
+        int[] common = intersect( withSelf( node1, upward ), withSelf( node2, upward ) );
+        // a common one that is beyond another common one isn't least
+        boolean[] beyond = new boolean[ nodes.size() ];
+        for ( int c : common ) {
+            for ( int b : closure( nodes.get( c ), upward ) ) {
+                beyond[ b] = true;
+            }
+        }
+        for ( int c : common ) {
+            if ( !beyond[ c] ) {
+                result.add( nodes.get( c ) );
+            }
+        }
+        return result;
+    }
+
+    private boolean contains( POSetNode node ) {
+        return node != null && node.subsumptionNumber >= 0 && node.subsumptionNumber < nodes.size()
+                && nodes.get( node.subsumptionNumber ) == node;
+    }
+
+    private int[] withSelf( POSetNode node, boolean upward ) {
+        int[] set = closure( node, upward );
+        int[] result = new int[ set.length + 1 ];
+        int pos = -Arrays.binarySearch( set, node.subsumptionNumber ) - 1;
+        System.arraycopy( set, 0, result, 0, pos );
+        result[ pos] = node.subsumptionNumber;
+        System.arraycopy( set, pos, result, pos + 1, set.length - pos );
+        return result;
+    }
+
+    private static int[] intersect( int[] a, int[] b ) {
+        int[] result = new int[ Math.min( a.length, b.length )];
+        int i = 0, j = 0, n = 0;
+        while ( i < a.length && j < b.length ) {
+            if ( a[ i] < b[ j] ) {
+                i++;
+            } else if ( a[ i] > b[ j] ) {
+                j++;
+            } else {
+                result[ n++] = a[ i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf( result, n );
+    }
+
+    /**
+     * Finds (and remembers) the ancestors or descendants of a node, first
+     * finding those of its parents or children that aren't already known.
+     * Done without recursion, since orders can be very deep. Nodes on a cycle
+     * reach each other, so their sets are worked out together once the whole
+     * cycle has been walked (as in Tarjan's strongly connected components);
+     * remembering one of them earlier would leave out whatever is reached
+     * only by going round the cycle.
+     */
+    private int[] closure( POSetNode node, boolean upward ) {
+        int[][] known = upward ? ancestors : descendants;
+        if ( known[ node.subsumptionNumber] != null ) {
+            return known[ node.subsumptionNumber];
+        }
+        // depth-first, keeping the path from the node and where we are in each one's links;
+        // a node stays in "open" until the cycles through it are finished
+        IdentityHashMap<POSetNode, int[]> order = new IdentityHashMap<>();   // { when reached, lowest reachable that's open }
+        ArrayDeque<POSetNode> open = new ArrayDeque<>();
+        IdentityHashMap<POSetNode, Boolean> isOpen = new IdentityHashMap<>();
+        ArrayDeque<POSetNode> path = new ArrayDeque<>();
+        ArrayDeque<Iterator<POSetNode>> links = new ArrayDeque<>();
+        reach( node, upward, order, open, isOpen, path, links );
+        while ( !path.isEmpty() ) {
+            Iterator<POSetNode> it = links.peek();
+            if ( it.hasNext() ) {
+                POSetNode next = it.next();
+                if ( !contains( next ) || known[ next.subsumptionNumber] != null ) {
+                    continue;
+                }
+                if ( !order.containsKey( next ) ) {
+                    reach( next, upward, order, open, isOpen, path, links );
+                } else if ( isOpen.containsKey( next ) ) {
+                    int[] o = order.get( path.peek() );
+                    o[ 1] = Math.min( o[ 1], order.get( next )[ 0] );
+                }
+            } else {
+                POSetNode done = path.pop();
+                links.pop();
+                int[] o = order.get( done );
+                if ( !path.isEmpty() ) {
+                    int[] p = order.get( path.peek() );
+                    p[ 1] = Math.min( p[ 1], o[ 1] );
+                }
+                if ( o[ 1] == o[ 0] ) {
+                    // done is the first reached of its cycle (if any), so the cycle is complete
+                    ArrayList<POSetNode> cycle = new ArrayList<>();
+                    POSetNode n;
+                    do {
+                        n = open.pop();
+                        isOpen.remove( n );
+                        cycle.add( n );
+                    } while ( n != done );
+                    if ( cycle.size() == 1 ) {
+                        known[ done.subsumptionNumber] = merge( done, upward, known );
+                    } else {
+                        rememberCycle( cycle, upward, known );
+                    }
+                }
+            }
+        }
+        return known[ node.subsumptionNumber];
+    }
+
+    private void reach( POSetNode node, boolean upward, IdentityHashMap<POSetNode, int[]> order,
+            ArrayDeque<POSetNode> open, IdentityHashMap<POSetNode, Boolean> isOpen,
+            ArrayDeque<POSetNode> path, ArrayDeque<Iterator<POSetNode>> links ) {
+        int when = order.size();
+        order.put( node, new int[] { when, when } );
+        open.push( node );
+        isOpen.put( node, Boolean.TRUE );
+        path.push( node );
+        links.push( ( upward ? node.parentNodes : node.childNodes ).iterator() );
+    }
+
+    /**
+     * Remembers the sets of the nodes of a cycle: each reaches everything the
+     * others do, including the others themselves.
+     */
+    private void rememberCycle( ArrayList<POSetNode> cycle, boolean upward, int[][] known ) {
+        int size = 0;
+        for ( POSetNode c : cycle ) {
+            for ( POSetNode n : upward ? c.parentNodes : c.childNodes ) {
+                if ( contains( n ) ) {
+                    int[] set = known[ n.subsumptionNumber];
+                    size += 1 + ( set == null ? 0 : set.length );
+                }
+            }
+        }
+        int[] all = new int[ size ];
+        int pos = 0;
+        for ( POSetNode c : cycle ) {
+            for ( POSetNode n : upward ? c.parentNodes : c.childNodes ) {
+                if ( contains( n ) ) {
+                    all[ pos++] = n.subsumptionNumber;
+                    int[] set = known[ n.subsumptionNumber];
+                    if ( set != null ) {
+                        System.arraycopy( set, 0, all, pos, set.length );
+                        pos += set.length;
+                    }
+                }
+            }
+        }
+        Arrays.sort( all );
+        int unique = 0;
+        for ( int k = 0; k < all.length; k++ ) {
+            if ( unique == 0 || all[ k] != all[ unique - 1] ) {
+                all[ unique++] = all[ k];
+            }
+        }
+        for ( POSetNode c : cycle ) {
+            // a node isn't counted among its own ancestors or descendants
+            int at = Arrays.binarySearch( all, 0, unique, c.subsumptionNumber );
+            int[] set = new int[ at >= 0 ? unique - 1 : unique ];
+            if ( at >= 0 ) {
+                System.arraycopy( all, 0, set, 0, at );
+                System.arraycopy( all, at + 1, set, at, unique - at - 1 );
+            } else {
+                System.arraycopy( all, 0, set, 0, unique );
+            }
+            known[ c.subsumptionNumber] = set;
+        }
+    }
+
+    /**
+     * @return the sorted union of the node's parents (or children) and their
+     * known sets.
+     */
+    private int[] merge( POSetNode node, boolean upward, int[][] known ) {
+        ArrayList<POSetNode> next = upward ? node.parentNodes : node.childNodes;
+        if ( next.isEmpty() ) {
+            return NONE;
+        }
+        int size = 0;
+        for ( POSetNode n : next ) {
+            if ( contains( n ) ) {
+                int[] set = known[ n.subsumptionNumber];
+                size += 1 + ( set == null ? 0 : set.length );
+            }
+        }
+        int[] all = new int[ size ];
+        int pos = 0;
+        for ( POSetNode n : next ) {
+            if ( contains( n ) ) {
+                all[ pos++] = n.subsumptionNumber;
+                int[] set = known[ n.subsumptionNumber];
+                if ( set != null ) {
+                    System.arraycopy( set, 0, all, pos, set.length );
+                    pos += set.length;
+                }
+            }
+        }
+        Arrays.sort( all );
+        int unique = 0;
+        for ( int k = 0; k < all.length; k++ ) {
+            if ( all[ k] != node.subsumptionNumber && ( unique == 0 || all[ k] != all[ unique - 1] ) ) {
+                all[ unique++] = all[ k];
+            }
+        }
+        return unique == all.length ? all : Arrays.copyOf( all, unique );
+    }
+
+    /** Forgets the ancestors of the node and everything below it. */
+    private void forgetBelow( POSetNode node ) {
+        forget( node, ancestors, false );
+    }
+
+    /** Forgets the descendants of the node and everything above it. */
+    private void forgetAbove( POSetNode node ) {
+        forget( node, descendants, true );
+    }
+
+    private void forget( POSetNode node, int[][] known, boolean upward ) {
+        if ( !contains( node ) ) {
+            return;
+        }
+        ArrayDeque<POSetNode> toForget = new ArrayDeque<>();
+        toForget.add( node );
+        while ( !toForget.isEmpty() ) {
+            POSetNode n = toForget.poll();
+            if ( known[ n.subsumptionNumber] == null ) {
+                continue;       // so is everything beyond it
+            }
+            known[ n.subsumptionNumber] = null;
+            for ( POSetNode next : upward ? n.parentNodes : n.childNodes ) {
+                if ( contains( next ) ) {
+                    toForget.add( next );
+                }
+            }
+        }
+    }
+}
@@ -4,6 +4,9 @@
  */
 package kb.hierarchy;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 import charger.obj.GNode;
@@ -39,6 +42,53 @@ public class TypeHierarchy extends POSet {
     };
     protected KindOfHierarchy kind = null;
     TypeMatchingRuleSet matchRules = TypeMatchingRuleSet.ignoreCaseSpacesSpecial;
+        // remembers which types are above and below which, for isSubtypeOf and friends
+    private final SubsumptionIndex subsumption = new SubsumptionIndex();
+
+    /**
+     * The kinds of change that can be made to a hierarchy through its public
+     * methods, each of which can be made again with applyChange.
+     *
+     * @see ChangeListener
+     * @since Charger 4.3
+     */
+    public static enum Change {
+
+        ADD_LABEL, ADD_TO_TOP_AND_BOTTOM, ADD_SUBTYPE, REMOVE_SUBTYPE, REMOVE_LABEL, CLEAR
+    };
+
+    /**
+     * Is told of each change made to a hierarchy, e.g., so that the change can
+     * be recorded and made again later. Only the outermost call is reported,
+     * not the calls a method makes to others in the course of its change, and
+     * only if it actually altered the hierarchy (e.g., adding a label that's
+     * already there isn't reported).
+     *
+     * @see TypeHierarchy#setChangeListener
+     * @see TypeHierarchy#applyChange
+     * @since Charger 4.3
+     */
+    public static interface ChangeListener {
+
+        /**
+         * @param hierarchy the hierarchy that was changed
+         * @param change what kind of change it was
+         * @param first the change's first argument, a label or key (see
+         * applyChange)
+         * @param second the change's second argument, if any
+         */
+        void hierarchyChanged( TypeHierarchy hierarchy, Change change, String first, String second );
+    }
+    private ChangeListener changeListener = null;
+    private int changeDepth = 0;
+        // the subsumption index's version when the outermost change began
+    private int versionAtChange = 0;
+        // whether the outermost change added a label to an existing node, which the index doesn't count
+    private boolean valueAdded = false;
+        // the version shared by all the snapshots taken since the last change; null if none
+    private Version version = null;
+        // whether this is a snapshot's copy, which can't be changed
+    private boolean frozen = false;
 
     /**
      * Creates a new hierarchy, but it is not empty. It has a root value of
@@ -254,6 +304,15 @@ public class TypeHierarchy extends POSet {
      * @param node A node that has already been added 
      */
     public void addToTopAndBottom( TypeHierarchyNode node ) {
+        boolean outermost = beginChange();
+        try {
+            addToTopAndBottomUnrecorded( node );
+        } finally {
+            endChange( outermost, Change.ADD_TO_TOP_AND_BOTTOM, node.getKey(), null );
+        }
+    }
+
+    private void addToTopAndBottomUnrecorded( TypeHierarchyNode node ) {
         addSubtypeToType(node.getKey(), typeRoot.getKey() );
         addSubtypeToType( infinum.getKey(), node.getKey() );
     }
@@ -271,6 +330,15 @@ public class TypeHierarchy extends POSet {
      * @return the node if it was added. If only a value was added to an existing node, returns null.
      */
     public TypeHierarchyNode addTypeLabel( String name ) {
+        boolean outermost = beginChange();
+        try {
+            return addTypeLabelUnrecorded( name );
+        } finally {
+            endChange( outermost, Change.ADD_LABEL, name, null );
+        }
+    }
+
+    private TypeHierarchyNode addTypeLabelUnrecorded( String name ) {
         if ( name == null || name.trim().equals( "" ) ) {
             return null;
         }
@@ -285,7 +353,10 @@ public class TypeHierarchy extends POSet {
                 return null;
             }
 
-            node.addValue( name );
+            if ( !node.getValues().contains( name ) ) {
+                node.addValue( name );
+                valueAdded = true;
+            }
             return null;
         }
                 // If label isn't found, then a new node is created with the new label
@@ -300,6 +371,48 @@ public class TypeHierarchy extends POSet {
         }
     }
 
+    /**
+     * Adds a node to the hierarchy without linking it to anything, and
+     * numbers it in the subsumption index.
+     *
+     * @return true if the node was added; false if its key was already there.
+     */
+    @Override
+    public boolean addNode( POSetNode node ) {
+        willChange();
+        if ( super.addNode( node ) ) {
+            subsumption.add( node );
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Deletes a node and its links from the hierarchy, and forgets it in the
+     * subsumption index.
+     *
+     * @return true if the node was deleted successfully
+     */
+    @Override
+    public boolean deleteNode( POSetNode node ) {
+        willChange();
+        if ( node != null ) {
+            subsumption.remove( node );
+        }
+        return super.deleteNode( node );
+    }
+
+    @Override
+    public void clear() {
+        boolean outermost = beginChange();
+        try {
+            super.clear();
+            subsumption.clear();
+        } finally {
+            endChange( outermost, Change.CLEAR, null, null );
+        }
+    }
+
     /**
      * Removes a label from the hierarchy, without any super or sub
      * types. Before deleting, must connect all of its supertypes to its
@@ -309,6 +422,15 @@ public class TypeHierarchy extends POSet {
      * @return true if the label was removed successfully.
      */
     public boolean removeTypeLabel( String value ) {
+        boolean outermost = beginChange();
+        try {
+            return removeTypeLabelUnrecorded( value );
+        } finally {
+            endChange( outermost, Change.REMOVE_LABEL, value, null );
+        }
+    }
+
+    private boolean removeTypeLabelUnrecorded( String value ) {
         
        TypeHierarchyNode node = getNodeByValue( value );
        if ( node == null )
@@ -397,6 +519,15 @@ public class TypeHierarchy extends POSet {
      * of the above reasons.
      */
     public boolean addSubtypeToType( String subtypeLabel, String supertypeLabel ) {
+        boolean outermost = beginChange();
+        try {
+            return addSubtypeToTypeUnrecorded( subtypeLabel, supertypeLabel );
+        } finally {
+            endChange( outermost, Change.ADD_SUBTYPE, subtypeLabel, supertypeLabel );
+        }
+    }
+
+    private boolean addSubtypeToTypeUnrecorded( String subtypeLabel, String supertypeLabel ) {
         if ( supertypeLabel == null || subtypeLabel == null ) {
             return false;
         }
@@ -419,7 +550,7 @@ public class TypeHierarchy extends POSet {
                 addSubtypeToType( infinum.getValue(), subtypeLabel );
             }
         } else {        // if both exist, make sure there's not already a indirect supertype relationship to sup
-            if ( sub.hasIndirectParent( sup ) ) {
+            if ( subsumption.isAncestor( sub, sup ) ) {
                 return false;
             }
         }
@@ -427,7 +558,9 @@ public class TypeHierarchy extends POSet {
             // if the supertype 
         
         
-        sub.addParent( sup );
+        if ( sub.addParent( sup ) ) {
+            subsumption.linkChanged( sub, sup );
+        }
 
         return true;
     }
@@ -473,6 +606,15 @@ public class TypeHierarchy extends POSet {
     }
     
     public boolean removeSuperTypeFromType( TypeHierarchyNode sup, TypeHierarchyNode sub ) {
+        boolean outermost = beginChange();
+        try {
+            return removeSuperTypeFromTypeUnrecorded( sup, sub );
+        } finally {
+            endChange( outermost, Change.REMOVE_SUBTYPE, sup.getKey(), sub.getKey() );
+        }
+    }
+
+    private boolean removeSuperTypeFromTypeUnrecorded( TypeHierarchyNode sup, TypeHierarchyNode sub ) {
 
         if ( sub.hasDirectParent( sup ) ) {   // if there's no already some supertype (recursively defined) relationship
             sub.removeParent( sup );
@@ -486,6 +628,8 @@ public class TypeHierarchy extends POSet {
             for ( POSetNode node : children ) {
                 sup.addChild( node );
             }
+                        // everything that changed is below sub or above sup
+            subsumption.linkChanged( sub, sup );
           return true;
         }
         return false;
@@ -579,13 +723,110 @@ public class TypeHierarchy extends POSet {
 //            return "Supertype/subtype relationship already exists";
 //        }
         
-        if ( !sub.hasDirectParent( sup ) && sub.hasIndirectParent( sup) ) {
+        if ( !sub.hasDirectParent( sup ) && subsumption.isAncestor( sub, sup ) ) {
             return "Subtype is already an indirect subtype of chosen supertype.";
         }
 
         return null;
     }
 
+    /**
+     * Tells whether one type is a subtype (directly or indirectly) of another.
+     * Every type is considered a subtype of itself. Answered from the
+     * subsumption index, so repeated questions about the same part of the
+     * hierarchy don't search it again.
+     *
+     * @param subtypeString The label of the possible subtype
+     * @param supertypeString The label of the possible supertype
+     * @return true if the subtype is the same as or below the supertype; false
+     * if not, or if either label isn't in the hierarchy.
+     */
+    public boolean isSubtypeOf( String subtypeString, String supertypeString ) {
+        if ( supertypeString == null || subtypeString == null ) {
+            return false;
+        }
+        return isSubtypeOf( getNodeByValue( subtypeString ), getNodeByValue( supertypeString ) );
+    }
+
+    /**
+     * Tells whether one node is the same as or below another.
+     *
+     * @param sub the possible subtype
+     * @param sup the possible supertype
+     * @return true if sub is the same as or below sup
+     * @see #isSubtypeOf(String, String)
+     */
+    public boolean isSubtypeOf( TypeHierarchyNode sub, TypeHierarchyNode sup ) {
+        if ( sub == null || sup == null ) {
+            return false;
+        }
+        return sub == sup || subsumption.isAncestor( sub, sup );
+    }
+
+    /**
+     * Finds the most specific types that are supertypes of both types (in a
+     * lattice, their least common supertype). Since a type may have more than
+     * one supertype, there may be more than one such type, none of which is a
+     * subtype of another. Either type may itself be the answer.
+     *
+     * @param typeString1 one type label
+     * @param typeString2 another type label
+     * @return the least common supertypes, in no particular order; empty if
+     * either label isn't in the hierarchy.
+     */
+    public ArrayList<TypeHierarchyNode> getLeastCommonSupertypes( String typeString1, String typeString2 ) {
+        return commonTypes( typeString1, typeString2, true );
+    }
+
+    /**
+     * Finds the most general types that are subtypes of both types (in a
+     * lattice, their greatest common subtype). If nothing else, that is the
+     * bottom of the hierarchy.
+     *
+     * @param typeString1 one type label
+     * @param typeString2 another type label
+     * @return the greatest common subtypes, in no particular order; empty if
+     * either label isn't in the hierarchy.
+     * @see #getLeastCommonSupertypes
+     */
+    public ArrayList<TypeHierarchyNode> getGreatestCommonSubtypes( String typeString1, String typeString2 ) {
+        return commonTypes( typeString1, typeString2, false );
+    }
+
+    /**
+     * Counts the types below the given one, including the bottom.
+     *
+     * @param node a node in this hierarchy
+     * @return the number of subtypes (not counting the node itself); 0 if the
+     * node isn't in the hierarchy.
+     */
+    public int countSubtypes( TypeHierarchyNode node ) {
+        return subsumption.count( node, false );
+    }
+
+    /**
+     * Tells whether the hierarchy has changed. Anything worked out from the
+     * hierarchy (e.g., distances between types) is still good as long as this
+     * stays the same.
+     *
+     * @return a number that changes whenever a type or a super/subtype link
+     * is added or removed.
+     */
+    public int getVersion() {
+        return subsumption.getVersion();
+    }
+
+    private ArrayList<TypeHierarchyNode> commonTypes( String typeString1, String typeString2, boolean upward ) {
+        ArrayList<TypeHierarchyNode> result = new ArrayList<>();
+        if ( typeString1 == null || typeString2 == null ) {
+            return result;
+        }
+        for ( POSetNode n : subsumption.leastCommon( getNodeByValue( typeString1 ), getNodeByValue( typeString2 ), upward ) ) {
+            result.add( (TypeHierarchyNode)n );
+        }
+        return result;
+    }
+
     /**
      * Displays all hierarchy nodes in very clunky text
      *
@@ -608,4 +849,392 @@ public class TypeHierarchy extends POSet {
     public String showHierarchy() {
         return showHierarchy( null );
     }
+
+    public ChangeListener getChangeListener() {
+        return changeListener;
+    }
+
+    /**
+     * @param listener to be told of every change; null for none.
+     */
+    public void setChangeListener( ChangeListener listener ) {
+        changeListener = listener;
+    }
+
+    private boolean beginChange() {
+        willChange();
+        if ( changeDepth == 0 ) {
+            versionAtChange = subsumption.getVersion();
+            valueAdded = false;
+        }
+        return changeDepth++ == 0;
+    }
+
+    private void endChange( boolean outermost, Change change, String first, String second ) {
+        changeDepth--;
+        if ( outermost && changeListener != null
+                && ( valueAdded || subsumption.getVersion() != versionAtChange ) ) {
+            changeListener.hierarchyChanged( this, change, first, second );
+        }
+    }
+
+    /**
+     * Makes a change again, as it was reported to a change listener.
+     *
+     * @param change what kind of change
+     * @param first a label for ADD_LABEL, ADD_SUBTYPE (the subtype) and
+     * REMOVE_LABEL; the node's key for ADD_TO_TOP_AND_BOTTOM; the supertype's
+     * key for REMOVE_SUBTYPE.
+     * @param second the supertype's label for ADD_SUBTYPE; the subtype's key
+     * for REMOVE_SUBTYPE.
+     * @see ChangeListener
+     */
+    public void applyChange( Change change, String first, String second ) {
+        switch ( change ) {
+            case ADD_LABEL:
+                addTypeLabel( first );
+                break;
+            case ADD_TO_TOP_AND_BOTTOM:
+                TypeHierarchyNode node = (TypeHierarchyNode)getNodeByKey( first );
+                if ( node != null ) {
+                    addToTopAndBottom( node );
+                }
+                break;
+            case ADD_SUBTYPE:
+                addSubtypeToType( first, second );
+                break;
+            case REMOVE_SUBTYPE:
+                TypeHierarchyNode sup = (TypeHierarchyNode)getNodeByKey( first );
+                TypeHierarchyNode sub = (TypeHierarchyNode)getNodeByKey( second );
+                if ( sup != null && sub != null ) {
+                    removeSuperTypeFromType( sup, sub );
+                }
+                break;
+            case REMOVE_LABEL:
+                removeTypeLabel( first );
+                break;
+            case CLEAR:
+                clear();
+                break;
+        }
+    }
+
+    /**
+     * Writes out every node (its key and values) and its direct supertypes,
+     * so that readSnapshot can put the hierarchy back just as it is.
+     *
+     * @see #readSnapshot
+     */
+    public void writeSnapshot( DataOutput out ) throws IOException {
+        out.writeUTF( root.getKey() );
+        out.writeUTF( infinum.getKey() );
+        ArrayList<TypeHierarchyNode> nodes = new ArrayList<>();
+        for ( POSetNode n : allnodes.values() ) {
+            nodes.add( (TypeHierarchyNode)n );
+        }
+        out.writeInt( nodes.size() );
+        for ( TypeHierarchyNode node : nodes ) {
+            out.writeUTF( node.getKey() );
+            out.writeInt( node.getValues().size() );
+            for ( String value : node.getValues() ) {
+                out.writeUTF( value );
+            }
+        }
+        for ( TypeHierarchyNode node : nodes ) {
+            out.writeInt( node.getParentNodes().size() );
+            for ( POSetNode parent : node.getParentNodes() ) {
+                out.writeUTF( (String)parent.getKey() );
+            }
+        }
+    }
+
+    /**
+     * Replaces everything in this hierarchy with what was written by
+     * writeSnapshot. The change listener is not told.
+     *
+     * @see #writeSnapshot
+     */
+    public void readSnapshot( DataInput in ) throws IOException {
+        String rootKey = in.readUTF();
+        String bottomKey = in.readUTF();
+        startOver( rootKey, bottomKey );
+        int count = in.readInt();
+        TypeHierarchyNode[] nodes = new TypeHierarchyNode[ count ];
+        for ( int k = 0; k < count; k++ ) {
+            String key = in.readUTF();
+            int values = in.readInt();
+            nodes[ k] = makeNode( key, in.readUTF() );
+            for ( int v = 1; v < values; v++ ) {
+                nodes[ k].addValue( in.readUTF() );
+            }
+        }
+        for ( int k = 0; k < count; k++ ) {
+            int parents = in.readInt();
+            for ( int p = 0; p < parents; p++ ) {
+                POSetNode parent = getNodeByKey( in.readUTF() );
+                if ( parent == null ) {
+                    throw new IOException( "Hierarchy snapshot names a supertype it doesn't have." );
+                }
+                // the snapshot has no duplicate links, so skip addParent's checks,
+                // which are linear in the number of children
+                nodes[ k].parentNodes.add( parent );
+                parent.childNodes.add( nodes[ k] );
+            }
+        }
+        addNode( root );
+        addNode( infinum );
+    }
+
+    /**
+     * Empties the hierarchy, including the links of its top and bottom, and
+     * gives the top and bottom the keys they are to have.
+     */
+    private void startOver( String rootKey, String bottomKey ) {
+        willChange();
+        super.clear();
+        subsumption.clear();
+        for ( TypeHierarchyNode n : new TypeHierarchyNode[] { root, infinum } ) {
+            n.getParentNodes().clear();
+            n.getChildNodes().clear();
+        }
+        root.setPosetKey( rootKey );
+        infinum.setPosetKey( bottomKey );
+    }
+
+    /**
+     * Adds an unlinked node with the given key and value, using the top or
+     * bottom if it's one of theirs.
+     */
+    private TypeHierarchyNode makeNode( String key, String value ) {
+        TypeHierarchyNode node;
+        if ( key.equals( root.getKey() ) ) {
+            node = root;
+        } else if ( key.equals( infinum.getKey() ) ) {
+            node = infinum;
+        } else {
+            node = new TypeHierarchyNode( key, value );
+        }
+        node.addValue( value );
+        addNode( node );
+        return node;
+    }
+
+    /**
+     * Takes a snapshot of the hierarchy as it is now, which stays the same
+     * however the hierarchy is changed later. This takes constant time: all
+     * the snapshots taken between one change and the next share a single
+     * version, and the copy of the hierarchy behind it is only made when the
+     * hierarchy is about to be changed, or when the snapshot is first read,
+     * whichever comes first. So if the hierarchy isn't changed, taking any
+     * number of snapshots costs nothing.
+     * <p>
+     * A snapshot may be read by another thread while this hierarchy goes on
+     * being changed.
+     *
+     * @return the version of the hierarchy as it is now
+     * @see Version#getHierarchy
+     * @since Charger 4.3
+     */
+    public synchronized Version snapshot() {
+        if ( version == null ) {
+            version = new Version( this );
+        }
+        return version;
+    }
+
+    /**
+     * @return whether this is a snapshot's copy of a hierarchy, which can't be
+     * changed.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Replaces everything in this hierarchy with a copy of another one, e.g.,
+     * one from a snapshot. The change listener is not told.
+     *
+     * @param other the hierarchy to copy
+     */
+    public void restore( TypeHierarchy other ) {
+        if ( other == this ) {
+            return;
+        }
+        synchronized ( other ) {
+            copyFrom( other );
+        }
+    }
+
+    /**
+     * Puts this hierarchy back the way it was when a snapshot was taken. If it
+     * hasn't been changed since then, nothing is done; otherwise, once it has
+     * been put back, snapshots of it share the given version again until the
+     * next change.
+     *
+     * @param version a version of this hierarchy, or of another one to copy
+     * @return whether the hierarchy was replaced
+     * @see #snapshot
+     */
+    public boolean restore( Version version ) {
+        if ( version.source == this && this.version == version ) {
+            return false;
+        }
+        restore( version.getHierarchy() );
+        if ( version.source == this ) {
+            synchronized ( this ) {
+                this.version = version;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param version a version of this hierarchy
+     * @return whether this hierarchy hasn't been changed since the snapshot
+     * was taken.
+     * @see #snapshot
+     */
+    public synchronized boolean isAt( Version version ) {
+        return version.source == this && this.version == version;
+    }
+
+    /**
+     * Makes here the changes that lead from one version of a hierarchy to
+     * another, leaving alone whatever else has changed here since: types and
+     * links in the second version but not the first are added, and those in
+     * the first but not the second are removed. Unlike restoring, the changes
+     * are made (and reported to the change listener) one at a time, so this
+     * is how to undo or redo one step's changes once others have been made
+     * since. Labels removed from a type that is still there are not put back.
+     *
+     * @param from the version the changes start from
+     * @param to the version they lead to
+     * @see #restore(Version)
+     */
+    public void applyDifference( Version from, Version to ) {
+        TypeHierarchy before = from.getHierarchy();
+        TypeHierarchy after = to.getHierarchy();
+        for ( POSetNode n : after.allnodes.values() ) {
+            TypeHierarchyNode node = (TypeHierarchyNode)n;
+            TypeHierarchyNode old = (TypeHierarchyNode)before.getNodeByKey( node.getKey() );
+            for ( String value : node.getValues() ) {
+                if ( old == null || !old.getValues().contains( value ) ) {
+                    addTypeLabel( value );
+                }
+            }
+        }
+        for ( POSetNode n : after.allnodes.values() ) {
+            for ( POSetNode p : n.getParentNodes() ) {
+                if ( !hasLink( before, n.getKey(), p.getKey() ) && getNodeByKey( n.getKey() ) != null
+                        && getNodeByKey( p.getKey() ) != null ) {
+                    addSubtypeToType( ( (TypeHierarchyNode)n ).getValue(), ( (TypeHierarchyNode)p ).getValue() );
+                }
+            }
+        }
+        for ( POSetNode n : before.allnodes.values() ) {
+            for ( POSetNode p : n.getParentNodes() ) {
+                // links to a type that's going away go with it
+                if ( after.getNodeByKey( n.getKey() ) != null && after.getNodeByKey( p.getKey() ) != null
+                        && !hasLink( after, n.getKey(), p.getKey() ) && hasLink( this, n.getKey(), p.getKey() ) ) {
+                    removeSuperTypeFromType( (TypeHierarchyNode)getNodeByKey( p.getKey() ),
+                            (TypeHierarchyNode)getNodeByKey( n.getKey() ) );
+                }
+            }
+        }
+        for ( POSetNode n : before.allnodes.values() ) {
+            TypeHierarchyNode node = (TypeHierarchyNode)getNodeByKey( n.getKey() );
+            if ( after.getNodeByKey( n.getKey() ) == null && node != null ) {
+                removeTypeLabel( node.getValue() );
+            }
+        }
+    }
+
+    private static boolean hasLink( TypeHierarchy h, Object subKey, Object supKey ) {
+        POSetNode sub = h.getNodeByKey( subKey );
+        POSetNode sup = h.getNodeByKey( supKey );
+        return sub != null && sup != null && sub.hasDirectParent( sup );
+    }
+
+    /**
+     * Makes this hierarchy a copy of another one, with its own nodes linked the
+     * same way.
+     */
+    private void copyFrom( TypeHierarchy other ) {
+        startOver( other.root.getKey(), other.infinum.getKey() );
+        matchRules = other.matchRules;
+        HashMap<POSetNode, TypeHierarchyNode> copies = new HashMap<>();
+        for ( POSetNode n : other.allnodes.values() ) {
+            TypeHierarchyNode node = (TypeHierarchyNode)n;
+            TypeHierarchyNode copy = makeNode( node.getKey(), node.getValue() );
+            for ( String value : node.getValues() ) {
+                copy.addValue( value );
+            }
+            copies.put( node, copy );
+        }
+        for ( POSetNode n : other.allnodes.values() ) {
+            TypeHierarchyNode copy = copies.get( n );
+            for ( POSetNode parent : n.getParentNodes() ) {
+                copy.parentNodes.add( copies.get( parent ) );
+            }
+            for ( POSetNode child : n.getChildNodes() ) {
+                copy.childNodes.add( copies.get( child ) );
+            }
+        }
+        addNode( root );
+        addNode( infinum );
+    }
+
+    /**
+     * Called before anything in the hierarchy is changed, so that the version
+     * its latest snapshots share can be copied first.
+     */
+    private void willChange() {
+        if ( frozen ) {
+            throw new UnsupportedOperationException( getName() + " is a snapshot, which can't be changed." );
+        }
+        if ( version != null ) {
+            synchronized ( this ) {
+                if ( version != null ) {
+                    version.getHierarchy();
+                    version = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * One version of a hierarchy, as it was when a snapshot was taken.
+     *
+     * @see TypeHierarchy#snapshot
+     * @since Charger 4.3
+     */
+    public static class Version {
+
+        private final TypeHierarchy source;
+        private volatile TypeHierarchy copy = null;
+
+        private Version( TypeHierarchy source ) {
+            this.source = source;
+        }
+
+        /**
+         * @return the hierarchy as it was when the snapshot was taken; it
+         * can't be changed.
+         */
+        public TypeHierarchy getHierarchy() {
+            TypeHierarchy h = copy;
+            if ( h == null ) {
+                synchronized ( source ) {
+                    if ( copy == null ) {
+                        TypeHierarchy frozen = new TypeHierarchy( source.getName(), source.kind );
+                        frozen.copyFrom( source );
+                        frozen.frozen = true;
+                        copy = frozen;
+                    }
+                    h = copy;
+                }
+            }
+            return h;
+        }
+    }
 }
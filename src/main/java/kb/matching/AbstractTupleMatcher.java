@@ -47,6 +47,17 @@ abstract public class AbstractTupleMatcher extends AbstractMatcher
      */
     abstract public float scoreTupleMatch( MatchedBinaryTuple masterTuple, MatchedBinaryTuple tupleToMatch );
 
+    /**
+        Lets a caller comparing many tuples skip pairs that can't match: two tuples whose keys are different
+        must always compare as zero. 
+        @param t any tuple
+        @return the tuple's key; null (the default) if this matcher doesn't promise anything about which 
+        pairs can match.
+        @see BinaryRelationMatch#matchTheTuples
+         @since Charger 4.3
+     */
+    public String candidateKey( BinaryTuple t ) { return null; }
+
     
         protected String bullet( String s ) { return "<li> " + s + "\n"; }
 
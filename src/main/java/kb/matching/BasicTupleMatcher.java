@@ -13,15 +13,15 @@ import kb.matching.MatchedBinaryTuple;
  */
 public class BasicTupleMatcher extends AbstractTupleMatcher
 {
-    public String nonAlphaNumericRegex = "[^a-zA-Z0-9]";
-    
+    private static final String DEFAULT_NON_ALPHANUMERIC_REGEX = "[^a-zA-Z0-9]";
+    public String nonAlphaNumericRegex = DEFAULT_NON_ALPHANUMERIC_REGEX;
     
     /**
      * Instantiate a new tuple matcher with the default concept matcher.
      * @see AbstractTupleMatcher
      */
     public BasicTupleMatcher() {
-        super( null );
+        this( null );
     }
     
     /**
@@ -31,6 +31,37 @@ public class BasicTupleMatcher extends AbstractTupleMatcher
         super( matcher );
     }
     
+    /**
+        Whether the tuples' already normalized labels can stand in for scoreConcepts and generousStringMatch.
+        A subclass that overrides either of them must override this to return false.
+        @see BinaryTuple#makeKeys
+     */
+    protected boolean usesNormalizedKeys()
+    {
+        return true;
+    }
+    
+    /**
+        Whether tuples whose relation labels differ (ignoring case) never match, so that they can be sorted by
+        their relation keys before they are compared. A subclass whose compare might match such tuples must 
+        override this to return false.
+        @see #candidateKey
+     */
+    protected boolean usesRelationKeys()
+    {
+        return true;
+    }
+    
+    /**
+        Since tuples whose relation labels differ (ignoring case) never match, the key is the tuple's 
+        relation key, unless a subclass compares tuples its own way.
+        @see BinaryTuple#relation_key
+     */
+    public String candidateKey( BinaryTuple t )
+    {
+        if ( ! usesRelationKeys() ) return null;
+        return t.relation_key != null ? t.relation_key : BinaryTuple.foldCase( t.relation_label );
+    }
     
     public float compare( BinaryTuple masterTuple, BinaryTuple tupleToMatch )
     {
@@ -39,6 +70,12 @@ public class BasicTupleMatcher extends AbstractTupleMatcher
                 // If relation label doesn't match, fail.
         if ( ! masterTuple.relation_label.equalsIgnoreCase( tupleToMatch.relation_label ) ) return 0;
 
+        if ( usesKeys( masterTuple, tupleToMatch ) )
+            return scoreKeys( masterTuple.concept1_type_key, masterTuple.concept1_referent_key, 
+                              tupleToMatch.concept1_type_key, tupleToMatch.concept1_referent_key )
+                 + scoreKeys( masterTuple.concept2_type_key, masterTuple.concept2_referent_key, 
+                              tupleToMatch.concept2_type_key, tupleToMatch.concept2_referent_key );
+
         float s1 = scoreConcepts( masterTuple.concept1, tupleToMatch.concept1 );
         float s2 = scoreConcepts( masterTuple.concept2, tupleToMatch.concept2 );
         return s1 + s2;
@@ -55,6 +92,15 @@ public class BasicTupleMatcher extends AbstractTupleMatcher
                 // If relation label doesn't match, fail.
         if ( ! masterTuple.relation_label.equalsIgnoreCase( tupleToMatch.relation_label ) ) return 0;
 
+        if ( usesKeys( masterTuple, tupleToMatch ) )
+        {
+            tupleToMatch.concept1_score = scoreKeys( masterTuple.concept1_type_key, masterTuple.concept1_referent_key, 
+                              tupleToMatch.concept1_type_key, tupleToMatch.concept1_referent_key );
+            tupleToMatch.concept2_score = scoreKeys( masterTuple.concept2_type_key, masterTuple.concept2_referent_key, 
+                              tupleToMatch.concept2_type_key, tupleToMatch.concept2_referent_key );
+            return tupleToMatch.getTotalScore();
+        }
+
         tupleToMatch.concept1_score = scoreConcepts( masterTuple.concept1, tupleToMatch.concept1 );
         tupleToMatch.concept2_score = scoreConcepts( masterTuple.concept2, tupleToMatch.concept2 );
         return tupleToMatch.getTotalScore();
@@ -120,6 +166,40 @@ public class BasicTupleMatcher extends AbstractTupleMatcher
         return score;
     }
     
+    /**
+        Whether the tuples' already normalized labels can stand in for scoreConcepts: only if both tuples 
+        have them, they were made with this matcher's regular expression and no subclass scores its own way.
+        @see #usesNormalizedKeys
+     */
+    private boolean usesKeys( BinaryTuple t1, BinaryTuple t2 )
+    {
+        return usesNormalizedKeys() 
+                && DEFAULT_NON_ALPHANUMERIC_REGEX.equals( nonAlphaNumericRegex )
+                && t1.concept1_type_key != null && t1.concept2_type_key != null
+                && t2.concept1_type_key != null && t2.concept2_type_key != null;
+    }
+    
+    /**
+        The same as scoreConcepts, for concepts whose type labels and referents are already normalized.
+     */
+    private static float scoreKeys( String type1, String referent1, String type2, String referent2 )
+    {
+        if ( keysMatch( type1, type2 ) && keysMatch( referent1, referent2 ) ) return 1;
+        return 0;
+    }
+    
+    /**
+        The same as generousStringMatch, for strings that are already normalized.
+     */
+    private static boolean keysMatch( String s1, String s2 )
+    {
+        if ( s1.equalsIgnoreCase( s2 ) ) return true;
+        
+        if ( s1.contains( s2 ) || s2.contains( s1 ) ) return true;
+        
+        return false;
+    }
+    
     /**
         Applies an optimistic algorithm to matching strings:
         <ul>
@@ -130,17 +210,15 @@ public class BasicTupleMatcher extends AbstractTupleMatcher
      */
     public boolean generousStringMatch( String ss1, String ss2 )
     {
+        if ( DEFAULT_NON_ALPHANUMERIC_REGEX.equals( nonAlphaNumericRegex ) )
+            return keysMatch( BinaryTuple.normalize( ss1 ), BinaryTuple.normalize( ss2 ) );
         String s1 = ss1.replaceAll( nonAlphaNumericRegex, "" );
         String s2 = ss2.replaceAll( nonAlphaNumericRegex, "" );
         
                 //if ( ! s1.equals( ss1 ) ) charger.Global.info( "old string: \"" + ss1 + "\"; new string \"" + s1 + "\"" );
                 //if ( ! s2.equals( ss2 ) ) charger.Global.info( "old string: \"" + ss2 + "\"; new string \"" + s2 + "\"" );
         
-        if ( s1.equalsIgnoreCase( s2 ) ) return true;
-        
-        if ( s1.contains( s2 ) || s2.contains( s1 ) ) return true;
-        
-        return false;
+        return keysMatch( s1, s2 );
     }
 
 
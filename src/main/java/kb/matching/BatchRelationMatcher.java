@@ -0,0 +1,268 @@
+package kb.matching;
+
+import charger.Global;
+import charger.cgx.CGXParser;
+import charger.obj.Graph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+    Matches whole groups of graphs at once: one master against a set of candidates, or every graph in a set
+    as master against all the others. Each graph's binary tuples are made only once (and remembered, by graph,
+    for as long as this object is used), and all the master/candidate pairs are matched on a fork-join pool.
+    The results are the same BinaryRelationMatchGroupMetrics, with their matches in the same order, as matching
+    the pairs one after another.
+    <p>
+    Since the tuples of a graph are remembered, a graph that is changed after being matched must be passed
+    to forget (or clear called) before it's matched again.
+    <p>
+    Each match gets its own tuple matcher from the given supplier, so that tuple matchers needn't be
+    thread-safe.
+    @see BinaryRelationMatch
+     @since Charger 4.3
+ */
+public class BatchRelationMatcher
+{
+    private final Supplier<AbstractTupleMatcher> _matcherSupplier;
+    private BinaryRelationMatch.Strategy _strategy = BinaryRelationMatch.Strategy.GREEDY;
+    private int _threads = 0;
+    private final Map<Graph, ArrayList<MatchedBinaryTuple>> _tuples = new IdentityHashMap<Graph, ArrayList<MatchedBinaryTuple>>();
+
+    /**
+        Creates a batch matcher that uses the knowledge manager's current tuple matcher.
+        @see kb.KnowledgeManager#createCurrentTupleMatcher
+     */
+    public BatchRelationMatcher()
+    {
+        this( () -> Global.knowledgeManager.createCurrentTupleMatcher() );
+    }
+
+    /**
+        @param matcherSupplier makes a tuple matcher for each match.
+     */
+    public BatchRelationMatcher( Supplier<AbstractTupleMatcher> matcherSupplier )
+    {
+        _matcherSupplier = matcherSupplier;
+    }
+
+    public BinaryRelationMatch.Strategy getStrategy() { return _strategy; }
+
+    /** @param strategy how each match pairs up tuples */
+    public void setStrategy( BinaryRelationMatch.Strategy strategy ) { _strategy = strategy; }
+
+    public int getThreads() { return _threads; }
+
+    /** @param threads how many matches to run at once; 0 (the default) means use the common fork-join pool. */
+    public void setThreads( int threads ) { _threads = threads; }
+
+    /** Forgets the remembered tuples of a graph, e.g., because it has changed. */
+    public synchronized void forget( Graph g )
+    {
+        _tuples.remove( g );
+    }
+
+    /** Forgets the remembered tuples of all graphs. */
+    public synchronized void clear()
+    {
+        _tuples.clear();
+    }
+
+    /**
+        Matches the master graph against every other graph in the list.
+        @param master the graph to serve as the "correct" or master graph of the comparison.
+        @param masterName a label for the master graph
+        @param graphs the graphs to be matched; if the master is among them, it is skipped.
+        @param names a label for each graph
+        @return the group of matches, in the same order as the graphs.
+     */
+    public BinaryRelationMatchGroupMetrics matchMaster( Graph master, String masterName, List<Graph> graphs, List<String> names )
+    {
+        return matchMasters( Collections.singletonList( master ), Collections.singletonList( masterName ), graphs, names ).get( 0 );
+    }
+
+    /**
+        Matches each graph in the list, as master, against all of the others.
+        @param graphs the graphs to be matched
+        @param names a label for each graph
+        @return a group of matches for each graph as master, in the same order as the graphs.
+     */
+    public ArrayList<BinaryRelationMatchGroupMetrics> matchAllMasters( List<Graph> graphs, List<String> names )
+    {
+        return matchMasters( graphs, names, graphs, names );
+    }
+
+    /**
+        Finds the graph that, as master, gives the best overall score (the average precision-recall composite)
+        to the other graphs.
+        @param groups the groups returned by matchAllMasters
+        @return the best of the groups (the last one, if several are equally good); null if there are none.
+        @see BinaryRelationMatchGroupMetrics#getOverallScore
+     */
+    public static BinaryRelationMatchGroupMetrics findBestMaster( List<BinaryRelationMatchGroupMetrics> groups )
+    {
+        float maxOverall = 0.0f;
+        BinaryRelationMatchGroupMetrics bestMatch = null;
+        for ( BinaryRelationMatchGroupMetrics matches : groups )
+        {
+            matches.scanAllMatches();
+            float score = matches.getOverallScore();
+            if ( score >= maxOverall )
+            {
+                maxOverall = score;
+                bestMatch = matches;
+            }
+        }
+        return bestMatch;
+    }
+
+    private ArrayList<BinaryRelationMatchGroupMetrics> matchMasters( List<Graph> masters, List<String> masterNames,
+            final List<Graph> graphs, final List<String> names )
+    {
+        ArrayList<ArrayList<ForkJoinTask<BinaryRelationMatch>>> tasks = new ArrayList<ArrayList<ForkJoinTask<BinaryRelationMatch>>>();
+        ArrayList<ForkJoinTask<BinaryRelationMatch>> allTasks = new ArrayList<ForkJoinTask<BinaryRelationMatch>>();
+        for ( int m = 0; m < masters.size(); m++ )
+        {
+            final Graph master = masters.get( m );
+            final String masterName = masterNames.get( m );
+            ArrayList<ForkJoinTask<BinaryRelationMatch>> masterTasks = new ArrayList<ForkJoinTask<BinaryRelationMatch>>();
+            for ( int k = 0; k < graphs.size(); k++ )
+            {
+                final Graph g = graphs.get( k );
+                final String name = names.get( k );
+                if ( g == master ) continue;
+                masterTasks.add( ForkJoinTask.adapt( new Callable<BinaryRelationMatch>() {
+                    public BinaryRelationMatch call()
+                    {
+                        BinaryRelationMatch match = new BinaryRelationMatch( tuplesFor( master ), masterName, _matcherSupplier.get() );
+                        match.setStrategy( _strategy );
+                        match.matchAGraph( g, name, tuplesFor( g ) );
+                        return match;
+                    }
+                } ) );
+            }
+            tasks.add( masterTasks );
+            allTasks.addAll( masterTasks );
+        }
+
+        ForkJoinPool pool = _threads > 0 ? new ForkJoinPool( _threads ) : ForkJoinPool.commonPool();
+        try
+        {
+            pool.invoke( ForkJoinTask.adapt( () -> ForkJoinTask.invokeAll( allTasks ) ) );
+        }
+        finally
+        {
+            if ( pool != ForkJoinPool.commonPool() ) pool.shutdown();
+        }
+
+        ArrayList<BinaryRelationMatchGroupMetrics> groups = new ArrayList<BinaryRelationMatchGroupMetrics>();
+        for ( int m = 0; m < masters.size(); m++ )
+        {
+            BinaryRelationMatchGroupMetrics matches =
+                    new BinaryRelationMatchGroupMetrics( "Matches based on " + masterNames.get( m ) + " as master." );
+            for ( ForkJoinTask<BinaryRelationMatch> task : tasks.get( m ) )
+                matches.addMatch( task.join() );
+            groups.add( matches );
+        }
+        return groups;
+    }
+
+    /**
+        @return the graph's tuples, made by makeBinaryTuples the first time they're needed. They must not be changed.
+     */
+    private ArrayList<MatchedBinaryTuple> tuplesFor( Graph g )
+    {
+        synchronized ( this )
+        {
+            ArrayList<MatchedBinaryTuple> tuples = _tuples.get( g );
+            if ( tuples != null ) return tuples;
+        }
+                // made outside the lock, so that different graphs' tuples can be made at once
+        ArrayList<MatchedBinaryTuple> tuples = BinaryRelationMatch.makeBinaryTuples( g );
+        synchronized ( this )
+        {
+            ArrayList<MatchedBinaryTuple> other = _tuples.get( g );
+            if ( other != null ) return other;
+            _tuples.put( g, tuples );
+            return tuples;
+        }
+    }
+
+    /**
+        Matches a folder of .cgx files without a window, writing the HTML summary to standard output.
+        With just a folder, finds the best master among its graphs; with a graph name too (a file name
+        without .cgx), uses that graph as master.
+        @param args the folder, and optionally the master graph's name
+     */
+    public static void main( String[] args )
+    {
+        if ( args.length < 1 )
+        {
+            System.err.println( "usage: BatchRelationMatcher folder [master]" );
+            System.exit( 1 );
+        }
+        Global.setupAsLibrary();
+        ArrayList<Graph> graphs = new ArrayList<Graph>();
+        ArrayList<String> names = new ArrayList<String>();
+        readGraphs( new File( args[ 0 ] ), graphs, names );
+        BatchRelationMatcher batch = new BatchRelationMatcher();
+        BinaryRelationMatchGroupMetrics matches;
+        if ( args.length > 1 )
+        {
+            int m = names.indexOf( args[ 1 ] );
+            if ( m < 0 )
+            {
+                System.err.println( "No graph named " + args[ 1 ] + " in " + args[ 0 ] );
+                System.exit( 1 );
+            }
+            matches = batch.matchMaster( graphs.get( m ), names.get( m ), graphs, names );
+        }
+        else
+            matches = findBestMaster( batch.matchAllMasters( graphs, names ) );
+        if ( matches != null ) System.out.println( matches.getCompleteSummaryHTML() );
+        System.exit( 0 );
+    }
+
+    /**
+        Reads all the .cgx files in a folder, e.g., to match them without a window.
+        @param folder the folder to look in
+        @param graphs the graphs read are added here, in order of their file names
+        @param names the file name (without extension) of each graph read is added here
+        @return how many graphs were read; files that can't be read are reported and skipped.
+     */
+    public static int readGraphs( File folder, List<Graph> graphs, List<String> names )
+    {
+        File[] files = folder.listFiles( ( dir, name ) -> name.toLowerCase().endsWith( ".cgx" ) );
+        if ( files == null ) return 0;
+        Arrays.sort( files );
+        int count = 0;
+        for ( File f : files )
+        {
+            Graph g = new Graph();
+            try ( InputStream is = new FileInputStream( f ) )
+            {
+                if ( ! CGXParser.parseForNewGraph( is, g ) )
+                {
+                    Global.error( "Could not read " + f.getAbsolutePath() + ": it is not a valid CGX graph." );
+                    continue;
+                }
+            }
+            catch ( IOException e )
+            {
+                Global.error( "Could not read " + f.getAbsolutePath() + ": " + e.getMessage() );
+                continue;
+            }
+            graphs.add( g );
+            names.add( f.getName().substring( 0, f.getName().length() - 4 ) );
+            count++;
+        }
+        return count;
+    }
+}
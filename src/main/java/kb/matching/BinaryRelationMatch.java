@@ -18,6 +18,18 @@ import java.text.*;
  */
 public class BinaryRelationMatch
 {
+    /**
+        How master tuples are paired with tuples of the graph to match.
+        @since Charger 4.3
+     */
+    public static enum Strategy
+    {
+            /** each master tuple in turn takes the best-scoring tuple not already taken (the original algorithm) */
+        GREEDY,
+            /** the pairing with the highest total score, found with the Hungarian algorithm */
+        OPTIMAL
+    }
+
     protected float masterScore = 0;
     protected float matchedScore = 0;
         
@@ -36,6 +48,13 @@ public class BinaryRelationMatch
     private ArrayList<MatchedBinaryTuple> _toMatchTuples = null;
     
     private AbstractTupleMatcher _tupleMatcher = new BasicTupleMatcher();
+    private Strategy _strategy = Strategy.GREEDY;
+    private boolean _parallelScoring = false;
+
+        // totals, remembered until the tuples are matched again or the tuple matcher changes; NaN means not known
+    private float _masterScoreTotal = Float.NaN;
+    private float _matchedScoreTotal = Float.NaN;
+    private float _matchedMaxPossibleTotal = Float.NaN;
     
     private Graph _masterGraph = null;
     private Graph _toMatchGraph = null;
@@ -51,8 +70,41 @@ public class BinaryRelationMatch
     public void setTupleMatcher( AbstractTupleMatcher m ) 
     { 
         _tupleMatcher = m; 
+        forgetTotals();
     } 
 
+    public Strategy getStrategy() { return _strategy; }
+
+    /**
+     * Tell the relation matcher how to pair up tuples in later matches.
+     * @param strategy 
+     * @since Charger 4.3
+     */
+    public void setStrategy( Strategy strategy )
+    {
+        _strategy = strategy;
+    }
+
+    public boolean isParallelScoring() { return _parallelScoring; }
+
+    /**
+     * Whether the optimal strategy should compare tuples on several processors at once. Only use this with a tuple
+     * matcher whose compare method can safely be called from more than one thread (as BasicTupleMatcher's can).
+     * @param parallel 
+     * @since Charger 4.3
+     */
+    public void setParallelScoring( boolean parallel )
+    {
+        _parallelScoring = parallel;
+    }
+
+    private void forgetTotals()
+    {
+        _masterScoreTotal = Float.NaN;
+        _matchedScoreTotal = Float.NaN;
+        _matchedMaxPossibleTotal = Float.NaN;
+    }
+
     public float getTotalScore( ArrayList v )
     {
         float total = 0;
@@ -66,13 +118,15 @@ public class BinaryRelationMatch
     /** Returns the total score obtainable; i.e., the max score of the master tuples */
     public float getMasterScore()
     { 
-        return getTotalScore( _masterScoredTuples );
+        if ( Float.isNaN( _masterScoreTotal ) ) _masterScoreTotal = getTotalScore( _masterScoredTuples );
+        return _masterScoreTotal;
     }
 
     /** Returns the raw score obtained; i.e., the "count" of the things matched. */
     public float getMatchedScore()
     { 
-        return getTotalScore( _toMatchTuples );
+        if ( Float.isNaN( _matchedScoreTotal ) ) _matchedScoreTotal = getTotalScore( _toMatchTuples );
+        return _matchedScoreTotal;
     }
 
     /** Returns the max score possible derived from the graph to match; i.e., the "count" of everything
@@ -83,6 +137,7 @@ public class BinaryRelationMatch
     public float getMatchedMaxPossibleScore()
     { 
         if ( _toMatchTuples == null ) return 0;
+        if ( ! Float.isNaN( _matchedMaxPossibleTotal ) ) return _matchedMaxPossibleTotal;
         float total = 0;
         Iterator iter = _toMatchTuples.iterator();
         while ( iter.hasNext() ) 
@@ -91,6 +146,7 @@ public class BinaryRelationMatch
            MatchedBinaryTuple t = (MatchedBinaryTuple)(iter.next());
            total += _tupleMatcher.compare( t, t );
         }
+        _matchedMaxPossibleTotal = total;
         return total;
     }
 
@@ -148,6 +204,29 @@ public class BinaryRelationMatch
         _masterName = masterName;
     }
     
+    /**
+        Set up a matcher to be used by matchAGraph, from tuples already made (by makeBinaryTuples) from the master
+        graph, so that they needn't be made again for every match. The given tuples aren't changed; the
+        matcher works on copies of them.
+        @param masterTuples the master graph's tuples
+        @param masterName a label for the master graph
+        @param m the tuple matcher to use for matching graphs; if null, then use the BasicTupleMatcher. Just as
+        with the other constructors (where setTupleMatcher can only be called afterward), the master is scored
+        against itself with the BasicTupleMatcher.
+        @see BatchRelationMatcher
+        @since Charger 4.3
+     */
+    public BinaryRelationMatch( ArrayList<? extends BinaryTuple> masterTuples, String masterName, AbstractTupleMatcher m )
+    {
+        _masterName = masterName;
+        setupFormats();
+        _masterTuples = copyTuples( masterTuples );
+        _toMatchTuples = copyTuples( masterTuples );
+        matchTheTuples();
+        _masterScoredTuples = _toMatchTuples;
+        if ( m != null ) setTupleMatcher( m );
+    }
+    
     public void matchAGraph( Graph toMatchGraph, String toMatchName )
     {
         _toMatchName = toMatchName;
@@ -155,6 +234,30 @@ public class BinaryRelationMatch
         _toMatchTuples = makeBinaryTuples( _toMatchGraph );
         matchTheTuples();
     }
+
+    /**
+        Matches a graph whose tuples have already been made by makeBinaryTuples. The given tuples aren't changed;
+        the matcher works on copies of them.
+        @param toMatchGraph the graph to be matched to the master
+        @param toMatchName a label for the toMatch graph
+        @param toMatchTuples the graph's tuples
+        @since Charger 4.3
+     */
+    public void matchAGraph( Graph toMatchGraph, String toMatchName, ArrayList<? extends BinaryTuple> toMatchTuples )
+    {
+        _toMatchName = toMatchName;
+        _toMatchGraph = toMatchGraph;
+        _toMatchTuples = copyTuples( toMatchTuples );
+        matchTheTuples();
+    }
+
+    private static ArrayList<MatchedBinaryTuple> copyTuples( ArrayList<? extends BinaryTuple> tuples )
+    {
+        ArrayList<MatchedBinaryTuple> copies = new ArrayList<MatchedBinaryTuple>( tuples.size() );
+        for ( BinaryTuple t : tuples )
+            copies.add( new MatchedBinaryTuple( t ) );
+        return copies;
+    }
     
     /**
         Load the matcher with an entry for each binary relation. Each entry looks like this (from makeTableEntry):
@@ -172,11 +275,7 @@ public class BinaryRelationMatch
     */
     public void setupMaster( Graph masterG )
     {
-        intf.setMaximumFractionDigits( 0 );
-        intf.setMinimumFractionDigits( 0 );
-
-        ff.setMaximumFractionDigits( 3 );
-        ff.setMinimumFractionDigits( 1 );
+        setupFormats();
 
         _masterTuples = makeBinaryTuples( masterG );
         _toMatchTuples = makeBinaryTuples( masterG );
@@ -186,6 +285,15 @@ public class BinaryRelationMatch
     }
     
     
+    private void setupFormats()
+    {
+        intf.setMaximumFractionDigits( 0 );
+        intf.setMinimumFractionDigits( 0 );
+
+        ff.setMaximumFractionDigits( 3 );
+        ff.setMinimumFractionDigits( 1 );
+    }
+    
     /**
         Converts a ArrayList of BinaryTuples to an HTML work sheet (usable for manual analysis of the relations), with a summary.
         Table entries have added score for left and right concepts and the master row that we matched. These are all strings.
@@ -290,7 +398,7 @@ public class BinaryRelationMatch
         @param masterG graph whose tuples are to be collected
         @see kb.ConceptManager#getBinaryRelationTuples
      */
-    public ArrayList<MatchedBinaryTuple> makeBinaryTuples( Graph masterG )
+    public static ArrayList<MatchedBinaryTuple> makeBinaryTuples( Graph masterG )
     {
         ArrayList<MatchedBinaryTuple> tupleList = new ArrayList<MatchedBinaryTuple>();
                                 
@@ -338,7 +446,56 @@ public class BinaryRelationMatch
     
     public void matchTheTuples()
     {
-        matchTheTuplesByMatchedTuples();
+        forgetTotals();
+        if ( _strategy == Strategy.OPTIMAL )
+            matchTheTuplesOptimally();
+        else
+            matchTheTuplesByMatchedTuples();
+        forgetTotals();
+    }
+
+    /**
+        Performs the matching so that the total score of all the pairs of master and to-be-matched tuples is as
+        large as possible, rather than letting each master tuple in turn take the best one left.
+        Every pair of tuples is compared just once, and the resulting table of scores is used to find the pairs.
+        Sets all the totals but does not immediately return anything.
+        @see OptimalAssignment
+        @since Charger 4.3
+     */
+    public void matchTheTuplesOptimally()
+    {
+        Iterator<MatchedBinaryTuple> iter = _masterTuples.iterator();
+        while ( iter.hasNext() ) 
+            iter.next().available = true;
+                        
+        iter = _toMatchTuples.iterator();
+        while ( iter.hasNext() ) 
+            iter.next().available = true;
+
+        final int rows = _masterTuples.size();
+        final int cols = _toMatchTuples.size();
+        final float[][] scores = new float[ rows ][ cols ];
+        final HashMap<String, int[]> candidates = indexByCandidateKey( _toMatchTuples );
+        java.util.stream.IntStream rowNumbers = java.util.stream.IntStream.range( 0, rows );
+        if ( _parallelScoring ) rowNumbers = rowNumbers.parallel();
+        rowNumbers.forEach( row -> {
+            MatchedBinaryTuple t = _masterTuples.get( row );
+            for ( int col : candidatesFor( t, candidates, cols ) )
+                scores[ row ][ col ] = _tupleMatcher.compare( t, _toMatchTuples.get( col ) );
+        } );
+
+        int[] assigned = OptimalAssignment.solve( scores );
+        for ( int masterRow = 0; masterRow < rows; masterRow++ )
+        {
+            int matchedRow = assigned[ masterRow ];
+            if ( matchedRow == -1 ) continue;
+            MatchedBinaryTuple toMatch = _toMatchTuples.get( matchedRow );
+            toMatch.reason = "R" + ( masterRow + 1 ) + "  (" + _masterName + ")";
+            toMatch.available = false;
+            float newscore = _tupleMatcher.scoreTupleMatch( _masterTuples.get( masterRow ), toMatch ) ;
+            if ( newscore != scores[ masterRow ][ matchedRow ] ) 
+                Global.error( "tuple's matched score " + newscore + " isn't what it was " + scores[ masterRow ][ matchedRow ] );
+        }
     }
 
     /**
@@ -363,6 +520,7 @@ public class BinaryRelationMatch
                 // Iterate through master tuples and find the best match for each one.
                 // Mark to-be-matched tuple as used once we've decided to match it.
         
+        HashMap<String, int[]> candidates = indexByCandidateKey( _toMatchTuples );
         int masterRow = 0;
         iter = _masterTuples.iterator();
         while ( iter.hasNext() )        // for each to-be-matched tuple, decide whether we should match 
@@ -370,12 +528,11 @@ public class BinaryRelationMatch
             MatchedBinaryTuple t = (MatchedBinaryTuple)iter.next();
             
             float score = 0;
-            int matchedRow = 0;
             int matchedRowWithMaxScore = -1;     // -1 means we never found a good one
             float maxScore = 0;
-                    // go through each to-be-matched tuple, looking for the best score possible. 
+                    // go through each to-be-matched tuple that could match, looking for the best score possible. 
                     // first occurrence of best score gets chosen.
-            while ( matchedRow < _toMatchTuples.size() )
+            for ( int matchedRow : candidatesFor( t, candidates, _toMatchTuples.size() ) )
             {
                 MatchedBinaryTuple toMatch = _toMatchTuples.get( matchedRow );
                 if ( toMatch.available )
@@ -387,7 +544,6 @@ public class BinaryRelationMatch
                         maxScore = score;
                     }
                 }
-                matchedRow++;
             }
             if ( matchedRowWithMaxScore != -1 )
             {
@@ -420,18 +576,18 @@ public class BinaryRelationMatch
                         // it's more favorable to go from master to matched:
                         //    for each row of the master, find the best match in the to-be-matched list.!!!
         
+        HashMap<String, int[]> candidates = indexByCandidateKey( _masterTuples );
         iter = _toMatchTuples.iterator();
         while ( iter.hasNext() )        // for each to-be-matched tuple, decide whether we should match 
         {
             MatchedBinaryTuple t = (MatchedBinaryTuple)iter.next();
             
             float score = 0;
-            int masterRow = 0;
             int masterRowWithMaxScore = -1;     // -1 means we never found a good one
             float maxScore = 0;
                     // go through each matchable tuple, looking for the best score possible. 
                     // first occurrence of best score gets chosen.
-            while ( masterRow < _masterTuples.size() )
+            for ( int masterRow : candidatesFor( t, candidates, _masterTuples.size() ) )
             {
                 MatchedBinaryTuple master = _masterTuples.get( masterRow );
                 if ( master.available )
@@ -443,7 +599,6 @@ public class BinaryRelationMatch
                         maxScore = score;
                     }
                 }
-                masterRow++;
             }
             if ( masterRowWithMaxScore != -1 )
             {
@@ -457,4 +612,41 @@ public class BinaryRelationMatch
     }
     
 
-}
\ No newline at end of file
+    /**
+        Groups tuples by the tuple matcher's candidate key, so that each tuple is compared only with those
+        that could score above zero.
+        @return for each key, the positions of the tuples having it, in order; null if the matcher 
+        doesn't give every tuple a key.
+        @see AbstractTupleMatcher#candidateKey
+        @since Charger 4.3
+     */
+    private HashMap<String, int[]> indexByCandidateKey( ArrayList<MatchedBinaryTuple> tuples )
+    {
+        HashMap<String, ArrayList<Integer>> positions = new HashMap<String, ArrayList<Integer>>();
+        for ( int k = 0; k < tuples.size(); k++ )
+        {
+            String key = _tupleMatcher.candidateKey( tuples.get( k ) );
+            if ( key == null ) return null;
+            positions.computeIfAbsent( key, x -> new ArrayList<Integer>() ).add( k );
+        }
+        HashMap<String, int[]> index = new HashMap<String, int[]>();
+        for ( Map.Entry<String, ArrayList<Integer>> e : positions.entrySet() )
+            index.put( e.getKey(), e.getValue().stream().mapToInt( Integer::intValue ).toArray() );
+        return index;
+    }
+
+    /**
+        @return the positions, in order, of the indexed tuples that the given one could match; all of them 
+        if there's no index or the tuple has no key.
+     */
+    private int[] candidatesFor( BinaryTuple t, HashMap<String, int[]> index, int size )
+    {
+        String key = index == null ? null : _tupleMatcher.candidateKey( t );
+        if ( key == null ) 
+            return java.util.stream.IntStream.range( 0, size ).toArray();
+        int[] positions = index.get( key );
+        return positions == null ? new int[ 0 ] : positions;
+    }
+    
+
+}
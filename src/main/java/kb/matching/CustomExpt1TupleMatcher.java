@@ -7,6 +7,11 @@ package kb.matching;
  */
 public class CustomExpt1TupleMatcher extends BasicTupleMatcher
 {
+        /** Its own generousStringMatch means the tuples' normalized keys can't be used. */
+    protected boolean usesNormalizedKeys()
+    {
+        return false;
+    }
 
     public boolean generousStringMatch( String ss1, String ss2 )
     {
@@ -33,6 +33,27 @@ public class MatchedBinaryTuple extends BinaryTuple
     
    public MatchedBinaryTuple( Concept c1, GNode r, Concept c2 )
     {   super( c1, r, c2 ); }
+
+    /**
+        Makes a fresh (unmatched) tuple with the same concepts, relation and labels as the given one,
+        without making its sentence or keys again.
+         @since Charger 4.3
+     */
+    public MatchedBinaryTuple( BinaryTuple t )
+    {
+        sentence = t.sentence;
+        concept1_label = t.concept1_label;
+        relation_label = t.relation_label;
+        concept2_label = t.concept2_label;
+        concept1 = t.concept1;
+        relation = t.relation;
+        concept2 = t.concept2;
+        concept1_type_key = t.concept1_type_key;
+        concept1_referent_key = t.concept1_referent_key;
+        concept2_type_key = t.concept2_type_key;
+        concept2_referent_key = t.concept2_referent_key;
+        relation_key = t.relation_key;
+    }
     
     /**
         Returns the total score obtained in matching this tuple.
@@ -0,0 +1,167 @@
+package kb.matching;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+    Finds an assignment of rows to columns of a score matrix (each row to at most one column and each column to
+    at most one row) whose total score is as large as possible. Only positive scores count; a row whose best
+    assignment would score zero is left unassigned.
+    <p>
+    Rows and columns that are connected only through zero scores can't affect each other's assignment, so the
+    matrix is first split into such independent groups (e.g., the tuples of each relation label, when tuples with
+    different relations score zero) and the Hungarian algorithm is run on each group separately. This keeps
+    the cubic cost of the algorithm to the size of the largest group rather than of the whole matrix.
+    @see BinaryRelationMatch#matchTheTuplesOptimally
+     @since Charger 4.3
+ */
+class OptimalAssignment
+{
+    /**
+        @param scores score for each row (first index) and column (second index); all rows must be the same length.
+        @return for each row, the column assigned to it; -1 if none.
+     */
+    static int[] solve( float[][] scores )
+    {
+        int rows = scores.length;
+        int cols = rows == 0 ? 0 : scores[ 0 ].length;
+        int[] assigned = new int[ rows ];
+        Arrays.fill( assigned, -1 );
+        if ( rows == 0 || cols == 0 ) return assigned;
+
+                // union-find over rows (0..rows-1) and columns (rows..rows+cols-1)
+        int[] group = new int[ rows + cols ];
+        for ( int k = 0; k < group.length; k++ ) group[ k ] = k;
+        for ( int r = 0; r < rows; r++ )
+            for ( int c = 0; c < cols; c++ )
+                if ( scores[ r ][ c ] > 0 )
+                {
+                    int a = find( group, r );
+                    int b = find( group, rows + c );
+                    if ( a != b ) group[ a ] = b;
+                }
+
+                // collect each group's rows and columns
+        ArrayList<int[]> groupRows = new ArrayList<int[]>();
+        ArrayList<int[]> groupCols = new ArrayList<int[]>();
+        int[] groupNumber = new int[ rows + cols ];
+        Arrays.fill( groupNumber, -1 );
+        int[] rowCount = new int[ rows + cols ];
+        int[] colCount = new int[ rows + cols ];
+        for ( int k = 0; k < rows + cols; k++ )
+        {
+            int root = find( group, k );
+            if ( k < rows ) rowCount[ root ]++;
+            else colCount[ root ]++;
+        }
+        int[] filled = new int[ rows + cols ];
+        for ( int k = 0; k < rows + cols; k++ )
+        {
+            int root = find( group, k );
+            if ( rowCount[ root ] == 0 || colCount[ root ] == 0 ) continue;   // nothing it could be matched with
+            if ( groupNumber[ root ] < 0 )
+            {
+                groupNumber[ root ] = groupRows.size();
+                groupRows.add( new int[ rowCount[ root ] ] );
+                groupCols.add( new int[ colCount[ root ] ] );
+            }
+            int g = groupNumber[ root ];
+            if ( k < rows ) groupRows.get( g )[ filled[ root ]++ ] = k;
+            else groupCols.get( g )[ filled[ root ]++ - rowCount[ root ] ] = k - rows;
+        }
+
+        for ( int g = 0; g < groupRows.size(); g++ )
+            solveGroup( scores, groupRows.get( g ), groupCols.get( g ), assigned );
+        return assigned;
+    }
+
+    private static int find( int[] group, int k )
+    {
+        while ( group[ k ] != k )
+        {
+            group[ k ] = group[ group[ k ] ];
+            k = group[ k ];
+        }
+        return k;
+    }
+
+    /**
+        Runs the Hungarian algorithm (in its O(n^2 m) form with row and column potentials) on the sub-matrix
+        of the given rows and columns, with the smaller of the two playing the part of the rows.
+     */
+    private static void solveGroup( float[][] scores, int[] rowList, int[] colList, int[] assigned )
+    {
+        boolean transposed = rowList.length > colList.length;
+        int[] across = transposed ? colList : rowList;      // n of these...
+        int[] down = transposed ? rowList : colList;        // ...are assigned to m >= n of these
+        int n = across.length;
+        int m = down.length;
+
+                // minimize cost = -score; arrays are 1-based, with index 0 as the algorithm's sentinel
+        double[] u = new double[ n + 1 ];
+        double[] v = new double[ m + 1 ];
+        int[] p = new int[ m + 1 ];         // p[ j ] = the "across" index assigned to "down" j
+        int[] way = new int[ m + 1 ];
+        double[] minv = new double[ m + 1 ];
+        boolean[] used = new boolean[ m + 1 ];
+        for ( int i = 1; i <= n; i++ )
+        {
+            p[ 0 ] = i;
+            int j0 = 0;
+            Arrays.fill( minv, Double.POSITIVE_INFINITY );
+            Arrays.fill( used, false );
+            do
+            {
+                used[ j0 ] = true;
+                int i0 = p[ j0 ];
+                double delta = Double.POSITIVE_INFINITY;
+                int j1 = 0;
+                for ( int j = 1; j <= m; j++ )
+                {
+                    if ( used[ j ] ) continue;
+                    double cur = cost( scores, across[ i0 - 1 ], down[ j - 1 ], transposed ) - u[ i0 ] - v[ j ];
+                    if ( cur < minv[ j ] )
+                    {
+                        minv[ j ] = cur;
+                        way[ j ] = j0;
+                    }
+                    if ( minv[ j ] < delta )
+                    {
+                        delta = minv[ j ];
+                        j1 = j;
+                    }
+                }
+                for ( int j = 0; j <= m; j++ )
+                {
+                    if ( used[ j ] )
+                    {
+                        u[ p[ j ] ] += delta;
+                        v[ j ] -= delta;
+                    }
+                    else
+                        minv[ j ] -= delta;
+                }
+                j0 = j1;
+            } while ( p[ j0 ] != 0 );
+            do
+            {
+                int j1 = way[ j0 ];
+                p[ j0 ] = p[ j1 ];
+                j0 = j1;
+            } while ( j0 != 0 );
+        }
+
+        for ( int j = 1; j <= m; j++ )
+        {
+            if ( p[ j ] == 0 ) continue;
+            int row = transposed ? down[ j - 1 ] : across[ p[ j ] - 1 ];
+            int col = transposed ? across[ p[ j ] - 1 ] : down[ j - 1 ];
+            if ( scores[ row ][ col ] > 0 ) assigned[ row ] = col;
+        }
+    }
+
+    private static double cost( float[][] scores, int a, int d, boolean transposed )
+    {
+        return transposed ? -scores[ d ][ a ] : -scores[ a ][ d ];
+    }
+}
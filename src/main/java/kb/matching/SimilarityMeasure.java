@@ -20,25 +20,68 @@
 package kb.matching;
 
 import charger.obj.Concept;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import kb.hierarchy.POSetNode;
 import kb.hierarchy.TypeHierarchy;
+import kb.hierarchy.TypeHierarchyNode;
 
 /**
  * A class to represent the abstraction of similarity between two CG concepts.
  * Takes into account types, supertypes, referents, etc.
  * Considers similarity to be a floating point number between 0 and 1 inclusive.
+ * <p>
+ * Type similarities are remembered, for each hierarchy, in a least-recently-used
+ * cache of up to CACHE_SIZE pairs of types. The cache is emptied whenever the
+ * hierarchy changes (see TypeHierarchy#getVersion), so matchers can ask about the
+ * same types over and over during a group match without the hierarchy being
+ * searched again.
  * @author Harry S. Delugach (delugach@uah.edu)
  */
 public class SimilarityMeasure {
 
+    /**
+     * The ways two types' similarity can be calculated.
+     */
+    public static enum Kind {
+        /** 1 / (number of hops + 1); see calculateTypeSimilarity */
+        HOPS,
+        /** Lin's measure, using how many subtypes a type has as its (inverse) information content */
+        INFORMATION_CONTENT
+    }
+
+    /** How many pairs of types each hierarchy's cache remembers. */
+    public static final int CACHE_SIZE = 100000;
+
+    /** Per-hierarchy caches; a hierarchy's cache goes away with the hierarchy,
+     * since the caches don't refer to their hierarchies. */
+    private static final Map<TypeHierarchy, TypeCache> caches = new WeakHashMap<>();
+
     double similarity = 0.0d;
 
     /**
      * Given two concepts, prepare their similarity measurements.
      * @param c1
-     * @param c2 
+     * @param c2
      */
     public SimilarityMeasure( TypeHierarchy hierarchy, Concept c1, Concept c2 ) {
-        
+        this( hierarchy, c1, c2, Kind.HOPS );
+    }
+
+    /**
+     * Given two concepts, prepare their similarity measurements, using the
+     * given kind of type similarity.
+     * @param c1
+     * @param c2
+     */
+    public SimilarityMeasure( TypeHierarchy hierarchy, Concept c1, Concept c2, Kind kind ) {
+        if ( hierarchy != null && c1 != null && c2 != null ) {
+            similarity = typeSimilarity( hierarchy, c1.getTypeLabel(), c2.getTypeLabel(), kind );
+        }
     }
 
     public double getSimilarity() {
@@ -48,17 +91,260 @@ public class SimilarityMeasure {
     public void setSimilarity( double similarity ) {
         this.similarity = similarity;
     }
-    
-    /** Uses the hierarchy to determine similarity of two types. 
+
+    /**
+     * Uses the hierarchy to determine the similarity of two type labels,
+     * remembering the answer in the hierarchy's cache.
+     * @param hierarchy where the types are to be found
+     * @param type1 one type label
+     * @param type2 another type label
+     * @param kind how to calculate the similarity
+     * @return similarity between 0 and 1; 1 if the labels are the same, and
+     * otherwise 0 if either isn't in the hierarchy.
+     */
+    public static double typeSimilarity( TypeHierarchy hierarchy, String type1, String type2, Kind kind ) {
+        if ( type1 == null || type2 == null ) {
+            return 0.0;
+        }
+        if ( type1.equals( type2 ) ) {
+            return 1.0;
+        }
+        return cacheFor( hierarchy ).get( hierarchy, type1, type2, kind );
+    }
+
+    /**
+     * Finds the number of hops between two types, going up from one of them to
+     * a common supertype and then down to the other one. Only hops between a
+     * type and its immediate supertypes count; a link to a supertype that can
+     * also be reached through another supertype (like the link every type has
+     * to the top) is skipped, since otherwise any two types would be at most
+     * two hops apart.
+     * @param hierarchy where the types are to be found
+     * @param type1 one type label
+     * @param type2 another type label
+     * @return the least number of hops; -1 if either type isn't in the hierarchy.
+     */
+    public static int typeDistance( TypeHierarchy hierarchy, String type1, String type2 ) {
+        if ( type1 == null || type2 == null ) {
+            return -1;
+        }
+        double hops = cacheFor( hierarchy ).get( hierarchy, type1, type2, null );
+        return (int)hops;
+    }
+
+    /**
+     * Forgets all remembered type similarities, for every hierarchy.
+     */
+    public static void clearCache() {
+        synchronized ( caches ) {
+            caches.clear();
+        }
+    }
+
+    private static TypeCache cacheFor( TypeHierarchy hierarchy ) {
+        synchronized ( caches ) {
+            TypeCache cache = caches.get( hierarchy );
+            if ( cache == null ) {
+                cache = new TypeCache( hierarchy );
+                caches.put( hierarchy, cache );
+            }
+            return cache;
+        }
+    }
+
+    /** Uses the hierarchy to determine similarity of two types.
      * The strategy is to favor shorter numbers of "hops" up and down the hierarchy.
-     * A straightforward calculation is to say the similarity is 
+     * A straightforward calculation is to say the similarity is
      * 1 / (number of hops + 1). If two types are the same, then hops is zero and the similarity is one.
      * If there's one hop difference, then hops is one and the similarity is one-half, etc.
-     * @return 
+     * @return
      */
-    private double calculateTypeSimilarity() {
-        
-        return 0.0;
+    private static double calculateTypeSimilarity( int hops ) {
+        if ( hops < 0 ) {
+            return 0.0;
+        }
+        return 1.0 / ( hops + 1 );
     }
-    
+
+    /**
+     * Lin's similarity: twice the information content of the most informative
+     * common supertype, over the sum of the types' own information contents. A
+     * type's information content is 1 - log( subtypes + 1 ) / log( types ),
+     * where the bottom isn't counted as a subtype or a type; so the top has
+     * none and a type with no subtypes has 1.
+     */
+    private static double calculateInformationContentSimilarity( TypeHierarchy hierarchy,
+            TypeHierarchyNode node1, TypeHierarchyNode node2 ) {
+        double types = hierarchy.getCardinality() - 1;
+        if ( types <= 1 ) {
+            return node1 == node2 ? 1.0 : 0.0;
+        }
+        double ic1 = informationContent( hierarchy, node1, types );
+        double ic2 = informationContent( hierarchy, node2, types );
+        if ( ic1 + ic2 == 0 ) {
+            return node1 == node2 ? 1.0 : 0.0;
+        }
+        double common = 0.0;
+        for ( TypeHierarchyNode n : hierarchy.getLeastCommonSupertypes( node1.getValue(), node2.getValue() ) ) {
+            common = Math.max( common, informationContent( hierarchy, n, types ) );
+        }
+        return Math.min( 1.0, 2 * common / ( ic1 + ic2 ) );
+    }
+
+    private static double informationContent( TypeHierarchy hierarchy, TypeHierarchyNode node, double types ) {
+        if ( node == hierarchy.getBottom() ) {
+            return 1.0;
+        }
+        int subtypes = hierarchy.countSubtypes( node ) - 1;     // not the bottom
+        return Math.max( 0.0, 1.0 - Math.log( subtypes + 1 ) / Math.log( types ) );
+    }
+
+    /**
+     * Finds the hops between two nodes by searching upward from each of them
+     * (over immediate supertypes only) and finding the common supertype for
+     * which the two searches' distances add up to the least.
+     */
+    private static int calculateHops( TypeHierarchy hierarchy, TypeHierarchyNode node1, TypeHierarchyNode node2 ) {
+        if ( node1 == node2 ) {
+            return 0;
+        }
+        IdentityHashMap<POSetNode, Integer> up1 = distancesUpward( hierarchy, node1 );
+        IdentityHashMap<POSetNode, Integer> up2 = distancesUpward( hierarchy, node2 );
+        int best = -1;
+        for ( Map.Entry<POSetNode, Integer> e : up1.entrySet() ) {
+            Integer d2 = up2.get( e.getKey() );
+            if ( d2 != null && ( best < 0 || e.getValue() + d2 < best ) ) {
+                best = e.getValue() + d2;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Breadth-first search upward from the node.
+     * @return each supertype (and the node itself) with its distance from the node.
+     */
+    private static IdentityHashMap<POSetNode, Integer> distancesUpward( TypeHierarchy hierarchy, POSetNode node ) {
+        IdentityHashMap<POSetNode, Integer> distance = new IdentityHashMap<>();
+        ArrayDeque<POSetNode> toVisit = new ArrayDeque<>();
+        distance.put( node, 0 );
+        toVisit.add( node );
+        while ( !toVisit.isEmpty() ) {
+            POSetNode n = toVisit.poll();
+            int d = distance.get( n ) + 1;
+            for ( POSetNode p : immediateSupertypes( hierarchy, n ) ) {
+                if ( !distance.containsKey( p ) ) {
+                    distance.put( p, d );
+                    toVisit.add( p );
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * @return the node's supertypes that can't also be reached through one of
+     * its other supertypes.
+     */
+    private static ArrayList<POSetNode> immediateSupertypes( TypeHierarchy hierarchy, POSetNode node ) {
+        ArrayList<POSetNode> parents = node.getParentNodes();
+        ArrayList<POSetNode> immediate = new ArrayList<>( parents.size() );
+        for ( POSetNode p : parents ) {
+            boolean redundant = false;
+            for ( POSetNode q : parents ) {
+                if ( q != p && hierarchy.isSubtypeOf( (TypeHierarchyNode)q, (TypeHierarchyNode)p ) ) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if ( !redundant ) {
+                immediate.add( p );
+            }
+        }
+        return immediate;
+    }
+
+    /**
+     * The remembered similarities for one hierarchy, least recently used first.
+     * The hierarchy is passed in on each use rather than kept, so that the
+     * cache doesn't keep its own key in the weak map alive.
+     */
+    private static class TypeCache {
+
+        int version;
+        final LinkedHashMap<Pair, Double> values = new LinkedHashMap<Pair, Double>( 1024, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Pair, Double> eldest ) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+        TypeCache( TypeHierarchy hierarchy ) {
+            this.version = hierarchy.getVersion();
+        }
+
+        /**
+         * @param hierarchy the hierarchy this cache belongs to
+         * @param kind what to find; null means the number of hops.
+         */
+        synchronized double get( TypeHierarchy hierarchy, String type1, String type2, Kind kind ) {
+            if ( hierarchy.getVersion() != version ) {
+                values.clear();
+                version = hierarchy.getVersion();
+            }
+            Pair key = new Pair( type1, type2, kind );
+            Double value = values.get( key );
+            if ( value == null ) {
+                value = calculate( hierarchy, type1, type2, kind );
+                values.put( key, value );
+            }
+            return value;
+        }
+
+        private double calculate( TypeHierarchy hierarchy, String type1, String type2, Kind kind ) {
+            TypeHierarchyNode node1 = hierarchy.getNodeByValue( type1 );
+            TypeHierarchyNode node2 = hierarchy.getNodeByValue( type2 );
+            if ( node1 == null || node2 == null ) {
+                return kind == null ? -1 : 0.0;
+            }
+            if ( kind == Kind.INFORMATION_CONTENT ) {
+                return calculateInformationContentSimilarity( hierarchy, node1, node2 );
+            }
+            // hops are remembered on their own too, so that both questions share them
+            int hops = (int)( kind == null ? calculateHops( hierarchy, node1, node2 ) : get( hierarchy, type1, type2, null ) );
+            return kind == null ? hops : calculateTypeSimilarity( hops );
+        }
+    }
+
+    /**
+     * Two type labels, in either order, and what was asked about them.
+     */
+    private static class Pair {
+
+        final String type1;
+        final String type2;
+        final Kind kind;
+
+        Pair( String type1, String type2, Kind kind ) {
+            this.type1 = type1;
+            this.type2 = type2;
+            this.kind = kind;
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( !( o instanceof Pair ) ) {
+                return false;
+            }
+            Pair p = (Pair)o;
+            return kind == p.kind && ( ( type1.equals( p.type1 ) && type2.equals( p.type2 ) )
+                    || ( type1.equals( p.type2 ) && type2.equals( p.type1 ) ) );
+        }
+
+        @Override
+        public int hashCode() {
+            return ( type1.hashCode() ^ type2.hashCode() ) * 31 + ( kind == null ? 0 : kind.hashCode() );
+        }
+    }
+
 }